@@ -1,9 +1,13 @@
 package com.conveyal.datatools.common.status;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.persistence.FeedFileCache;
+import com.conveyal.datatools.manager.utils.JobExecutor;
+import com.conveyal.datatools.manager.utils.JobMetrics;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.slf4j.Logger;
@@ -13,10 +17,28 @@ import java.io.File;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
 /**
  * Created by landon on 6/13/16.
@@ -53,6 +75,30 @@ public abstract class MonitorableJob implements Runnable, Serializable {
     @BsonIgnore
     public List<MonitorableJob> subJobs = new ArrayList<>();
 
+    /**
+     * The sub-jobs that must complete successfully before each sub-job can start (see {@link #addDependentJob}). Sub-jobs
+     * whose predecessors have all completed are run concurrently.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private final Map<MonitorableJob, List<MonitorableJob>> subJobPredecessors = new HashMap<>();
+
+    /**
+     * Runs sub-jobs that are ready at the same time as another sub-job of the same parent (which runs in the parent's
+     * thread). These are not run on the {@link JobExecutor} pools because the parent holds a pool thread while it waits
+     * for them, so queueing them behind other jobs in the same pool could deadlock. For the same reason, sub-jobs are
+     * not queued here either: when all of the (configurable) threads are busy, the parent runs the sub-job itself.
+     */
+    private static final ExecutorService concurrentSubJobExecutor = createConcurrentSubJobExecutor();
+
+    /**
+     * Priority the job was queued with (see {@link JobUtils#execute}). Jobs that queue follow-on jobs should pass this
+     * on so that, e.g., processing of a manually fetched feed is not queued behind bulk work.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    public JobExecutor.Priority priority = JobExecutor.Priority.NORMAL;
+
     public enum JobType {
         AUTO_DEPLOY_FEED_VERSION,
         UNKNOWN_TYPE,
@@ -81,7 +127,10 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         MERGE_FEED_VERSIONS,
         RECREATE_BUILD_IMAGE,
         UPDATE_PELIAS,
-        AUTO_PUBLISH_FEED_VERSION
+        AUTO_PUBLISH_FEED_VERSION,
+        REPAIR_LATEST_VERSION_SUMMARIES,
+        MIGRATE_VALIDATION_RESULTS,
+        NOTIFY_USERS
     }
 
     public MonitorableJob(Auth0UserProfile owner, String name, JobType type) {
@@ -110,11 +159,10 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      * It is a standard start-up stage for all monitorable jobs.
      */
     private void registerJob() {
-        // Get all active jobs and add the latest active job. Note: Removal of job from user's set of jobs is handled
-        // in the StatusController when a user requests their active jobs and the job has finished/errored.
-        Set<MonitorableJob> userJobs = JobUtils.getJobsForUser(this.owner);
-        userJobs.add(this);
-        JobUtils.userJobsMap.put(retrieveUserId(), userJobs);
+        // Note: Removal of job from the registry is handled in the StatusController when a user requests their active
+        // jobs and the job has finished/errored.
+        JobUtils.jobRegistry.register(this);
+        JobUtils.jobStatusFeed.jobRegistered(this);
     }
 
     @JsonProperty("owner")
@@ -155,42 +203,74 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      * override jobLogic and jobFinished method(s).
      */
     public void run () {
-        active = true;
+        long runStartNanos = markRunStarted();
         boolean parentJobErrored = false;
         boolean subTaskErrored = false;
         String cancelMessage = "";
+        long logicNanos = -1;
+        long logicCpuNanos = -1;
+        long logicAllocatedBytes = -1;
+        // Keep feed files that this job (or a sub-job run on this thread) retrieves from the feed cache until it has
+        // finished.
+        FeedFileCache.openPinScope();
         try {
-            // First execute the core logic of the specific MonitorableJob subclass
-            jobLogic();
+            // First execute the core logic of the specific MonitorableJob subclass, measuring the resources it uses.
+            long cpuNanosBefore = JobMetrics.currentThreadCpuNanos();
+            long allocatedBytesBefore = JobMetrics.currentThreadAllocatedBytes();
+            try {
+                jobLogic();
+            } finally {
+                logicNanos = System.nanoTime() - runStartNanos;
+                if (cpuNanosBefore >= 0) logicCpuNanos = JobMetrics.currentThreadCpuNanos() - cpuNanosBefore;
+                if (allocatedBytesBefore >= 0) {
+                    logicAllocatedBytes = JobMetrics.currentThreadAllocatedBytes() - allocatedBytesBefore;
+                }
+            }
             if (status.error) {
                 parentJobErrored = true;
                 cancelMessage = String.format("Task cancelled due to error in %s task", getClass().getSimpleName());
             }
-            // Immediately run any sub-jobs in sequence in the current thread.
-            // This hogs the current thread pool thread but makes execution order predictable.
-            int subJobNumber = 1;
+            // Immediately run any sub-jobs in the current thread once their predecessors have completed. Sub-jobs
+            // that become ready at the same time run concurrently (one of them in the current thread). This hogs the
+            // current thread pool thread but makes execution order predictable.
+            int subJobsCompleted = 0;
             int subJobsTotal = subJobs.size() + 1;
-
-            for (MonitorableJob subJob : subJobs) {
-                String subJobName = subJob.getClass().getSimpleName();
-                if (!parentJobErrored && !subTaskErrored) {
-                    // Calculate completion based on number of sub jobs remaining.
-                    double percentComplete = subJobNumber * 100D / subJobsTotal;
-                    // Run sub-task if no error has errored during parent job or previous sub-task execution.
-                    status.update(String.format("Waiting on %s...", subJobName), percentComplete);
-                    subJob.run();
-                    // Record if there has been an error in the execution of the sub-task. (Note: this will not
-                    // incorrectly overwrite a 'true' value with 'false' because the sub-task is only run if
-                    // jobHasErrored is false.
+            Set<MonitorableJob> succeededSubJobs = new HashSet<>();
+            List<MonitorableJob> remainingSubJobs = new ArrayList<>(subJobs);
+            while (!remainingSubJobs.isEmpty()) {
+                if (parentJobErrored || subTaskErrored) {
+                    // Cancel (fail) all remaining sub-tasks.
+                    for (MonitorableJob subJob : remainingSubJobs) subJob.cancel(cancelMessage);
+                    break;
+                }
+                // Predecessors are always added before the sub-jobs that depend on them, so (with no errors) the first
+                // remaining sub-job is always ready.
+                List<MonitorableJob> readySubJobs = remainingSubJobs.stream()
+                    .filter(subJob -> succeededSubJobs.containsAll(
+                        subJobPredecessors.getOrDefault(subJob, Collections.emptyList())
+                    ))
+                    .collect(Collectors.toList());
+                remainingSubJobs.removeAll(readySubJobs);
+                // Calculate completion based on number of sub jobs remaining.
+                double percentComplete = (subJobsCompleted + 1) * 100D / subJobsTotal;
+                String subJobNames = readySubJobs.stream()
+                    .map(subJob -> subJob.getClass().getSimpleName())
+                    .collect(Collectors.joining(", "));
+                status.update(String.format("Waiting on %s...", subJobNames), percentComplete);
+                runConcurrently(readySubJobs);
+                for (MonitorableJob subJob : readySubJobs) {
+                    // Record if there has been an error in the execution of the sub-task.
                     if (subJob.status.error) {
                         subTaskErrored = true;
-                        cancelMessage = String.format("Task cancelled due to error in %s task", subJobName);
+                        cancelMessage = String.format(
+                            "Task cancelled due to error in %s task",
+                            subJob.getClass().getSimpleName()
+                        );
+                    } else {
+                        succeededSubJobs.add(subJob);
                     }
-                } else {
-                    // Cancel (fail) next sub-task and continue.
-                    subJob.cancel(cancelMessage);
                 }
-                subJobNumber += 1;
+                subJobsCompleted += readySubJobs.size();
             }
             // FIXME: should jobFinished be run if task or any sub-task fails?
             if (subTaskErrored) {
@@ -212,11 +292,79 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         } catch (Exception e) {
             status.fail("Job failed due to unhandled exception!", e);
         } finally {
-            LOG.info("{} (jobId={}) {} in {} ms", type, jobId, status.error ? "errored" : "completed", status.duration);
-            active = false;
+            markRunFinished(runStartNanos, logicNanos, logicCpuNanos, logicAllocatedBytes);
+            FeedFileCache.closePinScope();
         }
     }
 
+    /**
+     * Mark the job as running. This and {@link #markRunFinished} are the start and end of {@link #run}, and must also
+     * be called by any job that is run some other way (e.g., asynchronously).
+     *
+     * @return the start time of the run (from {@link System#nanoTime})
+     */
+    protected final long markRunStarted() {
+        active = true;
+        JobUtils.jobRegistry.markStarted(this);
+        // Subclasses may have replaced the status object since the job was registered (e.g., with a DeployStatus).
+        JobUtils.jobStatusFeed.jobStarted(this);
+        return System.nanoTime();
+    }
+
+    /**
+     * Log and record the metrics for a finished run and mark the job as no longer running.
+     *
+     * @param runStartNanos the value returned by {@link #markRunStarted}
+     * @param logicNanos    the time spent in the job's own logic, or -1 if it failed to start
+     * @param logicCpuNanos the CPU time used by the job's own logic, or -1 if unknown
+     * @param logicAllocatedBytes the memory allocated by the job's own logic, or -1 if unknown
+     */
+    protected final void markRunFinished(
+        long runStartNanos,
+        long logicNanos,
+        long logicCpuNanos,
+        long logicAllocatedBytes
+    ) {
+        LOG.info("{} (jobId={}) {} in {} ms", type, jobId, status.error ? "errored" : "completed", status.duration);
+        long runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStartNanos);
+        JobMetrics.forJobType(type).recordRun(
+            runMillis,
+            TimeUnit.NANOSECONDS.toMillis(logicNanos),
+            logicCpuNanos,
+            logicAllocatedBytes,
+            status.error
+        );
+        if (parentJobType != null) JobMetrics.forJobType(parentJobType).recordSubJob(type, runMillis);
+        active = false;
+        JobUtils.jobRegistry.markFinished(this);
+    }
+
+    private static ExecutorService createConcurrentSubJobExecutor() {
+        int threads = Integer.parseInt(getConfigPropertyAsText("JOB_EXECUTOR_SUB_JOB_THREADS", "4"));
+        return new ThreadPoolExecutor(
+            0,
+            Math.max(threads, 1),
+            60L,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("sub-job-%d").build(),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * Run the provided sub-jobs, one in the current thread and the rest on {@link #concurrentSubJobExecutor} (or in the
+     * current thread if it has no free threads), and wait for all of them to finish.
+     */
+    private static void runConcurrently(List<MonitorableJob> jobs) throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (MonitorableJob job : jobs.subList(1, jobs.size())) {
+            futures.add(concurrentSubJobExecutor.submit(job));
+        }
+        jobs.get(0).run();
+        for (Future<?> future : futures) future.get();
+    }
+
     /**
      * An alternative method to run(), this method updates job status with error and should contain any other
      * clean up steps needed to complete job in an errored state (generally due to failure in a previous task in
@@ -230,14 +378,31 @@ public abstract class MonitorableJob implements Runnable, Serializable {
     }
 
     /**
-     * Enqueues a sub-job to be run when the main logic of this job has finished.
+     * Enqueues a sub-job to be run when the main logic of this job has finished. Each job runs after all of the
+     * previously added sub-jobs have completed successfully.
      */
     public void addNextJob(MonitorableJob ...jobs) {
         for (MonitorableJob job : jobs) {
-            job.parentJobId = this.jobId;
-            job.parentJobType = this.type;
-            subJobs.add(job);
+            addDependentJob(job, subJobs.toArray(new MonitorableJob[0]));
+        }
+    }
+
+    /**
+     * Enqueues a sub-job to be run once the main logic of this job and the provided predecessors (which must already
+     * have been added as sub-jobs of this job) have completed successfully. Sub-jobs that do not depend on one another
+     * may run concurrently, so they must not modify shared state without synchronization. As with
+     * {@link #addNextJob}, an error in any sub-job cancels all sub-jobs that have not yet started.
+     */
+    public void addDependentJob(MonitorableJob job, MonitorableJob ...predecessors) {
+        for (MonitorableJob predecessor : predecessors) {
+            if (!subJobs.contains(predecessor)) {
+                throw new IllegalArgumentException("Predecessor must be added as a sub-job before its dependents.");
+            }
         }
+        job.parentJobId = this.jobId;
+        job.parentJobType = this.type;
+        subJobs.add(job);
+        subJobPredecessors.put(job, Arrays.asList(predecessors));
     }
 
     /** Convenience wrapper for a {@link List} of jobs. */
@@ -249,6 +414,19 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      * Represents the current status of this job.
      */
     public static class Status {
+        /** Progress updates reported more often than this are applied but not logged, recorded or pushed to clients. */
+        private static final long MIN_UPDATE_INTERVAL_MILLIS =
+            Long.parseLong(getConfigPropertyAsText("JOB_STATUS_UPDATE_INTERVAL_MS", "500"));
+        /** The number of events to keep in each job's progress history (0 disables the history). */
+        private static final int MAX_HISTORY_SIZE =
+            Integer.parseInt(getConfigPropertyAsText("JOB_STATUS_HISTORY_SIZE", "50"));
+        private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+        /** Records the last of a burst of skipped updates once the update interval has passed (see {@link #update}). */
+        private static final ScheduledExecutorService trailingUpdateExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("job-status-update").setDaemon(true).build()
+        );
+
         /** What message (defined in messages.<lang>) should be displayed to the user? */
         public String message;
 
@@ -283,27 +461,140 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         // Name of file/item once completed
         public String completedName;
 
+        /** Called whenever the status is updated, completed or failed (see {@link #onChange}). */
+        private transient Runnable changeListener;
+
+        /** The most recent updates, completion and failure of this status, oldest first. */
+        private final transient Deque<StatusEvent> history = new ArrayDeque<>();
+        /** When an update was last recorded (see {@link #MIN_UPDATE_INTERVAL_MILLIS}). */
+        private transient long lastRecordedUpdateMillis;
+        /** The number of updates skipped since the last recorded event. */
+        private transient int skippedUpdates;
+        /** Whether a trailing update has been scheduled to record skipped updates. */
+        private transient boolean trailingUpdateScheduled;
+        /** The code that reported the first update skipped since the last recorded event. */
+        private transient String skippedUpdateCaller;
+
+        /**
+         * Set the listener to be notified of updates to this status, replacing any previous listener. This is used to
+         * push status changes to clients (see {@link com.conveyal.datatools.manager.utils.JobStatusFeed}).
+         */
+        public void onChange(Runnable listener) {
+            this.changeListener = listener;
+        }
+
+        private void notifyChanged() {
+            Runnable listener = changeListener;
+            if (listener != null) listener.run();
+        }
+
         /**
          * Update status message and percent complete. This method should be used while job is still in progress.
+         *
+         * Jobs may call this for every item they process, so the message and percent complete are always set but the
+         * update is only logged, added to the history and pushed to clients at most once every
+         * {@link #MIN_UPDATE_INTERVAL_MILLIS}. Any skipped update is still returned to clients that request the job, and
+         * the latest one is recorded and pushed once the interval has passed unless another update or the completion
+         * of the job is recorded first.
          */
         public void update (String message, double percentComplete) {
-            LOG.info("Job updated `{}`: `{}`\n{}", name, message, getCallingMethodTrace());
             this.message = message;
             this.percentComplete = percentComplete;
+            long now = System.currentTimeMillis();
+            synchronized (history) {
+                long sinceLastRecordedMillis = now - lastRecordedUpdateMillis;
+                if (sinceLastRecordedMillis < MIN_UPDATE_INTERVAL_MILLIS) {
+                    if (skippedUpdates++ == 0) skippedUpdateCaller = findCaller();
+                    scheduleTrailingUpdate(MIN_UPDATE_INTERVAL_MILLIS - sinceLastRecordedMillis);
+                    return;
+                }
+                lastRecordedUpdateMillis = now;
+            }
+            StatusEvent event = record(StatusEvent.Kind.UPDATE, message, percentComplete, false, findCaller());
+            LOG.info("Job updated `{}`: `{}` ({})", name, message, event.caller);
+            notifyChanged();
+        }
+
+        /**
+         * Schedule {@link #recordTrailingUpdate} to run after the delay, unless it is already scheduled. Must be called
+         * while holding the lock on the history.
+         */
+        private void scheduleTrailingUpdate(long delayMillis) {
+            if (trailingUpdateScheduled) return;
+            trailingUpdateScheduled = true;
+            trailingUpdateExecutor.schedule(this::recordTrailingUpdate, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Record the current message and percent complete if updates have been skipped since the last recorded event,
+         * so that the final progress of a burst of updates is not lost. Runs on {@link #trailingUpdateExecutor}.
+         */
+        private void recordTrailingUpdate() {
+            String message;
+            double percentComplete;
+            String caller;
+            synchronized (history) {
+                trailingUpdateScheduled = false;
+                if (skippedUpdates == 0 || completed) return;
+                long now = System.currentTimeMillis();
+                long sinceLastRecordedMillis = now - lastRecordedUpdateMillis;
+                if (sinceLastRecordedMillis < MIN_UPDATE_INTERVAL_MILLIS) {
+                    // Another update was recorded since this was scheduled.
+                    scheduleTrailingUpdate(MIN_UPDATE_INTERVAL_MILLIS - sinceLastRecordedMillis);
+                    return;
+                }
+                lastRecordedUpdateMillis = now;
+                message = this.message;
+                percentComplete = this.percentComplete;
+                caller = skippedUpdateCaller;
+            }
+            record(StatusEvent.Kind.UPDATE, message, percentComplete, false, caller);
+            LOG.info("Job updated `{}`: `{}` ({})", name, message, caller);
+            notifyChanged();
+        }
+
+        /**
+         * Add an event to the history, dropping the oldest event if the history is full.
+         */
+        private StatusEvent record(
+            StatusEvent.Kind kind,
+            String message,
+            double percentComplete,
+            boolean error,
+            String caller
+        ) {
+            synchronized (history) {
+                StatusEvent event = new StatusEvent(kind, message, percentComplete, error, caller, skippedUpdates);
+                skippedUpdates = 0;
+                if (MAX_HISTORY_SIZE > 0) {
+                    if (history.size() >= MAX_HISTORY_SIZE) history.removeFirst();
+                    history.addLast(event);
+                }
+                return event;
+            }
+        }
+
+        /**
+         * @return a copy of the most recent events recorded for this status (at most {@link #MAX_HISTORY_SIZE}),
+         * oldest first. This is intended for diagnosing slow or failed jobs.
+         */
+        public List<StatusEvent> retrieveHistory() {
+            synchronized (history) {
+                return new ArrayList<>(history);
+            }
         }
 
         /**
-         * Gets stack trace from method calling {@link #update(String, double)} or {@link #fail(String)} for logging
-         * purposes.
+         * Finds the code that called this status (skipping any frames in this class or its subclasses) for logging
+         * purposes. Unlike {@link Thread#getStackTrace}, the stack walker only inspects the frames it needs.
          */
-        private String getCallingMethodTrace() {
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            // Get trace from method calling update or fail. To trace this back:
-            // 0. this thread
-            // 1. this method
-            // 2. Status#update or Status#fail
-            // 3. line where update/fail is called in server job
-            return stackTrace.length >= 3 ? stackTrace[3].toString() : "WARNING: Stack trace not found.";
+        private static String findCaller() {
+            return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> !Status.class.isAssignableFrom(frame.getDeclaringClass()))
+                .findFirst()
+                .map(StackWalker.StackFrame::toString)
+                .orElse(null)
+            );
         }
 
         /**
@@ -324,6 +615,8 @@ public abstract class MonitorableJob implements Runnable, Serializable {
             this.percentComplete = 100;
             this.completed = true;
             this.duration = System.currentTimeMillis() - this.startTime;
+            record(isError ? StatusEvent.Kind.FAIL : StatusEvent.Kind.COMPLETE, this.message, 100, isError, findCaller());
+            notifyChanged();
         }
 
         /**
@@ -340,7 +633,7 @@ public abstract class MonitorableJob implements Runnable, Serializable {
             if (e != null) {
                 this.exceptionDetails = ExceptionUtils.getStackTrace(e);
                 this.exceptionType = e.getMessage();
-                // If exception is null, overloaded fail method was called and message already logged with trace.
+                // If exception is null, overloaded fail method was called and message already logged with caller.
                 String logMessage = String.format("Job `%s` failed with message: `%s`", name, message);
                 LOG.warn(logMessage, e);
             }
@@ -351,9 +644,11 @@ public abstract class MonitorableJob implements Runnable, Serializable {
          * Fail job status with message.
          */
         public void fail (String message) {
-            // Log error with stack trace from calling method in job.
-            LOG.error("Job failed with message {}\n{}", message, getCallingMethodTrace());
             fail(message, null);
+            // Log error with the calling method in job (recorded with the failure).
+            List<StatusEvent> events = retrieveHistory();
+            String caller = events.isEmpty() ? findCaller() : events.get(events.size() - 1).caller;
+            LOG.error("Job `{}` failed with message `{}` ({})", name, message, caller);
         }
     }
 }
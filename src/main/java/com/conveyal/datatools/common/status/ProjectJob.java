@@ -0,0 +1,9 @@
+package com.conveyal.datatools.common.status;
+
+/**
+ * This interface should be implemented by any job that operates on a whole Project (e.g., deploying or publishing a
+ * project's feeds), so that jobs underway for a project can be looked up by project ID.
+ */
+public interface ProjectJob {
+    String getProjectId();
+}
@@ -0,0 +1,16 @@
+package com.conveyal.datatools.common.status;
+
+import java.util.Map;
+
+/**
+ * This interface should be implemented by any job that can safely be run again from the start if the server running
+ * it stops part way through (i.e., the job is idempotent). Such jobs are stored in the durable job queue (see
+ * {@link com.conveyal.datatools.manager.utils.JobQueue}) and resumed when a server next starts up.
+ */
+public interface ResumableJob {
+    /**
+     * @return the parameters needed to recreate this job (see
+     * {@link com.conveyal.datatools.manager.utils.JobQueue#recreateJob}).
+     */
+    Map<String, String> retrieveParameters();
+}
@@ -1,19 +1,36 @@
 package com.conveyal.datatools.common.status;
 
 /**
+ * A change to the status of a job (progress update, completion or failure) as recorded in the job's progress history
+ * (see {@link MonitorableJob.Status#retrieveHistory}).
+ *
  * Created by landon on 8/5/16.
  */
 public class StatusEvent {
+    public enum Kind {
+        UPDATE,
+        COMPLETE,
+        FAIL
+    }
 
-//    MonitorableJob.Status status;
+    public Kind kind;
+    /** When the event occurred (epoch milliseconds). */
+    public long time;
     public String message;
     public double percentComplete;
     public Boolean error;
+    /** The code that reported the event (e.g., "com.example.SomeJob.jobLogic(SomeJob.java:42)"), if known. */
+    public String caller;
+    /** The number of progress updates since the previous event that were not recorded because of throttling. */
+    public int skippedUpdates;
 
-    public StatusEvent (String message, double percentComplete, Boolean error) {
-//        this.status = status;
+    public StatusEvent (Kind kind, String message, double percentComplete, Boolean error, String caller, int skippedUpdates) {
+        this.kind = kind;
+        this.time = System.currentTimeMillis();
         this.message = message;
         this.percentComplete = percentComplete;
         this.error = error;
+        this.caller = caller;
+        this.skippedUpdates = skippedUpdates;
     }
 }
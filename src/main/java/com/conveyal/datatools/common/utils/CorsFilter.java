@@ -21,6 +21,8 @@ public final class CorsFilter {
         corsHeaders.put("Access-Control-Allow-Origin", "*");
         corsHeaders.put("Access-Control-Allow-Headers", "Content-Type,Authorization,X-Requested-With,Content-Length,Accept,Origin,");
         corsHeaders.put("Access-Control-Allow-Credentials", "true");
+        // Allow clients to read the cursor for the next page of paginated listings.
+        corsHeaders.put("Access-Control-Expose-Headers", SparkUtils.NEXT_CURSOR_HEADER);
     }
 
     public final static void apply() {
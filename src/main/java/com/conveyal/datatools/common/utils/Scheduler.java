@@ -7,8 +7,13 @@ import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
+import com.conveyal.datatools.manager.utils.JobQueue;
+import com.conveyal.datatools.manager.utils.JobUtils;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,12 +26,16 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.Utils.getTimezone;
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
 import static com.google.common.collect.Multimaps.synchronizedListMultimap;
 
@@ -37,13 +46,34 @@ import static com.google.common.collect.Multimaps.synchronizedListMultimap;
  * auto feed fetch nightly at 2AM). The jobs are tracked in {@link #scheduledJobsForFeedSources} so that they can be
  * cancelled at a later point in time should the associated feeds/projects be deleted or if the user changes the fetch
  * behavior.
+ *
+ * Scheduled auto fetches are spread across a window after the project's fetch time (see
+ * {@link #AUTO_FETCH_WINDOW_MINUTES}) so that every feed in a project is not fetched in the same second. Each feed
+ * source is offset by a fixed amount derived from its ID, so a feed is fetched at the same time every day. The fetches
+ * are queued as jobs (see {@link JobUtils#execute}) and at most {@link #AUTO_FETCH_MAX_CONCURRENT} run at once, with any
+ * others retried shortly afterwards.
  */
 public class Scheduler {
     private static final Logger LOG = LoggerFactory.getLogger(Scheduler.class);
     private static final int DEFAULT_FETCH_INTERVAL_DAYS = 1;
+    /** Auto fetches for the feed sources in a project are spread over this many minutes after the project's fetch time. */
+    private static final int AUTO_FETCH_WINDOW_MINUTES =
+        Integer.parseInt(getConfigPropertyAsText("AUTO_FETCH_WINDOW_MINUTES", "30"));
+    /** The maximum number of scheduled auto fetches that may be queued or running at once. */
+    private static final int AUTO_FETCH_MAX_CONCURRENT =
+        Integer.parseInt(getConfigPropertyAsText("AUTO_FETCH_MAX_CONCURRENT", "4"));
+    /** How long to wait before retrying an auto fetch that could not start because too many were already running. */
+    private static final int AUTO_FETCH_RETRY_SECONDS = 30;
+    private static final int THREADS = Integer.parseInt(getConfigPropertyAsText("SCHEDULER_THREADS", "4"));
 
-    // Scheduled executor that handles running scheduled jobs.
-    public final static ScheduledExecutorService schedulerService = Executors.newScheduledThreadPool(1);
+    // Scheduled executor that handles running scheduled jobs. This has several threads so that one slow task (e.g., a
+    // feed updater check) does not delay others (e.g., expiration notifications).
+    public final static ScheduledExecutorService schedulerService = Executors.newScheduledThreadPool(
+        THREADS,
+        new ThreadFactoryBuilder().setNameFormat("scheduler-%d").build()
+    );
+    /** Auto fetches queued by the scheduler that have not yet finished (see {@link #AUTO_FETCH_MAX_CONCURRENT}). */
+    private static final Set<FetchSingleFeedJob> pendingAutoFetches = ConcurrentHashMap.newKeySet();
     /** Stores {@link ScheduledJob} objects containing scheduled tasks keyed on the tasks's associated {@link FeedSource} ID. */
     public final static ListMultimap<String, ScheduledJob> scheduledJobsForFeedSources =
         synchronizedListMultimap(ArrayListMultimap.create());
@@ -53,14 +83,13 @@ public class Scheduler {
      */
     public static void initialize() {
         LOG.info("Scheduling recurring feed auto fetches for all projects.");
-        for (Project project : Persistence.projects.getAll()) {
-            handleAutoFeedFetch(project);
+        try (Stream<Project> projects = Persistence.projects.stream(new Document())) {
+            projects.forEach(Scheduler::handleAutoFeedFetch);
         }
         LOG.info("Scheduling feed expiration notifications for all feed sources.");
-        // Get all active feed sources
-        for (FeedSource feedSource : Persistence.feedSources.getAll()) {
-            // Schedule expiration notification jobs for the latest feed version
-            scheduleExpirationNotifications(feedSource);
+        // Stream all active feed sources and schedule expiration notification jobs for the latest feed version.
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.stream(new Document())) {
+            feedSources.forEach(Scheduler::scheduleExpirationNotifications);
         }
     }
 
@@ -78,9 +107,12 @@ public class Scheduler {
      * Convenience method for scheduling auto fetch job for a feed source. Expects delay/interval values in minutes.
      */
     public static ScheduledJob scheduleAutoFeedFetch(FeedSource feedSource, Runnable job, long delayMinutes, long intervalMinutes) {
-        long delayHours = TimeUnit.MINUTES.toHours(delayMinutes);
-        long intervalHours = TimeUnit.MINUTES.toHours(intervalMinutes);
-        LOG.info("Auto fetch for feed {} runs every {} hours. Beginning in {} hours.", feedSource.id, intervalHours, delayHours);
+        LOG.info(
+            "Auto fetch for feed {} runs every {} minutes. Beginning in {} minutes.",
+            feedSource.id,
+            intervalMinutes,
+            delayMinutes
+        );
         ScheduledFuture<?> scheduledFuture = schedulerService.scheduleAtFixedRate(job, delayMinutes, intervalMinutes, TimeUnit.MINUTES);
         ScheduledJob scheduledJob = new ScheduledJob(job, scheduledFuture);
         scheduledJobsForFeedSources.put(feedSource.id, scheduledJob);
@@ -196,7 +228,7 @@ public class Scheduler {
     private static void scheduleAutoFeedFetch(FeedSource feedSource, long defaultDelayMinutes) {
         try {
             // First, remove any scheduled fetch jobs for the current feed source.
-            removeFeedSourceJobsOfType(feedSource.id, FetchSingleFeedJob.class, true);
+            removeFeedSourceJobsOfType(feedSource.id, AutoFetchTrigger.class, true);
             Project project = feedSource.retrieveProject();
             // Do not schedule fetch job if missing URL, not fetched automatically, or auto fetch disabled for project.
             if (feedSource.url == null || !FETCHED_AUTOMATICALLY.equals(feedSource.retrievalMethod) || !project.autoFetchFeeds) {
@@ -210,19 +242,87 @@ public class Scheduler {
             // Convert interval to minutes. Note: Min interval is one (i.e., we cannot have zero fetches per day).
             // TODO: should this be higher if frequency is in minutes?
             long intervalMinutes = frequency.toMinutes(Math.max(feedSource.fetchInterval, 1));
-            // Use system user as owner of job.
-            Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
             // Set delay to default delay for daily fetch (usually derived from project fetch time, e.g. 2am) OR zero
-            // (begin checks immediately).
+            // (begin checks immediately), offset by the feed's position in the fetch window.
             long delayMinutes = TimeUnit.DAYS.equals(frequency) ? defaultDelayMinutes : 0;
-            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, systemUser, false);
-            scheduleAutoFeedFetch(feedSource, fetchSingleFeedJob, delayMinutes, intervalMinutes);
+            delayMinutes += getJitterMinutes(feedSource.id, Math.min(AUTO_FETCH_WINDOW_MINUTES, intervalMinutes));
+            scheduleAutoFeedFetch(feedSource, new AutoFetchTrigger(feedSource.id), delayMinutes, intervalMinutes);
         } catch (Exception e) {
             LOG.error("Error scheduling feed source {} auto fetch.", feedSource.id);
             e.printStackTrace();
         }
     }
 
+    /**
+     * @return a fixed offset (in minutes) within the window for the given feed source, so that fetches for different
+     * feed sources are spread across the window but each feed source is fetched at the same time on each run. The
+     * offset is derived from {@link String#hashCode}, which is the same on every server and across restarts.
+     */
+    static long getJitterMinutes(String feedSourceId, long windowMinutes) {
+        if (windowMinutes <= 1) return 0;
+        return Math.floorMod(feedSourceId.hashCode(), windowMinutes);
+    }
+
+    /**
+     * Queue an auto fetch for the feed source unless the maximum number of auto fetches are already queued or running.
+     *
+     * @return false if the fetch could not be started and should be retried later
+     */
+    private static synchronized boolean startAutoFetch(FeedSource feedSource) {
+        pendingAutoFetches.removeIf(job -> job.status.completed);
+        if (pendingAutoFetches.size() >= AUTO_FETCH_MAX_CONCURRENT) return false;
+        // Use system user as owner of job.
+        FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, Auth0UserProfile.createSystemUser(), false);
+        // Fetches left to headless workers do not complete on this server (and are limited by the workers' pools).
+        if (!JobQueue.ENQUEUE_ONLY) pendingAutoFetches.add(fetchSingleFeedJob);
+        JobUtils.execute(fetchSingleFeedJob, JobExecutor.Priority.NORMAL);
+        return true;
+    }
+
+    /**
+     * Scheduled task that queues an auto fetch for a feed source each time it is triggered. A new
+     * {@link FetchSingleFeedJob} is created for each fetch so that each can be tracked (and resumed) on its own.
+     */
+    private static class AutoFetchTrigger implements Runnable {
+        private final String feedSourceId;
+
+        AutoFetchTrigger(String feedSourceId) {
+            this.feedSourceId = feedSourceId;
+        }
+
+        @Override
+        public void run() {
+            // Stop retrying if the auto fetch has been cancelled or rescheduled since the retry was scheduled.
+            synchronized (scheduledJobsForFeedSources) {
+                if (scheduledJobsForFeedSources.get(feedSourceId).stream().noneMatch(job -> job.job == this)) return;
+            }
+            FeedSource feedSource = Persistence.feedSources.getById(feedSourceId);
+            if (feedSource == null) {
+                LOG.error("Auto fetch failed because feed source {} does not exist in database. Clearing all jobs for feed source.", feedSourceId);
+                removeAllFeedSourceJobs(feedSourceId, true);
+                return;
+            }
+            // Skip this fetch if the previous one for this feed source (or a manual fetch) is still queued or running.
+            boolean fetchInProgress = JobUtils.getActiveJobsForFeedSource(feedSourceId).stream()
+                .anyMatch(job -> job instanceof FetchSingleFeedJob) ||
+                pendingAutoFetches.stream()
+                    .anyMatch(job -> !job.status.completed && feedSourceId.equals(job.getFeedSourceId()));
+            if (fetchInProgress) {
+                LOG.info("Skipping auto fetch for feed source {} because a fetch is already in progress.", feedSourceId);
+                return;
+            }
+            if (!startAutoFetch(feedSource)) {
+                LOG.info(
+                    "{} auto fetches in progress. Retrying fetch for feed source {} in {} seconds.",
+                    AUTO_FETCH_MAX_CONCURRENT,
+                    feedSourceId,
+                    AUTO_FETCH_RETRY_SECONDS
+                );
+                schedulerService.schedule(this, AUTO_FETCH_RETRY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
     /**
      * Schedules feed expiration notifications.  This method will find the latest feed version and
      * then schedule a 1 week expiration warning notification and also notification the day that the
@@ -4,7 +4,9 @@ import com.amazonaws.AmazonServiceException;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.S3Utils;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.persistence.Page;
 import com.conveyal.datatools.manager.utils.ErrorUtils;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -32,6 +34,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 import static spark.Spark.halt;
@@ -45,6 +48,8 @@ public class SparkUtils {
     private static final String BASE_URL = getConfigPropertyAsText("application.public_url");
     private static final int DEFAULT_LINES_TO_PRINT = 10;
     private static final int MAX_CHARACTERS_TO_PRINT = 500;
+    /** Response header holding the cursor for the following page of a paginated listing. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     /**
      * Write out the supplied file to the Spark response as an octet-stream.
@@ -252,17 +257,64 @@ public class SparkUtils {
         );
     }
 
+    /**
+     * Whether the request asks for a single page of a listing (i.e., includes a limit or cursor query param). Listing
+     * endpoints that support pagination return the full listing otherwise.
+     */
+    public static boolean isPageRequest(Request req) {
+        return req.queryParams("limit") != null || req.queryParams("cursor") != null;
+    }
+
+    /**
+     * Get the page size requested with the limit query param (or the default page size), halting if it is invalid.
+     */
+    public static int getPageLimit(Request req) {
+        String limitParam = req.queryParams("limit");
+        if (limitParam == null) return Page.DEFAULT_LIMIT;
+        try {
+            int limit = Integer.parseInt(limitParam);
+            if (limit > 0 && limit <= Page.MAX_LIMIT) return limit;
+        } catch (NumberFormatException e) {
+            // Fall through to halt below.
+        }
+        logMessageAndHalt(req, HttpStatus.BAD_REQUEST_400, "limit must be between 1 and " + Page.MAX_LIMIT);
+        return 0;
+    }
+
+    /**
+     * Get the cursor supplied with the cursor query param (null for the first page), halting if it is invalid.
+     */
+    public static String getPageCursor(Request req) {
+        String cursor = req.queryParams("cursor");
+        if (cursor != null && !Page.isValidCursor(cursor)) {
+            logMessageAndHalt(req, HttpStatus.BAD_REQUEST_400, "Invalid cursor");
+        }
+        return cursor;
+    }
+
+    /**
+     * Set the {@link #NEXT_CURSOR_HEADER} response header for the page (if there is a following page) and return the
+     * page's items, so that paginated responses have the same body as unpaginated ones.
+     */
+    public static <T> List<T> respondWithPage(Response res, Page<T> page) {
+        if (page.nextCursor != null) res.header(NEXT_CURSOR_HEADER, page.nextCursor);
+        return page.items;
+    }
+
     /**
      * Bypass Spark's request wrapper which always caches the request body in memory that may be a very large
      * GTFS file. Also, the body of the request is the GTFS file instead of using multipart form data because
      * multipart form handling code also caches the request body.
+     *
+     * @return the hash of the file (see {@link HashUtils}), computed while it is written
      */
-    public static void copyRequestStreamIntoFile(Request req, File file) {
+    public static String copyRequestStreamIntoFile(Request req, File file) {
         try {
             ServletInputStream inputStream = ((ServletRequestWrapper) req.raw()).getRequest().getInputStream();
             FileOutputStream fileOutputStream = new FileOutputStream(file);
-            // Guava's ByteStreams.copy uses a 4k buffer (no need to wrap output stream), but does not close streams.
-            ByteStreams.copy(inputStream, fileOutputStream);
+            // Copy with Guava's ByteStreams.copy, which uses a 4k buffer (no need to wrap output stream), but does not
+            // close streams.
+            String hash = HashUtils.copyAndHash(inputStream, fileOutputStream);
             fileOutputStream.close();
             inputStream.close();
             if (file.length() == 0) {
@@ -270,10 +322,12 @@ public class SparkUtils {
                 throw new IOException("No file found in request body.");
             }
             LOG.info("Saving file {} from upload", file.getName());
+            return hash;
         } catch (Exception e) {
             LOG.error("Unable to open input stream from upload");
             logMessageAndHalt(req, 500, "Unable to read uploaded file.", e);
         }
+        return null;
     }
 
     /**
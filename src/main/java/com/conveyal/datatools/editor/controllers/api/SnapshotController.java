@@ -16,6 +16,7 @@ import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import org.slf4j.Logger;
@@ -28,7 +29,11 @@ import java.util.Collection;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageCursor;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageLimit;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPageRequest;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.common.utils.SparkUtils.respondWithPage;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.options;
@@ -78,7 +83,10 @@ public class SnapshotController {
         // FIXME Do we need a way to return all snapshots?
         // Is this used in GTFS Data Manager to retrieveById snapshots in bulk?
 
-        // Return snapshots for feed source.
+        // Return snapshots for feed source (or a page of them, newest first, if requested).
+        if (isPageRequest(req)) {
+            return respondWithPage(res, feedSource.retrieveSnapshots(getPageCursor(req), getPageLimit(req)));
+        }
         return feedSource.retrieveSnapshots();
     }
 
@@ -109,7 +117,7 @@ public class SnapshotController {
             createSnapshotJob.addNextJob(new CreateFeedVersionFromSnapshotJob(feedSource, snapshot, userProfile, publishProprietaryFiles));
         }
         // Begin asynchronous execution.
-        JobUtils.heavyExecutor.execute(createSnapshotJob);
+        JobUtils.execute(createSnapshotJob, JobExecutor.Priority.INTERACTIVE);
         return SparkUtils.formatJobMessage(createSnapshotJob.jobId, "Creating snapshot.");
     }
 
@@ -130,7 +138,7 @@ public class SnapshotController {
         boolean preserveBuffer = "true".equals(req.queryParams("preserveBuffer")) && feedSource.editorNamespace != null;
         CreateSnapshotJob createSnapshotJob =
                 new CreateSnapshotJob(userProfile, snapshot, true, false, preserveBuffer);
-        JobUtils.heavyExecutor.execute(createSnapshotJob);
+        JobUtils.execute(createSnapshotJob, JobExecutor.Priority.INTERACTIVE);
         return formatJobMessage(createSnapshotJob.jobId, "Importing version as snapshot.");
     }
 
@@ -169,7 +177,7 @@ public class SnapshotController {
         String name = "Restore snapshot " + snapshotToRestore.name;
         Snapshot snapshot = new Snapshot(name, feedSource.id, snapshotToRestore.namespace);
         CreateSnapshotJob createSnapshotJob = new CreateSnapshotJob(userProfile, snapshot, true, false, preserveBuffer);
-        JobUtils.heavyExecutor.execute(createSnapshotJob);
+        JobUtils.execute(createSnapshotJob, JobExecutor.Priority.INTERACTIVE);
         return formatJobMessage(createSnapshotJob.jobId, "Restoring snapshot...");
     }
 
@@ -184,7 +192,7 @@ public class SnapshotController {
         // Create and kick off export job.
         // FIXME: what if a snapshot is already written to S3?
         ExportSnapshotToGTFSJob exportSnapshotToGTFSJob = new ExportSnapshotToGTFSJob(userProfile, snapshot, publishProprietaryFiles);
-        JobUtils.heavyExecutor.execute(exportSnapshotToGTFSJob);
+        JobUtils.execute(exportSnapshotToGTFSJob, JobExecutor.Priority.INTERACTIVE);
         return formatJobMessage(exportSnapshotToGTFSJob.jobId, "Exporting snapshot to GTFS.");
     }
 
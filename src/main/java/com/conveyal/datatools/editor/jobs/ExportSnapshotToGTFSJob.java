@@ -8,6 +8,7 @@ import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Snapshot;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.gtfs.loader.FeedLoadResult;
 import com.conveyal.gtfs.loader.JdbcGtfsExporter;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -17,6 +18,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.security.DigestInputStream;
 
 /**
  * This job will export a database snapshot (i.e., namespace) to a GTFS file. If a feed version is supplied in the
@@ -83,8 +85,12 @@ public class ExportSnapshotToGTFSJob extends MonitorableJob {
             LOG.info("Storing snapshot GTFS at {}", S3Utils.getDefaultBucketUriForKey(s3Key));
         } else {
             try {
-                File gtfsFile = FeedVersion.feedStore.newFeed(filename, new FileInputStream(tempFile), null);
-                if (isNewVersion) feedVersion.assignGtfsFileAttributes(gtfsFile);
+                DigestInputStream hashingInputStream = HashUtils.newHashingInputStream(new FileInputStream(tempFile));
+                File gtfsFile = FeedVersion.feedStore.newFeed(filename, hashingInputStream, null);
+                if (isNewVersion) {
+                    feedVersion.hash = HashUtils.getHash(hashingInputStream);
+                    feedVersion.assignGtfsFileAttributes(gtfsFile);
+                }
             } catch (IOException e) {
                 status.fail(String.format("Could not store feed for snapshot %s", snapshot.id), e);
             }
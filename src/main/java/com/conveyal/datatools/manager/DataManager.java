@@ -8,6 +8,7 @@ import com.conveyal.datatools.editor.controllers.EditorLockController;
 import com.conveyal.datatools.editor.controllers.api.EditorControllerImpl;
 import com.conveyal.datatools.editor.controllers.api.SnapshotController;
 import com.conveyal.datatools.manager.auth.Auth0Connection;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.controllers.DumpController;
 import com.conveyal.datatools.manager.controllers.api.AppInfoController;
 import com.conveyal.datatools.manager.controllers.api.DeploymentController;
@@ -26,8 +27,14 @@ import com.conveyal.datatools.manager.extensions.mtc.MtcFeedResource;
 import com.conveyal.datatools.manager.extensions.transitfeeds.TransitFeedsFeedResource;
 import com.conveyal.datatools.manager.extensions.transitland.TransitLandFeedResource;
 import com.conveyal.datatools.manager.jobs.FeedUpdater;
+import com.conveyal.datatools.manager.jobs.MigrateValidationResultsJob;
+import com.conveyal.datatools.manager.jobs.RepairLatestVersionSummariesJob;
+import com.conveyal.datatools.manager.persistence.FeedFileCache;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.ErrorUtils;
+import com.conveyal.datatools.manager.utils.JobExecutor;
+import com.conveyal.datatools.manager.utils.JobQueue;
+import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.conveyal.gtfs.GTFS;
 import com.conveyal.gtfs.GraphQLController;
@@ -57,6 +64,7 @@ import static com.conveyal.datatools.common.utils.SparkUtils.logRequest;
 import static com.conveyal.datatools.common.utils.SparkUtils.logResponse;
 import static spark.Service.SPARK_DEFAULT_PORT;
 import static spark.Spark.after;
+import static spark.Spark.afterAfter;
 import static spark.Spark.before;
 import static spark.Spark.exception;
 import static spark.Spark.get;
@@ -113,20 +121,51 @@ public class DataManager {
     }
 
     static void initializeApplication(String[] args) throws IOException {
+        initializeCore(args);
+
+        // Optionally set port for server. Otherwise, Spark defaults to 4567.
+        if (hasConfigProperty("application.port")) {
+            PORT = Integer.parseInt(getConfigPropertyAsText("application.port"));
+            port(PORT);
+        }
+
+        // Initialize scheduled tasks
+        Scheduler.initialize();
+
+        // Resume any jobs left unfinished by a previous run (or another server that has since stopped), unless this
+        // server only queues resumable jobs for headless workers (see JobWorkerMain).
+        JobUtils.jobQueue.start(!JobQueue.ENQUEUE_ONLY);
+
+        // Backfill the latest version summary for any feed sources that do not yet have one.
+        JobUtils.execute(
+            new RepairLatestVersionSummariesJob(Auth0UserProfile.createSystemUser(), true),
+            JobExecutor.Priority.BULK
+        );
+        // Move full validation results stored on legacy feed version documents to their own collection.
+        JobUtils.execute(
+            new MigrateValidationResultsJob(Auth0UserProfile.createSystemUser()),
+            JobExecutor.Priority.BULK
+        );
+    }
+
+    /**
+     * Load config and connect to the databases and file storage. This is everything that is needed to run jobs, so it
+     * is shared by the API server and headless workers (see {@link JobWorkerMain}).
+     */
+    static void initializeCore(String[] args) throws IOException {
         // Load configuration files (env.yml and server.yml).
         loadConfig(args);
         loadProperties();
 
         String gtfs = IOUtils.toString(DataManager.class.getResourceAsStream("/gtfs/gtfs.yml"));
         gtfsConfig = yamlMapper.readTree(gtfs);
+        if (isModuleEnabled("gtfsplus")) {
+            URL gtfsplus = DataManager.class.getResource("/gtfs/gtfsplus.yml");
+            gtfsPlusConfig = yamlMapper.readTree(Resources.toString(gtfsplus, Charsets.UTF_8));
+        }
 
         ErrorUtils.initialize();
 
-        // Optionally set port for server. Otherwise, Spark defaults to 4567.
-        if (hasConfigProperty("application.port")) {
-            PORT = Integer.parseInt(getConfigPropertyAsText("application.port"));
-            port(PORT);
-        }
         useS3 = "true".equals(getConfigPropertyAsText("application.data.use_s3_storage"));
 
         GTFS_DATA_SOURCE = GTFS.createDataSource(
@@ -140,9 +179,6 @@ public class DataManager {
 
         // Initialize MongoDB storage
         Persistence.initialize();
-
-        // Initialize scheduled tasks
-        Scheduler.initialize();
     }
 
     /*
@@ -245,8 +281,6 @@ public class DataManager {
         }
         if (isModuleEnabled("gtfsplus")) {
             GtfsPlusController.register(API_PREFIX);
-            URL gtfsplus = DataManager.class.getResource("/gtfs/gtfsplus.yml");
-            gtfsPlusConfig = yamlMapper.readTree(Resources.toString(gtfsplus, Charsets.UTF_8));
         }
         if (isModuleEnabled("user_admin")) {
             UserController.register(API_PREFIX);
@@ -320,6 +354,11 @@ public class DataManager {
         after((request, response) -> {
             logResponse(request, response);
         });
+
+        // Pin the feed files that a request retrieves from the feed cache (e.g., to serve a download) until it has been
+        // handled, so that a job running at the same time cannot evict them before they are read.
+        before((request, response) -> FeedFileCache.openPinScope());
+        afterAfter((request, response) -> FeedFileCache.closePinScope());
     }
 
     /**
@@ -452,7 +491,7 @@ public class DataManager {
     /**
      * Check if extension is enabled and, if so, register it.
      */
-    private static void registerExternalResources() {
+    static void registerExternalResources() {
 
         if (isExtensionEnabled("mtc")) {
             LOG.info("Registering MTC Resource");
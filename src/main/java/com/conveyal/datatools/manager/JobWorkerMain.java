@@ -0,0 +1,46 @@
+package com.conveyal.datatools.manager;
+
+import com.conveyal.datatools.manager.utils.JobUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static com.conveyal.datatools.manager.DataManager.initializeCore;
+import static com.conveyal.datatools.manager.DataManager.registerExternalResources;
+
+/**
+ * This class starts a headless worker that runs jobs from the durable job queue (see
+ * {@link com.conveyal.datatools.manager.utils.JobQueue}) without serving the HTTP API. This lets job processing (e.g.,
+ * fetching, loading and validating feeds) scale separately from the API. API servers that should leave resumable jobs
+ * to the workers should set JOB_QUEUE_ENQUEUE_ONLY to true. Job status is copied to the queue, so any API server can
+ * report it.
+ *
+ * Jobs that cannot be resumed from the queue (e.g., processing an uploaded file) are still run by the API server that
+ * receives the request. Workers do not run scheduled tasks (e.g., auto-fetches), which are triggered by the API server.
+ *
+ * Argument descriptions:
+ * 1. path to env.yml
+ * 2. path to server.yml
+ *
+ * Sample arguments:
+ *   "/path/to/config/env.yml" "/path/to/config/server.yml"
+ */
+public class JobWorkerMain {
+    private static final Logger LOG = LoggerFactory.getLogger(JobWorkerMain.class);
+
+    public static void main(String[] args) throws IOException {
+        long startTime = System.currentTimeMillis();
+        initializeCore(args);
+        // Some jobs notify external feed resources (e.g., when a fetched feed version is created).
+        registerExternalResources();
+        if (!JobUtils.jobQueue.isEnabled()) {
+            LOG.error("The durable job queue is disabled (JOB_QUEUE_ENABLED). A worker has no jobs to run. Exiting.");
+            System.exit(1);
+        }
+        // The queue's polling thread keeps the worker running.
+        JobUtils.jobQueue.start(true);
+        double startupSeconds = (System.currentTimeMillis() - startTime) / 1000D;
+        LOG.info("Job worker {} start up completed in {} seconds.", JobUtils.jobQueue.workerId, startupSeconds);
+    }
+}
@@ -3,6 +3,7 @@ package com.conveyal.datatools.manager.controllers;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
+import com.conveyal.datatools.manager.jobs.RepairLatestVersionSummariesJob;
 import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
 import com.conveyal.datatools.manager.jobs.ValidateMobilityDataFeedJob;
 import com.conveyal.datatools.manager.models.Deployment;
@@ -10,22 +11,30 @@ import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.FeedVersionValidationResults;
 import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.models.Model;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.conveyal.gtfs.validator.ValidationResult;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.InsertOneModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -34,6 +43,8 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.mongodb.client.model.Filters.and;
@@ -52,13 +63,16 @@ import static spark.Spark.post;
 public class DumpController {
     public static final Logger LOG = LoggerFactory.getLogger(DumpController.class);
     /**
-     * Represents a snapshot of the database. This requires loading the entire database into RAM.
-     * This shouldn't be an issue, though, as the feeds are stored separately. This is only metadata.
+     * Represents a snapshot of the database. Reading a dump (see {@link #load}) requires loading the entire database
+     * into RAM. This shouldn't be an issue, though, as the feeds are stored separately. This is only metadata. Writing
+     * a dump (see {@link #dump}) streams each collection instead.
      */
     public static class DatabaseState {
         public Collection<Project> projects;
         public Collection<FeedSource> feedSources;
         public Collection<FeedVersion> feedVersions;
+        /** Full validation results of feed versions, which are stored apart from the feed versions themselves. */
+        public Collection<FeedVersionValidationResults> feedVersionValidationResults;
         public Collection<Note> notes;
         // Users are maintained in Auth0 database.
         // public Collection<Auth0UserProfile> users;
@@ -84,22 +98,63 @@ public class DumpController {
     }
 
     /**
-     * Copies each table containing application data into the database state object and returns entire set of data. This,
-     * along with the other methods in this class, should only be used in a controlled environment where no outside access
-     * is permitted (e.g., using a cloned database on a local development machine). Otherwise, application data is
-     * visible to the entire world.
+     * Streams each table containing application data into the response in the same shape as {@link DatabaseState}.
+     * Documents are read from a server-side cursor and written out one at a time, so memory use does not grow with the
+     * size of the database. This, along with the other methods in this class, should only be used in a controlled
+     * environment where no outside access is permitted (e.g., using a cloned database on a local development machine).
+     * Otherwise, application data is visible to the entire world.
      */
-    public static DatabaseState dump (Request req, Response res) throws JsonProcessingException {
-//        // FIXME this appears to be capable of using unbounded amounts of memory (it copies an entire database into memory)
-        DatabaseState db = new DatabaseState();
-        db.projects = Persistence.projects.getAll();
-        db.feedSources = Persistence.feedSources.getAll();
-        db.feedVersions = Persistence.feedVersions.getAll();
-        db.notes = Persistence.notes.getAll();
-        db.deployments = Persistence.deployments.getAll();
-        db.externalProperties = Persistence.externalFeedSourceProperties.getAll();
-        db.snapshots = Persistence.snapshots.getAll();
-        return db;
+    public static HttpServletResponse dump (Request req, Response res) {
+        // Check that the database can be read before anything is written, so that an error can still be returned.
+        try {
+            Persistence.getMongoDatabase().runCommand(new Document("ping", 1));
+        } catch (RuntimeException e) {
+            logMessageAndHalt(req, 503, "Database is not available to dump", e);
+        }
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("application/json");
+        try {
+            // The generator is only closed once the dump is complete, so that if writing fails part way through, the
+            // output is not completed (i.e., made valid JSON) and a truncated dump cannot be mistaken for a full one.
+            JsonGenerator generator = json.createGenerator(raw.getOutputStream());
+            generator.writeStartObject();
+            writeCollection(generator, "projects", Persistence.projects);
+            writeCollection(generator, "feedSources", Persistence.feedSources);
+            writeCollection(generator, "feedVersions", Persistence.feedVersions);
+            writeCollection(generator, "feedVersionValidationResults", Persistence.feedVersionValidationResults);
+            writeCollection(generator, "notes", Persistence.notes);
+            writeCollection(generator, "deployments", Persistence.deployments);
+            writeCollection(generator, "externalProperties", Persistence.externalFeedSourceProperties);
+            writeCollection(generator, "snapshots", Persistence.snapshots);
+            generator.writeEndObject();
+            generator.close();
+        } catch (IOException | RuntimeException e) {
+            if (!raw.isCommitted()) {
+                raw.resetBuffer();
+                logMessageAndHalt(req, 500, "Could not write database dump", e);
+            }
+            // The status and part of the dump have already been sent, so the response can only be cut short.
+            LOG.error("Database dump failed after the response was sent. The dump is incomplete.", e);
+        }
+        return raw;
+    }
+
+    /**
+     * Write every object in the collection as a JSON array field with the provided name.
+     */
+    private static <T extends Model> void writeCollection(
+        JsonGenerator generator,
+        String fieldName,
+        TypedPersistence<T> collection
+    ) throws IOException {
+        generator.writeArrayFieldStart(fieldName);
+        try (Stream<T> objects = collection.stream(new Document())) {
+            Iterator<T> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                json.write(generator, iterator.next());
+            }
+        }
+        generator.writeEndArray();
     }
     // FIXME: This can now be authenticated because users are stored in Auth0.
     // this is not authenticated, because it has to happen with a bare database (i.e. no users)
@@ -122,45 +177,32 @@ public class DumpController {
             LOG.error("data load error.  check json validity.");
             return false;
         }
-        for (Project project : db.projects) {
-            LOG.info("loading project {}", project.id);
-            Persistence.projects.create(project);
-        }
-
-        for (FeedSource feedSource : db.feedSources) {
-            LOG.info("loading feed source {}", feedSource.id);
-            Persistence.feedSources.create(feedSource);
-        }
-
-        for (FeedVersion feedVersion : db.feedVersions) {
-            LOG.info("loading version {}", feedVersion.id);
-            Persistence.feedVersions.create(feedVersion);
-        }
-
-        for (Note note : db.notes) {
-            LOG.info("loading note {}", note.id);
-            Persistence.notes.create(note);
-        }
-
-        for (Deployment deployment : db.deployments) {
-            LOG.info("loading deployment {}", deployment.id);
-            Persistence.deployments.create(deployment);
-        }
-
-        for (ExternalFeedSourceProperty externalFeedSourceProperty : db.externalProperties) {
-            LOG.info("loading external properties {}", externalFeedSourceProperty.id);
-            Persistence.externalFeedSourceProperties.create(externalFeedSourceProperty);
-        }
-
-        for (Snapshot snapshot : db.snapshots) {
-            LOG.info("loading snapshot {}", snapshot.id);
-            Persistence.snapshots.create(snapshot);
-        }
+        loadCollection(Persistence.projects, db.projects);
+        loadCollection(Persistence.feedSources, db.feedSources);
+        loadCollection(Persistence.feedVersions, db.feedVersions);
+        loadCollection(Persistence.feedVersionValidationResults, db.feedVersionValidationResults);
+        loadCollection(Persistence.notes, db.notes);
+        loadCollection(Persistence.deployments, db.deployments);
+        loadCollection(Persistence.externalFeedSourceProperties, db.externalProperties);
+        loadCollection(Persistence.snapshots, db.snapshots);
 
         LOG.info("load completed.");
         return true;
     }
 
+    /**
+     * Insert all of the objects from a JSON dump into the collection using ordered bulk writes (so that, as with
+     * inserting one at a time, the load stops at the first failed insert).
+     */
+    private static <T extends Model> void loadCollection(TypedPersistence<T> collection, Collection<T> objects) {
+        if (objects == null) return;
+        LOG.info("loading {} objects into {}", objects.size(), collection.getCollectionName());
+        List<InsertOneModel<T>> inserts = objects.stream()
+            .map(collection::insertModel)
+            .collect(Collectors.toList());
+        collection.bulkWrite(inserts, true);
+    }
+
     /**
      * Updates snapshots in Mongo database with data from a list of snapshots in a JSON dump file. This is mainly intended
      * for a one-off import that did not load in the snapshots from a dump file, but rather generated them directly from
@@ -348,23 +390,31 @@ public class DumpController {
      */
     public static boolean validateAll (boolean load, boolean force, String filterFeedId) throws Exception {
         LOG.info("validating all feeds...");
-        Collection<FeedVersion> allVersions = Persistence.feedVersions.getAll();
-        for(FeedVersion version: allVersions) {
-            ValidationResult result = version.validationResult;
-            if(!force && result != null && result.fatalException != null) {
-                // If the force option is not true and the validation result did not fail, re-validate.
-                continue;
-            }
-            if (filterFeedId != null && !version.feedSourceId.equals(filterFeedId)) {
-                // Skip all feeds except Cortland for now.
-                continue;
-            }
-            Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
-            if (load) {
-                JobUtils.heavyExecutor.execute(new ProcessSingleFeedJob(version, systemUser, false));
-            } else {
-                JobUtils.heavyExecutor.execute(new ValidateFeedJob(version, systemUser, false));
-                JobUtils.heavyExecutor.execute(new ValidateMobilityDataFeedJob(version, systemUser, false));
+        // Only query the feed versions needed (if filtering by feed source) and stream them so that the validation
+        // results for every version are not held in memory at once.
+        Bson filter = filterFeedId != null ? eq("feedSourceId", filterFeedId) : new Document();
+        Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
+        try (Stream<FeedVersion> allVersions = Persistence.feedVersions.stream(filter)) {
+            Iterator<FeedVersion> iterator = allVersions.iterator();
+            while (iterator.hasNext()) {
+                FeedVersion version = iterator.next();
+                ValidationResult result = version.validationResult;
+                if(!force && result != null && result.fatalException != null) {
+                    // If the force option is not true and the validation result did not fail, re-validate.
+                    continue;
+                }
+                if (load) {
+                    JobUtils.execute(
+                        new ProcessSingleFeedJob(version, systemUser, false),
+                        JobExecutor.Priority.BULK
+                    );
+                } else {
+                    JobUtils.execute(new ValidateFeedJob(version, systemUser, false), JobExecutor.Priority.BULK);
+                    JobUtils.execute(
+                        new ValidateMobilityDataFeedJob(version, systemUser, false),
+                        JobExecutor.Priority.BULK
+                    );
+                }
             }
         }
         // ValidateAllFeedsJob validateAllFeedsJob = new ValidateAllFeedsJob("system", force, load);
@@ -382,7 +432,15 @@ public class DumpController {
             boolean load = request.queryParams("load") != null && request.queryParams("load").equals("true");
             return validateAll(load, force, null);
         }, json::write);
-        get(apiPrefix + "dump", DumpController::dump, json::write);
+        post(apiPrefix + "repairLatestVersionSummaries", (request, response) -> {
+            boolean missingOnly = "true".equals(request.queryParams("missingOnly"));
+            JobUtils.execute(
+                new RepairLatestVersionSummariesJob(Auth0UserProfile.createSystemUser(), missingOnly),
+                JobExecutor.Priority.BULK
+            );
+            return true;
+        }, json::write);
+        get(apiPrefix + "dump", DumpController::dump);
         LOG.warn("registered dump w/ prefix " + apiPrefix);
     }
 }
@@ -22,6 +22,7 @@ import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import org.bson.Document;
@@ -41,7 +42,11 @@ import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageCursor;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageLimit;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPageRequest;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.common.utils.SparkUtils.respondWithPage;
 import static com.conveyal.datatools.manager.DataManager.isExtensionEnabled;
 import static com.conveyal.datatools.manager.jobs.DeployJob.bundlePrefix;
 import static com.mongodb.client.model.Filters.and;
@@ -189,7 +194,7 @@ public class DeploymentController {
         File temp = File.createTempFile(tempFileName, ".zip");
 
         DeploymentGisExportJob gisExportJob = new DeploymentGisExportJob(exportType, deployment, temp, userProfile);
-        JobUtils.heavyExecutor.execute(gisExportJob);
+        JobUtils.execute(gisExportJob, JobExecutor.Priority.INTERACTIVE);
 
         // Do not use S3 to store the file, which should only be stored ephemerally (until requesting
         // user has downloaded file).
@@ -214,6 +219,9 @@ public class DeploymentController {
             if (!userProfile.canAdministerProject(project)) {
                 logMessageAndHalt(req, 401, "User not authorized to view project deployments.");
             }
+            if (isPageRequest(req)) {
+                return respondWithPage(res, project.retrieveDeployments(getPageCursor(req), getPageLimit(req)));
+            }
             return project.retrieveDeployments();
         } else if (feedSourceId != null) {
             // Return test deployments for feed source (note: these only include test deployments specific to the feed
@@ -512,7 +520,12 @@ public class DeploymentController {
         }
 
         // Execute the deployment job and keep track of it in the jobs for server map.
-        DeployJob job = JobUtils.queueDeployJob(deployment, userProfile, otpServer);
+        DeployJob job = JobUtils.queueDeployJob(
+            deployment,
+            userProfile,
+            otpServer,
+            JobExecutor.Priority.INTERACTIVE
+        );
         if (job == null) {
             // Job for the target is still active! Send a 202 to the requester to indicate that it is not possible
             // to deploy to this target right now because someone else is deploying.
@@ -538,7 +551,7 @@ public class DeploymentController {
 
         // Execute the pelias update job and keep track of it
         PeliasUpdateJob peliasUpdateJob = new PeliasUpdateJob(userProfile, "Updating Local Places Index", deployment);
-        JobUtils.heavyExecutor.execute(peliasUpdateJob);
+        JobUtils.execute(peliasUpdateJob, JobExecutor.Priority.INTERACTIVE);
         return SparkUtils.formatJobMessage(peliasUpdateJob.jobId, "Pelias update initiating.");
     }
 
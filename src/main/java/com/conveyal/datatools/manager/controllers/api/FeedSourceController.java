@@ -18,6 +18,7 @@ import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.transform.NormalizeFieldTransformation;
 import com.conveyal.datatools.manager.models.transform.Substitution;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.PersistenceUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
@@ -86,6 +87,9 @@ public class FeedSourceController {
         boolean isAdmin = user.canAdministerProject(project);
 
         Collection<FeedSource> projectFeedSources = project.retrieveProjectFeedSources();
+        // Resolve the computed JSON properties (and organization ID used below) for all feed sources up front rather
+        // than with several queries per feed source.
+        FeedSource.prefetchJsonProperties(projectFeedSources);
         for (FeedSource source : projectFeedSources) {
             String orgId = source.organizationId();
             // If user can view or manage feed, add to list of feeds to return. NOTE: By default most users with access
@@ -222,12 +226,20 @@ public class FeedSourceController {
         FeedSource formerFeedSource = requestFeedSourceById(req, Actions.MANAGE);
         FeedSource updatedFeedSource = getPOJOFromRequestBody(req, FeedSource.class);
         validate(req, updatedFeedSource);
-        // Feed source previously had a URL, but it has been changed. In this case, we reset the last fetched timestamp.
+        // The last fetched ETag is not accepted from JSON, so carry it over from the stored feed source.
+        updatedFeedSource.lastFetchedETag = formerFeedSource.lastFetchedETag;
+        // Feed source previously had a URL, but it has been changed. In this case, we reset the last fetched timestamp
+        // and ETag.
         if (formerFeedSource.url != null && !formerFeedSource.url.equals(updatedFeedSource.url)) {
             LOG.info("Feed source fetch URL has been modified. Resetting lastFetched value from {} to {}", formerFeedSource.lastFetched, null);
             updatedFeedSource.lastFetched = null;
+            updatedFeedSource.lastFetchedETag = null;
         }
-        Persistence.feedSources.replace(feedSourceId, updatedFeedSource);
+        // The latest version summary is not accepted from JSON. It is maintained atomically as versions are stored (see
+        // FeedSource#updateLatestVersionSummary), so keep the stored summary rather than writing back the one read
+        // above, which may be stale. It is carried over here only for the response.
+        updatedFeedSource.latestVersionSummary = formerFeedSource.latestVersionSummary;
+        Persistence.feedSources.replaceExcept(feedSourceId, updatedFeedSource, "latestVersionSummary");
 
         // If feed just changed from public to private, delete feed from public repo if it's present there.
         if (formerFeedSource.isPublic && !updatedFeedSource.isPublic) {
@@ -328,10 +340,10 @@ public class FeedSourceController {
         }
         LOG.info("Fetching feed at {} for source {}", s.url, s.name);
         Auth0UserProfile userProfile = req.attribute("user");
-        // Run in light executor, but if a new feed is found, do not continue thread (a new one will be started in
-        // heavyExecutor in the body of the fetch job.
+        // Run in the fetch pool ahead of scheduled fetches (the user is waiting on it). If a new feed is found, it is
+        // processed by a new job in the heavy pool (started in the body of the fetch job) with the same priority.
         FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(s, userProfile, false);
-        JobUtils.lightExecutor.execute(fetchSingleFeedJob);
+        JobUtils.execute(fetchSingleFeedJob, JobExecutor.Priority.INTERACTIVE);
 
         // Return the jobId so that the requester can track the job's progress.
         return formatJobMessage(fetchSingleFeedJob.jobId, "Fetching latest feed source.");
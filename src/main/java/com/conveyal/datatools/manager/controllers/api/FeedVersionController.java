@@ -16,9 +16,11 @@ import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.FeedVersionSummary;
+import com.conveyal.datatools.manager.models.FeedVersionValidationResults;
 import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.PersistenceUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
@@ -43,7 +45,11 @@ import java.util.stream.Collectors;
 import static com.conveyal.datatools.common.utils.SparkUtils.copyRequestStreamIntoFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageCursor;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageLimit;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPageRequest;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.common.utils.SparkUtils.respondWithPage;
 import static com.conveyal.datatools.manager.controllers.api.FeedSourceController.checkFeedSourcePermissions;
 import static com.mongodb.client.model.Filters.eq;
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.REGIONAL;
@@ -63,7 +69,14 @@ public class FeedVersionController  {
      * If you pass in ?summarized=true, don't include the full tree of validation results, only the counts.
      */
     private static FeedVersion getFeedVersion (Request req, Response res) {
-        return requestFeedVersion(req, Actions.VIEW);
+        FeedVersion version = requestFeedVersion(req, Actions.VIEW);
+        if (!"true".equals(req.queryParams("summarized"))) {
+            // Only a compact validation result is stored on the feed version, so load the full results.
+            FeedVersionValidationResults results = version.retrieveValidationResults();
+            if (results.validationResult != null) version.validationResult = results.validationResult;
+            version.mobilityDataResult = results.mobilityDataResult;
+        }
+        return version;
     }
 
     /**
@@ -75,14 +88,18 @@ public class FeedVersionController  {
     }
 
     /**
-     * Get all feed versions for a given feedSource (whose ID is specified in the request).
+     * Get all feed versions for a given feedSource (whose ID is specified in the request). If a limit or cursor query
+     * param is supplied, only a page of versions (newest first) is returned (see {@link SparkUtils#respondWithPage}).
      */
     private static Collection<FeedVersion> getAllFeedVersionsForFeedSource(Request req, Response res) {
         // Check permissions and get the FeedSource whose FeedVersions we want.
         FeedSource feedSource = requestFeedSourceById(req, Actions.VIEW);
         Auth0UserProfile userProfile = req.attribute("user");
         boolean isAdmin = userProfile.canAdministerProject(feedSource);
-        return feedSource.retrieveFeedVersions().stream()
+        Collection<FeedVersion> feedVersions = isPageRequest(req)
+            ? respondWithPage(res, feedSource.retrieveFeedVersions(getPageCursor(req), getPageLimit(req)))
+            : feedSource.retrieveFeedVersions();
+        return feedVersions.stream()
             .map(version -> cleanFeedVersionForNonAdmins(version, feedSource, isAdmin))
             .collect(Collectors.toList());
     }
@@ -118,7 +135,7 @@ public class FeedVersionController  {
         FeedVersion newFeedVersion = new FeedVersion(feedSource, FeedRetrievalMethod.MANUALLY_UPLOADED);
         // Get path to GTFS file for storage.
         File newGtfsFile = FeedVersion.feedStore.getFeedFile(newFeedVersion.id);
-        copyRequestStreamIntoFile(req, newGtfsFile);
+        newFeedVersion.hash = copyRequestStreamIntoFile(req, newGtfsFile);
         // Set last modified based on value of query param. This is determined/supplied by the client
         // request because this data gets lost in the uploadStream otherwise.
         Long lastModified = req.queryParams("lastModified") != null
@@ -145,7 +162,7 @@ public class FeedVersionController  {
 
         // Must be handled by executor because it takes a long time.
         ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(newFeedVersion, userProfile, true);
-        JobUtils.heavyExecutor.execute(processSingleFeedJob);
+        JobUtils.execute(processSingleFeedJob, JobExecutor.Priority.INTERACTIVE);
 
         return formatJobMessage(processSingleFeedJob.jobId, "Feed version is processing.");
     }
@@ -182,7 +199,7 @@ public class FeedVersionController  {
         // Publishing the proprietary files will preserve the pattern names in the newly published feed version.
         CreateFeedVersionFromSnapshotJob createFromSnapshotJob =
             new CreateFeedVersionFromSnapshotJob(feedSource, snapshot, userProfile, publishProprietaryFiles);
-        JobUtils.heavyExecutor.execute(createFromSnapshotJob);
+        JobUtils.execute(createFromSnapshotJob, JobExecutor.Priority.INTERACTIVE);
 
         return true;
     }
@@ -242,7 +259,7 @@ public class FeedVersionController  {
             // Return pre-signed download link if using S3.
             return S3Utils.downloadObject(
                 S3Utils.DEFAULT_BUCKET,
-                S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + version.id,
+                FeedVersion.feedStore.getObjectKey(version.id),
                 false,
                 req,
                 res
@@ -312,7 +329,7 @@ public class FeedVersionController  {
         // Create and run shapefile export.
         GisExportJob.ExportType exportType = GisExportJob.ExportType.valueOf(type);
         GisExportJob gisExportJob = new GisExportJob(exportType, temp, feedIds, userProfile);
-        JobUtils.heavyExecutor.execute(gisExportJob);
+        JobUtils.execute(gisExportJob, JobExecutor.Priority.INTERACTIVE);
         // Do not use S3 to store the file, which should only be stored ephemerally (until requesting
         // user has downloaded file).
         FeedDownloadToken token = new FeedDownloadToken(gisExportJob);
@@ -386,7 +403,7 @@ public class FeedVersionController  {
         // Kick off merge feeds job.
         Auth0UserProfile userProfile = req.attribute("user");
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile, versions, "merged", mergeType);
-        JobUtils.heavyExecutor.execute(mergeFeedsJob);
+        JobUtils.execute(mergeFeedsJob, JobExecutor.Priority.INTERACTIVE);
         return SparkUtils.formatJobMessage(mergeFeedsJob.jobId, "Merging feed versions...");
     }
 
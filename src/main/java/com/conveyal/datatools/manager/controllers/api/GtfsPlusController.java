@@ -8,6 +8,7 @@ import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -240,7 +241,7 @@ public class GtfsPlusController {
 
         // Must be handled by executor because it takes a long time.
         ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(newFeedVersion, profile, true);
-        JobUtils.heavyExecutor.execute(processSingleFeedJob);
+        JobUtils.execute(processSingleFeedJob, JobExecutor.Priority.INTERACTIVE);
 
         return formatJobMessage(processSingleFeedJob.jobId, "Feed version is processing.");
     }
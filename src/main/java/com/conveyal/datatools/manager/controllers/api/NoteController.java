@@ -8,10 +8,10 @@ import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Model;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.MongoCollection;
 import org.eclipse.jetty.http.HttpStatus;
 import spark.Request;
 import spark.Response;
@@ -20,7 +20,11 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
 
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageCursor;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPageLimit;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPageRequest;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.common.utils.SparkUtils.respondWithPage;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Updates.push;
 import static spark.Spark.get;
@@ -42,7 +46,14 @@ public class NoteController {
         // check if the user has permission to get notes for this feed source.
         checkPermissions(req, feedSource);
         // Return notes (only including admin only notes if project admin).
-        return objectWithNote.retrieveNotes(userProfile.canAdministerProject(feedSource));
+        boolean includeAdminNotes = userProfile.canAdministerProject(feedSource);
+        if (isPageRequest(req)) {
+            return respondWithPage(
+                res,
+                objectWithNote.retrieveNotes(includeAdminNotes, getPageCursor(req), getPageLimit(req))
+            );
+        }
+        return objectWithNote.retrieveNotes(includeAdminNotes);
     }
 
     public static Note createNote (Request req, Response res) throws IOException {
@@ -71,12 +82,13 @@ public class NoteController {
                 "User must be admin to create admin-only note."
             );
         }
-        // Create note and update feed source or version with noteIds
+        // Create note and update feed source or version with noteIds. Adding a note does not count as an update of the
+        // feed source or version itself, so its lastUpdated is left as is.
         Persistence.notes.create(note);
-        MongoCollection collection = objectWithNote instanceof FeedSource
-            ? Persistence.feedSources.getMongoCollection()
-            : Persistence.feedVersions.getMongoCollection();
-        collection.updateOne(eq(objectWithNote.id), push("noteIds", note.id));
+        TypedPersistence<? extends Model> collection = objectWithNote instanceof FeedSource
+            ? Persistence.feedSources
+            : Persistence.feedVersions;
+        collection.updateOneFiltered(eq(objectWithNote.id), push("noteIds", note.id), false);
         String message = String.format(
                 "%s commented on %s at %s:<blockquote>%s</blockquote>",
                 note.userEmail,
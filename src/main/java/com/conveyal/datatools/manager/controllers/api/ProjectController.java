@@ -16,6 +16,7 @@ import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import org.bson.Document;
@@ -261,7 +262,7 @@ public class ProjectController {
             }
         }
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile, feedVersions, project.id, REGIONAL);
-        JobUtils.heavyExecutor.execute(mergeFeedsJob);
+        JobUtils.execute(mergeFeedsJob, JobExecutor.Priority.INTERACTIVE);
         // Return job ID to requester for monitoring job status.
         return formatJobMessage(mergeFeedsJob.jobId, "Merge operation is processing.");
     }
@@ -303,7 +304,7 @@ public class ProjectController {
         }
         // Run as lightweight job.
         PublishProjectFeedsJob publishProjectFeedsJob = new PublishProjectFeedsJob(p, userProfile);
-        JobUtils.lightExecutor.execute(publishProjectFeedsJob);
+        JobUtils.execute(publishProjectFeedsJob, JobExecutor.Priority.INTERACTIVE);
         return formatJobMessage(publishProjectFeedsJob.jobId, "Publishing public feeds");
     }
 
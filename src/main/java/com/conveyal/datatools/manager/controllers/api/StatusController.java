@@ -1,20 +1,34 @@
 package com.conveyal.datatools.manager.controllers.api;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.StatusEvent;
 import com.conveyal.datatools.common.utils.RequestSummary;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.JobRecord;
 import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.persistence.FeedFileCache;
+import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.PersistenceMetrics;
+import com.conveyal.datatools.manager.utils.JobExecutor;
+import com.conveyal.datatools.manager.utils.JobMetrics;
+import com.conveyal.datatools.manager.utils.JobStatusFeed;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
+import com.conveyal.datatools.manager.utils.json.JsonUtil;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
@@ -26,6 +40,9 @@ import static spark.Spark.get;
 public class StatusController {
     private static JsonManager<MonitorableJob.Status> json =
         new JsonManager<>(MonitorableJob.Status.class, JsonViews.UserInterface.class);
+    /** Long-poll timeouts for job updates, kept below typical proxy and load balancer idle timeouts. */
+    private static final long DEFAULT_UPDATES_TIMEOUT_SECONDS = 25;
+    private static final long MAX_UPDATES_TIMEOUT_SECONDS = 55;
 
     /**
      * Admin API route to return active jobs for all application users.
@@ -52,14 +69,144 @@ public class StatusController {
     }
 
     /**
-     * API route that returns single job by ID from among the jobs for the currently authenticated user.
+     * Admin API route to return persistence statistics: entity cache hit/miss counts and, for each operation type, the
+     * number of database operations, their latency (mean, max and histogram), documents returned and slow query count
+     * per collection. When using S3, also includes the size, budget and hit/miss/eviction counts of the feed file cache.
      */
-    private static MonitorableJob getOneJobRoute(Request req, Response res) {
+    private static ObjectNode getPersistenceStatsRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view persistence stats");
+        }
+        ObjectNode stats = JsonUtil.objectMapper.createObjectNode();
+        ObjectNode cacheStats = stats.putObject("cache");
+        Persistence.getCacheStats().forEach((collectionName, collectionStats) -> cacheStats.putObject(collectionName)
+            .put("hitCount", collectionStats.hitCount())
+            .put("missCount", collectionStats.missCount())
+            .put("hitRate", collectionStats.hitRate())
+            .put("evictionCount", collectionStats.evictionCount()));
+        stats.put("slowQueryThresholdMs", PersistenceMetrics.SLOW_QUERY_THRESHOLD_MS);
+        ObjectNode operationStats = stats.putObject("operations");
+        PersistenceMetrics.getAll().forEach((collectionName, metrics) -> {
+            ObjectNode collectionStats = operationStats.putObject(collectionName);
+            metrics.getOperationStats().forEach((operation, opStats) -> {
+                ObjectNode operationNode = collectionStats.putObject(operation.name())
+                    .put("count", opStats.getCount())
+                    .put("meanMs", opStats.getMeanMillis())
+                    .put("maxMs", opStats.getMaxMillis())
+                    .put("documentsReturned", opStats.getDocumentsReturned())
+                    .put("slowCount", opStats.getSlowCount());
+                ObjectNode histogram = operationNode.putObject("latencyHistogram");
+                opStats.getLatencyHistogram().forEach(histogram::put);
+            });
+        });
+        FeedFileCache feedFileCache = FeedStore.getCache();
+        if (feedFileCache != null) {
+            stats.putObject("feedFileCache")
+                .put("maxBytes", feedFileCache.getMaxBytes())
+                .put("sizeBytes", feedFileCache.getSizeBytes())
+                .put("entryCount", feedFileCache.getEntryCount())
+                .put("pinnedCount", feedFileCache.getPinnedCount())
+                .put("hitCount", feedFileCache.getHitCount())
+                .put("missCount", feedFileCache.getMissCount())
+                .put("evictionCount", feedFileCache.getEvictionCount())
+                .put("evictedBytes", feedFileCache.getEvictedBytes());
+        }
+        return stats;
+    }
+
+    /**
+     * Admin API route to return the state of the job executor: the size, number of busy threads and queue depth of each
+     * pool along with the number of queued and running jobs of each job type.
+     */
+    private static ObjectNode getJobExecutorStatsRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view job executor stats");
+        }
+        JobExecutor jobExecutor = JobUtils.jobExecutor;
+        ObjectNode stats = JsonUtil.objectMapper.createObjectNode();
+        ObjectNode poolStats = stats.putObject("pools");
+        for (JobExecutor.Pool pool : JobExecutor.Pool.values()) {
+            poolStats.putObject(pool.name())
+                .put("threads", jobExecutor.getPoolSize(pool))
+                .put("active", jobExecutor.getActiveCount(pool))
+                .put("queued", jobExecutor.getQueueDepth(pool));
+        }
+        ObjectNode queuedStats = stats.putObject("queuedByJobType");
+        jobExecutor.getQueueDepthByJobType().forEach((type, count) -> queuedStats.put(type.name(), count));
+        ObjectNode runningStats = stats.putObject("runningByJobType");
+        jobExecutor.getRunningCountByJobType().forEach((type, count) -> runningStats.put(type.name(), count));
+        return stats;
+    }
+
+    /**
+     * Admin API route to return job metrics for capacity planning: for each job type that has run, the distribution of
+     * time spent waiting in the executor queue, total run time, time in the job's own logic (excluding sub-jobs), CPU
+     * time and allocated bytes, along with the run time of its sub-jobs by sub-job type (see {@link JobMetrics}).
+     */
+    private static ObjectNode getJobMetricsRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view job metrics");
+        }
+        ObjectNode stats = JsonUtil.objectMapper.createObjectNode();
+        JobMetrics.getAll().forEach((type, metrics) -> {
+            ObjectNode typeStats = stats.putObject(type.name());
+            typeStats.put("failedCount", metrics.getFailedCount());
+            putDistribution(typeStats, "queueWait", metrics.getQueueWait());
+            putDistribution(typeStats, "runTime", metrics.getRunTime());
+            putDistribution(typeStats, "logicTime", metrics.getLogicTime());
+            putDistribution(typeStats, "cpuTime", metrics.getCpuTime());
+            putDistribution(typeStats, "allocatedBytes", metrics.getAllocatedBytes());
+            ObjectNode subJobStats = typeStats.putObject("subJobRunTime");
+            metrics.getSubJobRunTime().forEach((subJobType, distribution) ->
+                putDistribution(subJobStats, subJobType.name(), distribution)
+            );
+        });
+        return stats;
+    }
+
+    private static void putDistribution(ObjectNode parent, String name, JobMetrics.Distribution distribution) {
+        ObjectNode node = parent.putObject(name)
+            .put("count", distribution.getCount())
+            .put("mean", distribution.getMean())
+            .put("max", distribution.getMax())
+            .put("total", distribution.getTotal());
+        ObjectNode histogram = node.putObject("histogram");
+        distribution.getHistogram().forEach(histogram::put);
+    }
+
+    /**
+     * API route that returns single job by ID from among the jobs for the currently authenticated user. If the job is
+     * not known to this server, the status recorded in the durable job queue by the server or worker running it is
+     * returned instead (see {@link JobRecord}).
+     */
+    private static Object getOneJobRoute(Request req, Response res) {
         String jobId = req.params("jobId");
         Auth0UserProfile userProfile = req.attribute("user");
         // FIXME: refactor underscore in user_id methods
         String userId = userProfile.getUser_id();
-        return JobUtils.getJobById(userId, jobId, true);
+        MonitorableJob job = JobUtils.getJobById(userId, jobId, true);
+        if (job != null) return job;
+        return JobUtils.jobQueue.getRemoteJob(userId, jobId);
+    }
+
+    /**
+     * API route that returns the recent progress history of a job on this server (see
+     * {@link MonitorableJob.Status#retrieveHistory}) to help diagnose slow or failed jobs. Application admins may view
+     * the history of any user's job.
+     */
+    private static List<StatusEvent> getJobHistoryRoute(Request req, Response res) {
+        String jobId = req.params("jobId");
+        Auth0UserProfile userProfile = req.attribute("user");
+        MonitorableJob job = userProfile.canAdministerApplication()
+            ? JobUtils.getJobByJobId(jobId)
+            : JobUtils.getJobById(userProfile.getUser_id(), jobId, false);
+        if (job == null) {
+            logMessageAndHalt(req, HttpStatus.NOT_FOUND_404, "Job not found on this server");
+        }
+        return job.status.retrieveHistory();
     }
 
     /**
@@ -77,24 +224,71 @@ public class StatusController {
 //    }
 
     /**
-     * API route that returns a set of active jobs for the currently authenticated user.
+     * API route that returns a set of active jobs for the currently authenticated user. This includes the jobs queued
+     * for or run by other servers (e.g., headless workers), as recorded in the durable job queue.
      */
-    public static Set<MonitorableJob> getUserJobsRoute(Request req, Response res) {
+    public static List<Object> getUserJobsRoute(Request req, Response res) {
         Auth0UserProfile userProfile = req.attribute("user");
         // FIXME: refactor underscore in user_id methods
         String userId = userProfile.getUser_id();
         // Get a copy of all existing jobs before we purge the completed ones.
-        return JobUtils.getJobsByUserId(userId, true);
+        Set<MonitorableJob> localJobs = JobUtils.getJobsByUserId(userId, true);
+        List<String> localJobIds = localJobs.stream().map(job -> job.jobId).collect(Collectors.toList());
+        List<Object> jobs = new ArrayList<>(localJobs);
+        jobs.addAll(JobUtils.jobQueue.getRemoteJobsForUser(userId, localJobIds));
+        return jobs;
+    }
+
+    /**
+     * API route that waits for changes to the current user's jobs and returns only what has changed since the version
+     * passed in the since query param (see {@link JobStatusFeed}). The response is returned as soon as there are any
+     * changes, or empty after the timeout (in seconds). Clients should pass the version from each response on the
+     * next request. This replaces repeated polling of {@link #getUserJobsRoute}, which returns every job in full. If too
+     * many clients are already waiting, the response is returned immediately with a Retry-After header.
+     */
+    private static JobStatusFeed.Updates getJobUpdatesRoute(Request req, Response res) throws InterruptedException {
+        Auth0UserProfile userProfile = req.attribute("user");
+        long since = 0;
+        long timeoutSeconds = DEFAULT_UPDATES_TIMEOUT_SECONDS;
+        try {
+            if (req.queryParams("since") != null) since = Long.parseLong(req.queryParams("since"));
+            if (req.queryParams("timeout") != null) timeoutSeconds = Long.parseLong(req.queryParams("timeout"));
+        } catch (NumberFormatException e) {
+            logMessageAndHalt(req, HttpStatus.BAD_REQUEST_400, "since and timeout must be numbers", e);
+        }
+        if (since < 0 || timeoutSeconds < 0 || timeoutSeconds > MAX_UPDATES_TIMEOUT_SECONDS) {
+            logMessageAndHalt(
+                req,
+                HttpStatus.BAD_REQUEST_400,
+                "since must not be negative and timeout must be between 0 and " + MAX_UPDATES_TIMEOUT_SECONDS
+            );
+        }
+        JobStatusFeed.Updates updates = JobUtils.jobStatusFeed.awaitUpdates(
+            userProfile.getUser_id(),
+            since,
+            TimeUnit.SECONDS.toMillis(timeoutSeconds)
+        );
+        if (updates.retryAfterMillis > 0) {
+            res.header("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(updates.retryAfterMillis)));
+        }
+        return updates;
     }
 
     public static void register (String apiPrefix) {
 
         get(apiPrefix + "secure/status/requests", StatusController::getAllRequestsRoute, json::write);
+        get(apiPrefix + "secure/status/persistence", StatusController::getPersistenceStatsRoute, json::write);
+        get(apiPrefix + "secure/status/executor", StatusController::getJobExecutorStatsRoute, json::write);
         // These endpoints return all jobs for the current user, all application jobs, or a specific job
         get(apiPrefix + "secure/status/jobs", StatusController::getUserJobsRoute, json::write);
+        // Must be registered before the route for a specific job (so that "updates" and "metrics" are not taken as job
+        // IDs).
+        get(apiPrefix + "secure/status/jobs/updates", StatusController::getJobUpdatesRoute, json::write);
+        get(apiPrefix + "secure/status/jobs/metrics", StatusController::getJobMetricsRoute, json::write);
         // FIXME Change endpoint for all jobs (to avoid overlap with jobId param)?
         get(apiPrefix + "secure/status/jobs/all", StatusController::getAllJobsRoute, json::write);
         get(apiPrefix + "secure/status/jobs/:jobId", StatusController::getOneJobRoute, json::write);
+        get(apiPrefix + "secure/status/jobs/:jobId/history", StatusController::getJobHistoryRoute, json::write);
         // TODO Add ability to cancel job
 //        delete(apiPrefix + "secure/status/jobs/:jobId", StatusController::cancelJob, json::write);
     }
@@ -13,6 +13,8 @@ import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +27,6 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -92,22 +93,19 @@ public class MtcFeedResource implements ExternalFeedResource {
             LOG.info("Response Code : {}", conn.getResponseCode());
 
             RtdCarrier[] carriers = mapper.readValue(conn.getInputStream(), RtdCarrier[].class);
-            Collection<FeedSource> projectFeedSources = project.retrieveProjectFeedSources();
+            // Look up the agency ID for every existing feed source in the project with a single query.
+            Map<String, FeedSource> feedSourcesByAgencyId = ExternalFeedSourceProperty.getFeedSourcesByPropertyValue(
+                project.retrieveProjectFeedSources(),
+                this.getResourceType(),
+                AGENCY_ID_FIELDNAME
+            );
+            List<WriteModel<FeedSource>> newFeedSources = new ArrayList<>();
+            List<WriteModel<ExternalFeedSourceProperty>> propertyUpserts = new ArrayList<>();
             // Iterate over carriers found in response and update properties. Also, create a feed source for any carriers
             // found in the response that do not correspond to an agency ID found in the external feed source properties.
-            for (int i = 0; i < carriers.length; i++) {
-                RtdCarrier carrier = carriers[i];
-                FeedSource source = null;
-
+            for (RtdCarrier carrier : carriers) {
                 // Check if a FeedSource with this AgencyId already exists.
-                for (FeedSource existingSource : projectFeedSources) {
-                    ExternalFeedSourceProperty agencyIdProp;
-                    String propertyId = constructId(existingSource, this.getResourceType(), AGENCY_ID_FIELDNAME);
-                    agencyIdProp = Persistence.externalFeedSourceProperties.getById(propertyId);
-                    if (agencyIdProp != null && agencyIdProp.value != null && agencyIdProp.value.equals(carrier.AgencyId)) {
-                        source = existingSource;
-                    }
-                }
+                FeedSource source = carrier.AgencyId != null ? feedSourcesByAgencyId.get(carrier.AgencyId) : null;
                 // Feed source does not exist. Create one using carrier properties.
                 if (source == null) {
                     // Derive the name from carrier properties found in response.
@@ -121,14 +119,17 @@ public class MtcFeedResource implements ExternalFeedResource {
                     source.projectId = project.id;
                     LOG.info("Creating feed source {} from carrier response. (Did not previously exist.)", feedName);
                     // Store the feed source if it does not already exist.
-                    Persistence.feedSources.create(source);
+                    newFeedSources.add(Persistence.feedSources.insertModel(source));
                 }
                 // TODO: Does any property on the feed source need to be updated from the carrier (e.g., name).
 
                 // Create / update the properties
                 LOG.info("Updating props for {}", source.name);
-                carrier.updateFields(source);
+                propertyUpserts.addAll(carrier.getPropertyUpserts(source));
             }
+            // Write the new feed sources and all of the properties in bulk.
+            Persistence.feedSources.bulkWrite(newFeedSources, true);
+            Persistence.externalFeedSourceProperties.bulkWrite(propertyUpserts, false);
         } catch(Exception ex) {
             LOG.error("Could not read feeds from MTC RTD API");
             throw ex;
@@ -144,7 +145,7 @@ public class MtcFeedResource implements ExternalFeedResource {
         LOG.info("Processing new FeedSource {} for RTD. Empty external feed properties being generated.", source.name);
         // Create a blank carrier and update fields (will initialize all fields to null).
         RtdCarrier carrier = new RtdCarrier();
-        carrier.updateFields(source);
+        Persistence.externalFeedSourceProperties.bulkWrite(carrier.getPropertyUpserts(source), false);
     }
 
     /**
@@ -303,19 +304,8 @@ public class MtcFeedResource implements ExternalFeedResource {
                 convertRtdString(entry.getValue().asText())
             );
 
-            // Update the attributes in Mongo.
-            ExternalFeedSourceProperty existingProperty = Persistence.externalFeedSourceProperties.getById(
-                property.id
-            );
-            if (existingProperty != null) {
-                Persistence.externalFeedSourceProperties.updateField(
-                    property.id,
-                    "value",
-                    property.value
-                );
-            } else {
-                Persistence.externalFeedSourceProperties.create(property);
-            }
+            // Update the attributes in Mongo (or create them if they do not exist).
+            Persistence.externalFeedSourceProperties.createOrUpdate(property, new Document("value", property.value));
 
             // Hold the received attribute keys to delete the extra ones from Mongo that are assumed not used.
             rtdKeys.add(property.name);
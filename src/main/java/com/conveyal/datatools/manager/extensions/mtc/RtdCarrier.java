@@ -6,8 +6,12 @@ import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.conveyal.datatools.manager.models.ExternalFeedSourceProperty.constructId;
 
@@ -111,12 +115,15 @@ public class RtdCarrier {
     }
 
     /**
-     * Use reflection to update (or create if field does not exist) all fields for a carrier instance and provided feed
-     * source.
+     * Use reflection to construct the write operations that update (or create if field does not exist) all fields for a
+     * carrier instance and provided feed source. These can be combined with those of other carriers into a single bulk
+     * write.
      *
      * TODO: Perhaps we should not be using reflection, but it works pretty well here.
      */
-    public void updateFields(FeedSource feedSource) throws IllegalAccessException {
+    public List<WriteModel<ExternalFeedSourceProperty>> getPropertyUpserts(FeedSource feedSource)
+        throws IllegalAccessException {
+        List<WriteModel<ExternalFeedSourceProperty>> upserts = new ArrayList<>();
         // Using reflection, iterate over every field in the class.
         for (Field carrierField : this.getClass().getDeclaredFields()) {
             String fieldName = carrierField.getName();
@@ -129,12 +136,9 @@ public class RtdCarrier {
                 fieldValue
             );
             // If field does not exist, create it. Otherwise, update value.
-            if (Persistence.externalFeedSourceProperties.getById(prop.id) == null) {
-                Persistence.externalFeedSourceProperties.create(prop);
-            } else {
-                Persistence.externalFeedSourceProperties.updateField(prop.id, fieldName, fieldValue);
-            }
+            upserts.add(Persistence.externalFeedSourceProperties.createOrUpdateModel(prop, new Document("value", fieldValue)));
         }
+        return upserts;
     }
 
     /**
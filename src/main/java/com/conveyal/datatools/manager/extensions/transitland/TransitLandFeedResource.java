@@ -10,6 +10,8 @@ import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,8 +22,10 @@ import java.lang.reflect.Field;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
-import static com.conveyal.datatools.manager.models.ExternalFeedSourceProperty.constructId;
 
 /**
  * Created by demory on 3/31/16.
@@ -58,6 +62,14 @@ public class TransitLandFeedResource implements ExternalFeedResource {
             locationFilter = "&bbox=" + project.bounds.toTransitLandString();
         }
 
+        // Look up the onestop ID for every existing feed source in the project with a single query. Feed sources created
+        // during this import are added as they are created.
+        Map<String, FeedSource> feedSourcesByOnestopId = ExternalFeedSourceProperty.getFeedSourcesByPropertyValue(
+            project.retrieveProjectFeedSources(),
+            this.getResourceType(),
+            "onestop_id"
+        );
+
         do {
             offset = perPage * count;
             try {
@@ -93,20 +105,14 @@ public class TransitLandFeedResource implements ExternalFeedResource {
                 String json = response.toString();
                 JsonNode node = mapper.readTree(json);
                 total = node.get("meta").get("total").asInt();
+                List<WriteModel<FeedSource>> feedSourceWrites = new ArrayList<>();
+                List<WriteModel<ExternalFeedSourceProperty>> propertyUpserts = new ArrayList<>();
                 for (JsonNode feed : node.get("feeds")) {
                     TransitLandFeed tlFeed = new TransitLandFeed(feed);
 
-                    FeedSource source = null;
-
                     // Check if a feed source already exists in the project with this id, i.e., a sync
                     // has already occurred in the past and most feed sources may already exist
-                    for (FeedSource existingSource : project.retrieveProjectFeedSources()) {
-                        ExternalFeedSourceProperty onestopIdProp =
-                                Persistence.externalFeedSourceProperties.getById(constructId(existingSource, this.getResourceType(), "onestop_id"));
-                        if (onestopIdProp != null && onestopIdProp.value.equals(tlFeed.onestop_id)) {
-                            source = existingSource;
-                        }
-                    }
+                    FeedSource source = feedSourcesByOnestopId.get(tlFeed.onestop_id);
 
                     String feedName;
                     feedName = tlFeed.onestop_id;
@@ -122,7 +128,8 @@ public class TransitLandFeedResource implements ExternalFeedResource {
                         } catch (MalformedURLException e) {
                             throw e;
                         }
-                        Persistence.feedSources.create(source);
+                        feedSourceWrites.add(Persistence.feedSources.insertModel(source));
+                        feedSourcesByOnestopId.put(tlFeed.onestop_id, source);
                         LOG.info("Creating new feed source: {}", source.name);
                     } else {
                         // Feed source already existed. Let's just sync it.
@@ -130,13 +137,15 @@ public class TransitLandFeedResource implements ExternalFeedResource {
                         source.retrievalMethod = FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
                         try {
                             feedUrl = new URL(tlFeed.url);
-                            Persistence.feedSources.updateField(source.id, "url", feedUrl);
                         } catch (MalformedURLException e) {
                             throw e;
                         }
-                        // FIXME: These shouldn't be separate updates.
-                        Persistence.feedSources.updateField(source.id, "name", feedName);
-                        Persistence.feedSources.updateField(source.id, "retrievalMethod", FeedRetrievalMethod.FETCHED_AUTOMATICALLY);
+                        feedSourceWrites.add(Persistence.feedSources.updateModel(
+                            source.id,
+                            new Document("url", feedUrl)
+                                .append("name", feedName)
+                                .append("retrievalMethod", FeedRetrievalMethod.FETCHED_AUTOMATICALLY)
+                        ));
                         LOG.info("Syncing properties: {}", source.name);
                     }
 
@@ -146,10 +155,21 @@ public class TransitLandFeedResource implements ExternalFeedResource {
                         String fieldName = tlField.getName();
                         String fieldValue = tlField.get(tlFeed) != null ? tlField.get(tlFeed).toString() : null;
 
-                        // FIXME
-//                        ExternalFeedSourceProperty.updateOrCreate(source, this.getResourceType(), fieldName, fieldValue);
+                        ExternalFeedSourceProperty property = new ExternalFeedSourceProperty(
+                            source,
+                            this.getResourceType(),
+                            fieldName,
+                            fieldValue
+                        );
+                        propertyUpserts.add(Persistence.externalFeedSourceProperties.createOrUpdateModel(
+                            property,
+                            new Document("value", fieldValue)
+                        ));
                     }
                 }
+                // Write the feed sources and properties for this page in bulk.
+                Persistence.feedSources.bulkWrite(feedSourceWrites, true);
+                Persistence.externalFeedSourceProperties.bulkWrite(propertyUpserts, false);
             } catch (Exception ex) {
                 LOG.error("Error reading from TransitLand API");
                 throw ex;
@@ -6,6 +6,7 @@ import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -223,7 +224,7 @@ public class AutoDeployJob extends MonitorableJobWithResourceLock<Project> {
         }
 
         // Queue up the deploy job.
-        if (JobUtils.queueDeployJob(deployment, owner, server) != null) {
+        if (JobUtils.queueDeployJob(deployment, owner, server, JobExecutor.Priority.NORMAL) != null) {
             LOG.info("Last auto deploy date updated for project {}.", project.name);
             // Update the deployment's feed version IDs with the latest (and pinned) feed versions.
             deployment.feedVersionIds = updatedFeedVersionIds;
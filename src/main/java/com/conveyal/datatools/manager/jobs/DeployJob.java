@@ -24,6 +24,7 @@ import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.waiters.Waiter;
 import com.amazonaws.waiters.WaiterParameters;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ProjectJob;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.EC2Utils;
 import com.conveyal.datatools.common.utils.aws.EC2ValidationResult;
@@ -39,9 +40,10 @@ import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
+import com.conveyal.datatools.manager.utils.Poller;
 import com.conveyal.datatools.manager.utils.StringUtils;
-import com.conveyal.datatools.manager.utils.TimeTracker;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -77,9 +79,12 @@ import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.manager.models.Deployment.DEFAULT_OTP_VERSION;
@@ -89,7 +94,7 @@ import static com.conveyal.datatools.manager.models.Deployment.DEFAULT_OTP_VERSI
  * @author mattwigway
  *
  */
-public class DeployJob extends MonitorableJob {
+public class DeployJob extends MonitorableJob implements ProjectJob {
 
     private static final Logger LOG = LoggerFactory.getLogger(DeployJob.class);
     public static final String bundlePrefix = "bundles";
@@ -693,7 +698,7 @@ public class DeployJob extends MonitorableJob {
 
         if (shouldStartAnotherAutoDeployment) {
             // newer feed versions exist! Start a new auto-deploy job.
-            JobUtils.heavyExecutor.execute(new AutoDeployJob(deployment.parentProject(), owner));
+            JobUtils.execute(new AutoDeployJob(deployment.parentProject(), owner), JobExecutor.Priority.NORMAL);
         } else {
             LOG.info("No need to start another auto-deployment");
         }
@@ -828,8 +833,9 @@ public class DeployJob extends MonitorableJob {
                     "Waiting for %d remaining instance(s) to start OTP server.",
                     status.numServersRemaining
                 );
-                // Create new thread pool to monitor server setup so that the servers are monitored in parallel.
-                ExecutorService service = Executors.newFixedThreadPool(status.numServersRemaining);
+                // Monitor server setup in parallel. The monitor jobs poll the servers on a shared scheduler, so no
+                // thread is held for each server while it starts up.
+                List<CompletableFuture<Void>> serverMonitors = new ArrayList<>();
                 for (Instance instance : remainingInstances) {
                     // Note: new instances are added
                     MonitorServerStatusJob monitorServerStatusJob = new MonitorServerStatusJob(
@@ -839,12 +845,12 @@ public class DeployJob extends MonitorableJob {
                         true
                     );
                     remainingServerMonitorJobs.add(monitorServerStatusJob);
-                    service.submit(monitorServerStatusJob);
+                    serverMonitors.add(monitorServerStatusJob.runAsync());
                 }
-                // Shutdown thread pool once the jobs are completed and wait for its termination. Once terminated, we can
-                // consider the servers up and running (or they have failed to initialize properly).
-                service.shutdown();
-                service.awaitTermination(4, TimeUnit.HOURS);
+                // Once the monitor jobs are completed, we can consider the servers up and running (or they have failed
+                // to initialize properly). Note: this job's own thread (in the deploy pool) is held while waiting,
+                // because the steps that follow run synchronously within jobLogic.
+                CompletableFuture.allOf(serverMonitors.toArray(new CompletableFuture[0])).get(4, TimeUnit.HOURS);
             }
             // Check if any of the monitor jobs encountered any errors and terminate the job's associated instance.
             int numFailedInstances = 0;
@@ -1065,50 +1071,60 @@ public class DeployJob extends MonitorableJob {
                 return instances;
             }
         }
-        // Wait up to 10 minutes for IP addresses to be available.
-        TimeTracker ipCheckTracker = new TimeTracker(10, TimeUnit.MINUTES);
+        // Wait up to 10 minutes for IP addresses to be available, checking the EC2 instances every few seconds on the
+        // shared poller.
         // Store the instances with updated IP addresses here.
         List<Instance> updatedInstances = new ArrayList<>();
         Filter instanceIdFilter = new Filter("instance-id", instanceIds);
-        // While all of the IPs have not been established, keep checking the EC2 instances, waiting a few seconds between
-        // each check.
         String ipCheckMessage = "Checking that public IP address(es) have initialized for EC2 instance(s).";
         status.message = ipCheckMessage;
-        while (instanceIpAddresses.size() < instances.size()) {
-            LOG.info(ipCheckMessage);
-            // Check that all of the instances have public IPs.
-            List<Instance> instancesWithIps;
-            try {
-                instancesWithIps = EC2Utils.fetchEC2Instances(
+        LOG.info(ipCheckMessage);
+        CompletableFuture<Void> ipCheck = Poller.poll(
+            () -> {
+                // Check that all of the instances have public IPs.
+                List<Instance> instancesWithIps = EC2Utils.fetchEC2Instances(
                     getEC2ClientForDeployJob(),
                     instanceIdFilter
                 );
-            } catch (Exception e) {
+                synchronized (updatedInstances) {
+                    updatedInstances.clear();
+                    for (Instance instance : instancesWithIps) {
+                        String publicIp = instance.getPublicIpAddress();
+                        // If IP has been found, store the updated instance and IP.
+                        if (publicIp != null) {
+                            instanceIpAddresses.add(publicIp);
+                            updatedInstances.add(instance);
+                        }
+                    }
+                    return updatedInstances.size() >= instances.size();
+                }
+            },
+            10,
+            600,
+            TimeUnit.SECONDS,
+            "Job timed out due to public IP assignment taking longer than ten minutes!"
+        );
+        try {
+            // Nothing else can be done until the instances have IP addresses, so wait for the check to finish. As with
+            // the server monitors, the polling itself holds no thread, but this job's thread waits for the result.
+            ipCheck.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                status.fail(e.getCause().getMessage());
+            } else {
                 status.fail(
                     "Failed while waiting for public IP addresses to be assigned to new instance(s)!",
-                    e
+                    e.getCause() instanceof Exception ? (Exception) e.getCause() : e
                 );
-                return updatedInstances;
-            }
-            for (Instance instance : instancesWithIps) {
-                String publicIp = instance.getPublicIpAddress();
-                // If IP has been found, store the updated instance and IP.
-                if (publicIp != null) {
-                    instanceIpAddresses.add(publicIp);
-                    updatedInstances.add(instance);
-                }
             }
-
-            try {
-                int sleepTimeMillis = 10000;
-                LOG.info("Waiting {} seconds to perform another public IP address check...", sleepTimeMillis / 1000);
-                Thread.sleep(sleepTimeMillis);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            synchronized (updatedInstances) {
+                return new ArrayList<>(updatedInstances);
             }
-            if (ipCheckTracker.hasTimedOut()) {
-                status.fail("Job timed out due to public IP assignment taking longer than ten minutes!");
-                return updatedInstances;
+        } catch (InterruptedException e) {
+            ipCheck.cancel(false);
+            status.fail("Interrupted while waiting for public IP addresses to be assigned to new instance(s)!", e);
+            synchronized (updatedInstances) {
+                return new ArrayList<>(updatedInstances);
             }
         }
         LOG.info("Public IP addresses have all been assigned. {}", String.join(",", instanceIpAddresses));
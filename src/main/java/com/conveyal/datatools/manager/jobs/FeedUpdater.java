@@ -1,8 +1,6 @@
 package com.conveyal.datatools.manager.jobs;
 
-import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.model.ObjectListing;
-import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.S3Utils;
@@ -10,22 +8,14 @@ import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.FeedVersionSummary;
-import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.conveyal.datatools.manager.utils.HashUtils;
 import com.google.common.collect.Lists;
-import com.google.common.io.ByteStreams;
 import com.mongodb.BasicDBObject;
 import com.mongodb.client.model.Accumulators;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -216,8 +206,6 @@ public class FeedUpdater {
                     if (!objSummary.getLastModified().before(latestVersionSentForPublishing.sentToExternalPublisher)) {
                         LOG.info("New version found for {} at s3://{}/{}. ETag = {}.", feedId, feedBucket, keyName, eTag);
                         updatePublishedFeedVersion(feedId, latestVersionSentForPublishing);
-                        // TODO: Explore if MD5 checksum can be used to find matching feed version.
-                        // findMatchingFeedVersion(md5, feedId, feedSource);
                     }
 
                 } catch (Exception e) {
@@ -382,9 +370,7 @@ public class FeedUpdater {
         try {
             // Collect the feed versions for the feed source.
             return Persistence.feedVersions
-                .getMongoCollection()
                 .aggregate(stages)
-                .into(new ArrayList<>())
                 .stream()
                 .collect(Collectors.toMap(v -> v.feedSourceId, Function.identity()));
         } catch (Exception e) {
@@ -394,47 +380,6 @@ public class FeedUpdater {
         }
     }
 
-    /**
-     * NOTE: This method is not in use, but should be strongly considered as an alternative approach if/when RTD is able
-     * to maintain md5 checksums when copying a file from "waiting" folder to "completed".
-     * Find matching feed version for a feed source based on md5. NOTE: This is no longer in use because MTC's RTD system
-     * does NOT preserve MD5 checksums when moving a file from the "waiting" to "completed" folders on S3.
-     */
-    private FeedVersion findMatchingFeedVersion(
-        String keyName,
-        FeedSource feedSource
-    ) throws AmazonServiceException, IOException, CheckedAWSException {
-        String filename = keyName.split("/")[1];
-        String feedId = filename.replace(".zip", "");
-        S3Object object = S3Utils.getDefaultS3Client().getObject(feedBucket, keyName);
-        InputStream in = object.getObjectContent();
-        File file = new File(FeedStore.basePath, filename);
-        OutputStream out = new FileOutputStream(file);
-        ByteStreams.copy(in, out);
-        String md5 = HashUtils.hashFile(file);
-        Collection<FeedVersion> versions = feedSource.retrieveFeedVersions();
-        LOG.info("Searching for md5 {} across {} versions for {} ({})", md5, versions.size(), feedSource.name, feedSource.id);
-        FeedVersion matchingVersion = null;
-        int count = 0;
-        for (FeedVersion feedVersion : versions) {
-            LOG.info("version {} md5: {}", count++, feedVersion.hash);
-            if (feedVersion.hash.equals(md5)) {
-                matchingVersion = feedVersion;
-                LOG.info("Found local version that matches latest file on S3  (SQL namespace={})", feedVersion.namespace);
-                if (!feedVersion.namespace.equals(feedSource.publishedVersionId)) {
-                    LOG.info("Updating published version for feed {} to latest s3 published feed.", feedId);
-                    Persistence.feedSources.updateField(feedSource.id, "publishedVersionId", feedVersion.namespace);
-                } else {
-                    LOG.info("No need to update published version (published s3 feed already matches feed source's published namespace).");
-                }
-            }
-        }
-        if (matchingVersion == null) {
-            LOG.error("Did not find version for feed {} that matched eTag found in s3!!!", feedId);
-        }
-        return matchingVersion;
-    }
-
     /**
      * Helper interface for fetching a list of feeds deemed production-complete.
      */
@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ProjectJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -12,12 +13,19 @@ import org.slf4j.LoggerFactory;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Created by landon on 3/25/16.
  */
-public class FetchProjectFeedsJob extends MonitorableJob {
+public class FetchProjectFeedsJob extends MonitorableJob implements ProjectJob {
     public static final Logger LOG = LoggerFactory.getLogger(FetchProjectFeedsJob.class);
     public String projectId;
 
@@ -26,6 +34,11 @@ public class FetchProjectFeedsJob extends MonitorableJob {
         this.projectId = project.id;
     }
 
+    @Override
+    public String getProjectId() {
+        return projectId;
+    }
+
     @Override
     public void jobLogic() {
         Project project = Persistence.projects.getById(projectId);
@@ -36,6 +49,7 @@ public class FetchProjectFeedsJob extends MonitorableJob {
         }
         LOG.info("Fetch job running for {} project at {}", project.name, ZonedDateTime.now(ZoneId.of("America/New_York")));
         Collection<FeedSource> projectFeeds = project.retrieveProjectFeedSources();
+        List<FeedSource> feedsToFetch = new ArrayList<>();
         for(FeedSource feedSource : projectFeeds) {
             // skip feed if not fetched automatically
             if (!FeedRetrievalMethod.FETCHED_AUTOMATICALLY.equals(feedSource.retrievalMethod)) {
@@ -50,14 +64,36 @@ public class FetchProjectFeedsJob extends MonitorableJob {
                 );
                 continue;
             }
+            feedsToFetch.add(feedSource);
+        }
+        for (FeedSource feedSource : interleaveByHost(feedsToFetch)) {
             // No need to track overall status on this FetchProjectFeedsJob. All "child" jobs execute in threadpool,
             // so we don't know their status.
-            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, true);
-            // Run this in a heavy executor with continueThread = true, so that fetch/process jobs for each
-            // feed source execute in order (i.e., fetch feed source A, then process; next, fetch feed source b, then
-            // process).
-            JobUtils.heavyExecutor.execute(fetchSingleFeedJob);
+            // Fetches run in the fetch pool, which is sized for network-bound work, and only feeds for which a new
+            // version is found are handed on to the heavy pool for processing (continueThread = false).
+            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, false);
+            JobUtils.execute(fetchSingleFeedJob, priority);
         }
     }
 
+    /**
+     * Order the feed sources so that consecutive feed sources are fetched from different hosts where possible (taking
+     * one feed source from each host in turn). Fetches are started in this order, so this keeps the fetch pool busy
+     * with other hosts while the fetches from one host are limited by {@link FeedSource}'s per-host throttle.
+     */
+    static List<FeedSource> interleaveByHost(List<FeedSource> feedSources) {
+        Map<String, Deque<FeedSource>> feedSourcesForHost = new LinkedHashMap<>();
+        for (FeedSource feedSource : feedSources) {
+            String host = feedSource.url.getHost().toLowerCase(Locale.ROOT);
+            feedSourcesForHost.computeIfAbsent(host, h -> new ArrayDeque<>()).add(feedSource);
+        }
+        List<FeedSource> interleaved = new ArrayList<>(feedSources.size());
+        while (interleaved.size() < feedSources.size()) {
+            for (Deque<FeedSource> hostFeedSources : feedSourcesForHost.values()) {
+                FeedSource next = hostFeedSources.poll();
+                if (next != null) interleaved.add(next);
+            }
+        }
+        return interleaved;
+    }
 }
\ No newline at end of file
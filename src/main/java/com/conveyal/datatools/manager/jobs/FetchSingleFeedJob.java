@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.common.status.FeedVersionJob;
+import com.conveyal.datatools.common.status.ResumableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -11,7 +12,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FetchSingleFeedJob extends FeedVersionJob {
+import java.util.HashMap;
+import java.util.Map;
+
+public class FetchSingleFeedJob extends FeedVersionJob implements ResumableJob {
     public static final Logger LOG = LoggerFactory.getLogger(FetchSingleFeedJob.class);
     private FeedSource feedSource;
     private FeedVersion result;
@@ -48,6 +52,18 @@ public class FetchSingleFeedJob extends FeedVersionJob {
         return result != null ? result.id : null;
     }
 
+    /**
+     * Fetching is idempotent (a fetch that finds the same feed as the latest version does not create a new version),
+     * so a fetch interrupted by a restart can simply be run again.
+     */
+    @Override
+    public Map<String, String> retrieveParameters() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("feedSourceId", getFeedSourceId());
+        parameters.put("continueThread", String.valueOf(continueThread));
+        return parameters;
+    }
+
     @Override
     public void jobLogic () {
         String feedSourceId = getFeedSourceId();
@@ -63,9 +79,9 @@ public class FetchSingleFeedJob extends FeedVersionJob {
         // Null result indicates that a fetch was not needed (GTFS has not been modified)
         // True failures will throw exceptions.
         if (result != null) {
-            // FetchSingleFeedJob should typically be run in a lightExecutor because it is a fairly lightweight task.
+            // FetchSingleFeedJob should typically be run in the fetch pool because it is mostly waiting on the network.
             // ProcessSingleFeedJob often follows a fetch and requires significant time to complete,
-            // so FetchSingleFeedJob ought to be run in the heavyExecutor. Technically, the "fetch" completes
+            // so ProcessSingleFeedJob ought to be run in the heavy pool (with the same priority as the fetch). Technically, the "fetch" completes
             // quickly and the "processing" happens over time. So, we run the processing in a separate thread in order
             // to match this user and system expectation.
             //
@@ -75,7 +91,7 @@ public class FetchSingleFeedJob extends FeedVersionJob {
             if (continueThread) {
                 addNextJob(processSingleFeedJob);
             } else {
-                JobUtils.heavyExecutor.execute(processSingleFeedJob);
+                JobUtils.execute(processSingleFeedJob, priority);
             }
         }
     }
@@ -0,0 +1,135 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.FeedVersionValidationResults;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.unset;
+
+/**
+ * Move the full validation results (gtfs-lib validation result and MobilityData report) of feed versions stored before
+ * {@link FeedVersionValidationResults} existed out of the feed version documents, leaving the compact validation
+ * result in place. Documents are copied as raw BSON, so the (potentially very large) results are never decoded.
+ *
+ * Only versions not yet marked as migrated (see {@link FeedVersion#validationResultsSeparate}) are read, so once every
+ * version has been migrated this is a single query that matches nothing.
+ */
+public class MigrateValidationResultsJob extends MonitorableJob {
+    private static final Logger LOG = LoggerFactory.getLogger(MigrateValidationResultsJob.class);
+    private static final Bson UNMIGRATED = ne("validationResultsSeparate", true);
+
+    public MigrateValidationResultsJob(Auth0UserProfile owner) {
+        super(owner, "Migrating feed version validation results", JobType.MIGRATE_VALIDATION_RESULTS);
+    }
+
+    @Override
+    public void jobLogic() {
+        MongoCollection<Document> feedVersionDocuments = Persistence.feedVersions.getMongoCollection()
+            .withDocumentClass(Document.class);
+        MongoCollection<Document> resultsDocuments = Persistence.feedVersionValidationResults.getMongoCollection()
+            .withDocumentClass(Document.class);
+        long total = feedVersionDocuments.countDocuments(UNMIGRATED);
+        if (total == 0) {
+            status.completeSuccessfully("No feed versions to migrate.");
+            return;
+        }
+        int migrated = 0;
+        // Results can be large, so handle a modest number of versions at a time.
+        try (MongoCursor<Document> cursor = feedVersionDocuments.find(UNMIGRATED)
+            .projection(include("_id", "validationResult", "mobilityDataResult"))
+            .batchSize(TypedPersistence.DEFAULT_BATCH_SIZE)
+            .iterator()
+        ) {
+            List<WriteModel<Document>> results = new ArrayList<>();
+            List<WriteModel<FeedVersion>> updates = new ArrayList<>();
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Document validationResult = document.get("validationResult", Document.class);
+                results.add(resultsUpsert(document.get("_id"), validationResult, document.get("mobilityDataResult")));
+                updates.add(new UpdateOneModel<>(
+                    // Skip versions whose results have been stored by a validation since they were read.
+                    and(eq(document.get("_id")), UNMIGRATED),
+                    combine(
+                        set("validationResult", compact(validationResult)),
+                        unset("mobilityDataResult"),
+                        set("validationResultsSeparate", true)
+                    )
+                ));
+                if (results.size() == TypedPersistence.DEFAULT_BATCH_SIZE || !cursor.hasNext()) {
+                    // Store the results before removing them from the feed versions.
+                    resultsDocuments.bulkWrite(results, new BulkWriteOptions().ordered(false));
+                    Persistence.feedVersions.bulkWrite(updates, false);
+                    migrated += results.size();
+                    results.clear();
+                    updates.clear();
+                    status.update(
+                        String.format("Migrated %d of %d feed versions", migrated, total),
+                        100.0 * migrated / total
+                    );
+                }
+            }
+        }
+        LOG.info("Migrated validation results for {} feed versions", migrated);
+        status.completeSuccessfully(String.format("Migrated %d feed versions.", migrated));
+    }
+
+    /**
+     * Upsert the validation results document for a version, keeping any result that a validation has stored since the
+     * version was read (e.g., if only the MobilityData report has been re-run), so that this never overwrites newer
+     * results or fails on a document that has just been inserted.
+     */
+    private static UpdateOneModel<Document> resultsUpsert(Object id, Document validationResult, Object mobilityDataResult) {
+        Date now = new Date();
+        Document fields = new Document("validationResult", ifMissing("validationResult", validationResult))
+            .append("mobilityDataResult", ifMissing("mobilityDataResult", mobilityDataResult))
+            .append("dateCreated", ifMissing("dateCreated", now))
+            .append("lastUpdated", now);
+        return new UpdateOneModel<>(
+            eq(id),
+            List.of(new Document("$set", fields)),
+            new UpdateOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Aggregation expression for the existing value of the field or, if it is missing (or null), the provided value.
+     */
+    private static Document ifMissing(String field, Object value) {
+        return new Document("$ifNull", List.of("$" + field, new Document("$literal", value)));
+    }
+
+    /**
+     * Raw document equivalent of {@link FeedVersion#compactValidationResult}.
+     */
+    private static Document compact(Document validationResult) {
+        if (validationResult == null) return null;
+        Document compactResult = new Document();
+        for (String field : FeedVersion.COMPACT_VALIDATION_FIELDS) {
+            if (validationResult.containsKey(field)) compactResult.put(field, validationResult.get(field));
+        }
+        return compactResult;
+    }
+}
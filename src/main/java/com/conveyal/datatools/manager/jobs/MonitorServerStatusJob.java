@@ -11,15 +11,17 @@ import com.amazonaws.services.elasticloadbalancingv2.model.RegisterTargetsReques
 import com.amazonaws.services.elasticloadbalancingv2.model.TargetDescription;
 import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthDescription;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.utils.ErrorUtils;
+import com.conveyal.datatools.manager.utils.Poller;
 import com.conveyal.datatools.manager.utils.SimpleHttpResponse;
-import com.conveyal.datatools.manager.utils.TimeTracker;
 import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -32,7 +34,10 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.conveyal.datatools.manager.jobs.DeployJob.OTP_RUNNER_STATUS_FILE;
 
@@ -48,11 +53,23 @@ public class MonitorServerStatusJob extends MonitorableJob {
     private final Instance instance;
     private final boolean graphAlreadyBuilt;
     private final OtpServer otpServer;
-    private final CloseableHttpClient httpClient = HttpClients.createDefault();
+    /**
+     * Requests time out so that an unresponsive instance cannot hold up the shared {@link Poller}. AWS requests made on
+     * the poller have the same time limit (including retries).
+     */
+    private final CloseableHttpClient httpClient = HttpClients.custom()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(REQUEST_TIMEOUT_MILLIS)
+            .setSocketTimeout(REQUEST_TIMEOUT_MILLIS)
+            .build())
+        .build();
     // Delay checks by four seconds to give user-data script time to upload the instance's user data log if part of the
     // script fails (e.g., uploading or downloading a file).
     private static final int DELAY_SECONDS = 4;
     private static final int MAX_INSTANCE_HEALTH_RETRIES = 5;
+    private static final int REQUEST_TIMEOUT_MILLIS = 10000;
+    /** The number of instance health checks in a row that have failed to get the instance state. */
+    private volatile int instanceHealthFailures = 0;
 
     public MonitorServerStatusJob(Auth0UserProfile owner, DeployJob deployJob, Instance instance, boolean graphAlreadyBuilt) {
         super(
@@ -80,104 +97,136 @@ public class MonitorServerStatusJob extends MonitorableJob {
 
     @Override
     public void jobLogic() {
-        // Get OTP URL for instance to check for availability.
-        String ipUrl = "http://" + instance.getPublicIpAddress();
+        // Wait for monitoring to finish. The checks themselves run on the shared poller (see runAsync to monitor the
+        // instance without holding the calling thread at all).
+        monitor().join();
+    }
+
+    /**
+     * Monitor the instance without blocking the calling thread. This takes the place of {@link #run} when monitoring
+     * several instances in parallel, so that no thread is held for each instance while it starts up (which can take
+     * hours). The returned future completes (normally) once the job has completed or failed.
+     */
+    public CompletableFuture<Void> runAsync() {
+        long runStartNanos = markRunStarted();
+        return monitor().whenComplete((result, e) -> {
+            status.completeSuccessfully("Job complete!");
+            // The monitoring runs on the poller's threads, so its CPU time and allocations are not known.
+            markRunFinished(runStartNanos, System.nanoTime() - runStartNanos, -1, -1);
+        });
+    }
+
+    /**
+     * Wait for otp-runner to build or download the graph, then (unless this is a graph build only server) for the
+     * router to become available and the instance to register with the load balancer. Each step polls the instance
+     * every {@link #DELAY_SECONDS} on the shared {@link Poller}, also checking that the instance is still running. The
+     * returned future always completes normally, with the job status completed or failed.
+     */
+    private CompletableFuture<Void> monitor() {
         if (otpServer.ec2Info == null || otpServer.ec2Info.targetGroupArn == null) {
             // Fail the job from the outset if there is no target group defined.
             failJob("There is no load balancer under which to register ec2 instance.");
+            return CompletableFuture.completedFuture(null);
         }
-        try {
-            // Wait for otp-runner to produce first status file
-            TimeTracker otpRunnerStatusAvailableTracker = new TimeTracker(5, TimeUnit.MINUTES);
-            String statusUrl = String.join("/", ipUrl, OTP_RUNNER_STATUS_FILE);
-            boolean otpRunnerStatusAvailable = false;
-            while (!otpRunnerStatusAvailable) {
-                // If the request is successful, the OTP instance has started.
-                waitAndCheckInstanceHealth("otp-runner status file availability check: " + statusUrl);
-                otpRunnerStatusAvailable = checkForSuccessfulRequest(statusUrl);
-                if (otpRunnerStatusAvailableTracker.hasTimedOut()) {
-                    failJob("Job timed out while waiting for otp-runner to produce a status file!");
-                    return;
-                }
-            }
+        long startTime = System.currentTimeMillis();
+        // Get OTP URL for instance to check for availability.
+        String ipUrl = "http://" + instance.getPublicIpAddress();
+        String statusUrl = String.join("/", ipUrl, OTP_RUNNER_STATUS_FILE);
+        String routerUrl = String.join("/", ipUrl, "otp/routers/default");
+        // Wait for otp-runner to produce first status file. If the request is successful, the OTP instance has started.
+        return waitFor(
+            "otp-runner status file availability check: " + statusUrl,
+            5,
+            TimeUnit.MINUTES,
+            "Job timed out while waiting for otp-runner to produce a status file!",
+            () -> checkForSuccessfulRequest(statusUrl)
+        )
             // Wait for otp-runner to write a status that fulfills expectations of this job. Wait a maximum of 5 hours
-            // if building a graph, or 1 hour if starting a server-only instance.
-            TimeTracker otpRunnerCompletionTracker = new TimeTracker(graphAlreadyBuilt ? 1 : 5, TimeUnit.HOURS);
-            boolean otpRunnerCompleted = false;
-            while (!otpRunnerCompleted) {
-                waitAndCheckInstanceHealth("otp-runner completion check: " + statusUrl);
-                // Analyze the contents of the otp-runner status file to see if the job is complete
-                otpRunnerCompleted = checkForOtpRunnerCompletion(statusUrl);
-                // Check if an otp-runner status file check has already failed this job.
-                if (status.error) {
-                    return;
-                }
-                if (otpRunnerCompletionTracker.hasTimedOut()) {
-                    failJob("Job timed out while waiting for otp-runner to finish!");
-                    return;
+            // if building a graph, or 1 hour if starting a server-only instance. Stop if an otp-runner status file
+            // check has failed this job.
+            .thenCompose(v -> waitFor(
+                "otp-runner completion check: " + statusUrl,
+                graphAlreadyBuilt ? 1 : 5,
+                TimeUnit.HOURS,
+                "Job timed out while waiting for otp-runner to finish!",
+                () -> checkForOtpRunnerCompletion(statusUrl) || status.error
+            ))
+            .thenCompose(v -> {
+                if (status.error) return CompletableFuture.completedFuture(null);
+                String message = String.format(
+                    "Graph build/download completed in %d seconds!",
+                    (System.currentTimeMillis() - startTime) / 1000
+                );
+                LOG.info(message);
+                // If only task for this instance is to build the graph (either because that is the deployment purpose
+                // or because this instance type/image is for graph building only), this machine's job is complete and
+                // we can consider this job done.
+                if (isBuildOnlyServer()) {
+                    status.completeSuccessfully(message);
+                    LOG.info("View logs at {}", getOtpRunnerLogS3Path());
+                    return CompletableFuture.completedFuture(null);
                 }
-            }
-            String message = String.format(
-                "Graph build/download completed in %d seconds!",
-                otpRunnerStatusAvailableTracker.elapsedSeconds()
-            );
-            LOG.info(message);
-            // If only task for this instance is to build the graph (either because that is the deployment purpose or
-            // because this instance type/image is for graph building only), this machine's job is complete and we can
-            // consider this job done.
-            if (isBuildOnlyServer()) {
-                status.completeSuccessfully(message);
-                LOG.info("View logs at {}", getOtpRunnerLogS3Path());
-                return;
-            }
-            // Once this is confirmed, check for the availability of the router, which will indicate that the graph
-            // load has completed successfully. Wait a maximum of 20 minutes to load the graph and for the router to
-            // become available.
-            TimeTracker routerCheckTracker = new TimeTracker(20, TimeUnit.MINUTES);
-            String routerUrl = String.join("/", ipUrl, "otp/routers/default");
-            boolean routerIsAvailable = false;
-            while (!routerIsAvailable) {
-                // If the request was successful, the graph build is complete!
+                // Once this is confirmed, check for the availability of the router, which will indicate that the graph
+                // load has completed successfully. Wait a maximum of 20 minutes to load the graph and for the router
+                // to become available.
                 // TODO: Substitute in specific router ID? Or just default to... "default".
-                waitAndCheckInstanceHealth("router to become available: " + routerUrl);
-                routerIsAvailable = checkForSuccessfulRequest(routerUrl);
-                if (routerCheckTracker.hasTimedOut()) {
-                    failJob("Job timed out while waiting for trip planner to start up.");
-                    return;
-                }
-            }
-            status.update("Graph loaded!", 90);
-            // After the router is available, the EC2 instance can be registered with the load balancer.
-            // REGISTER INSTANCE WITH LOAD BALANCER
-            RegisterTargetsRequest registerTargetsRequest = new RegisterTargetsRequest()
-                .withTargetGroupArn(otpServer.ec2Info.targetGroupArn)
-                .withTargets(new TargetDescription().withId(instance.getInstanceId()));
-            boolean targetAddedSuccessfully = false;
-            // Wait for two minutes for targets to register.
-            TimeTracker registerTargetTracker = new TimeTracker(2, TimeUnit.MINUTES);
-            // obtain an ELB client suitable for this deploy job. It is important to obtain a client this way to ensure
-            // that the proper AWS credentials are used and that the client has a valid session if it is obtained from a
-            // role.
-            AmazonElasticLoadBalancing elbClient = deployJob.getELBClientForDeployJob();
-            while (!targetAddedSuccessfully) {
-                // Register target with target group.
-                elbClient.registerTargets(registerTargetsRequest);
-                waitAndCheckInstanceHealth("instance to register with ELB target group");
+                return waitFor(
+                    "router to become available: " + routerUrl,
+                    20,
+                    TimeUnit.MINUTES,
+                    "Job timed out while waiting for trip planner to start up.",
+                    () -> checkForSuccessfulRequest(routerUrl)
+                ).thenCompose(routerAvailable -> registerWithLoadBalancer(routerUrl));
+            })
+            .handle((result, e) -> {
+                if (e != null) handleMonitoringException(e instanceof CompletionException ? e.getCause() : e);
+                return null;
+            });
+    }
+
+    /**
+     * Register the instance with the load balancer target group and wait (up to two minutes) for it to show up in the
+     * target group's health check.
+     */
+    private CompletableFuture<Void> registerWithLoadBalancer(String routerUrl) {
+        status.update("Graph loaded!", 90);
+        RegisterTargetsRequest registerTargetsRequest = new RegisterTargetsRequest()
+            .withTargetGroupArn(otpServer.ec2Info.targetGroupArn)
+            .withTargets(new TargetDescription().withId(instance.getInstanceId()))
+            .withSdkClientExecutionTimeout(REQUEST_TIMEOUT_MILLIS);
+        // obtain an ELB client suitable for this deploy job. It is important to obtain a client this way to ensure
+        // that the proper AWS credentials are used and that the client has a valid session if it is obtained from a
+        // role.
+        AmazonElasticLoadBalancing elbClient;
+        try {
+            elbClient = deployJob.getELBClientForDeployJob();
+        } catch (CheckedAWSException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // Register target with target group.
+        elbClient.registerTargets(registerTargetsRequest);
+        return waitFor(
+            "instance to register with ELB target group",
+            2,
+            TimeUnit.MINUTES,
+            "Job timed out while waiting to register EC2 instance with load balancer target group.",
+            () -> {
                 // Check that the instance ID shows up in the health check.
                 DescribeTargetHealthRequest healthRequest = new DescribeTargetHealthRequest()
-                    .withTargetGroupArn(otpServer.ec2Info.targetGroupArn);
+                    .withTargetGroupArn(otpServer.ec2Info.targetGroupArn)
+                    .withSdkClientExecutionTimeout(REQUEST_TIMEOUT_MILLIS);
                 DescribeTargetHealthResult healthResult = elbClient.describeTargetHealth(healthRequest);
                 for (TargetHealthDescription health : healthResult.getTargetHealthDescriptions()) {
                     if (instance.getInstanceId().equals(health.getTarget().getId())) {
                         LOG.info("Instance {} successfully added to target group!", instance.getInstanceId());
-                        targetAddedSuccessfully = true;
+                        return true;
                     }
                 }
-                if (registerTargetTracker.hasTimedOut()) {
-                    failJob("Job timed out while waiting to register EC2 instance with load balancer target group.");
-                    return;
-                }
+                // Register again before the next check.
+                elbClient.registerTargets(registerTargetsRequest);
+                return false;
             }
+        ).thenRun(() -> {
             status.completeSuccessfully(
                 String.format(
                     "Server successfully registered with load balancer %s. OTP running at %s",
@@ -187,18 +236,30 @@ public class MonitorServerStatusJob extends MonitorableJob {
             );
             LOG.info("View logs at {}", getOtpRunnerLogS3Path());
             deployJob.incrementCompletedServers();
-        } catch (InstanceHealthException e) {
+        });
+    }
+
+    /**
+     * Fail the job for an exception encountered while monitoring the instance.
+     */
+    private void handleMonitoringException(Throwable e) {
+        if (e instanceof TimeoutException) {
+            failJob(e.getMessage());
+        } else if (e instanceof InstanceHealthException) {
             // If at any point during the job, an instance health check indicates that the EC2 instance being monitored
             // was terminated or stopped, an InstanceHealthException will be thrown. Whether the instance termination
-            // was accidental or intentional, we want the result to be that the job fails and the deployment be aborted.
-            // This gives us a failsafe in case we kick off a deployment accidentally or otherwise need to cancel the
-            // deployment job (e.g., due to an incorrect configuration).
-            failJob("EC2 Instance was stopped or terminated before job could complete!", e);
-        } catch (Exception e) {
-            // This catch-all block is needed to make sure any exceptions that are not handled elsewhere are properly
-            // caught here so that the job can be properly failed. If the job is not failed properly this could result
-            // in hanging instances that do not get terminated properly by the parent DeployJob.
-            failJob("An internal datatools error occurred before the job could complete!", e);
+            // was accidental or intentional, we want the result to be that the job fails and the deployment be
+            // aborted. This gives us a failsafe in case we kick off a deployment accidentally or otherwise need to
+            // cancel the deployment job (e.g., due to an incorrect configuration).
+            failJob("EC2 Instance was stopped or terminated before job could complete!", (Exception) e);
+        } else {
+            // Any exceptions that are not handled elsewhere must be caught here so that the job can be properly
+            // failed. If the job is not failed properly this could result in hanging instances that do not get
+            // terminated properly by the parent DeployJob.
+            failJob(
+                "An internal datatools error occurred before the job could complete!",
+                e instanceof Exception ? (Exception) e : new RuntimeException(e)
+            );
         }
     }
 
@@ -234,42 +295,55 @@ public class MonitorServerStatusJob extends MonitorableJob {
     }
 
     /**
-     * Have the current thread sleep for a few seconds in order to pause during a while loop. Also, before and after
-     * waiting, check the instance health to make sure it is still running. If a user has terminated the instance, the
-     * job should be failed.
+     * Poll the given check every {@link #DELAY_SECONDS} until it returns true. Before each check, also check the
+     * instance health to make sure it is still running. If a user has terminated the instance, the job should be
+     * failed.
      */
-    private void waitAndCheckInstanceHealth(String waitingFor) throws InstanceHealthException, InterruptedException {
-        LOG.info("Waiting {} seconds for {}", DELAY_SECONDS, waitingFor);
-        Thread.sleep(1000 * DELAY_SECONDS);
-        checkInstanceHealth(1);
+    private CompletableFuture<Void> waitFor(
+        String waitingFor,
+        long timeout,
+        TimeUnit timeUnit,
+        String timeoutMessage,
+        Poller.Check check
+    ) {
+        LOG.info("Checking every {} seconds for {}", DELAY_SECONDS, waitingFor);
+        return Poller.poll(
+            () -> {
+                checkInstanceHealth();
+                return check.check();
+            },
+            TimeUnit.SECONDS.toMillis(DELAY_SECONDS),
+            timeUnit.toMillis(timeout),
+            TimeUnit.MILLISECONDS,
+            timeoutMessage
+        );
     }
 
     /**
      * Checks whether the instance is running. If it has entered a state where it is stopped, terminated or about to be
      * stopped or terminated, then this method throws an exception. It is possible that some describe instance requests
-     * might fail either during instance startup or due to brief network connectivity issues, so this method will retry
-     * checking the instance health using recursion up to the
-     * ${@link MonitorServerStatusJob#MAX_INSTANCE_HEALTH_RETRIES} value.
+     * might fail either during instance startup or due to brief network connectivity issues, so failed requests are
+     * ignored (until the next check) up to ${@link MonitorServerStatusJob#MAX_INSTANCE_HEALTH_RETRIES} times in a row.
      */
-    private void checkInstanceHealth(int attemptNumber) throws InstanceHealthException, InterruptedException {
+    private void checkInstanceHealth() throws InstanceHealthException {
         DescribeInstancesRequest request = new DescribeInstancesRequest()
-            .withInstanceIds(Collections.singletonList(instance.getInstanceId()));
+            .withInstanceIds(Collections.singletonList(instance.getInstanceId()))
+            .withSdkClientExecutionTimeout(REQUEST_TIMEOUT_MILLIS);
         DescribeInstancesResult result;
         try {
             result = deployJob.getEC2ClientForDeployJob().describeInstances(request);
+            instanceHealthFailures = 0;
         } catch (Exception e) {
+            instanceHealthFailures++;
             LOG.warn(
                 "Failed on attempt {}/{} to execute request to obtain instance health!",
-                attemptNumber,
+                instanceHealthFailures,
                 MAX_INSTANCE_HEALTH_RETRIES,
                 e
             );
-            if (attemptNumber > MAX_INSTANCE_HEALTH_RETRIES) {
+            if (instanceHealthFailures > MAX_INSTANCE_HEALTH_RETRIES) {
                 throw new InstanceHealthException("AWS Describe Instances error!");
             }
-            LOG.info("Waiting 5 seconds to try to get instance status again");
-            Thread.sleep(5000);
-            checkInstanceHealth(attemptNumber + 1);
             return;
         }
         for (Reservation reservation : result.getReservations()) {
@@ -1,10 +1,12 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobExecutor;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,8 +43,8 @@ public class NotifyUsersForSubscriptionJob implements Runnable {
             return;
         }
         NotifyUsersForSubscriptionJob notifyJob = new NotifyUsersForSubscriptionJob(subscriptionType, target, message);
-        JobUtils.lightExecutor.execute(notifyJob);
-        LOG.info("Notification job scheduled in light executor");
+        JobUtils.jobExecutor.execute(notifyJob, MonitorableJob.JobType.NOTIFY_USERS, JobExecutor.Priority.NORMAL);
+        LOG.info("Notification job scheduled in light pool");
     }
 
     @Override
@@ -104,11 +104,13 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
         }
 
         // First, load the feed into database. During this stage, the GTFS file will be uploaded to S3 (and deleted locally).
-        addNextJob(new LoadFeedJob(feedVersion, owner, isNewVersion));
+        LoadFeedJob loadFeedJob = new LoadFeedJob(feedVersion, owner, isNewVersion);
+        addNextJob(loadFeedJob);
 
-        // Next, validate the feed.
-        addNextJob(new ValidateFeedJob(feedVersion, owner, isNewVersion));
-        addNextJob(new ValidateMobilityDataFeedJob(feedVersion, owner, isNewVersion));
+        // Next, validate the feed. The gtfs-lib and MobilityData validations each only need the feed to have been
+        // loaded, so they run concurrently. Any jobs added below run once both have finished.
+        addDependentJob(new ValidateFeedJob(feedVersion, owner, isNewVersion), loadFeedJob);
+        addDependentJob(new ValidateMobilityDataFeedJob(feedVersion, owner, isNewVersion), loadFeedJob);
 
         // We only need to snapshot the feed if there are transformations at the database level. In the case that there
         // are, the snapshot namespace will be the target of these modifications. If we were to apply the modifications
@@ -3,6 +3,7 @@ package com.conveyal.datatools.manager.jobs;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ProjectJob;
 import com.conveyal.datatools.common.utils.aws.S3Utils;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedVersion;
@@ -22,7 +23,7 @@ import static com.conveyal.datatools.manager.DataManager.hasConfigProperty;
 /**
  * Publish the latest GTFS files for all public feeds in a project.
  */
-public class PublishProjectFeedsJob extends MonitorableJob {
+public class PublishProjectFeedsJob extends MonitorableJob implements ProjectJob {
     public static final Logger LOG = LoggerFactory.getLogger(PublishProjectFeedsJob.class);
 
     private Project project;
@@ -0,0 +1,77 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.LatestVersionSummary;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+
+/**
+ * Rebuild the {@link FeedSource#latestVersionSummary} embedded in feed source documents from the feed versions
+ * collection. This is needed for feed sources created before the summary existed (or loaded from a dump) and can be
+ * used to correct summaries that have drifted (e.g., after feed versions were modified directly in the database).
+ */
+public class RepairLatestVersionSummariesJob extends MonitorableJob {
+    private static final Logger LOG = LoggerFactory.getLogger(RepairLatestVersionSummariesJob.class);
+
+    /** If true, only repair feed sources without a summary field (rather than all feed sources). */
+    private final boolean missingOnly;
+
+    public RepairLatestVersionSummariesJob(Auth0UserProfile owner, boolean missingOnly) {
+        super(owner, "Repairing latest feed version summaries", JobType.REPAIR_LATEST_VERSION_SUMMARIES);
+        this.missingOnly = missingOnly;
+    }
+
+    @Override
+    public void jobLogic() {
+        // Summaries are explicitly set to null for feed sources without versions once repaired, so a missing field
+        // indicates a feed source that has never been repaired (or has never had a version, which is cheap to check).
+        Bson filter = missingOnly ? exists("latestVersionSummary", false) : new Document();
+        long total = Persistence.feedSources.count(filter);
+        if (total == 0) {
+            status.completeSuccessfully("No feed sources to repair.");
+            return;
+        }
+        int repaired = 0;
+        List<WriteModel<FeedSource>> updates = new ArrayList<>();
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.stream(
+            filter,
+            null,
+            TypedPersistence.DEFAULT_BATCH_SIZE,
+            "_id"
+        )) {
+            for (FeedSource feedSource : (Iterable<FeedSource>) feedSources::iterator) {
+                FeedVersion latest = Persistence.feedVersions.getOneFiltered(
+                    eq("feedSourceId", feedSource.id),
+                    Sorts.descending("version")
+                );
+                LatestVersionSummary summary = latest != null ? new LatestVersionSummary(latest) : null;
+                updates.add(Persistence.feedSources.updateFieldModel(feedSource.id, "latestVersionSummary", summary));
+                repaired++;
+                if (updates.size() >= TypedPersistence.BULK_WRITE_CHUNK_SIZE) {
+                    Persistence.feedSources.bulkWrite(updates, false);
+                    updates.clear();
+                    status.update(String.format("Repaired %d of %d feed sources", repaired, total), 100.0 * repaired / total);
+                }
+            }
+        }
+        Persistence.feedSources.bulkWrite(updates, false);
+        LOG.info("Repaired latest version summaries for {} feed sources", repaired);
+        status.completeSuccessfully(String.format("Repaired %d feed sources.", repaired));
+    }
+}
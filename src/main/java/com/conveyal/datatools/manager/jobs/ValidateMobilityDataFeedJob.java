@@ -34,13 +34,10 @@ public class ValidateMobilityDataFeedJob extends FeedVersionJob {
     public void jobFinished () {
         if (!status.error) {
             if (parentJobId != null && JobType.PROCESS_FEED.equals(parentJobType)) {
-                // Validate stage is happening as part of an overall process feed job.
-                // At this point all GTFS data has been loaded and validated, so we record
-                // the FeedVersion into mongo.
-                // This happens here because otherwise we would have to wait for other jobs,
-                // such as BuildTransportNetwork, to finish. If those subsequent jobs fail,
-                // the version won't get loaded into MongoDB (even though it exists in postgres).
-                feedVersion.persistFeedVersionAfterValidation(isNewVersion);
+                // Validate stage is happening as part of an overall process feed job, alongside ValidateFeedJob.
+                // If the gtfs-lib validation has already been recorded, update the FeedVersion in mongo with the
+                // MobilityData result. Otherwise, the result is recorded by ValidateFeedJob once it finishes.
+                feedVersion.persistMobilityDataResult(isNewVersion);
             }
             status.completeSuccessfully("MobilityData validation finished!");
         } else {
@@ -1,7 +1,18 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
 
 /**
  * Created by demory on 3/30/16.
@@ -29,6 +40,31 @@ public class ExternalFeedSourceProperty extends Model {
         return feedSource.id + "_" + resourceType + "_" + name;
     }
 
+    /**
+     * Map the value of the named external property (e.g., an agency ID) to the feed source it belongs to. The
+     * properties for all of the feed sources are fetched in a single query. Feed sources without a value for the
+     * property are omitted.
+     */
+    public static Map<String, FeedSource> getFeedSourcesByPropertyValue(
+        Collection<FeedSource> feedSources,
+        String resourceType,
+        String name
+    ) {
+        Map<String, FeedSource> feedSourcesById = feedSources.stream()
+            .collect(Collectors.toMap(feedSource -> feedSource.id, Function.identity()));
+        Map<String, FeedSource> feedSourcesByValue = new HashMap<>();
+        Persistence.externalFeedSourceProperties.getFiltered(and(
+            in("feedSourceId", feedSourcesById.keySet()),
+            eq("resourceType", resourceType),
+            eq("name", name)
+        )).forEach(property -> {
+            if (property.value != null) {
+                feedSourcesByValue.put(property.value, feedSourcesById.get(property.feedSourceId));
+            }
+        });
+        return feedSourcesByValue;
+    }
+
     public String resourceType;
 
     public String feedSourceId;
@@ -0,0 +1,29 @@
+package com.conveyal.datatools.manager.models;
+
+import java.util.Date;
+
+/**
+ * A file stored once by its content in a content-addressed {@link com.conveyal.datatools.manager.persistence.FeedStore}
+ * and shared by every {@link FeedStoreEntry} that refers to it. The blob is deleted once its reference count drops to
+ * zero. Blob documents are only changed with atomic updates, because several processes may share them.
+ */
+public class FeedBlob extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** Name of the feed store the blob belongs to (e.g., "gtfs"). */
+    public String store;
+    /** The hash of the blob's contents (see {@link com.conveyal.datatools.manager.utils.HashUtils}). */
+    public String hash;
+    /** Size of the blob in bytes. */
+    public long size;
+    /** Number of feed store entries that refer to the blob. */
+    public int refCount;
+    /**
+     * When the lease held by the process deleting the (unreferenced) blob expires, or null if the blob is not being
+     * deleted.
+     */
+    public Date deleteLeaseExpires;
+
+    /** No-arg constructor for de-serialization. */
+    public FeedBlob() {}
+}
@@ -4,7 +4,6 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.conveyal.datatools.common.status.FeedSourceJob;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
@@ -16,18 +15,27 @@ import com.conveyal.datatools.manager.jobs.MergeFeedsJob;
 import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.models.transform.FeedTransformRules;
 import com.conveyal.datatools.manager.models.transform.FeedTransformation;
+import com.conveyal.datatools.manager.persistence.Page;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
+import com.conveyal.datatools.manager.utils.HostThrottle;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.connections.ConnectionResponse;
-import com.conveyal.datatools.manager.utils.connections.HttpURLConnectionResponse;
+import com.conveyal.datatools.manager.utils.connections.FeedFetchClient;
+import com.conveyal.datatools.manager.utils.connections.HttpClientConnectionResponse;
 import com.conveyal.gtfs.GTFS;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
-import com.mongodb.client.FindIterable;
+import com.google.common.collect.Lists;
+import com.mongodb.client.model.Accumulators;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
@@ -37,22 +45,35 @@ import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
 import static com.conveyal.datatools.manager.utils.StringUtils.getCleanName;
+import static com.mongodb.client.model.Aggregates.group;
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Aggregates.replaceRoot;
+import static com.mongodb.client.model.Aggregates.sort;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.or;
 import static com.mongodb.client.model.Updates.pull;
+import static com.mongodb.client.model.Updates.set;
 
 /**
  * Created by demory on 3/22/16.
@@ -64,6 +85,15 @@ public class FeedSource extends Model implements Cloneable {
 
     public static final Logger LOG = LoggerFactory.getLogger(FeedSource.class);
 
+    /**
+     * Limits concurrent fetches from the same host and spaces them out, so that fetching all of the feeds an agency
+     * publishes does not overwhelm its server.
+     */
+    private static final HostThrottle fetchThrottle = new HostThrottle(
+        Integer.parseInt(DataManager.getConfigPropertyAsText("FETCH_MAX_CONCURRENT_PER_HOST", "2")),
+        Long.parseLong(DataManager.getConfigPropertyAsText("FETCH_HOST_DELAY_MS", "1000"))
+    );
+
     /**
      * The collection of which this feed is a part
      */
@@ -88,6 +118,7 @@ public class FeedSource extends Model implements Cloneable {
 
     @JsonProperty("organizationId")
     public String organizationId () {
+        if (prefetched != null) return prefetched.organizationId;
         Project project = retrieveProject();
         return project == null ? null : project.organizationId;
     }
@@ -134,12 +165,29 @@ public class FeedSource extends Model implements Cloneable {
      */
     public Date lastFetched;
 
+    /**
+     * The ETag header of the response when this feed was last fetched, sent as If-None-Match on the next fetch so that
+     * an unchanged feed costs a 304 Not Modified instead of a full download. Like {@link #lastFetched}, this is reset
+     * when the fetch URL changes or the latest version is deleted. It is not exposed in (or accepted from) JSON.
+     */
+    @JsonIgnore
+    public String lastFetchedETag;
+
     /**
      * When was this feed last updated?
      * FIXME: this is currently dynamically determined by lastUpdated() with calls retrieveLatest().
      */
 //    public transient Date lastUpdated;
 
+    /**
+     * Summary of the latest feed version, maintained whenever a version is persisted, deleted or renumbered. This is
+     * null for feed sources without any versions (or ones that have not been repaired since this field was added, in
+     * which case the latest version is looked up with a query). It is not exposed in (or accepted from) JSON; the
+     * client sees it via {@link #latestVersionId()}, {@link #lastUpdated()} and {@link #latestValidation()}.
+     */
+    @JsonIgnore
+    public LatestVersionSummary latestVersionSummary;
+
     /**
      * From whence is this feed fetched?
      */
@@ -175,6 +223,14 @@ public class FeedSource extends Model implements Cloneable {
 
     public String editorNamespace;
 
+    /**
+     * Values pre-fetched for serialization by {@link #prefetchJsonProperties}. If null, the computed JSON properties
+     * are looked up individually.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private transient PrefetchedProperties prefetched;
+
     /**
      * Create a new feed.
      */
@@ -222,23 +278,46 @@ public class FeedSource extends Model implements Cloneable {
         // Get latest version to check that the fetched version does not duplicate a feed already loaded.
         FeedVersion latest = retrieveLatest();
 
-        HttpURLConnection conn = makeHttpURLConnection(status, optionalUrlOverride, getModifiedThreshold(latest));
-        if (conn == null) return null;
+        // Build the URL from which to fetch. If an optional URL is provided (in the case of a recursive fetch) use
+        // that. Otherwise, use the fetch URL.
+        URI uri;
+        try {
+            uri = optionalUrlOverride != null ? new URL(optionalUrlOverride).toURI() : this.url.toURI();
+        } catch (MalformedURLException | URISyntaxException e) {
+            status.fail(String.format("Could not connect to bad redirect URL %s", optionalUrlOverride), e);
+            return null;
+        }
+        LOG.info("Fetching from {}", uri);
+        HttpGet request = makeFetchRequest(uri, latest);
 
+        String host = uri.getHost();
         try {
-            conn.connect();
-            return processFetchResponse(status, optionalUrlOverride, version, latest, new HttpURLConnectionResponse(conn));
+            fetchThrottle.acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.fail(String.format("Interrupted while waiting to fetch %s feed", this.name), e);
+            return null;
+        }
+        // The permit only needs to be held while the feed is downloaded, not while the downloaded file is processed.
+        AtomicBoolean permitHeld = new AtomicBoolean(true);
+        Runnable releasePermit = () -> {
+            if (permitHeld.getAndSet(false)) fetchThrottle.release(host);
+        };
+        try (HttpClientConnectionResponse response = FeedFetchClient.execute(request)) {
+            return processFetchResponse(status, optionalUrlOverride, version, latest, response, releasePermit);
         } catch (IOException e) {
-            String message = String.format("Unable to connect to %s; not fetching %s feed", conn.getURL(), this.name); // url, this.name);
+            String message = String.format("Unable to connect to %s; not fetching %s feed", uri, this.name); // url, this.name);
             LOG.error(message);
             status.fail(message);
             e.printStackTrace();
             return null;
+        } finally {
+            releasePermit.run();
         }
     }
 
     /**
-     * Computes the modified time to set to the HttpURLConnection
+     * Computes the modified time to send in the If-Modified-Since header
      * so that if a version has not been published since the last fetch,
      * then download can be skipped.
      * @return The computed threshold if the latest feed version exists and was auto-fetched
@@ -254,40 +333,18 @@ public class FeedSource extends Model implements Cloneable {
     }
 
     /**
-     * Builds an {@link HttpURLConnection}.
+     * Builds the fetch request, using the proper HTTP caching headers (If-Modified-Since and If-None-Match) to prevent
+     * refetching a feed that has not changed since the latest version was fetched, if applicable.
      */
-    private HttpURLConnection makeHttpURLConnection(MonitorableJob.Status status, String optionalUrlOverride, Long modifiedThreshold) {
-        // build the URL from which to fetch
-        URL url = null;
-        try {
-            // If an optional URL is provided (in the case of a recursive fetch) use that. Otherwise, use the fetch URL
-            url = optionalUrlOverride != null ? new URL(optionalUrlOverride) : this.url;
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            status.fail(String.format("Could not connect to bad redirect URL %s", optionalUrlOverride));
+    private HttpGet makeFetchRequest(URI uri, FeedVersion latest) {
+        HttpGet request = new HttpGet(uri);
+        Long modifiedThreshold = getModifiedThreshold(latest);
+        if (modifiedThreshold != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, DateUtils.formatDate(new Date(modifiedThreshold)));
+            // The ETag is cleared along with lastFetched, so it always belongs to the latest (auto-fetched) version.
+            if (lastFetchedETag != null) request.setHeader(HttpHeaders.IF_NONE_MATCH, lastFetchedETag);
         }
-        LOG.info("Fetching from {}", url.toString());
-
-        // make the request, using the proper HTTP caching headers to prevent refetch, if applicable
-        HttpURLConnection conn;
-        try {
-            conn = (HttpURLConnection) url.openConnection();
-            // Set user agent request header in order to avoid 403 Forbidden response from some servers.
-            // https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
-            conn.setRequestProperty(
-                    "User-Agent",
-                    "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11"
-            );
-        } catch (IOException e) {
-            status.fail(String.format("Unable to open connection to %s; not fetching feed %s", url, this.name), e);
-            return null;
-        }
-
-        conn.setDefaultUseCaches(true);
-
-        if (modifiedThreshold != null) conn.setIfModifiedSince(modifiedThreshold);
-
-        return conn;
+        return request;
     }
 
     /**
@@ -300,6 +357,22 @@ public class FeedSource extends Model implements Cloneable {
         FeedVersion version,
         FeedVersion latest,
         ConnectionResponse response
+    ) {
+        return processFetchResponse(status, optionalUrlOverride, version, latest, response, () -> {});
+    }
+
+    /**
+     * Processes the given fetch response, calling responseRead once the response body has been read (or is not
+     * needed), so that the caller can release any per-host fetch permit before the downloaded file is processed or a
+     * redirect is followed.
+     */
+    private FeedVersion processFetchResponse(
+        MonitorableJob.Status status,
+        String optionalUrlOverride,
+        FeedVersion version,
+        FeedVersion latest,
+        ConnectionResponse response,
+        Runnable responseRead
     ) {
         File newGtfsFile;
         try {
@@ -320,6 +393,7 @@ public class FeedSource extends Model implements Cloneable {
                     // Create new file from input stream (this also handles hashing the file and other version fields
                     // calculated from the GTFS file.
                     newGtfsFile = version.newGtfsFile(response.getInputStream());
+                    responseRead.run();
                     break;
                 case HttpURLConnection.HTTP_MOVED_TEMP:
                 case HttpURLConnection.HTTP_MOVED_PERM:
@@ -338,6 +412,7 @@ public class FeedSource extends Model implements Cloneable {
                         // to prevent multiple (possibly infinite?) redirects. Any more redirects than one should
                         // probably be met with user action to update the fetch URL.
                         LOG.info("Recursively calling fetch feed with new URL: {}", redirectUrl);
+                        responseRead.run();
                         return fetch(status, redirectUrl);
                     }
                 default:
@@ -356,9 +431,17 @@ public class FeedSource extends Model implements Cloneable {
             return null;
         }
         if (version.isSameAs(latest)) {
-            // If new version hash equals the hash for the latest version, do not error. Simply indicate that server
-            // operators should add If-Modified-Since support to avoid wasting bandwidth.
-            String message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since support to avoid wasting bandwidth", this.name);
+            // If new version hash equals the hash for the latest version, do not error. If the server sent an ETag,
+            // store it so that the next fetch can be answered with 304 Not Modified. Otherwise, simply indicate that
+            // server operators should add If-Modified-Since or ETag support to avoid wasting bandwidth.
+            String eTag = response.getETag();
+            String message;
+            if (eTag != null) {
+                updateLastFetchedETag(eTag);
+                message = String.format("Feed %s was fetched but has not changed", this.name);
+            } else {
+                message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since or ETag support to avoid wasting bandwidth", this.name);
+            }
             LOG.warn(message);
             String filePath = newGtfsFile.getAbsolutePath();
             if (newGtfsFile.delete()) {
@@ -373,6 +456,7 @@ public class FeedSource extends Model implements Cloneable {
 
             // Update last fetched value for feed source.
             Persistence.feedSources.updateField(this.id, "lastFetched", version.updated);
+            updateLastFetchedETag(response.getETag());
 
             // Set file timestamp according to last modified header from connection
             version.fileTimestamp = response.getLastModified();
@@ -383,6 +467,16 @@ public class FeedSource extends Model implements Cloneable {
         }
     }
 
+    /**
+     * Store the ETag of the latest fetched response (null if the server did not send one) to send in the
+     * If-None-Match header of the next fetch.
+     */
+    private void updateLastFetchedETag(String eTag) {
+        if (Objects.equals(eTag, lastFetchedETag)) return;
+        lastFetchedETag = eTag;
+        Persistence.feedSources.updateField(this.id, "lastFetchedETag", eTag);
+    }
+
     public int compareTo(FeedSource o) {
         return this.name.compareTo(o.name);
     }
@@ -420,12 +514,58 @@ public class FeedSource extends Model implements Cloneable {
      */
     @JsonIgnore
     public FeedVersion retrieveLatest() {
+        if (latestVersionSummary != null) {
+            FeedVersion latest = Persistence.feedVersions.getById(latestVersionSummary.feedVersionId);
+            // Fall back on the query below if the summary is stale.
+            if (latest != null) return latest;
+        }
+        return queryLatest();
+    }
+
+    /**
+     * Query for the highest numbered version of this feed, ignoring {@link #latestVersionSummary}.
+     */
+    private FeedVersion queryLatest() {
         return Persistence.feedVersions.getOneFiltered(
             eq("feedSourceId", this.id),
             Sorts.descending("version")
         );
     }
 
+    /**
+     * Recompute {@link #latestVersionSummary} from the feed versions in the database and store it on this feed
+     * source's document (and on this instance). This should be called after versions are deleted or renumbered.
+     */
+    public void refreshLatestVersionSummary() {
+        FeedVersion latest = queryLatest();
+        latestVersionSummary = latest != null ? new LatestVersionSummary(latest) : null;
+        Persistence.feedSources.updateOneFiltered(
+            eq("_id", this.id),
+            set("latestVersionSummary", latestVersionSummary),
+            false
+        );
+    }
+
+    /**
+     * Set the {@link #latestVersionSummary} of the version's feed source to the provided version, unless the stored
+     * summary already refers to a higher numbered version. The check and update happen in a single atomic operation,
+     * so versions persisted concurrently cannot regress the summary. The summary is derived from the versions, so
+     * storing it does not change the feed source's lastUpdated.
+     */
+    public static void updateLatestVersionSummary(FeedVersion feedVersion) {
+        Persistence.feedSources.updateOneFiltered(
+            and(
+                eq("_id", feedVersion.feedSourceId),
+                or(
+                    eq("latestVersionSummary", null),
+                    lte("latestVersionSummary.version", feedVersion.version)
+                )
+            ),
+            set("latestVersionSummary", new LatestVersionSummary(feedVersion)),
+            false
+        );
+    }
+
     /**
      * Fetches the published {@link FeedVersion} for this feed source according to the
      * {@link #publishedVersionId} field (which currently maps to {@link FeedVersion#namespace}.
@@ -446,7 +586,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("publishedValidationSummary")
     private FeedValidationResultSummary publishedValidationSummary() {
-        FeedVersion publishedVersion = retrievePublishedVersion();
+        FeedVersion publishedVersion = prefetched != null ? prefetched.publishedVersion : retrievePublishedVersion();
         return publishedVersion != null ? new FeedValidationResultSummary(publishedVersion) : null;
     }
 
@@ -454,7 +594,8 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("latestVersionId")
     public String latestVersionId() {
-        FeedVersion latest = retrieveLatest();
+        if (latestVersionSummary != null) return latestVersionSummary.feedVersionId;
+        FeedVersion latest = prefetched != null ? prefetched.latest : retrieveLatest();
         return latest != null ? latest.id : null;
     }
 
@@ -476,7 +617,8 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("lastUpdated")
     public Date lastUpdated() {
-        FeedVersion latest = retrieveLatest();
+        if (latestVersionSummary != null) return latestVersionSummary.updated;
+        FeedVersion latest = prefetched != null ? prefetched.latest : retrieveLatest();
         return latest != null ? latest.updated : null;
     }
 
@@ -485,7 +627,8 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("latestValidation")
     public FeedValidationResultSummary latestValidation() {
-        FeedVersion latest = retrieveLatest();
+        if (latestVersionSummary != null) return latestVersionSummary.validationSummary;
+        FeedVersion latest = prefetched != null ? prefetched.latest : retrieveLatest();
         return latest != null ? new FeedValidationResultSummary(latest) : null;
     }
 
@@ -507,6 +650,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("externalProperties")
     public Map<String, Map<String, String>> externalProperties() {
+        if (prefetched != null) return prefetched.externalProperties;
 
         Map<String, Map<String, String>> resourceTable = new HashMap<>();
 
@@ -523,6 +667,84 @@ public class FeedSource extends Model implements Cloneable {
         return resourceTable;
     }
 
+    /**
+     * Pre-fetch the values backing the computed JSON properties (latest version, published version, external
+     * properties and organization ID) for a collection of feed sources using a handful of queries for the whole
+     * collection. Without this, serializing a list of feed sources issues several queries per feed source. The values
+     * are held on each feed source instance and are not refreshed, so this should only be called on instances that are
+     * about to be serialized (e.g., in a list response).
+     */
+    public static void prefetchJsonProperties(Collection<FeedSource> feedSources) {
+        if (feedSources.isEmpty()) return;
+        Set<String> feedSourceIds = new HashSet<>();
+        Set<String> feedSourceIdsWithoutSummary = new HashSet<>();
+        Set<String> projectIds = new HashSet<>();
+        Set<String> publishedNamespaces = new HashSet<>();
+        for (FeedSource feedSource : feedSources) {
+            feedSourceIds.add(feedSource.id);
+            if (feedSource.latestVersionSummary == null) feedSourceIdsWithoutSummary.add(feedSource.id);
+            if (feedSource.projectId != null) projectIds.add(feedSource.projectId);
+            if (feedSource.publishedVersionId != null) publishedNamespaces.add(feedSource.publishedVersionId);
+        }
+        Map<String, String> organizationIdsByProjectId = new HashMap<>();
+        Persistence.projects.getFiltered(in("_id", projectIds))
+            .forEach(project -> organizationIdsByProjectId.put(project.id, project.organizationId));
+        // Find the highest numbered version for each feed source that does not already carry a latest version summary.
+        // Both sort keys descend so that the sort can walk the (feedSourceId, version) index backwards rather than
+        // sorting full feed version documents in memory.
+        Map<String, FeedVersion> latestVersionsByFeedSourceId = new HashMap<>();
+        if (!feedSourceIdsWithoutSummary.isEmpty()) {
+            Persistence.feedVersions.aggregate(Lists.newArrayList(
+                match(in("feedSourceId", feedSourceIdsWithoutSummary)),
+                sort(Sorts.descending("feedSourceId", "version")),
+                group("$feedSourceId", Accumulators.first("latest", "$$ROOT")),
+                replaceRoot("$latest")
+            )).forEach(version -> latestVersionsByFeedSourceId.put(version.feedSourceId, version));
+        }
+        Map<String, FeedVersion> publishedVersionsByNamespace = new HashMap<>();
+        if (!publishedNamespaces.isEmpty()) {
+            Persistence.feedVersions.getFiltered(in("namespace", publishedNamespaces))
+                .forEach(version -> publishedVersionsByNamespace.put(version.namespace, version));
+        }
+        // Initialize an empty property table for each resource type, as externalProperties() would.
+        Map<String, Map<String, Map<String, String>>> externalPropertiesByFeedSourceId = new HashMap<>();
+        for (String feedSourceId : feedSourceIds) {
+            Map<String, Map<String, String>> resourceTable = new HashMap<>();
+            for (String resourceType : DataManager.feedResources.keySet()) {
+                resourceTable.put(resourceType, new HashMap<>());
+            }
+            externalPropertiesByFeedSourceId.put(feedSourceId, resourceTable);
+        }
+        if (!DataManager.feedResources.isEmpty()) {
+            Persistence.externalFeedSourceProperties.getFiltered(and(
+                in("feedSourceId", feedSourceIds),
+                in("resourceType", DataManager.feedResources.keySet())
+            )).forEach(prop -> externalPropertiesByFeedSourceId
+                .get(prop.feedSourceId)
+                .get(prop.resourceType)
+                .put(prop.name, prop.value)
+            );
+        }
+        for (FeedSource feedSource : feedSources) {
+            PrefetchedProperties properties = new PrefetchedProperties();
+            properties.organizationId = organizationIdsByProjectId.get(feedSource.projectId);
+            properties.latest = latestVersionsByFeedSourceId.get(feedSource.id);
+            properties.publishedVersion = publishedVersionsByNamespace.get(feedSource.publishedVersionId);
+            properties.externalProperties = externalPropertiesByFeedSourceId.get(feedSource.id);
+            feedSource.prefetched = properties;
+        }
+    }
+
+    /**
+     * Values for the computed JSON properties resolved in bulk by {@link #prefetchJsonProperties}.
+     */
+    private static class PrefetchedProperties {
+        String organizationId;
+        FeedVersion latest;
+        FeedVersion publishedVersion;
+        Map<String, Map<String, String>> externalProperties;
+    }
+
     /**
      * Find all project feed sources that contain the label and remove label from list.
      */
@@ -540,6 +762,21 @@ public class FeedSource extends Model implements Cloneable {
         return Persistence.feedVersions.getFiltered(eq("feedSourceId", this.id));
     }
 
+    /**
+     * Get a page of the feed versions for this source, newest (highest version number) first.
+     * @param cursor cursor for the page (see {@link Page#nextCursor}) or null for the first page
+     */
+    public Page<FeedVersion> retrieveFeedVersions(String cursor, int limit) {
+        return Persistence.feedVersions.getPage(
+            eq("feedSourceId", this.id),
+            "version",
+            version -> version.version,
+            true,
+            cursor,
+            limit
+        );
+    }
+
     /**
      * Get the summary information for all feed versions for this source.
      * @return collection of feed version summaries.
@@ -558,6 +795,21 @@ public class FeedSource extends Model implements Cloneable {
         return Persistence.snapshots.getFiltered(eq(Snapshot.FEED_SOURCE_REF, this.id));
     }
 
+    /**
+     * Get a page of the snapshots for this source, newest (highest version number) first.
+     * @param cursor cursor for the page (see {@link Page#nextCursor}) or null for the first page
+     */
+    public Page<Snapshot> retrieveSnapshots(String cursor, int limit) {
+        return Persistence.snapshots.getPage(
+            eq(Snapshot.FEED_SOURCE_REF, this.id),
+            "version",
+            snapshot -> snapshot.version,
+            true,
+            cursor,
+            limit
+        );
+    }
+
     /**
      * Get all of the test deployments for this feed source.
      * @return collection of deloyments
@@ -584,11 +836,11 @@ public class FeedSource extends Model implements Cloneable {
     /**
      * Makes the feed source's latest version have public access on AWS S3.
      */
-    public void makePublic() throws CheckedAWSException {
-        String sourceKey = S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + this.id + ".zip";
+    public void makePublic() throws CheckedAWSException, IOException {
+        String sourceKey = FeedVersion.feedStore.getObjectKey(this.id + ".zip");
         String publicKey = toPublicKey();
         String versionId = this.latestVersionId();
-        String latestVersionKey = S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + versionId;
+        String latestVersionKey = FeedVersion.feedStore.getObjectKey(versionId);
 
         // only deploy to public if storing feeds on s3 (no mechanism for downloading/publishing
         // them otherwise)
@@ -619,7 +871,11 @@ public class FeedSource extends Model implements Cloneable {
                     defaultS3Client.setObjectAcl(S3Utils.DEFAULT_BUCKET, publicKey, CannedAccessControlList.PublicRead);
 
                     // also copy latest version to feedStore latest
-                    defaultS3Client.copyObject(S3Utils.DEFAULT_BUCKET, latestVersionKey, S3Utils.DEFAULT_BUCKET, sourceKey);
+                    if (FeedVersion.feedStore.isContentAddressed()) {
+                        FeedVersion.feedStore.setLatest(this.id, versionId);
+                    } else {
+                        defaultS3Client.copyObject(S3Utils.DEFAULT_BUCKET, latestVersionKey, S3Utils.DEFAULT_BUCKET, sourceKey);
+                    }
                 }
             }
         }
@@ -629,7 +885,7 @@ public class FeedSource extends Model implements Cloneable {
      * Makes the feed source's latest version have private access on AWS S3.
      */
     public void makePrivate() throws CheckedAWSException {
-        String sourceKey = S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + this.id + ".zip";
+        String sourceKey = FeedVersion.feedStore.getObjectKey(this.id + ".zip");
         String publicKey = toPublicKey();
         AmazonS3 defaultS3Client = S3Utils.getDefaultS3Client();
         if (defaultS3Client.doesObjectExist(S3Utils.DEFAULT_BUCKET, sourceKey)) {
@@ -643,28 +899,49 @@ public class FeedSource extends Model implements Cloneable {
     // FIXME for a brief moment feed version numbers are incoherent. Do this in a single operation or eliminate feed version numbers.
     public void renumberFeedVersions() {
         int i = 1;
-        FindIterable<FeedVersion> orderedFeedVersions = Persistence.feedVersions.getMongoCollection()
-                .find(eq("feedSourceId", this.id))
-                .sort(Sorts.ascending("updated"));
-        for (FeedVersion feedVersion : orderedFeedVersions) {
-            // Yes it's ugly to pass in a string, but we need to change the parameter type of update to take a Document.
-            Persistence.feedVersions.update(feedVersion.id, String.format("{version:%d}", i));
-            i += 1;
+        List<WriteModel<FeedVersion>> updates = new ArrayList<>();
+        try (
+            Stream<FeedVersion> orderedFeedVersions = Persistence.feedVersions.stream(
+                eq("feedSourceId", this.id),
+                Sorts.ascending("updated"),
+                TypedPersistence.DEFAULT_BATCH_SIZE,
+                "_id", "version"
+            )
+        ) {
+            for (FeedVersion feedVersion : (Iterable<FeedVersion>) orderedFeedVersions::iterator) {
+                // Only write the versions whose number has changed.
+                if (feedVersion.version != i) {
+                    updates.add(Persistence.feedVersions.updateFieldModel(feedVersion.id, "version", i));
+                }
+                i += 1;
+            }
         }
+        Persistence.feedVersions.bulkWrite(updates, false);
+        refreshLatestVersionSummary();
     }
 
     // TODO don't number the snapshots just timestamp them
     // FIXME for a brief moment snapshot numbers are incoherent. Do this in a single operation or eliminate snapshot version numbers.
     public void renumberSnapshots() {
         int i = 1;
-        FindIterable<Snapshot> orderedSnapshots = Persistence.snapshots.getMongoCollection()
-                .find(eq(Snapshot.FEED_SOURCE_REF, this.id))
-                .sort(Sorts.ascending("snapshotTime"));
-        for (Snapshot snapshot : orderedSnapshots) {
-            // Yes it's ugly to pass in a string, but we need to change the parameter type of update to take a Document.
-            Persistence.snapshots.updateField(snapshot.id, "version", i);
-            i += 1;
+        List<WriteModel<Snapshot>> updates = new ArrayList<>();
+        try (
+            Stream<Snapshot> orderedSnapshots = Persistence.snapshots.stream(
+                eq(Snapshot.FEED_SOURCE_REF, this.id),
+                Sorts.ascending("snapshotTime"),
+                TypedPersistence.DEFAULT_BATCH_SIZE,
+                "_id", "version"
+            )
+        ) {
+            for (Snapshot snapshot : (Iterable<Snapshot>) orderedSnapshots::iterator) {
+                // Only write the snapshots whose number has changed.
+                if (snapshot.version != i) {
+                    updates.add(Persistence.snapshots.updateFieldModel(snapshot.id, "version", i));
+                }
+                i += 1;
+            }
         }
+        Persistence.snapshots.bulkWrite(updates, false);
     }
 
     /**
@@ -693,6 +970,8 @@ public class FeedSource extends Model implements Cloneable {
                 delete.withKeys("public/" + this.name + ".zip", S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + this.id + ".zip");
                 defaultS3Client.deleteObjects(delete);
             }
+            // Remove the latest feed if stored by content.
+            FeedVersion.feedStore.setLatest(this.id, null);
             // Remove all external properties for this feed source.
             Persistence.externalFeedSourceProperties.removeFiltered(eq("feedSourceId", this.id));
 
@@ -717,18 +996,13 @@ public class FeedSource extends Model implements Cloneable {
      * occurring at the same time).
      */
     public boolean hasJobsInProgress() {
-        return JobUtils.getAllActiveJobs().stream().anyMatch(job -> {
-            String jobFeedSourceId = null;
-            if (
-                job instanceof FetchSingleFeedJob ||
-                job instanceof ProcessSingleFeedJob ||
-                job instanceof CreateFeedVersionFromSnapshotJob ||
-                job instanceof MergeFeedsJob
-            ) {
-                jobFeedSourceId = ((FeedSourceJob) job).getFeedSourceId();
-            }
-            return this.id.equals(jobFeedSourceId);
-        });
+        // Only jobs operating on this feed source need to be checked (rather than all active jobs on the server).
+        return JobUtils.getActiveJobsForFeedSource(this.id).stream().anyMatch(job ->
+            job instanceof FetchSingleFeedJob ||
+            job instanceof ProcessSingleFeedJob ||
+            job instanceof CreateFeedVersionFromSnapshotJob ||
+            job instanceof MergeFeedsJob
+        );
     }
 
     public <T extends FeedTransformation> boolean hasTransformationsOfType(FeedVersion target, Class<T> clazz) {
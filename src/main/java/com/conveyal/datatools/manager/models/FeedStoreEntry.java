@@ -0,0 +1,27 @@
+package com.conveyal.datatools.manager.models;
+
+/**
+ * Maps a key in a content-addressed {@link com.conveyal.datatools.manager.persistence.FeedStore} (e.g., a feed version
+ * ID or "[feedSourceId].zip" for a feed source's latest feed) to the {@link FeedBlob} holding its contents. Several
+ * entries may refer to the same blob, e.g., re-fetched identical feeds or the latest feed and the version it points to.
+ */
+public class FeedStoreEntry extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** Name of the feed store the entry belongs to (e.g., "gtfs"). */
+    public String store;
+    /** The key of the entry within the feed store. */
+    public String key;
+    /** The hash of the blob holding the entry's contents. */
+    public String blobHash;
+
+    /** No-arg constructor for de-serialization. */
+    public FeedStoreEntry() {}
+
+    public FeedStoreEntry(String id, String store, String key, String blobHash) {
+        this.id = id;
+        this.store = store;
+        this.key = key;
+        this.blobHash = blobHash;
+    }
+}
@@ -19,12 +19,14 @@ import com.conveyal.gtfs.loader.FeedLoadResult;
 import com.conveyal.gtfs.validator.MTCValidator;
 import com.conveyal.gtfs.validator.ValidationResult;
 import com.conveyal.gtfs.validator.model.Priority;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import org.bson.Document;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.mobilitydata.gtfsvalidator.runner.ApplicationType;
 import org.mobilitydata.gtfsvalidator.runner.ValidationRunner;
@@ -40,6 +42,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -58,6 +61,7 @@ import static com.conveyal.datatools.manager.DataManager.isExtensionEnabled;
 import static com.conveyal.datatools.manager.utils.StringUtils.getCleanName;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.include;
 import static com.mongodb.client.model.Updates.pull;
 
 /**
@@ -191,10 +195,12 @@ public class FeedVersion extends Model implements Serializable {
     }
 
     /**
-     * Store a new GTFS file from an input stream representing the GTFS zip file.
+     * Store a new GTFS file from an input stream representing the GTFS zip file. The file is hashed as it is written.
      */
     public File newGtfsFile(InputStream inputStream) throws IOException {
-        File file = feedStore.newFeed(id, inputStream, parentFeedSource());
+        DigestInputStream hashingInputStream = HashUtils.newHashingInputStream(inputStream);
+        File file = feedStore.newFeed(id, hashingInputStream, parentFeedSource());
+        hash = HashUtils.getHash(hashingInputStream);
         assignGtfsFileAttributes(file);
         LOG.info("New GTFS file saved: {} ({} bytes)", id, this.fileSize);
         return file;
@@ -211,8 +217,43 @@ public class FeedVersion extends Model implements Serializable {
         }
     }
 
-    /** The results of validating this feed */
-    public ValidationResult validationResult;
+    /**
+     * The results of validating this feed. Once persisted, only a compact copy (see {@link #compactValidationResult})
+     * is kept on the feed version document and the full result is stored in {@link FeedVersionValidationResults}.
+     */
+    public volatile ValidationResult validationResult;
+
+    /**
+     * Whether {@link #validationResult} holds a full result from {@link #validate} that has not yet been moved to the
+     * validation results collection.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private transient boolean validationResultNeedsStoring;
+
+    /**
+     * Whether this version's full validation results are stored in {@link FeedVersionValidationResults} rather than on
+     * the feed version document. This is false for versions stored before that collection existed until they have been
+     * migrated (see {@link com.conveyal.datatools.manager.jobs.MigrateValidationResultsJob}).
+     */
+    @JsonView(JsonViews.DataDump.class)
+    public boolean validationResultsSeparate;
+
+    /**
+     * Whether this instance has been persisted following the gtfs-lib validation. The MobilityData validation runs
+     * concurrently, and its result is only persisted once this is set (see {@link #persistMobilityDataResult}).
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private transient boolean validationPersisted;
+
+    /**
+     * Whether {@link #delete()} has been called on this instance, in which case a validation job still running on it
+     * must not persist it again.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private transient boolean deleted;
 
     /** The results of loading this feed into the GTFS database */
     public FeedLoadResult feedLoadResult;
@@ -265,7 +306,20 @@ public class FeedVersion extends Model implements Serializable {
      * */
     public Date processedByExternalPublisher;
 
-    public Document mobilityDataResult;
+    /**
+     * The MobilityData validator report. This is never stored on the feed version document, but is held here after
+     * {@link #validateMobility} until it is persisted to {@link FeedVersionValidationResults} (and is populated from
+     * there for responses that include the full validation results).
+     */
+    @BsonIgnore
+    public volatile Document mobilityDataResult;
+
+    /**
+     * Why the MobilityData validation of this instance failed, if it did. This is kept apart from
+     * {@link #validationResult}, which holds only the result of the gtfs-lib validation.
+     */
+    @BsonIgnore
+    public volatile String mobilityDataFailure;
 
     public String formattedTimestamp() {
         SimpleDateFormat format = new SimpleDateFormat(HUMAN_READABLE_TIMESTAMP_FORMAT);
@@ -309,8 +363,32 @@ public class FeedVersion extends Model implements Serializable {
             return;
         }
 
-        // STEP 2. Upload GTFS to S3 (storage on local machine is done when feed is fetched/uploaded)
-        if (DataManager.useS3) {
+        // STEP 2. Store GTFS by content (locally or on S3) or upload GTFS to S3 (storage on local machine is done when
+        // feed is fetched/uploaded)
+        if (feedStore.isContentAddressed()) {
+            // If this is not a new version, the file is already stored (and, if it was downloaded from S3, kept in the
+            // feed cache).
+            if (isNewVersion) {
+                try {
+                    // Zip transformations may have modified the file since it was hashed, in which case it must be
+                    // hashed again (the version's hash is left as is so that it still matches the fetched/uploaded
+                    // file).
+                    String fileHash = feedTransformResult == null ? hash : null;
+                    feedStore.commitFeed(id, gtfsFile, fileHash, parentFeedSource());
+                } catch (Exception e) {
+                    // The version must not be stored without its GTFS file. The working file is kept unless the blob
+                    // had already been stored from it.
+                    status.fail(String.format("Could not store GTFS file for version: %s", this.id), e);
+                    return;
+                }
+            }
+            try {
+                FeedSource fs = parentFeedSource();
+                if (DataManager.useS3 && fs.isPublic) fs.makePublic();
+            } catch (Exception e) {
+                LOG.error("Could not make version {} public", this.id, e);
+            }
+        } else if (DataManager.useS3) {
             try {
                 boolean fileUploaded = false;
                 if (isNewVersion) {
@@ -319,12 +397,13 @@ public class FeedVersion extends Model implements Serializable {
                 }
                 if (fileUploaded || !isNewVersion) {
                     // Note: If feed is not a new version, it is presumed to already exist on S3, so uploading is not required.
-                    // Delete local copy of feed version after successful s3 upload
-                    boolean fileDeleted = gtfsFile.delete();
-                    if (fileDeleted) {
-                        LOG.info("Local GTFS file deleted after s3 upload");
-                    } else {
-                        LOG.error("Local GTFS file failed to delete. Server may encounter storage capacity issues!");
+                    // Move local copy of feed version into the feed cache after successful s3 upload, so that later
+                    // jobs (e.g., merging or deploying the version) need not download it again.
+                    try {
+                        feedStore.cacheLocalCopy(id, gtfsFile);
+                        LOG.info("Local GTFS file moved to feed cache after s3 upload");
+                    } catch (IOException e) {
+                        LOG.error("Local GTFS file failed to move to feed cache. Server may encounter storage capacity issues!", e);
                     }
                 } else {
                     LOG.error("Local GTFS file not uploaded not successfully to s3!");
@@ -359,6 +438,7 @@ public class FeedVersion extends Model implements Serializable {
         if (status == null) status = new MonitorableJob.Status();
 
         // VALIDATE GTFS feed.
+        ValidationResult validationResult;
         try {
             LOG.info("Beginning validation...");
 
@@ -407,6 +487,11 @@ public class FeedVersion extends Model implements Serializable {
             validationResult = new ValidationResult();
             validationResult.fatalException = "failure!";
         }
+        // The MobilityData validation runs concurrently on this instance, so hand the result over under its lock.
+        synchronized (this) {
+            this.validationResult = validationResult;
+            validationResultNeedsStoring = true;
+        }
     }
 
     public void validateMobility(MonitorableJob.Status status) {
@@ -448,12 +533,16 @@ public class FeedVersion extends Model implements Serializable {
             }
 
             // This will persist the document to Mongo.
-            this.mobilityDataResult = Document.parse(json);
+            Document mobilityDataResult = Document.parse(json);
+            synchronized (this) {
+                this.mobilityDataResult = mobilityDataResult;
+            }
         } catch (Exception e) {
             status.fail(String.format("Unable to validate feed %s", this.id), e);
-            // FIXME create validation result with new constructor?
-            validationResult = new ValidationResult();
-            validationResult.fatalException = "failure!";
+            // The gtfs-lib validation result (which may be produced concurrently) is left untouched.
+            synchronized (this) {
+                mobilityDataFailure = e.toString();
+            }
         }
     }
 
@@ -564,6 +653,10 @@ public class FeedVersion extends Model implements Serializable {
      * 4. Finally delete the version object from the database.
      */
     public void delete() {
+        synchronized (this) {
+            // Prevent a concurrently running validation job from re-creating the version once it has been deleted.
+            deleted = true;
+        }
         try {
             // reset lastModified if feed is latest version
             LOG.info("Deleting feed version {}", this.id);
@@ -576,7 +669,11 @@ public class FeedVersion extends Model implements Serializable {
                 // Even if there are previous feed versions, we set to null to allow re-fetching the version that was just deleted
                 // TODO instead, set it to the fetch time of the previous feed version
                 fs.lastFetched = null;
-                Persistence.feedSources.replace(fs.id, fs);
+                fs.lastFetchedETag = null;
+                Persistence.feedSources.update(
+                    fs.id,
+                    new Document("lastFetched", null).append("lastFetchedETag", null)
+                );
             }
             ensurePublishedVersionIdIsUnset(fs);
 
@@ -587,10 +684,17 @@ public class FeedVersion extends Model implements Serializable {
             // Remove this FeedVersion from all Deployments associated with this FeedVersion's FeedSource's Project
             // TODO TEST THOROUGHLY THAT THIS UPDATE EXPRESSION IS CORRECT
             // Although outright deleting the feedVersion from deployments could be surprising and shouldn't be done anyway.
-            Persistence.deployments.getMongoCollection().updateMany(eq("projectId", this.parentFeedSource().projectId),
+            Persistence.deployments.updateMany(eq("projectId", this.parentFeedSource().projectId),
                     pull("feedVersionIds", this.id));
             Persistence.feedVersions.removeById(this.id);
+            Persistence.feedVersionValidationResults.removeById(this.id);
+            // Renumbering also refreshes the feed source's latest version summary.
             fs.renumberFeedVersions();
+            if (latest != null && latest.id.equals(this.id)) {
+                // Point the latest feed (if stored by content) at the new latest version instead of the deleted one.
+                FeedVersion newLatest = fs.retrieveLatest();
+                feedStore.setLatest(fs.id, newLatest != null ? newLatest.id : null);
+            }
 
             // recalculate feed expiration notifications in case the latest version has changed
             Scheduler.scheduleExpirationNotifications(fs);
@@ -628,6 +732,7 @@ public class FeedVersion extends Model implements Serializable {
             fileTimestamp = newGtfsFile.lastModified();
         }
         fileSize = newGtfsFile.length();
+        // The hash is usually computed while the file is written. If not, read the file to compute it.
         if (hash == null) hash = HashUtils.hashFile(newGtfsFile);
     }
 
@@ -641,25 +746,122 @@ public class FeedVersion extends Model implements Serializable {
     /**
      * Determines whether this feed version matches another one specified, i.e.,
      * whether the otherVersion doesn't have a different hash, thus has not changed, compared to this one.
+     *
+     * If the other version was created before full-content hashes were introduced, its stored hash is compared with
+     * the legacy (sampled) hash of this version's GTFS file instead.
      * @param otherVersion The version to compare the hash to.
      * @return true if the otherVersion hash is the same, false if the hashes differ or the otherVersion is null.
      */
     public boolean isSameAs(FeedVersion otherVersion) {
-        return otherVersion != null && this.hash.equals(otherVersion.hash);
+        if (otherVersion == null || otherVersion.hash == null) return false;
+        if (HashUtils.isLegacyHash(otherVersion.hash) && !HashUtils.isLegacyHash(this.hash)) {
+            File gtfsFile = retrieveGtfsFile();
+            return gtfsFile != null && otherVersion.hash.equals(HashUtils.legacyHashFile(gtfsFile));
+        }
+        return otherVersion.hash.equals(this.hash);
     }
 
     /**
      * {@link ValidateFeedJob} and {@link ValidateMobilityDataFeedJob} both require to save a feed version after their
      * subsequent validation checks have completed. Either could finish first, therefore this method makes sure that
-     * only one instance is saved (the last to finish updates).
+     * only one instance is saved (the last to finish updates). This is synchronized so that the two jobs cannot both
+     * find that the version does not exist and attempt to create it.
      */
-    public void persistFeedVersionAfterValidation(boolean isNewVersion) {
-        if (isNewVersion && Persistence.feedVersions.getById(id) == null) {
+    public synchronized void persistFeedVersionAfterValidation(boolean isNewVersion) {
+        if (deleted) {
+            LOG.warn("Feed version {} was deleted during validation and will not be stored.", id);
+            return;
+        }
+        // A new version is only created by the first validation to finish. After that (or for an existing version),
+        // the version is only replaced if it is still stored, so that a version deleted while validation was running
+        // (e.g., through another instance loaded by the API) is not re-created.
+        boolean create = isNewVersion && !validationPersisted && Persistence.feedVersions.getById(id) == null;
+        validationPersisted = true;
+        storeValidationResults();
+        if (create) {
             int count = parentFeedSource().feedVersionCount();
             version = count + 1;
             Persistence.feedVersions.create(this);
-        } else {
-            Persistence.feedVersions.replace(id, this);
+        } else if (!Persistence.feedVersions.replace(id, this)) {
+            LOG.warn("Feed version {} was deleted during validation and will not be stored.", id);
+            deleted = true;
+            Persistence.feedVersionValidationResults.removeById(id);
+            return;
         }
+        FeedSource.updateLatestVersionSummary(this);
+    }
+
+    /**
+     * Persist this version following the MobilityData validation. If the gtfs-lib validation (which runs concurrently)
+     * has not yet been persisted, nothing is written here: the MobilityData report is held on this instance and stored
+     * along with the gtfs-lib result, so that the version is never stored without its gtfs-lib validation.
+     */
+    public synchronized void persistMobilityDataResult(boolean isNewVersion) {
+        if (validationPersisted) persistFeedVersionAfterValidation(isNewVersion);
     }
+
+    /**
+     * Move any full validation results held by this instance into the validation results collection, leaving a compact
+     * copy of the gtfs-lib result in {@link #validationResult}. The two validation jobs may each call this (via
+     * {@link #persistFeedVersionAfterValidation}) on the same instance, so only the results each produced are written.
+     */
+    private synchronized void storeValidationResults() {
+        Document results = new Document();
+        if (validationResultNeedsStoring && validationResult != null) {
+            results.put("validationResult", validationResult);
+        }
+        if (mobilityDataResult != null) {
+            results.put("mobilityDataResult", mobilityDataResult);
+        }
+        if (results.isEmpty()) return;
+        Persistence.feedVersionValidationResults.createOrUpdate(new FeedVersionValidationResults(id), results);
+        if (validationResultNeedsStoring) {
+            validationResult = compactValidationResult(validationResult);
+            validationResultNeedsStoring = false;
+            validationResultsSeparate = true;
+        }
+        // The report is available via retrieveValidationResults.
+        mobilityDataResult = null;
+    }
+
+    /**
+     * Load the full validation results for this version. For versions stored before the results were moved to their own
+     * collection, these are read from the feed version document.
+     */
+    public FeedVersionValidationResults retrieveValidationResults() {
+        FeedVersionValidationResults results = Persistence.feedVersionValidationResults.getById(id);
+        if (results == null) {
+            results = new FeedVersionValidationResults(id);
+            results.validationResult = validationResult;
+            Document legacyDocument = Persistence.feedVersions.getMongoCollection()
+                .withDocumentClass(Document.class)
+                .find(eq(id))
+                .projection(include("mobilityDataResult"))
+                .first();
+            if (legacyDocument != null) {
+                results.mobilityDataResult = legacyDocument.get("mobilityDataResult", Document.class);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Construct the compact copy of a gtfs-lib validation result that is kept on the feed version document. This keeps
+     * just the fields needed for listings, summaries and publishing/deployment checks ({@link #COMPACT_VALIDATION_FIELDS}).
+     */
+    public static ValidationResult compactValidationResult(ValidationResult fullResult) {
+        if (fullResult == null) return null;
+        ValidationResult compactResult = new ValidationResult();
+        compactResult.fatalException = fullResult.fatalException;
+        compactResult.errorCount = fullResult.errorCount;
+        compactResult.firstCalendarDate = fullResult.firstCalendarDate;
+        compactResult.lastCalendarDate = fullResult.lastCalendarDate;
+        compactResult.fullBounds = fullResult.fullBounds;
+        return compactResult;
+    }
+
+    /** Fields of the gtfs-lib validation result retained by {@link #compactValidationResult}. */
+    public static final String[] COMPACT_VALIDATION_FIELDS = {
+        "fatalException", "errorCount", "firstCalendarDate", "lastCalendarDate", "fullBounds"
+    };
 }
@@ -0,0 +1,27 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.gtfs.validator.ValidationResult;
+import org.bson.Document;
+
+/**
+ * The full validation results for a {@link FeedVersion} (keyed by the feed version's ID). These can be very large (in
+ * particular the MobilityData report), so they are stored in their own collection rather than on the feed version
+ * document, which only carries a compact copy of the gtfs-lib validation result (see
+ * {@link FeedVersion#compactValidationResult}). Use {@link FeedVersion#retrieveValidationResults()} to load them.
+ */
+public class FeedVersionValidationResults extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** The full gtfs-lib validation result, including per-day service statistics. */
+    public ValidationResult validationResult;
+
+    /** The MobilityData validator report (report.json). */
+    public Document mobilityDataResult;
+
+    /** No-arg constructor for de-/serialization. */
+    public FeedVersionValidationResults() {}
+
+    public FeedVersionValidationResults(String feedVersionId) {
+        this.id = feedVersionId;
+    }
+}
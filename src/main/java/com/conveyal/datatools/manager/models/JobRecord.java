@@ -0,0 +1,78 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ResumableJob;
+import com.conveyal.datatools.manager.utils.JobExecutor;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A durable copy of a queued {@link ResumableJob}, stored so that the job can be picked up again after the server
+ * that queued it restarts (see {@link com.conveyal.datatools.manager.utils.JobQueue}). The record holds everything
+ * needed to recreate the job along with its state, its latest status and the lease held by the worker running it.
+ */
+public class JobRecord extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** The states that a job record moves through. */
+    public enum State {
+        /** Waiting to be run (possibly held by a worker that has not started it yet). */
+        QUEUED,
+        /** Being run by the worker holding the lease. */
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /** ID of the job that is (or was most recently) running this record. This changes each time the job is resumed. */
+    public String jobId;
+    public MonitorableJob.JobType type;
+    public String name;
+    /** Parameters from {@link ResumableJob#retrieveParameters()} used to recreate the job. */
+    public Map<String, String> parameters = new HashMap<>();
+    public JobExecutor.Pool pool;
+    public JobExecutor.Priority priority;
+    public State state;
+    /** ID of the worker that holds the lease on this record (null if not held). */
+    public String leaseOwner;
+    /** The lease is considered abandoned (e.g., the worker died) after this time and the record can be claimed again. */
+    public Date leaseExpiresAt;
+    /** Number of times the job has been started. */
+    public int attempts;
+    /** ID of the worker that most recently started the job. */
+    public String workerId;
+    public Date startedAt;
+    public Date finishedAt;
+    /** Latest status of the job, copied from the worker running it so that it can be reported by any server. */
+    public MonitorableJob.Status status;
+    /** Whether the owner has been sent the job's final status (after which it is no longer reported). */
+    public boolean seenByOwner;
+
+    /** No-arg constructor for de-serialization. */
+    public JobRecord() {}
+
+    public JobRecord(MonitorableJob job, JobExecutor.Pool pool, JobExecutor.Priority priority) {
+        // Use the ID of the first job that runs this record so that the record can be found by the ID returned to
+        // the client.
+        this.id = job.jobId;
+        this.jobId = job.jobId;
+        this.type = job.type;
+        this.name = job.name;
+        this.parameters = ((ResumableJob) job).retrieveParameters();
+        this.pool = pool;
+        this.priority = priority;
+        this.state = State.QUEUED;
+        this.userId = job.retrieveUserId();
+        this.userEmail = job.retrieveEmail();
+        this.status = job.status;
+    }
+
+    /** Match the owner property of {@link MonitorableJob} so that clients can display records in the same way as jobs. */
+    @JsonProperty("owner")
+    public String retrieveOwner() {
+        return userId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.conveyal.datatools.manager.models;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Summary of the latest {@link FeedVersion} for a feed source, embedded in the {@link FeedSource} document so that
+ * listings and scheduled jobs do not need to run a sorted feed version query to find it. This is maintained by
+ * {@link FeedSource#refreshLatestVersionSummary()} and {@link FeedSource#updateLatestVersionSummary(FeedVersion)}
+ * and can be rebuilt for all feed sources with {@link com.conveyal.datatools.manager.jobs.RepairLatestVersionSummariesJob}.
+ */
+public class LatestVersionSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public String feedVersionId;
+    public int version;
+    public Date updated;
+    /** Validation summary for the version, which includes the service date range (start and end dates). */
+    public FeedValidationResultSummary validationSummary;
+
+    /** No-arg constructor for de-/serialization. */
+    public LatestVersionSummary() {}
+
+    public LatestVersionSummary(FeedVersion feedVersion) {
+        this.feedVersionId = feedVersion.id;
+        this.version = feedVersion.version;
+        this.updated = feedVersion.updated;
+        this.validationSummary = new FeedValidationResultSummary(feedVersion);
+    }
+}
@@ -2,6 +2,7 @@ package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.auth.Auth0Connection;
 import com.conveyal.datatools.manager.auth.Auth0Users;
+import com.conveyal.datatools.manager.persistence.Page;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -15,11 +16,16 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.MappedSuperclass;
 
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.ne;
+
 /**
  * The base class for all of the models used by GTFS Data Manager.
  * @author mattwigway
@@ -83,6 +89,18 @@ public abstract class Model implements Serializable {
         // even if there were no notes, return an empty list
         return ret;
     }
+
+    /**
+     * Get a page of the notes for this object, most recent first.
+     * @param cursor cursor for the page (see {@link Page#nextCursor}) or null for the first page
+     */
+    public Page<Note> retrieveNotes(boolean includeAdminNotes, String cursor, int limit) {
+        if (noteIds == null || noteIds.isEmpty()) return new Page<>(new ArrayList<>(), null);
+        Bson filter = includeAdminNotes
+            ? in("_id", noteIds)
+            : and(in("_id", noteIds), ne("adminOnly", true));
+        return Persistence.notes.getPage(filter, "date", note -> note.date, true, cursor, limit);
+    }
     /**
      * Get the user who owns this object.
      * @return the String user_id
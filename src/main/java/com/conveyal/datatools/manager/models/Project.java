@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.jobs.AutoDeployType;
+import com.conveyal.datatools.manager.persistence.Page;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -120,7 +121,6 @@ public class Project extends Model {
      * Get all the feed sources for this project.
      */
     public Collection<FeedSource> retrieveProjectFeedSources() {
-        // TODO: use index, but not important for now because we generally only have one FeedCollection
         return Persistence.feedSources.getFiltered(eq("projectId", this.id));
     }
 
@@ -157,6 +157,21 @@ public class Project extends Model {
         return Persistence.deployments.getFiltered(eq("projectId", this.id));
     }
 
+    /**
+     * Get a page of the deployments for this project, most recently created first.
+     * @param cursor cursor for the page (see {@link Page#nextCursor}) or null for the first page
+     */
+    public Page<Deployment> retrieveDeployments(String cursor, int limit) {
+        return Persistence.deployments.getPage(
+            eq("projectId", this.id),
+            "dateCreated",
+            deployment -> deployment.dateCreated,
+            true,
+            cursor,
+            limit
+        );
+    }
+
     /**
      * Get all deployment summaries for this project.
      */
@@ -0,0 +1,37 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage for the blobs of a content-addressed {@link FeedStore}, keyed by the hash of their contents. Blobs are never
+ * modified once stored; reference counting (and deciding when to delete a blob) is handled by the feed store.
+ */
+public interface BlobStore {
+    /**
+     * @return whether a blob with the given hash is stored.
+     */
+    boolean exists(String hash) throws IOException;
+
+    /**
+     * Store the file's contents as the blob with the given hash. A store on the local file system may move the file
+     * into the store; otherwise, the file is left in place for the caller to delete (or keep).
+     */
+    void put(String hash, File file) throws IOException;
+
+    /**
+     * @return the local file holding the blob, or null if blobs are not stored on the local file system (in which case
+     * use {@link #getInputStream}).
+     */
+    File getLocalFile(String hash);
+
+    InputStream getInputStream(String hash) throws IOException;
+
+    void delete(String hash) throws IOException;
+
+    /**
+     * @return a description of where the blob is stored, for logging.
+     */
+    String getUri(String hash);
+}
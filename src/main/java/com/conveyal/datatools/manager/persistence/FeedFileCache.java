@@ -0,0 +1,386 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local disk cache of remotely stored feed files (e.g., feed versions on S3), so that repeated operations on the
+ * same feed (loading, merging, validation, deployment) do not download it each time. The cache holds at most a
+ * configured number of bytes and evicts the least recently used files beyond that.
+ *
+ * Files are pinned (i.e., not evicted) while the job or HTTP request that retrieved them is in progress:
+ * {@link com.conveyal.datatools.common.status.MonitorableJob#run} and a filter around every request (see
+ * {@link com.conveyal.datatools.manager.DataManager}) open a pin scope for the thread they run on (see
+ * {@link #openPinScope}), and every file retrieved on that thread is pinned until the outermost scope is closed. Files
+ * retrieved on other threads are not pinned and may be evicted at any time. If every file is pinned, the cache may
+ * temporarily exceed its budget.
+ *
+ * Files are stored under the cache directory at their key (which may contain "/" to group files), so that file names
+ * match those of the original feeds. Files left in the directory by a previous run are counted and reused.
+ */
+public class FeedFileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(FeedFileCache.class);
+    private static final String PARTIAL_FILE_SUFFIX = ".partial";
+
+    /** Pins held by the jobs or request running on each thread, released when the outermost scope is closed. */
+    private static final ThreadLocal<PinScope> pinScope = new ThreadLocal<>();
+
+    private final File directory;
+    private final long maxBytes;
+    /** Cached files in least to most recently used order. Guarded by this. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Downloads in progress by key, so that concurrent requests for the same file wait for a single download. */
+    private final Map<String, CompletableFuture<File>> downloads = new HashMap<>();
+    private long sizeBytes;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+
+    /**
+     * Opens a stream with the contents of a file to add to the cache.
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    public FeedFileCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        directory.mkdirs();
+        indexExistingFiles();
+    }
+
+    /**
+     * Get the cached file for the key, downloading it from the source if it is not cached.
+     */
+    public File get(String key, Source source) throws IOException {
+        CompletableFuture<File> download;
+        boolean downloadHere = false;
+        synchronized (this) {
+            File cached = getCached(key);
+            if (cached != null) {
+                hitCount.increment();
+                return cached;
+            }
+            download = downloads.get(key);
+            if (download == null) {
+                missCount.increment();
+                download = new CompletableFuture<>();
+                downloads.put(key, download);
+                downloadHere = true;
+            }
+        }
+        if (!downloadHere) {
+            // Another thread is downloading the file. Wait for it and then look the file up again (pinning it).
+            try {
+                download.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for download of " + key, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not download " + key, e.getCause());
+            }
+            return get(key, source);
+        }
+        File file = getFile(key);
+        File partialFile = null;
+        try {
+            partialFile = createPartialFile(file);
+            try (InputStream inputStream = source.open(); OutputStream outputStream = new FileOutputStream(partialFile)) {
+                ByteStreams.copy(inputStream, outputStream);
+            }
+            synchronized (this) {
+                replace(key, partialFile, file);
+                downloads.remove(key);
+            }
+            download.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            if (partialFile != null) Files.deleteIfExists(partialFile.toPath());
+            synchronized (this) {
+                downloads.remove(key);
+            }
+            download.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Add a local file (e.g., a feed that has just been uploaded) to the cache under the key. The file is moved into
+     * the cache directory.
+     *
+     * @return the cached file
+     */
+    public File put(String key, File file) throws IOException {
+        File cachedFile = getFile(key);
+        synchronized (this) {
+            // The file may already be the cached file (e.g., if it was retrieved from the cache).
+            if (cachedFile.equals(file) && getCached(key) != null) return cachedFile;
+        }
+        // Stage the file next to the cached file (which may be on another file system), under a name unique to this
+        // call so that concurrent puts or downloads of the same key do not overwrite each other's partial files.
+        File partialFile = createPartialFile(cachedFile);
+        try {
+            move(file, partialFile);
+            synchronized (this) {
+                replace(key, partialFile, cachedFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partialFile.toPath());
+            throw e;
+        }
+        return cachedFile;
+    }
+
+    /**
+     * Remove the file for the key from the cache (e.g., because the feed has been deleted), even if it is pinned.
+     */
+    public synchronized void invalidate(String key) {
+        remove(key);
+    }
+
+    /**
+     * Start pinning the files retrieved on the current thread. Scopes nest: pins are held until the outermost scope
+     * is closed with {@link #closePinScope}.
+     */
+    public static void openPinScope() {
+        PinScope scope = pinScope.get();
+        if (scope == null) {
+            scope = new PinScope();
+            pinScope.set(scope);
+        }
+        scope.depth++;
+    }
+
+    /**
+     * Close a scope opened with {@link #openPinScope}, releasing the current thread's pins if it is the outermost one.
+     */
+    public static void closePinScope() {
+        PinScope scope = pinScope.get();
+        if (scope == null) return;
+        if (--scope.depth > 0) return;
+        pinScope.remove();
+        for (Pin pin : scope.pins) pin.cache.unpin(pin.key);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized int getPinnedCount() {
+        return (int) entries.values().stream().filter(entry -> entry.pins > 0).count();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes.sum();
+    }
+
+    /**
+     * @return the cached file for the key (pinning it), or null if it is not cached. Must be called while holding
+     * the lock on this.
+     */
+    private File getCached(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (!entry.file.exists()) {
+            // The file has been deleted from outside the cache.
+            remove(key);
+            return null;
+        }
+        pin(key, entry);
+        return entry.file;
+    }
+
+    /**
+     * Move the partial file into place as the cached file for the key, replacing any existing entry (whose file has the
+     * same contents and whose pins are kept), and add it as the most recently used entry (pinning it). Then evict files
+     * beyond the budget. Must be called while holding the lock on this.
+     */
+    private void replace(String key, File partialFile, File file) throws IOException {
+        Entry existing = entries.remove(key);
+        if (existing != null) sizeBytes -= existing.size;
+        move(partialFile, file);
+        Entry entry = new Entry(file, file.length());
+        if (existing != null) entry.pins = existing.pins;
+        entries.put(key, entry);
+        sizeBytes += entry.size;
+        pin(key, entry);
+        evict();
+    }
+
+    /**
+     * Must be called while holding the lock on this.
+     */
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return;
+        sizeBytes -= entry.size;
+        if (!entry.file.delete() && entry.file.exists()) {
+            LOG.warn("Could not delete cached file {}", entry.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Delete the least recently used files that are not pinned until the cache is within its budget. Must be called
+     * while holding the lock on this.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if (entry.pins > 0) continue;
+            iterator.remove();
+            sizeBytes -= entry.size;
+            evictionCount.increment();
+            evictedBytes.add(entry.size);
+            if (!entry.file.delete() && entry.file.exists()) {
+                LOG.warn("Could not delete evicted file {}", entry.file.getAbsolutePath());
+            } else {
+                LOG.info("Evicted {} ({} bytes) from feed file cache", next.getKey(), entry.size);
+            }
+        }
+        if (sizeBytes > maxBytes) {
+            LOG.warn("Feed file cache holds {} bytes (budget {} bytes) because the files in use are pinned.", sizeBytes, maxBytes);
+        }
+    }
+
+    /**
+     * Pin the entry for the current thread's pin scope, if it has one. Must be called while holding the lock on this.
+     */
+    private void pin(String key, Entry entry) {
+        PinScope scope = pinScope.get();
+        if (scope == null) return;
+        entry.pins++;
+        scope.pins.add(new Pin(this, key));
+    }
+
+    private synchronized void unpin(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.pins > 0) entry.pins--;
+        evict();
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key);
+    }
+
+    /**
+     * Create an empty file with a unique name next to the cached file, to write to before moving it into place.
+     */
+    private static File createPartialFile(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        return File.createTempFile(file.getName() + ".", PARTIAL_FILE_SUFFIX, file.getParentFile());
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Add files left in the cache directory by a previous run (least recently modified first) and delete incomplete
+     * downloads.
+     */
+    private synchronized void indexExistingFiles() {
+        List<File> files = new ArrayList<>();
+        collectFiles(directory, files);
+        files.sort(Comparator.comparingLong(File::lastModified));
+        String directoryPath = directory.getAbsolutePath() + File.separator;
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_FILE_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            String key = file.getAbsolutePath().substring(directoryPath.length()).replace(File.separatorChar, '/');
+            Entry entry = new Entry(file, file.length());
+            entries.put(key, entry);
+            sizeBytes += entry.size;
+        }
+        if (!entries.isEmpty()) LOG.info("Found {} cached feed files ({} bytes)", entries.size(), sizeBytes);
+        evict();
+    }
+
+    private static void collectFiles(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) collectFiles(child, files);
+            else files.add(child);
+        }
+    }
+
+    private static class Entry {
+        private final File file;
+        private final long size;
+        private int pins;
+
+        private Entry(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    private static class Pin {
+        private final FeedFileCache cache;
+        private final String key;
+
+        private Pin(FeedFileCache cache, String key) {
+            this.cache = cache;
+            this.key = key;
+        }
+    }
+
+    private static class PinScope {
+        private int depth;
+        private final List<Pin> pins = new ArrayList<>();
+    }
+}
@@ -12,11 +12,16 @@ import com.amazonaws.services.s3.transfer.Upload;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.S3Utils;
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.models.FeedBlob;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedStoreEntry;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.google.common.io.ByteStreams;
+import com.mongodb.client.model.ReturnDocument;
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import org.apache.commons.io.FileUtils;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +29,36 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.setOnInsert;
+import static com.mongodb.client.model.Updates.unset;
 
 /**
  * Store a feed on the file system or S3.
+ *
+ * If content-addressed storage is enabled (application.data.content_addressed_storage), feed versions are stored by
+ * content once they have been loaded (see {@link #commitFeed}): each distinct file is stored once as a blob keyed by its
+ * hash (see {@link HashUtils}), locally or on S3, and Mongo holds the mapping from each feed version ID (and from
+ * "[feedSourceId].zip" for a feed source's latest feed) to its blob, so re-fetched identical feeds and the latest feed
+ * do not duplicate any bytes. Blobs are reference counted and deleted once no entry refers to them. Files that have
+ * not been committed (e.g., a new version that has not yet been loaded or a merged project feed) are kept in the feed
+ * store directory as before, and feeds stored before content-addressed storage was enabled are still found in their
+ * original location.
+ *
+ * When using S3, feeds downloaded from S3 (and feeds uploaded to S3 from this server) are kept in a shared local
+ * {@link FeedFileCache} with a bounded size (FEED_CACHE_MAX_MB), so that loading, merging, validating and deploying
+ * the same feed does not download it each time.
  * @author mattwigway
  *
  */
@@ -36,7 +68,22 @@ public class FeedStore {
 
     /** Local file storage path if working offline */
     public static final File basePath = new File(DataManager.getConfigPropertyAsText("application.data.gtfs"));
+    private static final boolean CONTENT_ADDRESSED_STORAGE =
+        "true".equals(DataManager.getConfigPropertyAsText("application.data.content_addressed_storage", "false"));
+    /**
+     * How long a process may take to delete an unreferenced blob before another process may take over the deletion
+     * (e.g., because the first one died). See {@link #releaseReference}.
+     */
+    private static final long BLOB_DELETE_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long BLOB_DELETE_POLL_MILLIS = 500;
+    /** Cache of feeds downloaded from S3, shared by all feed stores. Created on first use. */
+    private static FeedFileCache cache;
+
     private final File path;
+    /** Name of the store, which namespaces its entries and blobs in Mongo. */
+    private final String name;
+    /** Storage for blobs if this store is content-addressed, otherwise null. */
+    private final BlobStore blobStore;
 
     public FeedStore() {
         this(null);
@@ -47,11 +94,56 @@ public class FeedStore {
      * @param subdir
      */
     public FeedStore(String subdir) {
+        this(subdir, CONTENT_ADDRESSED_STORAGE ? createBlobStore(subdir) : null);
+    }
 
+    /**
+     * Construct a feed store in a subdirectory that stores feeds by content in the given blob store (or, if the blob
+     * store is null, by ID).
+     */
+    FeedStore(String subdir, BlobStore blobStore) {
         // even with s3 storage, we keep a local copy, so we'll still set path.
+        path = getPath(getPathString(subdir));
+        name = subdir != null ? subdir : "gtfs";
+        this.blobStore = blobStore;
+    }
+
+    private static String getPathString(String subdir) {
         String pathString = basePath.getAbsolutePath();
         if (subdir != null) pathString += File.separator + subdir;
-        path = getPath(pathString);
+        return pathString;
+    }
+
+    private static BlobStore createBlobStore(String subdir) {
+        if (DataManager.useS3) {
+            String prefix = S3Utils.DEFAULT_BUCKET_GTFS_FOLDER + (subdir != null ? subdir + "/" : "") + "blobs/";
+            return new S3BlobStore(S3Utils.DEFAULT_BUCKET, prefix);
+        }
+        return new LocalBlobStore(new File(getPathString(subdir), "blobs"));
+    }
+
+    /**
+     * @return whether feeds are stored by content (see {@link FeedStore}).
+     */
+    public boolean isContentAddressed() {
+        return blobStore != null;
+    }
+
+    /**
+     * @return the cache of feeds downloaded from S3, or null if not using S3 storage.
+     */
+    public static synchronized FeedFileCache getCache() {
+        if (!DataManager.useS3) return null;
+        if (cache == null) {
+            File directory = new File(DataManager.getConfigPropertyAsText(
+                "FEED_CACHE_DIR",
+                new File(System.getProperty("java.io.tmpdir"), "datatools-feed-cache").getAbsolutePath()
+            ));
+            long maxBytes = Long.parseLong(DataManager.getConfigPropertyAsText("FEED_CACHE_MAX_MB", "10240")) * 1024 * 1024;
+            LOG.info("Caching S3 feeds in {} (up to {} MB)", directory.getAbsolutePath(), maxBytes / 1024 / 1024);
+            cache = new FeedFileCache(directory, maxBytes);
+        }
+        return cache;
     }
 
     private static File getPath (String pathString) {
@@ -64,9 +156,18 @@ public class FeedStore {
     }
 
     public void deleteFeed (String id) throws CheckedAWSException {
-        // If the application is using s3 storage, delete the remote copy.
+        if (blobStore != null) {
+            try {
+                removeEntry(id);
+            } catch (IOException e) {
+                LOG.warn("Could not delete blob for feed {}. This may contribute to storage space shortages.", id, e);
+            }
+        }
+        // If the application is using s3 storage, delete the remote copy (for feeds that are not stored by content, or
+        // were stored before content-addressed storage was enabled).
         if (DataManager.useS3){
             S3Utils.getDefaultS3Client().deleteObject(S3Utils.DEFAULT_BUCKET, S3Utils.makeGtfsFolderObjectKey(id));
+            getCache().invalidate(getCacheKey(id));
         }
         // Always delete local copy (whether storing exclusively on local disk or using s3).
         File feed = getLocalFeed(id);
@@ -90,26 +191,28 @@ public class FeedStore {
         // Whether storing locally or on s3, first try returning the local copy if it exists.
         File feed = getLocalFeed(id);
         if (feed != null) return feed;
+        if (blobStore != null) {
+            FeedStoreEntry entry = Persistence.feedStoreEntries.getById(getEntryId(id));
+            if (entry != null) return retrieveBlob(id, entry.blobHash);
+        }
         // s3 storage
         if (DataManager.useS3) {
             String key = S3Utils.makeGtfsFolderObjectKey(id);
             String uri = S3Utils.getDefaultBucketUriForKey(key);
-            LOG.info("Downloading feed from {}", uri);
-            InputStream objectData;
             try {
-                S3Object object = S3Utils.getDefaultS3Client().getObject(
-                    new GetObjectRequest(S3Utils.DEFAULT_BUCKET, key));
-                objectData = object.getObjectContent();
-            } catch (AmazonServiceException | CheckedAWSException e) {
-                LOG.error("Error downloading " + uri, e);
-                return null;
-            }
-
-            try {
-                return createTempFile(id, objectData);
+                return getCache().get(getCacheKey(id), () -> {
+                    LOG.info("Downloading feed from {}", uri);
+                    try {
+                        S3Object object = S3Utils.getDefaultS3Client().getObject(
+                            new GetObjectRequest(S3Utils.DEFAULT_BUCKET, key));
+                        return object.getObjectContent();
+                    } catch (AmazonServiceException | CheckedAWSException e) {
+                        throw new IOException(e);
+                    }
+                });
             } catch (IOException e) {
                 // TODO: Log to bugsnag?
-                LOG.error("Error creating temp file", e);
+                LOG.error("Error downloading " + uri, e);
             }
         }
         return null;
@@ -139,9 +242,12 @@ public class FeedStore {
         // NOTE: depending on the feed store, there may not be a feedSource provided (e.g., gtfsplus)
         File file = new File(path, id);
         LOG.info("Writing file to {}", file.getAbsolutePath());
-        ByteStreams.copy(inputStream, new FileOutputStream(file));
-        if (feedSource != null && !DataManager.useS3) {
-            // Store latest as feed-source-id.zip if feedSource provided and if not using s3
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            ByteStreams.copy(inputStream, outputStream);
+        }
+        if (feedSource != null && !DataManager.useS3 && blobStore == null) {
+            // Store latest as feed-source-id.zip if feedSource provided and if not using s3 (with content-addressed
+            // storage, the latest feed is instead pointed at the version when it is committed)
             copyVersionToLatest(file, feedSource);
         }
         return file;
@@ -157,15 +263,232 @@ public class FeedStore {
         FileUtils.copyFile(version, latest, true);
     }
 
-    protected File createTempFile (String name, InputStream in) throws IOException {
-        // Create temp file in such a way that filename is preserved (no tmp suffix added).
-        final File tempFile = new File(new File(System.getProperty("java.io.tmpdir")), name);
-        LOG.info("Storing temp GTFS file at {}", tempFile.getAbsolutePath());
-        // FIXME: Figure out how to manage temp files created here. Currently, we just call deleteOnExit, but
-        //  this will only delete the file once the java process stops.
-        tempFile.deleteOnExit();
-        ByteStreams.copy(in, new FileOutputStream(tempFile));
-        return tempFile;
+    /**
+     * Content-addressed storage only: store the file for the given ID (e.g., a new feed version's GTFS file once it has
+     * been loaded) as a blob and, if a feed source is provided, point the feed source's latest feed at it. The file is
+     * consumed: it is moved into the blob store, or uploaded and moved into the feed cache (or, if an identical blob is
+     * already stored, discarded).
+     *
+     * @param hash the hash of the file (see {@link HashUtils}), or null if it is not known (e.g., the file has been
+     *             modified since it was written), in which case the file is read to compute it
+     */
+    public void commitFeed(String id, File file, String hash, FeedSource feedSource) throws IOException {
+        if (blobStore == null) throw new IllegalStateException("Feed store is not content-addressed.");
+        if (hash == null || HashUtils.isLegacyHash(hash)) hash = HashUtils.hashFile(file);
+        if (hash.isEmpty()) throw new IOException("Could not hash file " + file.getAbsolutePath());
+        setEntry(id, hash, file);
+        if (feedSource != null) setEntry(getLatestKey(feedSource.id), hash, null);
+        LOG.info("Stored feed {} as {}", id, blobStore.getUri(hash));
+    }
+
+    /**
+     * Content-addressed storage only (otherwise, this does nothing): point the feed source's latest feed at the
+     * committed feed with the given ID, or remove the latest feed if the ID is null or the feed is not stored by
+     * content (e.g., it was stored before content-addressed storage was enabled).
+     */
+    public void setLatest(String feedSourceId, String id) throws IOException {
+        if (blobStore == null) return;
+        FeedStoreEntry entry = id != null ? Persistence.feedStoreEntries.getById(getEntryId(id)) : null;
+        if (entry == null) {
+            removeEntry(getLatestKey(feedSourceId));
+        } else {
+            setEntry(getLatestKey(feedSourceId), entry.blobHash, null);
+        }
+    }
+
+    /**
+     * @return the key of the S3 object holding the feed with the given ID (when using S3 storage).
+     */
+    public String getObjectKey(String id) {
+        if (blobStore instanceof S3BlobStore) {
+            FeedStoreEntry entry = Persistence.feedStoreEntries.getById(getEntryId(id));
+            if (entry != null) return ((S3BlobStore) blobStore).getKey(entry.blobHash);
+        }
+        return S3Utils.makeGtfsFolderObjectKey(id);
+    }
+
+    /**
+     * Move a local copy of the feed with the given ID that has been uploaded to S3 into the feed cache, so that it
+     * does not need to be downloaded again the next time it is used. If not using S3, the file is simply deleted.
+     */
+    public void cacheLocalCopy(String id, File file) throws IOException {
+        FeedFileCache cache = getCache();
+        if (cache != null) cache.put(getCacheKey(id), file);
+        else Files.deleteIfExists(file.toPath());
+    }
+
+    private String getCacheKey(String id) {
+        return name + "/" + id;
+    }
+
+    private String getBlobCacheKey(String hash) {
+        return name + "/blobs/" + hash;
+    }
+
+    private static String getLatestKey(String feedSourceId) {
+        return feedSourceId + ".zip";
+    }
+
+    private String getEntryId(String key) {
+        return name + ":" + key;
+    }
+
+    private String getBlobId(String hash) {
+        return name + ":" + hash;
+    }
+
+    /**
+     * Point the entry for the key at the blob with the given hash, adding the blob from the file if it is not yet
+     * stored. The file (if any) is consumed.
+     *
+     * Entries and blobs may be shared by several processes (e.g., job workers), so every change is a single atomic
+     * Mongo operation: the reference to the new blob is added before the entry is pointed at it, and the reference to
+     * the blob it previously pointed at (as returned by the same update) is released afterwards.
+     */
+    private void setEntry(String key, String hash, File file) throws IOException {
+        addReference(hash, file);
+        FeedStoreEntry previous = Persistence.feedStoreEntries.upsertOneFiltered(
+            eq("_id", getEntryId(key)),
+            combine(
+                set("blobHash", hash),
+                setOnInsert("store", name),
+                setOnInsert("key", key),
+                setOnInsert("dateCreated", new Date())
+            ),
+            ReturnDocument.BEFORE
+        );
+        if (previous != null) releaseReference(previous.blobHash);
+    }
+
+    /**
+     * Remove the entry for the key, deleting its blob if nothing else refers to it.
+     */
+    private void removeEntry(String key) throws IOException {
+        FeedStoreEntry entry = Persistence.feedStoreEntries.removeOneFiltered(eq("_id", getEntryId(key)));
+        if (entry != null) releaseReference(entry.blobHash);
+    }
+
+    /**
+     * Add a reference to the blob with the given hash, storing it from the file if it is not yet stored. The file (if
+     * any) is consumed. The blob is uploaded before the reference is added, so that a reference never points at a
+     * blob that has not been stored (content-addressed uploads are idempotent, so concurrent commits of the same file
+     * may both upload it).
+     */
+    private void addReference(String hash, File file) throws IOException {
+        String blobId = getBlobId(hash);
+        long size = file != null ? file.length() : 0;
+        boolean uploaded = false;
+        if (file != null && !blobStore.exists(hash)) {
+            blobStore.put(hash, file);
+            uploaded = true;
+        }
+        Bson update = combine(
+            inc("refCount", 1),
+            setOnInsert("store", name),
+            setOnInsert("hash", hash),
+            setOnInsert("dateCreated", new Date())
+        );
+        if (file != null) update = combine(update, setOnInsert("size", size));
+        FeedBlob blob = Persistence.feedBlobs.upsertOneFiltered(eq("_id", blobId), update, ReturnDocument.AFTER);
+        if (blob.deleteLeaseExpires != null) {
+            // Another process is deleting the blob (which was unreferenced until now). Wait for it to finish, after
+            // which the blob may need to be stored again.
+            awaitBlobDeletion(blobId);
+        }
+        if (blob.deleteLeaseExpires != null || blob.refCount == 1) {
+            // Either this is the only reference (so the blob may have been deleted after it was checked above) or the
+            // blob has just been deleted by another process. Make sure it is stored.
+            if (!blobStore.exists(hash)) {
+                if (file == null || !file.exists()) {
+                    releaseReference(hash);
+                    throw new IOException("Blob " + blobStore.getUri(hash) + " was deleted and cannot be stored again.");
+                }
+                blobStore.put(hash, file);
+                uploaded = true;
+            }
+        }
+        if (!uploaded) LOG.info("Feed is identical to stored blob {} ({} references)", hash, blob.refCount);
+        // A remote blob store leaves the uploaded file in place.
+        if (file != null && file.exists()) releaseFile(hash, file);
+    }
+
+    /**
+     * Release a reference to the blob, deleting it once it is no longer referenced. Deletion is guarded by a lease on
+     * the blob's document (so that only one process deletes it) and the document is only removed if the blob has not
+     * been referenced again in the meantime. A process that references the blob while it is being deleted waits for
+     * the lease to be released and stores the blob again (see {@link #addReference}).
+     */
+    private void releaseReference(String hash) throws IOException {
+        String blobId = getBlobId(hash);
+        FeedBlob blob = Persistence.feedBlobs.updateOneFiltered(eq("_id", blobId), inc("refCount", -1));
+        if (blob == null || blob.refCount > 0) return;
+        Date now = new Date();
+        FeedBlob leased = Persistence.feedBlobs.updateOneFiltered(
+            and(
+                eq("_id", blobId),
+                lte("refCount", 0),
+                or(eq("deleteLeaseExpires", null), lt("deleteLeaseExpires", now))
+            ),
+            set("deleteLeaseExpires", new Date(now.getTime() + BLOB_DELETE_LEASE_MILLIS))
+        );
+        // The blob has been referenced again, or another process is deleting it.
+        if (leased == null) return;
+        try {
+            blobStore.delete(hash);
+            FeedFileCache cache = getCache();
+            if (cache != null) cache.invalidate(getBlobCacheKey(hash));
+        } finally {
+            FeedBlob removed = Persistence.feedBlobs.removeOneFiltered(and(eq("_id", blobId), lte("refCount", 0)));
+            if (removed != null) {
+                LOG.info("Deleted unreferenced blob {}", blobStore.getUri(hash));
+            } else {
+                // The blob was referenced again while being deleted. Release the lease, so that the process that
+                // referenced it stores it again.
+                Persistence.feedBlobs.updateOneFiltered(eq("_id", blobId), unset("deleteLeaseExpires"));
+            }
+        }
+    }
+
+    /**
+     * Wait until the lease on deleting the blob (see {@link #releaseReference}) has been released or has expired.
+     */
+    private void awaitBlobDeletion(String blobId) throws IOException {
+        LOG.info("Waiting for deletion of blob {} by another process", blobId);
+        while (true) {
+            FeedBlob blob = Persistence.feedBlobs.getById(blobId);
+            if (blob == null || blob.deleteLeaseExpires == null || blob.deleteLeaseExpires.before(new Date())) return;
+            try {
+                Thread.sleep(BLOB_DELETE_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for deletion of blob " + blobId, e);
+            }
+        }
+    }
+
+    /**
+     * Dispose of a file with the same contents as the stored blob (unless the file is the blob itself): keep it in the
+     * feed cache if the blob is stored remotely, so that it need not be downloaded again, otherwise delete it.
+     */
+    private void releaseFile(String hash, File file) throws IOException {
+        if (file == null || file.equals(blobStore.getLocalFile(hash))) return;
+        FeedFileCache cache = getCache();
+        if (blobStore instanceof S3BlobStore && cache != null) cache.put(getBlobCacheKey(hash), file);
+        else Files.deleteIfExists(file.toPath());
+    }
+
+    private File retrieveBlob(String id, String hash) {
+        File blob = blobStore.getLocalFile(hash);
+        if (blob != null) return blob;
+        try {
+            return getCache().get(getBlobCacheKey(hash), () -> {
+                LOG.info("Downloading feed {} from {}", id, blobStore.getUri(hash));
+                return blobStore.getInputStream(hash);
+            });
+        } catch (IOException e) {
+            LOG.error("Error downloading " + blobStore.getUri(hash), e);
+            return null;
+        }
     }
 
     /**
@@ -220,6 +543,9 @@ public class FeedStore {
                         copyKey
                     );
                     S3Utils.getDefaultS3Client().copyObject(copyObjRequest);
+                    // Any cached copy of the previous latest feed is now stale.
+                    FeedFileCache cache = getCache();
+                    if (cache != null) cache.invalidate(getCacheKey(getLatestKey(feedSource.id)));
                 }
                 return true;
             } catch (AmazonServiceException | CheckedAWSException e) {
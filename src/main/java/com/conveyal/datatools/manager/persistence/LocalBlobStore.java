@@ -0,0 +1,65 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores blobs on the local file system under a directory, in subdirectories named by the first two characters of the
+ * hash (so that no single directory holds every blob).
+ */
+public class LocalBlobStore implements BlobStore {
+    private final File directory;
+
+    public LocalBlobStore(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return getFile(hash).exists();
+    }
+
+    @Override
+    public void put(String hash, File file) throws IOException {
+        File blob = getFile(hash);
+        if (blob.exists()) return;
+        blob.getParentFile().mkdirs();
+        try {
+            // Files in the feed store directory are on the same file system as the blobs, so this does not copy.
+            Files.move(file.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file.toPath(), blob.toPath());
+        }
+    }
+
+    @Override
+    public File getLocalFile(String hash) {
+        File blob = getFile(hash);
+        return blob.exists() ? blob : null;
+    }
+
+    @Override
+    public InputStream getInputStream(String hash) throws IOException {
+        return new FileInputStream(getFile(hash));
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(getFile(hash).toPath());
+    }
+
+    @Override
+    public String getUri(String hash) {
+        return getFile(hash).getAbsolutePath();
+    }
+
+    private File getFile(String hash) {
+        return new File(new File(directory, hash.substring(0, 2)), hash);
+    }
+}
@@ -0,0 +1,76 @@
+package com.conveyal.datatools.manager.persistence;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One page of results from a keyset (cursor) paginated query (see {@link TypedPersistence#getPage}). The cursor is an
+ * opaque string encoding the sort key and ID of the last item on the page, so that the following page can be fetched
+ * with an indexed range query rather than by skipping over all of the preceding results.
+ */
+public class Page<T> {
+    /** Default number of items per page if a page is requested without a limit. */
+    public static final int DEFAULT_LIMIT = 50;
+    /** Largest number of items that may be requested per page. */
+    public static final int MAX_LIMIT = 1000;
+    /** The keys of a decoded cursor. */
+    private static final Set<String> CURSOR_KEYS = Set.of("value", "id");
+
+    public final List<T> items;
+
+    /** Cursor to pass to request the following page, or null if this is the last page. */
+    public final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Encode the sort key value and ID of the last item on a page as a cursor. The value is stored as extended JSON so
+     * that its type (e.g., int or date) is preserved when decoded.
+     */
+    static String encodeCursor(Object sortValue, String id) {
+        String json = new Document("value", sortValue).append("id", id).toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encodeCursor}.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static Document decodeCursor(String cursor) {
+        try {
+            Document document = Document.parse(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (!document.keySet().equals(CURSOR_KEYS) || !(document.get("id") instanceof String)) {
+                throw new IllegalArgumentException("Cursor must contain only a sort value and id.");
+            }
+            // The sort value is compared against the sort field in a query, so it must not be a document (which
+            // Mongo would interpret as a query operator such as $ne) or an array.
+            Object value = document.get("value");
+            if (value instanceof Document || value instanceof List) {
+                throw new IllegalArgumentException("Cursor sort value is not valid.");
+            }
+            return document;
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Cursor is not valid.", e);
+        }
+    }
+
+    /**
+     * @return whether the cursor is one that could have been produced by {@link #encodeCursor}.
+     */
+    public static boolean isValidCursor(String cursor) {
+        try {
+            decodeCursor(cursor);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -6,19 +6,23 @@ import com.conveyal.datatools.manager.codec.LocalDateCodec;
 import com.conveyal.datatools.manager.codec.URLCodec;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
+import com.conveyal.datatools.manager.models.FeedBlob;
 import com.conveyal.datatools.manager.models.FeedDownloadToken;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedStoreEntry;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.FeedVersionSummary;
+import com.conveyal.datatools.manager.models.FeedVersionValidationResults;
+import com.conveyal.datatools.manager.models.JobRecord;
 import com.conveyal.datatools.manager.models.Label;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Organization;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.Snapshot;
+import com.google.common.cache.CacheStats;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
-import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
@@ -30,7 +34,11 @@ import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
@@ -45,6 +53,11 @@ public class Persistence {
     private static final String MONGO_USER = getConfigPropertyAsText("MONGO_USER");
     private static final String MONGO_PASSWORD = getConfigPropertyAsText("MONGO_PASSWORD");
     private static final String MONGO_DB_NAME = getConfigPropertyAsText("MONGO_DB_NAME");
+    // Entity caching is disabled unless a positive TTL is configured.
+    private static final long ENTITY_CACHE_TTL_SECONDS =
+        Long.parseLong(getConfigPropertyAsText("MONGO_ENTITY_CACHE_TTL_SECONDS", "0"));
+    private static final long ENTITY_CACHE_MAX_SIZE =
+        Long.parseLong(getConfigPropertyAsText("MONGO_ENTITY_CACHE_MAX_SIZE", "1000"));
 
     private static MongoClient mongo;
     private static MongoDatabase mongoDatabase;
@@ -55,6 +68,7 @@ public class Persistence {
     public static TypedPersistence<Project> projects;
     public static TypedPersistence<FeedVersion> feedVersions;
     public static TypedPersistence<FeedVersionSummary> feedVersionSummaries;
+    public static TypedPersistence<FeedVersionValidationResults> feedVersionValidationResults;
     public static TypedPersistence<Note> notes;
     public static TypedPersistence<Organization> organizations;
     public static TypedPersistence<ExternalFeedSourceProperty> externalFeedSourceProperties;
@@ -62,6 +76,9 @@ public class Persistence {
     public static TypedPersistence<Snapshot> snapshots;
     public static TypedPersistence<FeedDownloadToken> tokens;
     public static TypedPersistence<Label> labels;
+    public static TypedPersistence<JobRecord> jobRecords;
+    public static TypedPersistence<FeedBlob> feedBlobs;
+    public static TypedPersistence<FeedStoreEntry> feedStoreEntries;
 
     public static void initialize () {
 
@@ -118,6 +135,7 @@ public class Persistence {
         projects = new TypedPersistence(mongoDatabase, Project.class);
         feedVersions = new TypedPersistence(mongoDatabase, FeedVersion.class);
         feedVersionSummaries = new TypedPersistence(mongoDatabase, FeedVersionSummary.class, "FeedVersion");
+        feedVersionValidationResults = new TypedPersistence(mongoDatabase, FeedVersionValidationResults.class);
         deployments = new TypedPersistence(mongoDatabase, Deployment.class);
         notes = new TypedPersistence(mongoDatabase, Note.class);
         organizations = new TypedPersistence(mongoDatabase, Organization.class);
@@ -126,12 +144,111 @@ public class Persistence {
         snapshots = new TypedPersistence(mongoDatabase, Snapshot.class);
         tokens = new TypedPersistence(mongoDatabase, FeedDownloadToken.class);
         labels = new TypedPersistence(mongoDatabase, Label.class);
+        jobRecords = new TypedPersistence(mongoDatabase, JobRecord.class);
+        feedBlobs = new TypedPersistence(mongoDatabase, FeedBlob.class);
+        feedStoreEntries = new TypedPersistence(mongoDatabase, FeedStoreEntry.class);
 
-        // TODO: Set up indexes on feed versions by feedSourceId, version #? deployments, feedSources by projectId.
-//        deployments.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedSources.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedVersions.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
-//        snapshots.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
+        registerIndexes();
+
+        // Cache the collections that are repeatedly looked up by ID within a single request (e.g., for permission
+        // checks and parent lookups).
+        if (ENTITY_CACHE_TTL_SECONDS > 0) {
+            projects.enableCache(ENTITY_CACHE_MAX_SIZE, ENTITY_CACHE_TTL_SECONDS);
+            feedSources.enableCache(ENTITY_CACHE_MAX_SIZE, ENTITY_CACHE_TTL_SECONDS);
+            feedVersions.enableCache(ENTITY_CACHE_MAX_SIZE, ENTITY_CACHE_TTL_SECONDS);
+        }
+    }
+
+    /**
+     * Declare the indexes of each collection and the (equality fields of the) queries issued against it, create the
+     * indexes (idempotently) and report any query shape that would still result in a collection scan.
+     */
+    private static void registerIndexes() {
+        feedSources
+            .declareIndex("projectId")
+            .declareQueryShape("projectId");
+        // Paginated listings (see TypedPersistence#getPage) sort by a field and then _id, so _id is included in the
+        // indexes backing them.
+        feedVersions
+            .declareIndex("feedSourceId", "version", "_id")
+            .declareIndex("namespace")
+            .declareQueryShape("feedSourceId")
+            .declareQueryShape("feedSourceId", "version")
+            .declareQueryShape("namespace");
+        deployments
+            .declareIndex("projectId", "dateCreated", "_id")
+            .declareIndex("feedSourceId")
+            .declareIndex("deployedTo", "routerId")
+            .declareQueryShape("projectId")
+            .declareQueryShape("feedSourceId")
+            .declareQueryShape("deployedTo", "routerId");
+        snapshots
+            .declareIndex("feedSourceId", "version", "_id")
+            .declareQueryShape("feedSourceId");
+        projects
+            .declareIndex("organizationId")
+            .declareQueryShape("organizationId");
+        // The feed updater looks up feed sources by the value of an external property (see FeedUpdater).
+        externalFeedSourceProperties
+            .declareIndex("feedSourceId", "resourceType")
+            .declareIndex("name", "value")
+            .declareQueryShape("feedSourceId")
+            .declareQueryShape("feedSourceId", "resourceType")
+            .declareQueryShape("name", "value");
+        labels
+            .declareIndex("projectId")
+            .declareQueryShape("projectId");
+        servers
+            .declareIndex("projectId")
+            .declareQueryShape("projectId");
+        tokens
+            .declareIndex("jobId")
+            .declareQueryShape("jobId");
+        // The durable job queue looks for unfinished jobs with expired leases and reports job status by user and job
+        // ID (see JobQueue).
+        jobRecords
+            .declareIndex("state", "leaseExpiresAt")
+            .declareIndex("userId", "seenByOwner")
+            .declareIndex("jobId")
+            .declareQueryShape("state", "leaseExpiresAt")
+            .declareQueryShape("userId", "seenByOwner")
+            .declareQueryShape("jobId");
+
+        List<TypedPersistence<?>> indexedCollections = Arrays.asList(
+            feedSources,
+            feedVersions,
+            deployments,
+            snapshots,
+            projects,
+            externalFeedSourceProperties,
+            labels,
+            servers,
+            tokens,
+            jobRecords
+        );
+        for (TypedPersistence<?> collection : indexedCollections) {
+            collection.ensureIndexes();
+            for (List<String> queryShape : collection.findUnindexedQueryShapes()) {
+                LOG.warn(
+                    "Query on {} by {} is not served by any index and will scan the collection.",
+                    collection.getCollectionName(),
+                    queryShape
+                );
+            }
+        }
+        LOG.info("Verified MongoDB indexes for {} collections.", indexedCollections.size());
+    }
+
+    /**
+     * Get the cache statistics for each collection that has caching enabled, keyed on collection name.
+     */
+    public static Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> statsForCollection = new HashMap<>();
+        for (TypedPersistence<?> collection : Arrays.asList(projects, feedSources, feedVersions)) {
+            CacheStats stats = collection.getCacheStats();
+            if (stats != null) statsForCollection.put(collection.getCollectionName(), stats);
+        }
+        return statsForCollection;
     }
 
     /**
@@ -143,9 +260,13 @@ public class Persistence {
 
     /**
      * Get all bespoke documents matching query. These documents are tailored to the query response and are not tied
-     * directly to a persistence type.
+     * directly to a persistence type. The aggregation is recorded in the collection's {@link PersistenceMetrics}.
      */
-    public static AggregateIterable<Document> getDocuments(String collection, List<Bson> stages) {
-        return getMongoDatabase().getCollection(collection).aggregate(stages);
+    public static List<Document> getDocuments(String collection, List<Bson> stages) {
+        long startTime = System.nanoTime();
+        List<Document> documents = getMongoDatabase().getCollection(collection).aggregate(stages).into(new ArrayList<>());
+        PersistenceMetrics.forCollection(collection)
+            .record(PersistenceMetrics.Operation.AGGREGATE, stages, System.nanoTime() - startTime, documents.size());
+        return documents;
     }
 }
@@ -0,0 +1,169 @@
+package com.conveyal.datatools.manager.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * Counters and latency histograms for the database operations issued against a single Mongo collection, broken down by
+ * {@link Operation}. These are recorded by {@link TypedPersistence} (and {@link Persistence#getDocuments}) for every
+ * round trip to the database, so they can be used to find the queries that dominate request latency (e.g., a
+ * serializer getter that issues one query per item in a listing shows up as a spike in the operation count). Any
+ * operation slower than the configured threshold is also logged along with its query.
+ */
+public class PersistenceMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistenceMetrics.class);
+
+    /** Operations that take longer than this are logged as slow queries. */
+    public static final long SLOW_QUERY_THRESHOLD_MS =
+        Long.parseLong(getConfigPropertyAsText("MONGO_SLOW_QUERY_THRESHOLD_MS", "500"));
+
+    /** Upper bounds (inclusive, in milliseconds) of the latency histogram buckets. A final bucket holds the rest. */
+    private static final long[] LATENCY_BUCKET_BOUNDS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private static final Map<String, PersistenceMetrics> metricsForCollection = new ConcurrentHashMap<>();
+
+    /** The kinds of database operation that are measured. */
+    public enum Operation {
+        GET_BY_ID, GET_FILTERED, COUNT, INSERT, UPDATE, DELETE, BULK_WRITE, AGGREGATE
+    }
+
+    private final String collectionName;
+    private final Map<Operation, OperationStats> statsForOperation = new EnumMap<>(Operation.class);
+
+    private PersistenceMetrics(String collectionName) {
+        this.collectionName = collectionName;
+        for (Operation operation : Operation.values()) {
+            statsForOperation.put(operation, new OperationStats());
+        }
+    }
+
+    /**
+     * Get the metrics for the named collection. Metrics are shared by everything that reads from the same collection
+     * (e.g., feed versions and feed version summaries).
+     */
+    public static PersistenceMetrics forCollection(String collectionName) {
+        return metricsForCollection.computeIfAbsent(collectionName, PersistenceMetrics::new);
+    }
+
+    /**
+     * @return the metrics for every collection that has been accessed, keyed on (and sorted by) collection name.
+     */
+    public static Map<String, PersistenceMetrics> getAll() {
+        return Collections.unmodifiableMap(new TreeMap<>(metricsForCollection));
+    }
+
+    /**
+     * Record a completed database operation and log it if it exceeded {@link #SLOW_QUERY_THRESHOLD_MS}.
+     *
+     * @param operation         kind of operation
+     * @param query             filter, pipeline or other description of the query (only used for logging)
+     * @param elapsedNanos      wall clock time taken by the operation
+     * @param documentsReturned number of documents returned to the caller (or affected, for bulk writes)
+     */
+    public void record(Operation operation, Object query, long elapsedNanos, int documentsReturned) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        boolean slow = elapsedMillis >= SLOW_QUERY_THRESHOLD_MS;
+        statsForOperation.get(operation).record(elapsedMillis, elapsedNanos, documentsReturned, slow);
+        if (slow) {
+            LOG.warn(
+                "Slow {} on {} took {} ms ({} documents): {}",
+                operation,
+                collectionName,
+                elapsedMillis,
+                documentsReturned,
+                query
+            );
+        }
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    /**
+     * @return the stats for each operation that has been recorded at least once.
+     */
+    public Map<Operation, OperationStats> getOperationStats() {
+        Map<Operation, OperationStats> recordedStats = new EnumMap<>(Operation.class);
+        statsForOperation.forEach((operation, stats) -> {
+            if (stats.getCount() > 0) recordedStats.put(operation, stats);
+        });
+        return recordedStats;
+    }
+
+    /**
+     * Running totals for one operation on one collection. Updates are lock-free, so these can be recorded on every
+     * database call without contention between request threads. Values read while operations are in flight may be
+     * slightly inconsistent with one another.
+     */
+    public static class OperationStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder documentsReturned = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKET_BOUNDS_MS.length + 1);
+
+        private void record(long elapsedMillis, long elapsedNanos, int documents, boolean slow) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            documentsReturned.add(documents);
+            if (slow) slowCount.increment();
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKET_BOUNDS_MS.length && elapsedMillis > LATENCY_BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            latencyHistogram.incrementAndGet(bucket);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n > 0 ? totalNanos.sum() / 1e6 / n : 0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        public long getDocumentsReturned() {
+            return documentsReturned.sum();
+        }
+
+        public long getSlowCount() {
+            return slowCount.sum();
+        }
+
+        /**
+         * @return the number of operations in each latency bucket, keyed on the bucket's label (e.g., "<=10ms" or
+         * ">5000ms" for the last bucket) in ascending order of latency.
+         */
+        public Map<String, Long> getLatencyHistogram() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < latencyHistogram.length(); i++) {
+                String label = i < LATENCY_BUCKET_BOUNDS_MS.length
+                    ? "<=" + LATENCY_BUCKET_BOUNDS_MS[i] + "ms"
+                    : ">" + LATENCY_BUCKET_BOUNDS_MS[LATENCY_BUCKET_BOUNDS_MS.length - 1] + "ms";
+                histogram.put(label, latencyHistogram.get(i));
+            }
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
+import com.conveyal.datatools.common.utils.aws.S3Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stores blobs as objects in an S3 bucket under a key prefix (e.g., "gtfs/blobs/").
+ */
+public class S3BlobStore implements BlobStore {
+    private final String bucket;
+    private final String prefix;
+    /** The client to use, or null to use the default S3 client. */
+    private final AmazonS3 client;
+
+    public S3BlobStore(String bucket, String prefix) {
+        this(bucket, prefix, null);
+    }
+
+    /**
+     * Construct a blob store that uses the given client (e.g., a stub for testing) instead of the default S3 client.
+     */
+    S3BlobStore(String bucket, String prefix, AmazonS3 client) {
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.client = client;
+    }
+
+    /**
+     * @return the object key of the blob.
+     */
+    public String getKey(String hash) {
+        return prefix + hash;
+    }
+
+    @Override
+    public boolean exists(String hash) throws IOException {
+        try {
+            return getClient().doesObjectExist(bucket, getKey(hash));
+        } catch (AmazonServiceException e) {
+            throw new IOException("Could not check for blob " + getUri(hash), e);
+        }
+    }
+
+    @Override
+    public void put(String hash, File file) throws IOException {
+        try {
+            AmazonS3 client = getClient();
+            if (!client.doesObjectExist(bucket, getKey(hash))) client.putObject(bucket, getKey(hash), file);
+        } catch (AmazonServiceException e) {
+            throw new IOException("Could not upload blob " + getUri(hash), e);
+        }
+    }
+
+    @Override
+    public File getLocalFile(String hash) {
+        return null;
+    }
+
+    @Override
+    public InputStream getInputStream(String hash) throws IOException {
+        try {
+            return getClient().getObject(bucket, getKey(hash)).getObjectContent();
+        } catch (AmazonServiceException e) {
+            throw new IOException("Could not download blob " + getUri(hash), e);
+        }
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        try {
+            getClient().deleteObject(bucket, getKey(hash));
+        } catch (AmazonServiceException e) {
+            throw new IOException("Could not delete blob " + getUri(hash), e);
+        }
+    }
+
+    @Override
+    public String getUri(String hash) {
+        return String.format("s3://%s/%s", bucket, getKey(hash));
+    }
+
+    private AmazonS3 getClient() throws IOException {
+        if (client != null) return client;
+        try {
+            return S3Utils.getDefaultS3Client();
+        } catch (CheckedAWSException e) {
+            throw new IOException("Could not connect to S3", e);
+        }
+    }
+}
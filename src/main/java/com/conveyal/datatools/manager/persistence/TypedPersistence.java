@@ -2,27 +2,69 @@ package com.conveyal.datatools.manager.persistence;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Model;
+import com.conveyal.datatools.manager.persistence.PersistenceMetrics.Operation;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.EncoderContext;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
 import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.or;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
 import static com.mongodb.client.model.Updates.pull;
+import static com.mongodb.client.model.Updates.set;
 
 /**
  * This provides some abstraction over the Mongo Java driver for storing a particular kind of POJO.
@@ -52,10 +94,52 @@ public class TypedPersistence<T extends Model> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TypedPersistence.class);
 
+    /** Number of documents fetched from the server per cursor round trip when streaming results. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Maximum number of write operations sent to the server in a single bulk write request. */
+    public static final int BULK_WRITE_CHUNK_SIZE = 1000;
+    /** Mongo's error code for a write that would duplicate a unique key (e.g., an _id). */
+    public static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
     private MongoCollection<T> mongoCollection;
     private Constructor<T> noArgConstructor;
     private String collectionName;
+
     private final FindOneAndUpdateOptions findOneAndUpdateOptions = new FindOneAndUpdateOptions();
+    private final FindOneAndUpdateOptions upsertOptions = new FindOneAndUpdateOptions()
+        .upsert(true)
+        .returnDocument(ReturnDocument.AFTER);
+    private final FindOneAndUpdateOptions returnAfterOptions = new FindOneAndUpdateOptions()
+        .returnDocument(ReturnDocument.AFTER);
+
+    /**
+     * Compound indexes (each a list of ascending field names) that the query paths for this collection rely on. These
+     * are created at startup by {@link #ensureIndexes()}.
+     */
+    private final List<List<String>> declaredIndexes = new ArrayList<>();
+
+    /**
+     * Equality field sets used in queries against this collection. These are checked against the indexes that actually
+     * exist in the database by {@link #findUnindexedQueryShapes()} so that any query that would result in a collection
+     * scan is reported at startup.
+     */
+    private final List<List<String>> queryShapes = new ArrayList<>();
+
+    /**
+     * Optional read-through cache for {@link #getById}, enabled with {@link #enableCache}. Entries are stored as raw BSON
+     * and decoded on every hit so that callers never share (and accidentally mutate) the same cached object.
+     */
+    private Cache<String, RawBsonDocument> cache;
+    private MongoCollection<RawBsonDocument> rawCollection;
+    /**
+     * Incremented on every cache invalidation, so that {@link #getById} can tell whether an object it read may have
+     * been written (and invalidated) before it was added to the cache.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /** Latency and volume metrics for the database operations issued by this class. */
+    private final PersistenceMetrics metrics;
 
     /**
      * Maps a persistence class to a Mongo collection.
@@ -63,6 +147,7 @@ public class TypedPersistence<T extends Model> {
     public TypedPersistence(MongoDatabase mongoDatabase, Class<T> clazz, String collectionName) {
         mongoCollection = mongoDatabase.getCollection(collectionName, clazz);
         this.collectionName = collectionName;
+        this.metrics = PersistenceMetrics.forCollection(collectionName);
         try {
             noArgConstructor = clazz.getConstructor(new Class<?>[0]);
         } catch (NoSuchMethodException ex) {
@@ -70,9 +155,6 @@ public class TypedPersistence<T extends Model> {
         }
         // set options for findOneAndUpdate (return document should match document after update, not before)
         findOneAndUpdateOptions.returnDocument(ReturnDocument.AFTER);
-
-        // TODO: can we merge update and create into createOrUpdate function using upsert option?
-//        findOneAndUpdateOptions.upsert(true);
     }
 
     /**
@@ -82,13 +164,165 @@ public class TypedPersistence<T extends Model> {
         this(mongoDatabase, clazz, clazz.getSimpleName());
     }
 
+    /**
+     * Enable a read-through cache for {@link #getById} lookups on this collection. Writes made through this class
+     * invalidate the affected entries, but the cache is held in memory by each process: writes made directly against
+     * {@link #getMongoCollection()} or by another process (e.g., another API server or a job worker) are only picked up
+     * once the entry expires, so the TTL should be kept short and callers that must see the latest state (e.g., to
+     * make a conditional update) should query with a filter rather than use {@link #getById}.
+     *
+     * @param maximumSize maximum number of documents to hold in the cache
+     * @param ttlSeconds  number of seconds after which a cached document expires
+     */
+    public TypedPersistence<T> enableCache(long maximumSize, long ttlSeconds) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+        rawCollection = mongoCollection.withDocumentClass(RawBsonDocument.class);
+        LOG.info("Enabled {} cache (max size={}, ttl={}s)", collectionName, maximumSize, ttlSeconds);
+        return this;
+    }
+
+    /**
+     * @return hit/miss/eviction statistics for this collection's cache or null if caching is not enabled.
+     */
+    public CacheStats getCacheStats() {
+        return cache != null ? cache.stats() : null;
+    }
+
+    /** Remove a single object from the cache (if enabled) after it has been written. */
+    private void invalidate(String id) {
+        if (cache != null && id != null) {
+            invalidationCount.incrementAndGet();
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Clear the entire cache (if enabled). This is used after writes that match an arbitrary filter, where the affected
+     * IDs are not known.
+     */
+    private void invalidateAll() {
+        if (cache != null) {
+            invalidationCount.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Declare an ascending (compound) index on the provided fields.
+     */
+    public TypedPersistence<T> declareIndex(String... fieldNames) {
+        declaredIndexes.add(Arrays.asList(fieldNames));
+        return this;
+    }
+
+    /**
+     * Declare the equality fields of a query issued against this collection, which should be served by an index
+     * (either one declared with {@link #declareIndex} or, for _id, the default index). Query shapes are declared
+     * separately from indexes so that a query whose index is missing (or was never declared) is reported.
+     */
+    public TypedPersistence<T> declareQueryShape(String... fieldNames) {
+        queryShapes.add(Arrays.asList(fieldNames));
+        return this;
+    }
+
+    /**
+     * Create the declared indexes. Mongo's createIndex is a no-op for an index that already exists with the same keys,
+     * so this is safe to call on every boot.
+     */
+    public void ensureIndexes() {
+        for (List<String> fieldNames : declaredIndexes) {
+            try {
+                String indexName = mongoCollection.createIndex(Indexes.ascending(fieldNames));
+                LOG.debug("Ensured index {} on {}", indexName, collectionName);
+            } catch (Exception e) {
+                LOG.error("Could not create index on {} for fields {}", collectionName, fieldNames, e);
+            }
+        }
+    }
+
+    /**
+     * Check each declared query shape against the indexes that exist in the database. A query shape is considered
+     * indexed if the leading fields of some index are exactly its equality fields (in any order), i.e., Mongo can use
+     * that index to find the matching objects without examining any object that matches only some of the fields.
+     *
+     * @return the query shapes that would still examine objects that do not match (or scan the whole collection)
+     */
+    public List<List<String>> findUnindexedQueryShapes() {
+        List<List<String>> indexFields = new ArrayList<>();
+        for (Document index : mongoCollection.listIndexes()) {
+            Document key = index.get("key", Document.class);
+            if (key != null) indexFields.add(new ArrayList<>(key.keySet()));
+        }
+        return queryShapes.stream()
+            .filter(shape -> indexFields.stream().noneMatch(fields -> isIndexPrefix(shape, fields)))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return whether the leading fields of the index are the equality fields of the query shape
+     */
+    static boolean isIndexPrefix(List<String> queryShape, List<String> indexFields) {
+        return indexFields.size() >= queryShape.size() &&
+            new HashSet<>(indexFields.subList(0, queryShape.size())).equals(new HashSet<>(queryShape));
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    /**
+     * @return latency and volume metrics for the database operations issued against this collection.
+     */
+    public PersistenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Run the provided database operation, recording its latency and the number of documents it returned in this
+     * collection's {@link PersistenceMetrics} (whether or not it succeeds).
+     *
+     * @param operation     kind of operation, for the metrics breakdown
+     * @param query         filter or pipeline for the slow query log
+     * @param action        the database call
+     * @param documentCount number of documents in a (non-null) result
+     */
+    private <R> R measure(Operation operation, Object query, Supplier<R> action, ToIntFunction<R> documentCount) {
+        long startTime = System.nanoTime();
+        R result = null;
+        try {
+            result = action.get();
+            return result;
+        } finally {
+            int documents = result != null ? documentCount.applyAsInt(result) : 0;
+            metrics.record(operation, query, System.nanoTime() - startTime, documents);
+        }
+    }
+
+    /** Shorthand for {@link #measure} for operations that return a single document (or null). */
+    private <R> R measureOne(Operation operation, Object query, Supplier<R> action) {
+        return measure(operation, query, action, result -> 1);
+    }
+
+    /** Shorthand for {@link #measure} for operations that return a list of documents. */
+    private <R extends List<?>> R measureList(Operation operation, Object query, Supplier<R> action) {
+        return measure(operation, query, action, List::size);
+    }
+
     /**
      * Count the documents matching the provided filter.
      */
     public long count (Bson filter) {
-        return mongoCollection.countDocuments(filter);
+        return measure(Operation.COUNT, filter, () -> mongoCollection.countDocuments(filter), result -> 0);
     }
 
+    /**
+     * Create a new object with default field values (from the no-arg constructor) overridden by the provided JSON. This
+     * is performed as a single upsert (see {@link #createOrUpdate}).
+     */
     public T create (String updateJson) {
         T item = null;
         try {
@@ -98,9 +332,68 @@ public class TypedPersistence<T extends Model> {
         } catch (Exception ex) {
             throw new RuntimeException("Could not use no-arg constructor to instantiate class.", ex);
         }
-        mongoCollection.insertOne(item);
-        T updatedItem = update(item.id, updateJson);
-        return updatedItem;
+        return createOrUpdate(item, Document.parse(updateJson));
+    }
+
+    /**
+     * Upsert the object with the ID of newObject in a single round trip. The fields in updateDocument are always set
+     * (along with lastUpdated). If no object with that ID exists yet, the remaining fields of newObject are also written
+     * so that the created document is complete.
+     *
+     * @return the object as it appears in the database after the write
+     */
+    public T createOrUpdate (T newObject, Document updateDocument) {
+        T result = measureOne(Operation.UPDATE, eq(newObject.id), () -> mongoCollection.findOneAndUpdate(
+            eq(newObject.id),
+            buildUpsert(newObject, updateDocument),
+            upsertOptions
+        ));
+        invalidate(newObject.id);
+        return result;
+    }
+
+    /**
+     * Construct the update document for an upsert that always sets the fields in updateDocument (and lastUpdated) and
+     * sets the remaining fields of newObject only on insert.
+     */
+    private Document buildUpsert (T newObject, Document updateDocument) {
+        updateDocument.put("lastUpdated", new Date());
+        BsonDocument insertOnlyFields = new BsonDocument();
+        mongoCollection.getCodecRegistry()
+            .get(mongoCollection.getDocumentClass())
+            .encode(new BsonDocumentWriter(insertOnlyFields), newObject, EncoderContext.builder().build());
+        // The _id is taken from the filter on insert, and Mongo rejects updates that modify the same path in both $set
+        // and $setOnInsert.
+        insertOnlyFields.remove("_id");
+        for (String key : updateDocument.keySet()) {
+            removeConflictingPaths(insertOnlyFields, key);
+        }
+        Document update = new Document("$set", updateDocument);
+        if (!insertOnlyFields.isEmpty()) update.append("$setOnInsert", insertOnlyFields);
+        return update;
+    }
+
+    /**
+     * Remove the fields that conflict with the (possibly dotted) updated path from the insert-only fields of an upsert.
+     * A field containing the updated path (e.g., "a" for "a.b") is expanded into dotted paths for its other fields
+     * (e.g., "a.c"), so that only the updated path itself loses its default.
+     */
+    static void removeConflictingPaths(BsonDocument fields, String path) {
+        fields.remove(path);
+        // Remove any (already expanded) fields within the updated path.
+        fields.keySet().removeIf(key -> key.startsWith(path + "."));
+        for (String key : new ArrayList<>(fields.keySet())) {
+            if (!path.startsWith(key + ".")) continue;
+            BsonValue value = fields.remove(key);
+            // Values other than documents (e.g., arrays) cannot be partially set, so their default is dropped.
+            if (value.isDocument()) {
+                for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+                    fields.put(key + "." + field.getKey(), field.getValue());
+                }
+                removeConflictingPaths(fields, path);
+            }
+            return;
+        }
     }
 
     /**
@@ -108,11 +401,49 @@ public class TypedPersistence<T extends Model> {
      */
     public void create (T newObject) {
         // What happens if an object already exists with the same ID?
-        mongoCollection.insertOne(newObject);
+        measure(Operation.INSERT, eq(newObject.id), () -> mongoCollection.insertOne(newObject), result -> 0);
+        invalidate(newObject.id);
     }
 
-    public void replace (String id, T replaceObject) {
-        mongoCollection.replaceOne(eq(id), replaceObject);
+    /**
+     * Replace the object with the given ID. No object is created if none exists with the ID.
+     *
+     * @return whether an object with the ID existed (and was replaced)
+     */
+    public boolean replace (String id, T replaceObject) {
+        UpdateResult result = measure(
+            Operation.UPDATE,
+            eq(id),
+            () -> mongoCollection.replaceOne(eq(id), replaceObject),
+            updateResult -> 0
+        );
+        invalidate(id);
+        return result.getMatchedCount() > 0;
+    }
+
+    /**
+     * Replace the object with the given ID, except for the provided (top-level) fields, which keep their stored values.
+     * This is for fields that are maintained by atomic updates elsewhere (e.g., a summary of the latest child object),
+     * of which the replacement object may hold a stale copy.
+     */
+    public void replaceExcept (String id, T replaceObject, String... preservedFields) {
+        BsonDocument replacement = new BsonDocument();
+        mongoCollection.getCodecRegistry()
+            .get(mongoCollection.getDocumentClass())
+            .encode(new BsonDocumentWriter(replacement), replaceObject, EncoderContext.builder().build());
+        Document storedFields = new Document();
+        for (String field : preservedFields) {
+            replacement.remove(field);
+            storedFields.append(field, "$" + field);
+        }
+        // Merge the replacement (taken literally, so that values starting with "$" are not read as field paths) with
+        // the stored values of the preserved fields in a single update, so that no concurrent update is lost.
+        List<Document> pipeline = Collections.singletonList(new Document(
+            "$replaceWith",
+            new Document("$mergeObjects", Arrays.asList(new Document("$literal", replacement), storedFields))
+        ));
+        measure(Operation.UPDATE, eq(id), () -> mongoCollection.updateOne(eq(id), pipeline), result -> 0);
+        invalidate(id);
     }
 
     /**
@@ -121,7 +452,65 @@ public class TypedPersistence<T extends Model> {
     public T update (String id, Document updateDocument) {
         // Set last updated.
         updateDocument.put("lastUpdated", new Date());
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedItem = measureOne(
+            Operation.UPDATE,
+            eq(id),
+            () -> mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions)
+        );
+        invalidate(id);
+        return updatedItem;
+    }
+
+    /**
+     * Atomically apply the update to the first object matching the filter, e.g., to claim an item only if no one else
+     * has claimed it yet. This sets the lastUpdated field to the current time.
+     *
+     * @return the object as it appears in the database after the update, or null if no object matched the filter
+     */
+    public T updateOneFiltered (Bson filter, Bson update) {
+        return updateOneFiltered(filter, update, true);
+    }
+
+    /**
+     * Same as {@link #updateOneFiltered(Bson, Bson)}, but optionally leaves the lastUpdated field as is, for updates
+     * that maintain bookkeeping (e.g., references to child objects) rather than change the object itself.
+     */
+    public T updateOneFiltered (Bson filter, Bson update, boolean setLastUpdated) {
+        Bson fullUpdate = setLastUpdated ? combine(update, set("lastUpdated", new Date())) : update;
+        T updatedItem = measureOne(
+            Operation.UPDATE,
+            filter,
+            () -> mongoCollection.findOneAndUpdate(filter, fullUpdate, returnAfterOptions)
+        );
+        if (updatedItem != null) invalidate(updatedItem.id);
+        return updatedItem;
+    }
+
+    /**
+     * Atomically apply the update to the first object matching the filter or, if none matches, insert a new object
+     * built from the filter's equality fields and the update (e.g., with $setOnInsert for fields that should only be
+     * written on insert). This sets the lastUpdated field to the current time.
+     *
+     * @param returnDocument whether to return the object as it was before the update (null if it was inserted) or after
+     */
+    public T upsertOneFiltered (Bson filter, Bson update, ReturnDocument returnDocument) {
+        Supplier<T> upsert = () -> mongoCollection.findOneAndUpdate(
+            filter,
+            combine(update, set("lastUpdated", new Date())),
+            new FindOneAndUpdateOptions().upsert(true).returnDocument(returnDocument)
+        );
+        T item;
+        try {
+            item = measureOne(Operation.UPDATE, filter, upsert);
+        } catch (MongoCommandException e) {
+            // Concurrent upserts of the same new object may both try to insert it, in which case one fails with a
+            // duplicate key error and (now that the object exists) can simply be retried as an update.
+            if (e.getErrorCode() != DUPLICATE_KEY_ERROR_CODE) throw e;
+            item = measureOne(Operation.UPDATE, filter, upsert);
+        }
+        // If nothing is returned, the object has just been inserted, so it cannot be cached.
+        if (item != null) invalidate(item.id);
+        return item;
     }
 
     /**
@@ -141,29 +530,50 @@ public class TypedPersistence<T extends Model> {
     public T updateUser (String id, Auth0UserProfile profile) {
         String updateJson = String.format("{userId: %s, userEmail: %s}", profile.getUser_id(), profile.getEmail());
         Document updateDocument = Document.parse(updateJson);
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedItem = measureOne(
+            Operation.UPDATE,
+            eq(id),
+            () -> mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions)
+        );
+        invalidate(id);
+        return updatedItem;
     }
 
+    /**
+     * Get object by ID, reading through the cache if one is enabled for this collection. Only cache misses are recorded
+     * in the persistence metrics (cache hits are reported by {@link #getCacheStats()}).
+     */
     public T getById (String id) {
-        return mongoCollection.find(eq(id)).first();
+        if (cache == null) return measureOne(Operation.GET_BY_ID, eq(id), () -> mongoCollection.find(eq(id)).first());
+        RawBsonDocument document = cache.getIfPresent(id);
+        if (document == null) {
+            long invalidationsBefore = invalidationCount.get();
+            document = measureOne(Operation.GET_BY_ID, eq(id), () -> rawCollection.find(eq(id)).first());
+            // Do not cache misses. The object may be created shortly.
+            if (document == null) return null;
+            cache.put(id, document);
+            // If the cache was invalidated while the object was being read, the object may have been written (by this
+            // process) after it was read, in which case the document just cached is stale. Discard it to be safe.
+            if (invalidationCount.get() != invalidationsBefore) cache.invalidate(id);
+        }
+        return document.decode(mongoCollection.getCodecRegistry().get(mongoCollection.getDocumentClass()));
     }
 
     /**
      * Get first matching object populating only the included fields.
      */
     public T getByIdLimitedFields (String id, String... includedFields) {
-        return mongoCollection
+        return measureOne(Operation.GET_BY_ID, eq(id), () -> mongoCollection
             .find(eq(id))
             .projection(fields(include(includedFields)))
-            .first();
+            .first());
     }
 
     /**
-     * This is not memory efficient.
-     * TODO: Always use iterators / streams, always perform selection of subsets on the Mongo server side ("where clause").
+     * This is not memory efficient. For bulk processing of an entire collection, use {@link #stream(Bson)} instead.
      */
     public List<T> getAll () {
-        return mongoCollection.find().into(new ArrayList<>());
+        return measureList(Operation.GET_FILTERED, "{}", () -> mongoCollection.find().into(new ArrayList<>()));
     }
 
     /**
@@ -172,7 +582,8 @@ public class TypedPersistence<T extends Model> {
      * @return      Objects in the collection with given IDs
      */
     public List<T> getByIds (List<String> ids) {
-        return mongoCollection.find(in("_id", ids)).into(new ArrayList<>());
+        Bson filter = in("_id", ids);
+        return measureList(Operation.GET_FILTERED, filter, () -> mongoCollection.find(filter).into(new ArrayList<>()));
     }
 
     /**
@@ -188,20 +599,185 @@ public class TypedPersistence<T extends Model> {
      * Get all objects satisfying the supplied Mongo filter and sort by.
      */
     public List<T> getFiltered (Bson filter, Bson sortBy) {
-        return (sortBy != null)
-        ? mongoCollection.find(filter).sort(sortBy).into(new ArrayList<>())
-        : mongoCollection.find(filter).into(new ArrayList<>());
+        return measureList(Operation.GET_FILTERED, filter, () -> (sortBy != null)
+            ? mongoCollection.find(filter).sort(sortBy).into(new ArrayList<>())
+            : mongoCollection.find(filter).into(new ArrayList<>()));
     }
 
     /**
      * Get all objects populating only the included fields satisfying the supplied Mongo filter and sort by.
      */
     public List<T> getFilteredLimitedFields(Bson filter, Bson sortBy, String... includedFields) {
-        return mongoCollection
+        return measureList(Operation.GET_FILTERED, filter, () -> mongoCollection
             .find(filter)
             .projection(fields(include(includedFields)))
             .sort(sortBy)
-            .into(new ArrayList<>());
+            .into(new ArrayList<>()));
+    }
+
+    /**
+     * Get one page of the objects satisfying the supplied Mongo filter using keyset (cursor) pagination. Results are
+     * ordered by the sort field with the object ID as a tie-breaker, so the order is stable even when sort values are
+     * not unique. Each page is fetched with a range query on (sortField, _id) following the last item of the previous
+     * page, so with an index on the filter fields plus the sort field, page retrieval time does not grow with the
+     * number of preceding results (unlike skip/offset pagination). The sort field should be present on every object.
+     *
+     * @param filter     Mongo filter
+     * @param sortField  name of the field to sort by
+     * @param sortValue  function returning the sort field's value for an object (used to construct the next cursor)
+     * @param descending whether to sort in descending order
+     * @param cursor     cursor from the previous page (see {@link Page#nextCursor}) or null for the first page
+     * @param limit      maximum number of objects to return
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<T> getPage(
+        Bson filter,
+        String sortField,
+        Function<T, Object> sortValue,
+        boolean descending,
+        String cursor,
+        int limit
+    ) {
+        final Bson pageFilter;
+        if (cursor != null) {
+            Document lastItem = Page.decodeCursor(cursor);
+            Object lastValue = lastItem.get("value");
+            String lastId = lastItem.getString("id");
+            Bson keyset = descending
+                ? or(lt(sortField, lastValue), and(eq(sortField, lastValue), lt("_id", lastId)))
+                : or(gt(sortField, lastValue), and(eq(sortField, lastValue), gt("_id", lastId)));
+            pageFilter = and(filter, keyset);
+        } else {
+            pageFilter = filter;
+        }
+        // Fetch one extra object to determine whether there is a following page.
+        List<T> items = measureList(Operation.GET_FILTERED, pageFilter, () -> mongoCollection
+            .find(pageFilter)
+            .sort(descending ? Sorts.descending(sortField, "_id") : Sorts.ascending(sortField, "_id"))
+            .limit(limit + 1)
+            .into(new ArrayList<>()));
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = new ArrayList<>(items.subList(0, limit));
+            T last = items.get(limit - 1);
+            nextCursor = Page.encodeCursor(sortValue.apply(last), last.id);
+        }
+        return new Page<>(items, nextCursor);
+    }
+
+    /**
+     * Run the provided aggregation pipeline against this collection, decoding each result as this collection's type
+     * (e.g., for a pipeline that selects one object per group).
+     */
+    public List<T> aggregate (List<? extends Bson> pipeline) {
+        return measureList(
+            Operation.AGGREGATE,
+            pipeline,
+            () -> mongoCollection.aggregate(pipeline).into(new ArrayList<>())
+        );
+    }
+
+    /**
+     * Write model that inserts the provided object. See {@link #bulkWrite}.
+     */
+    public InsertOneModel<T> insertModel (T newObject) {
+        return new InsertOneModel<>(newObject);
+    }
+
+    /**
+     * Write model that replaces the object with the same ID as the provided object. See {@link #bulkWrite}.
+     */
+    public ReplaceOneModel<T> replaceModel (T replaceObject) {
+        return new ReplaceOneModel<>(eq(replaceObject.id), replaceObject);
+    }
+
+    /**
+     * Write model equivalent to {@link #update(String, Document)}. See {@link #bulkWrite}.
+     */
+    public UpdateOneModel<T> updateModel (String id, Document updateDocument) {
+        updateDocument.put("lastUpdated", new Date());
+        return new UpdateOneModel<>(eq(id), new Document("$set", updateDocument));
+    }
+
+    /**
+     * Write model equivalent to {@link #updateField}. See {@link #bulkWrite}.
+     */
+    public UpdateOneModel<T> updateFieldModel (String id, String fieldName, Object value) {
+        return updateModel(id, new Document(fieldName, value));
+    }
+
+    /**
+     * Write model equivalent to {@link #createOrUpdate}. See {@link #bulkWrite}.
+     */
+    public UpdateOneModel<T> createOrUpdateModel (T newObject, Document updateDocument) {
+        return new UpdateOneModel<>(
+            eq(newObject.id),
+            buildUpsert(newObject, updateDocument),
+            new UpdateOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Apply the provided write operations (constructed with the *Model methods above) in chunks of
+     * {@link #BULK_WRITE_CHUNK_SIZE}, so that large batches of inserts, replaces and updates take a handful of round
+     * trips rather than one per document. If ordered is true, the operations are applied in sequence and writing stops
+     * at the first error. Otherwise, the server may apply them in any order and continues past errors (an exception is
+     * still thrown once the chunk has been processed).
+     *
+     * @return the number of documents inserted, modified or upserted
+     */
+    public int bulkWrite (List<? extends WriteModel<T>> operations, boolean ordered) {
+        if (operations.isEmpty()) return 0;
+        int affectedCount = 0;
+        BulkWriteOptions options = new BulkWriteOptions().ordered(ordered);
+        try {
+            for (List<? extends WriteModel<T>> chunk : Lists.partition(operations, BULK_WRITE_CHUNK_SIZE)) {
+                BulkWriteResult result = measure(
+                    Operation.BULK_WRITE,
+                    String.format("%d write operations", chunk.size()),
+                    () -> mongoCollection.bulkWrite(chunk, options),
+                    bulkWriteResult -> bulkWriteResult.getInsertedCount() + bulkWriteResult.getModifiedCount() +
+                        bulkWriteResult.getUpserts().size()
+                );
+                affectedCount += result.getInsertedCount() + result.getModifiedCount() + result.getUpserts().size();
+            }
+        } finally {
+            // The affected IDs are not tracked, so clear the entire cache.
+            invalidateAll();
+        }
+        LOG.info("Bulk wrote {} operations to {} ({} documents affected)", operations.size(), collectionName, affectedCount);
+        return affectedCount;
+    }
+
+    /**
+     * Stream all objects satisfying the supplied Mongo filter using the default batch size. See
+     * {@link #stream(Bson, Bson, int, String...)}.
+     */
+    public Stream<T> stream(Bson filter) {
+        return stream(filter, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Stream the objects satisfying the supplied Mongo filter from a server-side cursor, so that only one batch of
+     * documents is held in memory at a time (unlike {@link #getAll()} or {@link #getFiltered(Bson)}, which load the
+     * entire result set into a list). The returned stream holds an open cursor and must be closed by the caller, which
+     * is best done with a try-with-resources block. Closing the stream before it is exhausted releases the cursor early.
+     *
+     * @param filter         Mongo filter (an empty {@link Document} matches all objects)
+     * @param sortBy         optional sort (null for natural order)
+     * @param batchSize      number of documents to fetch from the server per round trip
+     * @param includedFields optional projection (if empty, all fields are populated)
+     */
+    public Stream<T> stream(Bson filter, Bson sortBy, int batchSize, String... includedFields) {
+        FindIterable<T> results = mongoCollection.find(filter).batchSize(batchSize);
+        if (sortBy != null) results = results.sort(sortBy);
+        if (includedFields.length > 0) results = results.projection(fields(include(includedFields)));
+        // Opening the cursor fetches the first batch, so this is what is recorded in the metrics.
+        FindIterable<T> query = results;
+        MongoCursor<T> cursor = measure(Operation.GET_FILTERED, filter, query::iterator, c -> 0);
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(cursor::close);
     }
 
     /**
@@ -220,10 +796,9 @@ public class TypedPersistence<T extends Model> {
      * We should really have a bit more abstraction here.
      */
     public T getOneFiltered (Bson filter, Bson sortBy) {
-        if (sortBy != null)
-            return mongoCollection.find(filter).sort(sortBy).first();
-        else
-            return mongoCollection.find(filter).first();
+        return measureOne(Operation.GET_FILTERED, filter, () -> (sortBy != null)
+            ? mongoCollection.find(filter).sort(sortBy).first()
+            : mongoCollection.find(filter).first());
     }
 
     /** Convenience wrapper for #getOneFiltered that supplies null for sortBy arg. */
@@ -232,7 +807,8 @@ public class TypedPersistence<T extends Model> {
     }
 
     public boolean removeById (String id) {
-        DeleteResult result = mongoCollection.deleteOne(eq(id));
+        DeleteResult result = measure(Operation.DELETE, eq(id), () -> mongoCollection.deleteOne(eq(id)), r -> 0);
+        invalidate(id);
         if (result.getDeletedCount() == 1) {
             LOG.info("Deleted object id={} type={}", id, collectionName);
             return true;
@@ -244,6 +820,17 @@ public class TypedPersistence<T extends Model> {
         return false;
     }
 
+    /**
+     * Atomically remove the first object matching the filter, e.g., to delete an object only if it has not changed.
+     *
+     * @return the removed object, or null if no object matched the filter
+     */
+    public T removeOneFiltered (Bson filter) {
+        T removed = measureOne(Operation.DELETE, filter, () -> mongoCollection.findOneAndDelete(filter));
+        if (removed != null) invalidate(removed.id);
+        return removed;
+    }
+
     /**
      * Generic method to remove a specific note from the {@link Model#noteIds} list.
      */
@@ -256,11 +843,14 @@ public class TypedPersistence<T extends Model> {
      * Apply update filter to documents that match query.
      */
     public UpdateResult updateMany(Bson query, Bson update) {
-        return mongoCollection.updateMany(query, update);
+        UpdateResult result = measure(Operation.UPDATE, query, () -> mongoCollection.updateMany(query, update), r -> 0);
+        invalidateAll();
+        return result;
     }
 
     public boolean removeFiltered (Bson filter) {
-        DeleteResult result = mongoCollection.deleteMany(filter);
+        DeleteResult result = measure(Operation.DELETE, filter, () -> mongoCollection.deleteMany(filter), r -> 0);
+        invalidateAll();
         long count = result.getDeletedCount();
         if (count >= 1) {
             LOG.info("Deleted {} objects of type {}", count, collectionName);
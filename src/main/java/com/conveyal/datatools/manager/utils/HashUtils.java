@@ -1,25 +1,94 @@
 package com.conveyal.datatools.manager.utils;
 
-import com.conveyal.datatools.manager.extensions.mtc.MtcFeedResource;
+import com.google.common.io.ByteStreams;
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
 public class HashUtils {
 
-    public static final Logger LOG = LoggerFactory.getLogger(MtcFeedResource.class);
+    public static final Logger LOG = LoggerFactory.getLogger(HashUtils.class);
+
+    /** The digest used for feed file hashes. Unlike the sampled MD5 hashes it replaced, it covers the entire file. */
+    private static final String HASH_ALGORITHM = "SHA-256";
+    /** Length of the hex-encoded sampled MD5 hashes stored for feed versions created before full-content hashes. */
+    private static final int LEGACY_HASH_LENGTH = 32;
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wrap an input stream so that the hash of everything read from it can be obtained afterwards with
+     * {@link #getHash}. This allows hashing a file while it is being written (e.g., by copying the wrapped stream to
+     * disk) rather than reading it back from disk afterwards.
+     */
+    public static DigestInputStream newHashingInputStream(InputStream inputStream) {
+        return new DigestInputStream(inputStream, newMessageDigest());
+    }
+
+    /**
+     * @return the hash (as a hex string) of the bytes read so far from a stream created with
+     * {@link #newHashingInputStream}. This resets the digest, so it should only be called once the stream has been
+     * read to the end.
+     */
+    public static String getHash(DigestInputStream inputStream) {
+        return new String(Hex.encodeHex(inputStream.getMessageDigest().digest()));
+    }
+
+    /**
+     * Copy the input stream to the output stream (without closing either) and return the hash of the bytes copied.
+     */
+    public static String copyAndHash(InputStream inputStream, OutputStream outputStream) throws IOException {
+        DigestInputStream hashingInputStream = newHashingInputStream(inputStream);
+        ByteStreams.copy(hashingInputStream, outputStream);
+        return getHash(hashingInputStream);
+    }
+
+    /**
+     * Get the hash of the entire contents of the specified file. Where possible, prefer hashing a file while it is
+     * being written with {@link #newHashingInputStream} or {@link #copyAndHash}, which avoids reading it again.
+     */
+    public static String hashFile(File file) {
+        try (DigestInputStream dis = newHashingInputStream(new FileInputStream(file))) {
+            ByteStreams.exhaust(dis);
+            return getHash(dis);
+        } catch (Exception e) {
+            LOG.warn("Failed to hash file, returning empty string instead", e);
+            return "";
+        }
+    }
+
+    /**
+     * @return whether the hash was computed with {@link #legacyHashFile} (i.e., it was stored for a feed version created
+     * before full-content hashes were introduced).
+     */
+    public static boolean isLegacyHash(String hash) {
+        return hash != null && hash.length() == LEGACY_HASH_LENGTH;
+    }
 
     /**
-     * Get MD5 hash for the specified file.
+     * Get the MD5 hash of a sample of the specified file (its size, first 1000 bytes and 5000 bytes from the middle).
+     * This is how feed files were hashed before full-content hashes were introduced and is only used to compare new
+     * files to feed versions that still have one of these hashes.
      */
-    public static String hashFile(File file)  {
+    public static String legacyHashFile(File file)  {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
             FileInputStream fis = new FileInputStream(file);
@@ -45,8 +114,7 @@ public class HashUtils {
             dis.close();
             return new String(Hex.encodeHex(md.digest()));
         } catch(Exception e) {
-            LOG.warn("Failed to hash file, returning empty string instead");
-            e.printStackTrace();
+            LOG.warn("Failed to hash file, returning empty string instead", e);
             return "";
         }
     }
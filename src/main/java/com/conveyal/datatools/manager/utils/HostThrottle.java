@@ -0,0 +1,95 @@
+package com.conveyal.datatools.manager.utils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the number of concurrent requests to each host and spaces out the start of consecutive requests to the same
+ * host (a politeness delay), so that fetching many feeds published by the same agency neither hits its server all at
+ * once nor back to back. Requests to different hosts do not wait on one another.
+ *
+ * Permits are re-entrant: a thread that already holds a permit for a host (e.g., while following a redirect to the same
+ * host) does not wait for another.
+ */
+public class HostThrottle {
+    private final int maxConcurrentPerHost;
+    private final long delayMillis;
+    private final Map<String, HostState> stateForHost = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<String, Integer>> permitsHeldByThread = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @param maxConcurrentPerHost maximum number of requests in progress for a host at once
+     * @param delayMillis          minimum time between the start of consecutive requests to a host
+     */
+    public HostThrottle(int maxConcurrentPerHost, long delayMillis) {
+        this.maxConcurrentPerHost = Math.max(maxConcurrentPerHost, 1);
+        this.delayMillis = Math.max(delayMillis, 0);
+    }
+
+    /**
+     * Wait until a request may be made to the host. Every call must be followed by a call to {@link #release} (e.g., in
+     * a finally block) once the request has finished.
+     */
+    public void acquire(String host) throws InterruptedException {
+        String key = host.toLowerCase(Locale.ROOT);
+        Map<String, Integer> permitsHeld = permitsHeldByThread.get();
+        if (permitsHeld.containsKey(key)) {
+            permitsHeld.merge(key, 1, Integer::sum);
+            return;
+        }
+        HostState state = stateForHost.computeIfAbsent(key, k -> new HostState());
+        synchronized (state) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (state.active < maxConcurrentPerHost) {
+                    if (now >= state.nextStartMillis) break;
+                    state.wait(state.nextStartMillis - now);
+                } else {
+                    // Wait for a request to finish.
+                    state.wait();
+                }
+            }
+            state.active++;
+            state.nextStartMillis = System.currentTimeMillis() + delayMillis;
+        }
+        permitsHeld.put(key, 1);
+    }
+
+    /**
+     * Release a permit acquired with {@link #acquire}.
+     */
+    public void release(String host) {
+        String key = host.toLowerCase(Locale.ROOT);
+        Map<String, Integer> permitsHeld = permitsHeldByThread.get();
+        Integer held = permitsHeld.get(key);
+        if (held == null) throw new IllegalStateException("No permit held for host " + host);
+        if (held > 1) {
+            permitsHeld.put(key, held - 1);
+            return;
+        }
+        permitsHeld.remove(key);
+        HostState state = stateForHost.get(key);
+        synchronized (state) {
+            state.active--;
+            state.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of requests in progress for the host.
+     */
+    public int getActiveCount(String host) {
+        HostState state = stateForHost.get(host.toLowerCase(Locale.ROOT));
+        if (state == null) return 0;
+        synchronized (state) {
+            return state.active;
+        }
+    }
+
+    private static class HostState {
+        private int active;
+        private long nextStartMillis;
+    }
+}
@@ -0,0 +1,250 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * Runs jobs on a fixed set of thread pools, one per {@link Pool}, so that long-running work of one kind (e.g., a
+ * deployment) cannot hold up work of another (e.g., processing a feed version the user just uploaded). Within a pool,
+ * queued jobs are started in order of {@link Priority} and then in the order they were submitted, so interactive
+ * requests overtake bulk work without starving other jobs of the same priority.
+ *
+ * The number of threads in each pool is configurable (see {@link Pool#configKey}) so that it can be sized to the host.
+ * The number of queued and running jobs of each {@link JobType} is tracked for the status endpoint, and the time each
+ * job waits in the queue is recorded in {@link JobMetrics}.
+ */
+public class JobExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(JobExecutor.class);
+
+    /** The thread pools that jobs are divided between. */
+    public enum Pool {
+        /** CPU and I/O intensive processing (e.g., loading, validating and merging feeds or creating snapshots). */
+        HEAVY("JOB_EXECUTOR_HEAVY_THREADS", 4),
+        /**
+         * Deployments, which can run for tens of minutes but spend most of their time waiting on remote servers. Each
+         * deployment holds a thread from this pool for its whole duration (including while it waits for its servers to
+         * start), so this bounds the number of deployments that run at once.
+         */
+        DEPLOY("JOB_EXECUTOR_DEPLOY_THREADS", 2),
+        /** Short tasks that should start promptly (e.g., publishing and sending notifications). */
+        LIGHT("JOB_EXECUTOR_LIGHT_THREADS", 2),
+        /**
+         * Feed fetches, which spend most of their time waiting on remote servers and so can run many at once without
+         * competing with processing for CPU. Fetches that find a new version hand processing on to the heavy pool.
+         */
+        FETCH("JOB_EXECUTOR_FETCH_THREADS", 8);
+
+        /** Config property (in env.yml) for the number of threads in the pool. */
+        public final String configKey;
+        public final int defaultThreads;
+
+        Pool(String configKey, int defaultThreads) {
+            this.configKey = configKey;
+            this.defaultThreads = defaultThreads;
+        }
+
+        int configuredThreads() {
+            int threads = Integer.parseInt(getConfigPropertyAsText(configKey, String.valueOf(defaultThreads)));
+            if (threads < 1) {
+                LOG.warn("{} must be at least 1 (found {}). Using default of {}.", configKey, threads, defaultThreads);
+                return defaultThreads;
+            }
+            return threads;
+        }
+    }
+
+    /** Priority tiers for queued jobs, highest first. */
+    public enum Priority {
+        /** Jobs that a user has requested and is waiting on (e.g., a manual upload or fetch). */
+        INTERACTIVE,
+        /** Routine automated work (e.g., scheduled fetches and auto-deployments). */
+        NORMAL,
+        /** Maintenance and bulk work that can wait (e.g., re-validating all feeds or data migrations). */
+        BULK
+    }
+
+    /** The pool for each job type. Job types that are not listed here run on the {@link Pool#HEAVY} pool. */
+    private static final Map<JobType, Pool> poolForJobType = new EnumMap<>(JobType.class);
+    static {
+        poolForJobType.put(JobType.DEPLOY_TO_OTP, Pool.DEPLOY);
+        poolForJobType.put(JobType.AUTO_DEPLOY_FEED_VERSION, Pool.DEPLOY);
+        poolForJobType.put(JobType.UPDATE_PELIAS, Pool.DEPLOY);
+        poolForJobType.put(JobType.FETCH_SINGLE_FEED, Pool.FETCH);
+        // A project fetch only queues a fetch of each of the project's feeds (on the fetch pool), so it is short.
+        poolForJobType.put(JobType.FETCH_PROJECT_FEEDS, Pool.LIGHT);
+        poolForJobType.put(JobType.MAKE_PROJECT_PUBLIC, Pool.LIGHT);
+        poolForJobType.put(JobType.NOTIFY_USERS, Pool.LIGHT);
+        poolForJobType.put(JobType.REPAIR_LATEST_VERSION_SUMMARIES, Pool.LIGHT);
+        poolForJobType.put(JobType.MIGRATE_VALIDATION_RESULTS, Pool.LIGHT);
+    }
+
+    private final Map<Pool, ThreadPoolExecutor> executorForPool = new EnumMap<>(Pool.class);
+    /** Tie-breaker that keeps jobs of the same priority in submission order. */
+    private final AtomicLong submissionSequence = new AtomicLong();
+    private final Map<JobType, AtomicInteger> queuedCountForJobType = new ConcurrentHashMap<>();
+    private final Map<JobType, AtomicInteger> runningCountForJobType = new ConcurrentHashMap<>();
+
+    /**
+     * Create an executor with the number of threads for each pool read from the application config.
+     */
+    public JobExecutor() {
+        for (Pool pool : Pool.values()) {
+            int threads = pool.configuredThreads();
+            // Core and maximum pool sizes must be equal because a thread pool executor only adds threads beyond the
+            // core size when the queue is full, which an unbounded priority queue never is.
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(pool.name().toLowerCase() + "-job-%d").build()
+            );
+            executorForPool.put(pool, executor);
+            LOG.info("Created {} job pool with {} threads", pool, threads);
+        }
+    }
+
+    /**
+     * @return the pool that jobs of the given type run on.
+     */
+    public static Pool poolFor(JobType type) {
+        return poolForJobType.getOrDefault(type, Pool.HEAVY);
+    }
+
+    /**
+     * Queue a job to run on the pool for its job type. The priority is recorded on the job so that any follow-on jobs
+     * it queues can be given the same priority.
+     */
+    public void execute(MonitorableJob job, Priority priority) {
+        execute(job, poolFor(job.type), priority);
+    }
+
+    /**
+     * Queue a job to run on a specific pool rather than the pool for its job type. This is for jobs that will run
+     * heavier sub-jobs in the same thread (e.g., a fetch that goes on to process the new feed version).
+     */
+    public void execute(MonitorableJob job, Pool pool, Priority priority) {
+        job.priority = priority;
+        execute(job, job.type, pool, priority);
+    }
+
+    /**
+     * Queue a task that is not a {@link MonitorableJob} (e.g., a notification) to run on the pool for the given job
+     * type.
+     */
+    public void execute(Runnable task, JobType type, Priority priority) {
+        execute(task, type, poolFor(type), priority);
+    }
+
+    /**
+     * Queue a task on a specific pool, counting it against the given job type (e.g., a task that wraps a job).
+     */
+    public void execute(Runnable task, JobType type, Pool pool, Priority priority) {
+        counter(queuedCountForJobType, type).incrementAndGet();
+        executorForPool.get(pool)
+            .execute(new PrioritizedTask(task, type, priority, submissionSequence.getAndIncrement()));
+    }
+
+    private static AtomicInteger counter(Map<JobType, AtomicInteger> counts, JobType type) {
+        return counts.computeIfAbsent(type, t -> new AtomicInteger());
+    }
+
+    /**
+     * @return the number of threads in the given pool.
+     */
+    public int getPoolSize(Pool pool) {
+        return executorForPool.get(pool).getCorePoolSize();
+    }
+
+    /**
+     * @return the approximate number of threads in the given pool that are running a job.
+     */
+    public int getActiveCount(Pool pool) {
+        return executorForPool.get(pool).getActiveCount();
+    }
+
+    /**
+     * @return the number of jobs waiting for a thread in the given pool.
+     */
+    public int getQueueDepth(Pool pool) {
+        return executorForPool.get(pool).getQueue().size();
+    }
+
+    /**
+     * @return the number of jobs of each type waiting for a thread (types with no jobs waiting are omitted).
+     */
+    public Map<JobType, Integer> getQueueDepthByJobType() {
+        return snapshot(queuedCountForJobType);
+    }
+
+    /**
+     * @return the number of jobs of each type that are running (types with no jobs running are omitted).
+     */
+    public Map<JobType, Integer> getRunningCountByJobType() {
+        return snapshot(runningCountForJobType);
+    }
+
+    private static Map<JobType, Integer> snapshot(Map<JobType, AtomicInteger> counts) {
+        Map<JobType, Integer> snapshot = new EnumMap<>(JobType.class);
+        counts.forEach((type, count) -> {
+            if (count.get() > 0) snapshot.put(type, count.get());
+        });
+        return snapshot;
+    }
+
+    /**
+     * Wrapper that orders queued tasks by priority and then submission order and keeps the per job type counts up to
+     * date as the task moves from queued to running to finished.
+     */
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Runnable task;
+        private final JobType type;
+        private final Priority priority;
+        private final long sequence;
+        private final long queuedNanos = System.nanoTime();
+
+        PrioritizedTask(Runnable task, JobType type, Priority priority, long sequence) {
+            this.task = task;
+            this.type = type;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            counter(queuedCountForJobType, type).decrementAndGet();
+            JobMetrics.forJobType(type).recordQueueWait(System.nanoTime() - queuedNanos);
+            counter(runningCountForJobType, type).incrementAndGet();
+            try {
+                task.run();
+            } catch (Exception e) {
+                // Monitorable jobs handle their own exceptions, so this should only be reached by other tasks. Log the
+                // exception here because the executor would otherwise silently replace the thread.
+                LOG.error("Unhandled exception in {} task", type, e);
+            } finally {
+                counter(runningCountForJobType, type).decrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
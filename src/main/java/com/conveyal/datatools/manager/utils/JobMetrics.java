@@ -0,0 +1,225 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distributions of how long jobs of a single {@link JobType} wait in the {@link JobExecutor} queue, how long they run
+ * and how much CPU time and heap they use, for capacity planning. Queue wait is recorded by the executor for every task
+ * it runs. The rest are recorded by {@link com.conveyal.datatools.common.status.MonitorableJob#run} for every job,
+ * including sub-jobs (which do not pass through the queue).
+ *
+ * CPU time and allocated bytes are measured for the job's own logic on the thread that ran it, so they do not include
+ * sub-jobs, which are recorded against their own job type and also in the parent's sub-job breakdown. Both are
+ * omitted if the JVM does not support measuring them.
+ */
+public class JobMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(JobMetrics.class);
+
+    /** Upper bounds (inclusive, in milliseconds) of the buckets for time distributions. A final bucket holds the rest. */
+    private static final long[] TIME_BUCKET_BOUNDS_MS = {
+        100, 1000, 5000, 10_000, 30_000, 60_000, 300_000, 600_000, 1_800_000, 3_600_000
+    };
+    private static final long MB = 1024 * 1024;
+    /** Upper bounds (inclusive, in bytes) of the buckets for allocated bytes. A final bucket holds the rest. */
+    private static final long[] BYTE_BUCKET_BOUNDS = {MB, 10 * MB, 100 * MB, 1024 * MB, 10 * 1024 * MB};
+
+    private static final Map<JobType, JobMetrics> metricsForJobType = new ConcurrentHashMap<>();
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+    private static final boolean allocatedBytesSupported = initAllocatedBytesSupported();
+
+    private final Distribution queueWait = Distribution.ofMillis();
+    private final Distribution runTime = Distribution.ofMillis();
+    private final Distribution logicTime = Distribution.ofMillis();
+    private final Distribution cpuTime = Distribution.ofMillis();
+    private final Distribution allocatedBytes = new Distribution(BYTE_BUCKET_BOUNDS, "B");
+    private final LongAdder failedCount = new LongAdder();
+    /** The run time of the sub-jobs of this job type's jobs, by sub-job type. */
+    private final Map<JobType, Distribution> subJobRunTime = new ConcurrentHashMap<>();
+
+    private JobMetrics() { }
+
+    /**
+     * Get the metrics for the given job type.
+     */
+    public static JobMetrics forJobType(JobType type) {
+        return metricsForJobType.computeIfAbsent(type, t -> new JobMetrics());
+    }
+
+    /**
+     * @return the metrics for every job type that has been recorded, sorted by job type.
+     */
+    public static Map<JobType, JobMetrics> getAll() {
+        return Collections.unmodifiableMap(new EnumMap<>(metricsForJobType));
+    }
+
+    private static boolean initAllocatedBytesSupported() {
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return false;
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        try {
+            if (!sunThreadBean.isThreadAllocatedMemorySupported()) return false;
+            if (!sunThreadBean.isThreadAllocatedMemoryEnabled()) sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            LOG.warn("Could not enable measurement of thread allocated memory. Job allocations will not be recorded.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the CPU time used so far by the current thread, or -1 if it cannot be measured.
+     */
+    public static long currentThreadCpuNanos() {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * @return the number of bytes allocated so far by the current thread, or -1 if it cannot be measured.
+     */
+    public static long currentThreadAllocatedBytes() {
+        if (!allocatedBytesSupported) return -1;
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Record the time a job (or other task) of this type spent waiting for a thread in the executor.
+     */
+    public void recordQueueWait(long waitNanos) {
+        queueWait.record(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    /**
+     * Record a finished run of a job of this type.
+     *
+     * @param runMillis      wall clock time of the whole run, including sub-jobs
+     * @param logicMillis    wall clock time of the job's own logic
+     * @param cpuNanos       CPU time used by the job's own logic (negative if not measured)
+     * @param allocatedBytes bytes allocated by the job's own logic (negative if not measured)
+     * @param failed         whether the job (or one of its sub-jobs) failed
+     */
+    public void recordRun(long runMillis, long logicMillis, long cpuNanos, long allocatedBytes, boolean failed) {
+        runTime.record(runMillis);
+        logicTime.record(logicMillis);
+        if (cpuNanos >= 0) cpuTime.record(TimeUnit.NANOSECONDS.toMillis(cpuNanos));
+        if (allocatedBytes >= 0) this.allocatedBytes.record(allocatedBytes);
+        if (failed) failedCount.increment();
+    }
+
+    /**
+     * Record the run time of a sub-job of a job of this type.
+     */
+    public void recordSubJob(JobType subJobType, long runMillis) {
+        subJobRunTime.computeIfAbsent(subJobType, t -> Distribution.ofMillis()).record(runMillis);
+    }
+
+    public Distribution getQueueWait() {
+        return queueWait;
+    }
+
+    public Distribution getRunTime() {
+        return runTime;
+    }
+
+    public Distribution getLogicTime() {
+        return logicTime;
+    }
+
+    public Distribution getCpuTime() {
+        return cpuTime;
+    }
+
+    public Distribution getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return the run time of sub-jobs, by sub-job type.
+     */
+    public Map<JobType, Distribution> getSubJobRunTime() {
+        return Collections.unmodifiableMap(new EnumMap<>(subJobRunTime));
+    }
+
+    /**
+     * Running count, mean, max and histogram of a measurement. As with
+     * {@link com.conveyal.datatools.manager.persistence.PersistenceMetrics.OperationStats}, updates are lock-free and
+     * values read while jobs are being recorded may be slightly inconsistent with one another.
+     */
+    public static class Distribution {
+        private final long[] bucketBounds;
+        private final String unit;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram;
+
+        private Distribution(long[] bucketBounds, String unit) {
+            this.bucketBounds = bucketBounds;
+            this.unit = unit;
+            this.histogram = new AtomicLongArray(bucketBounds.length + 1);
+        }
+
+        private static Distribution ofMillis() {
+            return new Distribution(TIME_BUCKET_BOUNDS_MS, "ms");
+        }
+
+        private void record(long value) {
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+            int bucket = 0;
+            while (bucket < bucketBounds.length && value > bucketBounds[bucket]) bucket++;
+            histogram.incrementAndGet(bucket);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n > 0 ? (double) total.sum() / n : 0;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * @return the number of values in each bucket, keyed on the bucket's label (e.g., "<=1000ms" or
+         * ">3600000ms" for the last bucket) in ascending order.
+         */
+        public Map<String, Long> getHistogram() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (int i = 0; i < histogram.length(); i++) {
+                String label = i < bucketBounds.length
+                    ? "<=" + bucketBounds[i] + unit
+                    : ">" + bucketBounds[bucketBounds.length - 1] + unit;
+                counts.put(label, histogram.get(i));
+            }
+            return counts;
+        }
+    }
+}
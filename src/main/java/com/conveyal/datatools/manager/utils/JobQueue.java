@@ -0,0 +1,431 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ResumableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.model.WriteModel;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.nin;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Durable queue for {@link ResumableJob}s, backed by the JobRecord Mongo collection. Resumable jobs queued through
+ * {@link JobUtils#execute} are recorded before they are handed to the {@link JobExecutor}, so that if the server stops
+ * before they finish (e.g., a redeploy during a nightly fetch of every feed in a project), they are picked up again
+ * when a server next starts up rather than silently dropped.
+ *
+ * Each record is leased to the worker (i.e., server) that is holding it in its executor queue or running it. The
+ * worker renews its leases periodically, so a lease that expires means the worker has stopped and any worker may then
+ * claim the record (atomically, so that only one does) and run the job again. Jobs that do not implement
+ * {@link ResumableJob} are run as before without being recorded.
+ *
+ * The queue can also be shared between API servers and headless workers (see
+ * {@link com.conveyal.datatools.manager.JobWorkerMain}). API servers with JOB_QUEUE_ENQUEUE_ONLY set only record
+ * resumable jobs, unleased, and workers claim them as they have threads free. Workers copy the status of the jobs they
+ * are running to the records so that the status can be served by any API server.
+ */
+public class JobQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(JobQueue.class);
+
+    /** Whether resumable jobs are recorded in the database. */
+    private static final boolean ENABLED = Boolean.parseBoolean(getConfigPropertyAsText("JOB_QUEUE_ENABLED", "true"));
+    /** Whether this server only records resumable jobs for workers to run (rather than also running them). */
+    public static final boolean ENQUEUE_ONLY =
+        Boolean.parseBoolean(getConfigPropertyAsText("JOB_QUEUE_ENQUEUE_ONLY", "false"));
+    /** How long a lease lasts without being renewed. Leases are renewed at a third of this interval. */
+    private static final long LEASE_SECONDS = Long.parseLong(getConfigPropertyAsText("JOB_QUEUE_LEASE_SECONDS", "300"));
+    /** How often to check for jobs to claim and to copy the status of running jobs to their records. */
+    private static final long POLL_SECONDS = Long.parseLong(getConfigPropertyAsText("JOB_QUEUE_POLL_SECONDS", "5"));
+    /** Jobs that have been started this many times without finishing are failed rather than resumed again. */
+    private static final int MAX_ATTEMPTS = Integer.parseInt(getConfigPropertyAsText("JOB_QUEUE_MAX_ATTEMPTS", "3"));
+    /** Finished job records are deleted after this many days. */
+    private static final long RETENTION_DAYS = Long.parseLong(getConfigPropertyAsText("JOB_QUEUE_RETENTION_DAYS", "7"));
+
+    private static final List<String> UNFINISHED_STATES =
+        List.of(JobRecord.State.QUEUED.name(), JobRecord.State.RUNNING.name());
+    private static final List<String> FINISHED_STATES =
+        List.of(JobRecord.State.COMPLETED.name(), JobRecord.State.FAILED.name());
+
+    /** Unique ID for this worker, used as the owner of its leases. */
+    public final String workerId = createWorkerId();
+
+    /** Jobs for the records leased to this worker (queued in the executor or running), keyed on record ID. */
+    private final Map<String, MonitorableJob> heldJobs = new ConcurrentHashMap<>();
+
+    /** Whether this server is only recording jobs for other workers to run (see {@link #start}). */
+    private volatile boolean enqueueOnly = false;
+
+    private ScheduledExecutorService queueService;
+
+    private static String createWorkerId() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            hostName = "unknown-host";
+        }
+        return hostName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * @return whether resumable jobs are recorded (requires the database to have been initialized).
+     */
+    public boolean isEnabled() {
+        return ENABLED && Persistence.jobRecords != null;
+    }
+
+    /**
+     * Start the durable queue. This should be called once on start up, after the database has been initialized.
+     *
+     * @param claimJobs if true, resume any jobs left unfinished by a worker that has stopped and keep claiming jobs
+     *                  queued by other servers as threads become free. If false, this server only records resumable
+     *                  jobs for workers to run.
+     */
+    public synchronized void start(boolean claimJobs) {
+        if (!isEnabled() || queueService != null) return;
+        enqueueOnly = !claimJobs;
+        if (enqueueOnly) {
+            LOG.info("Durable job queue started in enqueue-only mode. Resumable jobs will be run by workers.");
+            return;
+        }
+        queueService = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("job-queue-%d").build()
+        );
+        queueService.scheduleWithFixedDelay(this::poll, 0, POLL_SECONDS, TimeUnit.SECONDS);
+        long renewalSeconds = Math.max(LEASE_SECONDS / 3, 1);
+        queueService.scheduleWithFixedDelay(this::maintain, renewalSeconds, renewalSeconds, TimeUnit.SECONDS);
+        LOG.info("Started durable job queue as worker {}", workerId);
+    }
+
+    /**
+     * Queue a job to run on the given pool. If the job is resumable, it is first recorded in the database, leased to
+     * this worker so that it can be resumed elsewhere if this worker stops. In enqueue-only mode, the record is left
+     * unleased for a worker to claim instead.
+     */
+    public void submit(MonitorableJob job, JobExecutor.Pool pool, JobExecutor.Priority priority) {
+        if (!isEnabled() || !(job instanceof ResumableJob)) {
+            JobUtils.jobExecutor.execute(job, pool, priority);
+            return;
+        }
+        JobRecord record = new JobRecord(job, pool, priority);
+        if (enqueueOnly) {
+            // An expired lease marks the record as available to any worker.
+            record.leaseExpiresAt = new Date(0);
+        } else {
+            record.leaseOwner = workerId;
+            record.leaseExpiresAt = nextLeaseExpiry();
+        }
+        try {
+            Persistence.jobRecords.create(record);
+        } catch (Exception e) {
+            // Failing to record the job should not prevent it from running.
+            LOG.error("Could not record {} (jobId={}) in durable queue. Running without it.", job.type, job.jobId, e);
+            JobUtils.jobExecutor.execute(job, pool, priority);
+            return;
+        }
+        if (enqueueOnly) {
+            // The job object is only used by this server to report the initial status. Remove it from the registry
+            // so that its status is served from the record as the worker updates it.
+            JobUtils.handOffJob(job);
+            return;
+        }
+        executeLeased(job, record);
+    }
+
+    /**
+     * Queue a job for a record leased to this worker, marking the record as running when the job starts and as
+     * completed or failed once it finishes.
+     */
+    private void executeLeased(MonitorableJob job, JobRecord record) {
+        heldJobs.put(record.id, job);
+        job.priority = record.priority;
+        JobUtils.jobExecutor.execute(() -> runLeased(job, record.id), job.type, record.pool, record.priority);
+    }
+
+    private void runLeased(MonitorableJob job, String recordId) {
+        try {
+            if (!markRunning(job, recordId)) {
+                LOG.warn("Lease on {} (jobId={}) was lost before it started. Skipping.", job.type, job.jobId);
+                job.status.fail("Job was claimed by another worker.");
+                return;
+            }
+            job.run();
+            JobRecord.State finalState = job.status.error ? JobRecord.State.FAILED : JobRecord.State.COMPLETED;
+            finish(recordId, finalState, job.status);
+        } finally {
+            heldJobs.remove(recordId);
+        }
+    }
+
+    /**
+     * Mark the record as running, but only if this worker still holds the lease. It could have been lost if, e.g.,
+     * this worker was unable to reach the database to renew it, in which case another worker may have claimed it.
+     *
+     * @return false if the lease has been lost
+     */
+    boolean markRunning(MonitorableJob job, String recordId) {
+        try {
+            JobRecord running = Persistence.jobRecords.updateOneFiltered(
+                and(eq(recordId), eq("leaseOwner", workerId)),
+                combine(
+                    set("state", JobRecord.State.RUNNING.name()),
+                    set("jobId", job.jobId),
+                    set("workerId", workerId),
+                    set("startedAt", new Date()),
+                    inc("attempts", 1)
+                )
+            );
+            return running != null;
+        } catch (Exception e) {
+            // If the database cannot be reached, run the job anyway rather than dropping it.
+            LOG.error("Could not mark job record {} as running", recordId, e);
+            return true;
+        }
+    }
+
+    /**
+     * Record the final state (and status, if known) of a job and release its lease.
+     */
+    private static void finish(String recordId, JobRecord.State state, MonitorableJob.Status status) {
+        try {
+            Persistence.jobRecords.updateOneFiltered(
+                eq(recordId),
+                combine(
+                    set("state", state.name()),
+                    set("finishedAt", new Date()),
+                    set("status", status),
+                    set("leaseOwner", null),
+                    set("leaseExpiresAt", null)
+                )
+            );
+        } catch (Exception e) {
+            LOG.error("Could not record final state of job record {}", recordId, e);
+        }
+    }
+
+    /**
+     * Fail a record that cannot be run, with the given message as its status.
+     */
+    private static void fail(JobRecord record, String message) {
+        MonitorableJob.Status status = record.status != null ? record.status : new MonitorableJob.Status();
+        status.name = record.name;
+        status.fail(message);
+        finish(record.id, JobRecord.State.FAILED, status);
+    }
+
+    /**
+     * Copy the status of running jobs to their records and claim as many queued or abandoned jobs as there are free
+     * threads for. Exceptions are caught so that a database outage does not cancel the scheduled task.
+     */
+    private void poll() {
+        try {
+            syncStatuses();
+            claimJobs();
+        } catch (Exception e) {
+            LOG.error("Error polling durable job queue", e);
+        }
+    }
+
+    /**
+     * Renew the leases held by this worker and delete old finished records.
+     */
+    private void maintain() {
+        try {
+            if (!heldJobs.isEmpty()) renewLeases(new ArrayList<>(heldJobs.keySet()));
+            Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+            Persistence.jobRecords.getMongoCollection().deleteMany(and(
+                in("state", FINISHED_STATES),
+                lt("finishedAt", cutoff)
+            ));
+        } catch (Exception e) {
+            LOG.error("Error maintaining durable job queue", e);
+        }
+    }
+
+    /**
+     * Extend the leases on the given records, but only those still held by this worker (a lease that expired before it
+     * was renewed may have been claimed by another worker).
+     *
+     * @return the number of leases renewed
+     */
+    long renewLeases(List<String> recordIds) {
+        return Persistence.jobRecords.updateMany(
+            and(in("_id", recordIds), eq("leaseOwner", workerId)),
+            set("leaseExpiresAt", nextLeaseExpiry())
+        ).getModifiedCount();
+    }
+
+    private void syncStatuses() {
+        List<WriteModel<JobRecord>> updates = new ArrayList<>();
+        heldJobs.forEach((recordId, job) -> {
+            if (job.active) updates.add(Persistence.jobRecords.updateFieldModel(recordId, "status", job.status));
+        });
+        if (!updates.isEmpty()) Persistence.jobRecords.bulkWrite(updates, false);
+    }
+
+    /**
+     * Claim unfinished records whose lease has expired (i.e., records queued for any worker or abandoned by a worker
+     * that stopped), one at a time, for pools that have a free thread, and queue the recreated jobs on this worker.
+     */
+    private void claimJobs() {
+        JobRecord record;
+        while ((record = claimNext()) != null) {
+            if (record.attempts >= MAX_ATTEMPTS) {
+                LOG.error("Job record {} ({}) failed to finish after {} attempts.", record.id, record.type, record.attempts);
+                fail(record, "Job did not finish after " + record.attempts + " attempts.");
+                continue;
+            }
+            MonitorableJob job = null;
+            try {
+                job = recreateJob(record);
+            } catch (Exception e) {
+                LOG.error("Could not recreate job from record {}", record.id, e);
+            }
+            if (job == null) {
+                fail(record, "Job could not be resumed.");
+                continue;
+            }
+            LOG.info("Claimed {} from record {} as jobId={}", record.type, record.id, job.jobId);
+            executeLeased(job, record);
+        }
+    }
+
+    /**
+     * Atomically take the lease on a single claimable record.
+     *
+     * @return the claimed record or null if there are none to claim (or no free threads to run them)
+     */
+    JobRecord claimNext() {
+        List<String> poolsWithCapacity = new ArrayList<>();
+        for (JobExecutor.Pool pool : JobExecutor.Pool.values()) {
+            JobExecutor executor = JobUtils.jobExecutor;
+            if (executor.getActiveCount(pool) + executor.getQueueDepth(pool) < executor.getPoolSize(pool)) {
+                poolsWithCapacity.add(pool.name());
+            }
+        }
+        if (poolsWithCapacity.isEmpty()) return null;
+        Bson claimable = and(
+            in("state", UNFINISHED_STATES),
+            lt("leaseExpiresAt", new Date()),
+            in("pool", poolsWithCapacity)
+        );
+        return Persistence.jobRecords.updateOneFiltered(
+            claimable,
+            combine(
+                set("state", JobRecord.State.QUEUED.name()),
+                set("leaseOwner", workerId),
+                set("leaseExpiresAt", nextLeaseExpiry())
+            )
+        );
+    }
+
+    private static Date nextLeaseExpiry() {
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LEASE_SECONDS));
+    }
+
+    /**
+     * Get the record for a job that is being (or was) run by another server, so that its status can be reported by
+     * this one.
+     *
+     * @param jobId the ID the job was queued with (i.e., the record ID), which clients use to follow the job even
+     *              though a job recreated by a worker has a new job ID. The job's current ID is also accepted.
+     * @return the record or null if there is none for the user with that job ID
+     */
+    public JobRecord getRemoteJob(String userId, String jobId) {
+        if (!isEnabled()) return null;
+        JobRecord record = Persistence.jobRecords.getOneFiltered(and(
+            eq("userId", userId),
+            or(eq("_id", jobId), eq("jobId", jobId)),
+            ne("workerId", workerId)
+        ));
+        if (record != null && isFinished(record)) markSeen(List.of(record.id));
+        return record;
+    }
+
+    /**
+     * Get the records of a user's jobs that are queued for or run by other servers and have not yet been reported to
+     * the user in their final state. Finished records are marked as reported, mirroring the way finished jobs are
+     * cleared from the local registry once returned (see {@link JobUtils#getJobsByUserId}).
+     *
+     * @param localJobIds IDs of jobs in this server's registry, which are reported from the registry instead
+     */
+    public List<JobRecord> getRemoteJobsForUser(String userId, Collection<String> localJobIds) {
+        if (!isEnabled()) return List.of();
+        List<JobRecord> records = Persistence.jobRecords.getFiltered(and(
+            eq("userId", userId),
+            eq("seenByOwner", false),
+            ne("workerId", workerId),
+            nin("jobId", localJobIds)
+        ));
+        List<String> finishedRecordIds = records.stream()
+            .filter(JobQueue::isFinished)
+            .map(record -> record.id)
+            .collect(Collectors.toList());
+        if (!finishedRecordIds.isEmpty()) markSeen(finishedRecordIds);
+        return records;
+    }
+
+    private static boolean isFinished(JobRecord record) {
+        return FINISHED_STATES.contains(record.state.name());
+    }
+
+    private static void markSeen(List<String> recordIds) {
+        Persistence.jobRecords.updateMany(in("_id", recordIds), set("seenByOwner", true));
+    }
+
+    /**
+     * Recreate a job from its record. Only job types that implement {@link ResumableJob} need to be handled here.
+     *
+     * @return the recreated job or null if it cannot be recreated (e.g., its feed source has since been deleted).
+     */
+    static MonitorableJob recreateJob(JobRecord record) {
+        // The original user profile is not stored, but jobs run with the permissions of the server so only the
+        // owner's ID and email (used for status and notifications) are needed.
+        Auth0UserProfile owner = new Auth0UserProfile(record.userEmail, record.userId);
+        Map<String, String> parameters = record.parameters;
+        switch (record.type) {
+            case FETCH_SINGLE_FEED:
+                FeedSource feedSource = Persistence.feedSources.getById(parameters.get("feedSourceId"));
+                if (feedSource == null) return null;
+                return new FetchSingleFeedJob(
+                    feedSource,
+                    owner,
+                    Boolean.parseBoolean(parameters.get("continueThread"))
+                );
+            default:
+                LOG.warn("Job type {} cannot be resumed.", record.type);
+                return null;
+        }
+    }
+}
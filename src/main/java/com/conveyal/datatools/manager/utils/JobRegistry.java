@@ -0,0 +1,172 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.FeedSourceJob;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.ProjectJob;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of every job that has been created and not yet cleared, indexed by job ID, owner and (while the job is
+ * running) the feed source or project it operates on. Lookups by any of these keys take constant time regardless of
+ * how many jobs the server is tracking, so that frequent checks (e.g., polling a job's status or checking whether a
+ * feed source has a fetch in progress before auto-deploying) do not have to scan every user's jobs.
+ *
+ * Jobs are added when they are created (see {@link MonitorableJob}), move in and out of the active indexes as they
+ * start and finish running, and are removed once the owner has seen them in their final state (see
+ * {@link JobUtils#getJobsByUserId}).
+ */
+public class JobRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(JobRegistry.class);
+
+    private final Map<String, MonitorableJob> jobsById = new ConcurrentHashMap<>();
+    private final Map<String, Set<MonitorableJob>> jobsByUserId = new ConcurrentHashMap<>();
+    private final Set<MonitorableJob> activeJobs = Sets.newConcurrentHashSet();
+    private final Map<String, Set<MonitorableJob>> activeJobsByFeedSourceId = new ConcurrentHashMap<>();
+    private final Map<String, Set<MonitorableJob>> activeJobsByProjectId = new ConcurrentHashMap<>();
+    /**
+     * Keys that each active job was indexed under when it started, so that it is removed from the same sets when it
+     * finishes even if the values returned by its getters have since changed.
+     */
+    private final Map<MonitorableJob, IndexKeys> keysForActiveJob = new ConcurrentHashMap<>();
+
+    /**
+     * Add a newly created job to the registry.
+     */
+    public void register(MonitorableJob job) {
+        jobsById.put(job.jobId, job);
+        jobsByUserId.computeIfAbsent(job.retrieveUserId(), id -> Sets.newConcurrentHashSet()).add(job);
+    }
+
+    /**
+     * Remove a job from the registry (e.g., once its owner has seen that it completed).
+     */
+    public void remove(MonitorableJob job) {
+        jobsById.remove(job.jobId);
+        // Drop the user's set once empty (inside compute so that a job registered concurrently is not lost).
+        jobsByUserId.computeIfPresent(job.retrieveUserId(), (id, jobs) -> {
+            jobs.remove(job);
+            return jobs.isEmpty() ? null : jobs;
+        });
+        markFinished(job);
+    }
+
+    /**
+     * Index a job that has started running by the feed source or project it operates on. This is done when the job
+     * starts rather than when it is created because job constructors only set the fields these IDs are derived from
+     * after the job has been registered.
+     */
+    public void markStarted(MonitorableJob job) {
+        IndexKeys keys = new IndexKeys(feedSourceIdFor(job), projectIdFor(job));
+        keysForActiveJob.put(job, keys);
+        activeJobs.add(job);
+        if (keys.feedSourceId != null) addToIndex(activeJobsByFeedSourceId, keys.feedSourceId, job);
+        if (keys.projectId != null) addToIndex(activeJobsByProjectId, keys.projectId, job);
+    }
+
+    /**
+     * Remove a job that has stopped running from the active indexes.
+     */
+    public void markFinished(MonitorableJob job) {
+        activeJobs.remove(job);
+        IndexKeys keys = keysForActiveJob.remove(job);
+        if (keys == null) return;
+        if (keys.feedSourceId != null) removeFromIndex(activeJobsByFeedSourceId, keys.feedSourceId, job);
+        if (keys.projectId != null) removeFromIndex(activeJobsByProjectId, keys.projectId, job);
+    }
+
+    /**
+     * @return the job with the given ID or null if there is no such job (or it has been cleared).
+     */
+    public MonitorableJob getById(String jobId) {
+        return jobId == null ? null : jobsById.get(jobId);
+    }
+
+    /**
+     * @return a snapshot of the jobs owned by the given user (empty if there are none).
+     */
+    public Set<MonitorableJob> getByUserId(String userId) {
+        return snapshot(userId == null ? null : jobsByUserId.get(userId));
+    }
+
+    /**
+     * @return a snapshot of every registered job.
+     */
+    public Set<MonitorableJob> getAll() {
+        return new HashSet<>(jobsById.values());
+    }
+
+    /**
+     * @return a snapshot of the jobs that are running.
+     */
+    public Set<MonitorableJob> getActive() {
+        return snapshot(activeJobs);
+    }
+
+    /**
+     * @return a snapshot of the running jobs that operate on the given feed source.
+     */
+    public Set<MonitorableJob> getActiveByFeedSourceId(String feedSourceId) {
+        return snapshot(feedSourceId == null ? null : activeJobsByFeedSourceId.get(feedSourceId));
+    }
+
+    /**
+     * @return a snapshot of the running jobs that operate on the given project.
+     */
+    public Set<MonitorableJob> getActiveByProjectId(String projectId) {
+        return snapshot(projectId == null ? null : activeJobsByProjectId.get(projectId));
+    }
+
+    private static void addToIndex(Map<String, Set<MonitorableJob>> index, String key, MonitorableJob job) {
+        index.computeIfAbsent(key, k -> Sets.newConcurrentHashSet()).add(job);
+    }
+
+    private static void removeFromIndex(Map<String, Set<MonitorableJob>> index, String key, MonitorableJob job) {
+        index.computeIfPresent(key, (k, jobs) -> {
+            jobs.remove(job);
+            return jobs.isEmpty() ? null : jobs;
+        });
+    }
+
+    private static Set<MonitorableJob> snapshot(Set<MonitorableJob> jobs) {
+        return jobs == null ? Collections.emptySet() : new HashSet<>(jobs);
+    }
+
+    private static String feedSourceIdFor(MonitorableJob job) {
+        if (!(job instanceof FeedSourceJob)) return null;
+        try {
+            return ((FeedSourceJob) job).getFeedSourceId();
+        } catch (Exception e) {
+            // Some jobs derive the feed source ID from related entities, which may not exist (e.g., if deleted).
+            LOG.warn("Could not determine feed source for {} (jobId={})", job.type, job.jobId, e);
+            return null;
+        }
+    }
+
+    private static String projectIdFor(MonitorableJob job) {
+        if (!(job instanceof ProjectJob)) return null;
+        try {
+            return ((ProjectJob) job).getProjectId();
+        } catch (Exception e) {
+            LOG.warn("Could not determine project for {} (jobId={})", job.type, job.jobId, e);
+            return null;
+        }
+    }
+
+    private static class IndexKeys {
+        final String feedSourceId;
+        final String projectId;
+
+        IndexKeys(String feedSourceId, String projectId) {
+            this.feedSourceId = feedSourceId;
+            this.projectId = projectId;
+        }
+    }
+}
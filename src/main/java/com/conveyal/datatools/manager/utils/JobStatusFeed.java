@@ -0,0 +1,382 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.models.JobRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * Tracks changes to the status of each user's jobs so that clients can wait for changes (long-polling) rather than
+ * repeatedly requesting the full list of jobs. Every change (a job being registered, its status being updated,
+ * completed or failed, or the job being cleared) is stamped with a version from a single increasing sequence. A client
+ * passes the version from its previous response and receives only what has changed since: new jobs in full, and the
+ * status alone for jobs it already has. Only the latest state of each job is kept, so rapid updates to the same job
+ * between two requests are coalesced into one.
+ *
+ * Jobs queued for or run by other servers (e.g., headless workers) are tracked by their {@link JobRecord} in the durable
+ * job queue, which is read for the user while a client waits (see {@link #remoteJobsUpdated}). A job that this server
+ * hands off to the queue keeps its place in the feed under the same ID, so clients follow it through to completion.
+ */
+public class JobStatusFeed {
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusFeed.class);
+
+    /** Once a change is available, wait this long for any further changes so they are sent in the same response. */
+    private static final long COALESCE_MILLIS = Long.parseLong(getConfigPropertyAsText("JOB_STATUS_COALESCE_MS", "250"));
+    /** How often the durable job queue is read for changes to the user's remote jobs while a client waits. */
+    private static final long REMOTE_POLL_MILLIS =
+        Long.parseLong(getConfigPropertyAsText("JOB_STATUS_REMOTE_POLL_MS", "5000"));
+    /**
+     * Each waiting client holds a request thread, so the number of clients waiting at once is capped on this server and
+     * for each user (e.g., across several open tabs). Clients over the cap are answered immediately and asked to retry
+     * after {@link #OVER_CAPACITY_RETRY_MILLIS}.
+     */
+    private static final int MAX_WAITERS = Integer.parseInt(getConfigPropertyAsText("JOB_STATUS_MAX_WAITERS", "50"));
+    private static final int MAX_WAITERS_PER_USER =
+        Integer.parseInt(getConfigPropertyAsText("JOB_STATUS_MAX_WAITERS_PER_USER", "2"));
+    private static final long OVER_CAPACITY_RETRY_MILLIS = 5000;
+    /** Cleared jobs are reported as removed to clients that poll within this time. */
+    private static final long REMOVED_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final AtomicLong sequence = new AtomicLong();
+    /** The tracked jobs for each user, keyed on job ID. Each user's map is also used as the monitor to wait on. */
+    private final Map<String, Map<String, Entry>> entriesForUser = new ConcurrentHashMap<>();
+    /** The number of clients waiting for each user. Guarded by itself, along with {@link #waiterCount}. */
+    private final Map<String, Integer> waitersForUser = new HashMap<>();
+    private int waiterCount;
+
+    /**
+     * Start tracking a newly registered job.
+     */
+    public void jobRegistered(MonitorableJob job) {
+        bind(job);
+        publish(job, false);
+    }
+
+    /**
+     * Record that a job has started running. Its status object is re-bound in case it was replaced after the job was
+     * registered (e.g., by a subclass constructor).
+     */
+    public void jobStarted(MonitorableJob job) {
+        bind(job);
+        publish(job, false);
+    }
+
+    /**
+     * Record that a job has been cleared (e.g., after its owner has seen it complete).
+     */
+    public void jobRemoved(MonitorableJob job) {
+        publish(job, true);
+    }
+
+    /**
+     * Record that a job has been handed off to the durable job queue to be run by another server. Its local status is
+     * no longer published; the job stays in the feed (rather than being reported as removed) until its record is read
+     * by {@link #remoteJobsUpdated}, which then takes its place.
+     */
+    public void jobHandedOff(MonitorableJob job) {
+        Entry entry = entriesFor(job.retrieveUserId()).get(job.jobId);
+        if (entry != null) entry.handedOff = true;
+    }
+
+    /**
+     * Publish changes to the user's jobs recorded in the durable job queue (see
+     * {@link JobQueue#getRemoteJobsForUser}). Records are tracked by their ID (the ID the job was queued with) and
+     * published only when their state or status has changed. Records that are no longer returned (i.e., finished jobs
+     * that have already been reported) are reported as removed.
+     */
+    public void remoteJobsUpdated(String userId, List<JobRecord> records) {
+        Map<String, Entry> entries = entriesFor(userId);
+        Set<String> recordIds = new HashSet<>();
+        boolean changed = false;
+        for (JobRecord record : records) {
+            recordIds.add(record.id);
+            String signature = signature(record);
+            Entry entry = entries.get(record.id);
+            if (entry != null && !entry.removed && signature.equals(entry.recordSignature)) continue;
+            long version = sequence.incrementAndGet();
+            entries.compute(record.id, (id, existing) -> {
+                Entry updated = existing == null || existing.removed ? new Entry(record, version) : existing;
+                updated.job = record;
+                updated.recordSignature = signature;
+                updated.lastVersion = version;
+                return updated;
+            });
+            changed = true;
+        }
+        for (Entry entry : entries.values()) {
+            // Finished records are only returned once, and are removed once their final state has been collected.
+            if (entry.job instanceof JobRecord && !entry.removed && !isFinished((JobRecord) entry.job) &&
+                !recordIds.contains(entry.jobId())) {
+                markRemoved(entry);
+                changed = true;
+            }
+        }
+        if (changed) {
+            synchronized (entries) {
+                entries.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return a summary of the parts of a record that clients are shown, to detect when it has changed.
+     */
+    private static String signature(JobRecord record) {
+        MonitorableJob.Status status = record.status;
+        return status == null
+            ? String.valueOf(record.state)
+            : String.join("|", String.valueOf(record.state), status.message, String.valueOf(status.percentComplete),
+                String.valueOf(status.completed), String.valueOf(status.error));
+    }
+
+    private void bind(MonitorableJob job) {
+        job.status.onChange(() -> publish(job, false));
+    }
+
+    private void publish(MonitorableJob job, boolean removed) {
+        Map<String, Entry> entries = entriesFor(job.retrieveUserId());
+        Entry existing = entries.get(job.jobId);
+        // Once handed off to the durable queue (or replaced by its record), the job's progress comes from its record.
+        if (existing != null && (existing.handedOff || existing.job != job)) return;
+        long version = sequence.incrementAndGet();
+        entries.compute(job.jobId, (jobId, entry) -> {
+            if (entry == null) entry = new Entry(job, version);
+            entry.lastVersion = version;
+            if (removed) {
+                entry.removed = true;
+                entry.removedAt = System.currentTimeMillis();
+            }
+            return entry;
+        });
+        if (removed) pruneRemoved(entries);
+        synchronized (entries) {
+            entries.notifyAll();
+        }
+    }
+
+    private void markRemoved(Entry entry) {
+        entry.lastVersion = sequence.incrementAndGet();
+        entry.removed = true;
+        entry.removedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Stop tracking jobs that were cleared long enough ago that no polling client still needs to hear of it.
+     */
+    private static void pruneRemoved(Map<String, Entry> entries) {
+        long removedCutoff = System.currentTimeMillis() - REMOVED_RETENTION_MILLIS;
+        entries.values().removeIf(entry -> entry.removed && entry.removedAt < removedCutoff);
+    }
+
+    private Map<String, Entry> entriesFor(String userId) {
+        return entriesForUser.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Wait until any of the user's jobs has changed since the given version (or the timeout elapses) and return the
+     * changes. Jobs that have finished are cleared once they have been returned, as with
+     * {@link JobUtils#getJobsByUserId}.
+     *
+     * If too many clients are already waiting (see {@link #MAX_WAITERS}), the changes are returned without waiting and
+     * {@link Updates#retryAfterMillis} is set.
+     *
+     * @param since         version from the client's previous response (zero to get all current jobs)
+     * @param timeoutMillis maximum time to wait for a change
+     */
+    public Updates awaitUpdates(String userId, long since, long timeoutMillis) throws InterruptedException {
+        Map<String, Entry> entries = entriesFor(userId);
+        if (timeoutMillis <= 0) return waitForUpdates(userId, entries, since, 0);
+        if (!addWaiter(userId)) {
+            Updates updates = waitForUpdates(userId, entries, since, 0);
+            updates.retryAfterMillis = OVER_CAPACITY_RETRY_MILLIS;
+            return updates;
+        }
+        try {
+            return waitForUpdates(userId, entries, since, timeoutMillis);
+        } finally {
+            removeWaiter(userId);
+        }
+    }
+
+    private boolean addWaiter(String userId) {
+        synchronized (waitersForUser) {
+            int userWaiters = waitersForUser.getOrDefault(userId, 0);
+            if (waiterCount >= MAX_WAITERS || userWaiters >= MAX_WAITERS_PER_USER) return false;
+            waiterCount++;
+            waitersForUser.put(userId, userWaiters + 1);
+            return true;
+        }
+    }
+
+    private void removeWaiter(String userId) {
+        synchronized (waitersForUser) {
+            waiterCount--;
+            waitersForUser.computeIfPresent(userId, (id, userWaiters) -> userWaiters > 1 ? userWaiters - 1 : null);
+        }
+    }
+
+    private Updates waitForUpdates(
+        String userId,
+        Map<String, Entry> entries,
+        long since,
+        long timeoutMillis
+    ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        refreshRemoteJobs(userId);
+        long nextRemotePoll = System.currentTimeMillis() + REMOTE_POLL_MILLIS;
+        while (!hasChangesSince(entries, since)) {
+            long now = System.currentTimeMillis();
+            if (now >= deadline) break;
+            if (now >= nextRemotePoll) {
+                refreshRemoteJobs(userId);
+                nextRemotePoll = now + REMOTE_POLL_MILLIS;
+                continue;
+            }
+            synchronized (entries) {
+                if (hasChangesSince(entries, since)) break;
+                entries.wait(Math.min(deadline, nextRemotePoll) - now);
+            }
+        }
+        // A client that is not waiting (or could not be allowed to wait) is answered without coalescing further changes.
+        if (timeoutMillis > 0 && COALESCE_MILLIS > 0 && hasChangesSince(entries, since)) Thread.sleep(COALESCE_MILLIS);
+        return collectUpdates(entries, since);
+    }
+
+    /**
+     * Read the user's jobs queued for or run by other servers from the durable job queue, if it is enabled.
+     */
+    private void refreshRemoteJobs(String userId) {
+        JobQueue jobQueue = JobUtils.jobQueue;
+        if (jobQueue == null || !jobQueue.isEnabled()) return;
+        try {
+            Set<String> localJobIds = new HashSet<>();
+            JobUtils.getJobsByUserId(userId, false).forEach(job -> localJobIds.add(job.jobId));
+            remoteJobsUpdated(userId, jobQueue.getRemoteJobsForUser(userId, localJobIds));
+        } catch (Exception e) {
+            LOG.error("Could not read remote jobs for user {}", userId, e);
+        }
+    }
+
+    private static boolean isFinished(JobRecord record) {
+        return record.state == JobRecord.State.COMPLETED || record.state == JobRecord.State.FAILED;
+    }
+
+    private static boolean hasChangesSince(Map<String, Entry> entries, long since) {
+        for (Entry entry : entries.values()) {
+            if (entry.lastVersion > since) return true;
+        }
+        return false;
+    }
+
+    private Updates collectUpdates(Map<String, Entry> entries, long since) {
+        // Read the version before collecting so that any change made while collecting is also sent next time.
+        Updates updates = new Updates(sequence.get());
+        pruneRemoved(entries);
+        List<MonitorableJob> finishedJobs = new ArrayList<>();
+        List<Entry> finishedRecords = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.lastVersion <= since) continue;
+            if (entry.removed) {
+                // A client that never saw the job has no need to hear of its removal.
+                if (entry.firstVersion <= since) updates.removed.add(entry.jobId());
+                continue;
+            }
+            Object job = entry.job;
+            if (entry.firstVersion > since) updates.jobs.add(job);
+            else updates.updates.add(new StatusUpdate(job));
+            if (job instanceof JobRecord) {
+                if (isFinished((JobRecord) job)) finishedRecords.add(entry);
+            } else {
+                MonitorableJob localJob = (MonitorableJob) job;
+                if (localJob.status.completed || localJob.status.error) finishedJobs.add(localJob);
+            }
+        }
+        // The final status of these jobs is now on its way to the client, so clear them (which is reported as a
+        // removal in the next response).
+        for (MonitorableJob job : finishedJobs) JobUtils.clearJob(job);
+        for (Entry entry : finishedRecords) markRemoved(entry);
+        LOG.debug("Sending {} new, {} updated and {} removed jobs", updates.jobs.size(), updates.updates.size(), updates.removed.size());
+        return updates;
+    }
+
+    private static class Entry {
+        /** The job on this server ({@link MonitorableJob}) or its record in the durable job queue ({@link JobRecord}). */
+        volatile Object job;
+        /** Version at which the job was first tracked (clients that have seen this version already have the job). */
+        final long firstVersion;
+        volatile long lastVersion;
+        volatile boolean removed;
+        volatile long removedAt;
+        /** Whether a local job has been handed off to the durable job queue (see {@link #jobHandedOff}). */
+        volatile boolean handedOff;
+        /** For a record, the state last published (see {@link #signature}). */
+        volatile String recordSignature;
+
+        Entry(Object job, long firstVersion) {
+            this.job = job;
+            this.firstVersion = firstVersion;
+        }
+
+        String jobId() {
+            return job instanceof JobRecord ? ((JobRecord) job).id : ((MonitorableJob) job).jobId;
+        }
+    }
+
+    /**
+     * The changes to a user's jobs since the version passed by the client.
+     */
+    public static class Updates {
+        /** Version to pass on the next request to receive only later changes. */
+        public final long version;
+        /**
+         * If not zero, the server did not wait for changes because too many clients are waiting, and the client should
+         * wait this long before its next request.
+         */
+        public long retryAfterMillis;
+        /** Jobs that are new to the client, in full (either jobs on this server or records of remote jobs). */
+        public final List<Object> jobs = new ArrayList<>();
+        /** The status of jobs that the client already has. */
+        public final List<StatusUpdate> updates = new ArrayList<>();
+        /** IDs of jobs that have been cleared and should be dropped by the client. */
+        public final List<String> removed = new ArrayList<>();
+
+        Updates(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * The changed part of a job that the client already has.
+     */
+    public static class StatusUpdate {
+        public final String jobId;
+        public final boolean active;
+        public final MonitorableJob.Status status;
+
+        StatusUpdate(Object job) {
+            if (job instanceof JobRecord) {
+                JobRecord record = (JobRecord) job;
+                this.jobId = record.id;
+                this.active = record.state == JobRecord.State.RUNNING;
+                this.status = record.status;
+            } else {
+                MonitorableJob localJob = (MonitorableJob) job;
+                this.jobId = localJob.jobId;
+                this.active = localJob.active;
+                this.status = localJob.status;
+            }
+        }
+    }
+}
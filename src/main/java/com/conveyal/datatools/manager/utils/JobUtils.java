@@ -6,50 +6,65 @@ import com.conveyal.datatools.manager.jobs.DeployJob;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.google.common.collect.Sets;
 import com.mongodb.client.FindIterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class JobUtils {
     private static final Logger LOG = LoggerFactory.getLogger(JobUtils.class);
 
-    // Heavy executor should contain long-lived CPU-intensive tasks (e.g., feed loading/validation)
-    public static Executor heavyExecutor = Executors.newFixedThreadPool(4);
-
-    // light executor is for tasks for things that should finish quickly (e.g., email notifications)
-    public static Executor lightExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Runs all queued jobs. Each job type is assigned to a pool (e.g., feed processing, deployments or short tasks) and
+     * jobs within a pool are started in priority order. See {@link JobExecutor}.
+     */
+    public static final JobExecutor jobExecutor = new JobExecutor();
 
     /**
-     * Stores jobs underway by user ID. NOTE: any set created and stored here must be created with
-     * {@link Sets#newConcurrentHashSet()} or similar thread-safe Set.
+     * Tracks jobs underway by job ID, owner and the feed source or project they operate on. See {@link JobRegistry}.
      */
-    public static Map<String, Set<MonitorableJob>> userJobsMap = new ConcurrentHashMap<>();
+    public static final JobRegistry jobRegistry = new JobRegistry();
 
     private static final Map<String, DeployJob> deploymentJobsByServer = new HashMap<>();
 
+    /**
+     * Records resumable jobs so that they survive a restart before they are handed to the executor. See
+     * {@link JobQueue}.
+     */
+    public static final JobQueue jobQueue = new JobQueue();
+
+    /**
+     * Tracks changes to job status for clients waiting on updates. See {@link JobStatusFeed}.
+     */
+    public static final JobStatusFeed jobStatusFeed = new JobStatusFeed();
+
+    /**
+     * Queue a job to run on the pool for its job type with the given priority.
+     */
+    public static void execute(MonitorableJob job, JobExecutor.Priority priority) {
+        jobQueue.submit(job, JobExecutor.poolFor(job.type), priority);
+    }
+
+    /**
+     * Queue a job to run on a specific pool with the given priority (see
+     * {@link JobExecutor#execute(MonitorableJob, JobExecutor.Pool, JobExecutor.Priority)}).
+     */
+    public static void execute(MonitorableJob job, JobExecutor.Pool pool, JobExecutor.Priority priority) {
+        jobQueue.submit(job, pool, priority);
+    }
+
     public static Set<MonitorableJob> getAllJobs() {
-        return userJobsMap.values().stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        return jobRegistry.getAll();
     }
 
     /** Shorthand method for getting a single job by job ID. */
     public static MonitorableJob getJobByJobId(String jobId) {
-        for (MonitorableJob job : getAllJobs()) {
-            if (job.jobId.equals(jobId)) return job;
-        }
-        return null;
+        return jobRegistry.getById(jobId);
     }
 
     /**
@@ -57,22 +72,16 @@ public class JobUtils {
      * @param clearCompleted if true, remove requested job if it has completed or errored
      */
     public static MonitorableJob getJobById(String userId, String jobId, boolean clearCompleted) {
-        // Get jobs set directly from userJobsMap because we may remove an element from it below.
-        Set<MonitorableJob> userJobs = userJobsMap.get(userId);
-        if (userJobs == null) {
+        MonitorableJob job = jobRegistry.getById(jobId);
+        // if job is not found (because it doesn't exist or was completed) or belongs to another user.
+        if (job == null || !job.retrieveUserId().equals(userId)) {
             return null;
         }
-        for (MonitorableJob job : userJobs) {
-            if (job.jobId.equals(jobId)) {
-                if (clearCompleted && (job.status.completed || job.status.error)) {
-                    // remove job if completed or errored
-                    userJobs.remove(job);
-                }
-                return job;
-            }
+        if (clearCompleted && isFinished(job)) {
+            // remove job if completed or errored
+            clearJob(job);
         }
-        // if job is not found (because it doesn't exist or was completed).
-        return null;
+        return job;
     }
 
     /**
@@ -81,50 +90,71 @@ public class JobUtils {
     public static Set<MonitorableJob> getJobsForUser(Auth0UserProfile user) {
         if (user == null) {
             LOG.warn("Null user passed to getJobsForUser!");
-            return Sets.newConcurrentHashSet();
+            return Collections.emptySet();
         }
         return getJobsByUserId(user.getUser_id(), false);
     }
 
     /**
-     * Get set of active jobs by user ID. If there are no active jobs, return a new set.
-     *
-     * NOTE: this should be a concurrent hash set so that it is threadsafe.
+     * Get set of jobs by user ID. If there are no jobs, return an empty set. The returned set is a snapshot and is not
+     * updated as jobs are added or removed.
      *
-     * @param clearCompleted if true, remove all completed and errored jobs for this user.
+     * @param clearCompleted if true, remove all completed and errored jobs for this user (after including them in the
+     *                       returned set).
      */
     public static Set<MonitorableJob> getJobsByUserId(String userId, boolean clearCompleted) {
-        Set<MonitorableJob> allJobsForUser = userJobsMap.get(userId);
-        if (allJobsForUser == null) {
-            return Sets.newConcurrentHashSet();
-        }
+        Set<MonitorableJob> allJobsForUser = jobRegistry.getByUserId(userId);
         if (clearCompleted) {
             // Any staged jobs will still have their status updated, so they need to be retrieved again with any status
             // updates. All completed or errored jobs are in their final state and will not be updated any longer, so we
             // remove them once the client has seen them.
-            userJobsMap.put(userId, filterStagedAndActiveJobs(allJobsForUser));
+            for (MonitorableJob job : allJobsForUser) {
+                if (isFinished(job)) clearJob(job);
+            }
         }
         return allJobsForUser;
     }
 
     /**
-     * Filter all jobs based on the active state. A job is only active once running. Note: this excludes "staged" jobs,
-     * i.e., those which have not yet started.
+     * Stop tracking a job (e.g., once its owner has seen that it finished).
+     */
+    public static void clearJob(MonitorableJob job) {
+        jobRegistry.remove(job);
+        jobStatusFeed.jobRemoved(job);
+    }
+
+    /**
+     * Stop tracking a job that has been recorded in the durable job queue for another server to run. Unlike
+     * {@link #clearJob}, the job is not reported as removed to clients waiting for updates, which follow it through its
+     * record instead.
+     */
+    public static void handOffJob(MonitorableJob job) {
+        jobStatusFeed.jobHandedOff(job);
+        jobRegistry.remove(job);
+    }
+
+    /**
+     * Get all active jobs. A job is only active once running. Note: this excludes "staged" jobs, i.e., those which
+     * have not yet started.
      */
     public static Set<MonitorableJob> getAllActiveJobs() {
-        return filterJobs(getAllJobs(), job -> job.active);
+        return jobRegistry.getActive();
     }
 
     /**
-     * Filter the input set of jobs with the provided filter.
+     * Get the active jobs that operate on the given feed source (i.e., jobs extending
+     * {@link com.conveyal.datatools.common.status.FeedSourceJob}).
      */
-    private static Set<MonitorableJob> filterJobs(Set<MonitorableJob> jobs, Predicate<MonitorableJob> filter) {
-        // Note: this must be a thread-safe set in case it is placed into the DataManager#userJobsMap.
-        Set<MonitorableJob> filteredJobs = Sets.newConcurrentHashSet();
-        jobs.stream()
-            .filter(filter)
-            .forEach(filteredJobs::add);
-        return filteredJobs;
+    public static Set<MonitorableJob> getActiveJobsForFeedSource(String feedSourceId) {
+        return jobRegistry.getActiveByFeedSourceId(feedSourceId);
+    }
+
+    /**
+     * Get the active jobs that operate on the given project (i.e., jobs implementing
+     * {@link com.conveyal.datatools.common.status.ProjectJob}).
+     */
+    public static Set<MonitorableJob> getActiveJobsForProject(String projectId) {
+        return jobRegistry.getActiveByProjectId(projectId);
     }
 
     /**
@@ -132,7 +162,13 @@ public class JobUtils {
      * may or may not be active.
      */
     public static Set<MonitorableJob> filterStagedAndActiveJobs(Set<MonitorableJob> jobs) {
-        return filterJobs(jobs, job -> !job.status.completed && !job.status.error);
+        return jobs.stream()
+            .filter(job -> !isFinished(job))
+            .collect(Collectors.toSet());
+    }
+
+    private static boolean isFinished(MonitorableJob job) {
+        return job.status.completed || job.status.error;
     }
 
     /**
@@ -141,9 +177,15 @@ public class JobUtils {
      * @param deployment The deployment to associate the new DeployJob with
      * @param owner The owner to associate the new DeployJob with
      * @param server The server to associate the new DeployJob with
+     * @param priority The priority to queue the new DeployJob with
      * @return returns the DeployJob if the job was successfully queued, otherwise this returns null
      */
-    public static DeployJob queueDeployJob(Deployment deployment, Auth0UserProfile owner, OtpServer server) {
+    public static DeployJob queueDeployJob(
+        Deployment deployment,
+        Auth0UserProfile owner,
+        OtpServer server,
+        JobExecutor.Priority priority
+    ) {
         // Check that we can deploy to the specified target. (Any deploy job for the target that is presently active will
         // cause a halt.)
         if (deploymentJobsByServer.containsKey(server.id)) {
@@ -167,9 +209,9 @@ public class JobUtils {
             LOG.info("Setting deployment target to null for id={}", oldDeployment.id);
             Persistence.deployments.updateField(oldDeployment.id, "deployedTo", null);
         }
-        // Finally, add deploy job to the heavy executor.
+        // Finally, queue the deploy job (which runs on the deployment pool).
         DeployJob deployJob = new DeployJob(deployment, owner, server);
-        heavyExecutor.execute(deployJob);
+        execute(deployJob, priority);
         deploymentJobsByServer.put(server.id, deployJob);
         return deployJob;
     }
@@ -5,7 +5,7 @@ import com.conveyal.datatools.manager.models.Note;
 import org.bson.conversions.Bson;
 
 import static com.mongodb.client.model.Filters.and;
-import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
 
 /**
  * Contains utilities specifically for operations related to the MongoDB database.
@@ -17,6 +17,6 @@ public class PersistenceUtils {
      *  original filter.
      */
     public static Bson applyAdminFilter(Bson filter, boolean isAdmin) {
-        return isAdmin ? filter : and(filter, eq("adminOnly", false));
+        return isAdmin ? filter : and(filter, ne("adminOnly", true));
     }
 }
@@ -0,0 +1,99 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * Repeatedly runs a check on a shared scheduler until it succeeds, fails or times out. This is for waiting on remote
+ * resources (e.g., an EC2 instance starting up) without holding a thread while waiting between checks, which a loop
+ * that calls {@link Thread#sleep} would do for the entire wait (potentially hours). Checks should be quick (e.g., a
+ * single HTTP request with a timeout) because they run on a small pool shared by all polls.
+ */
+public class Poller {
+    private static final int THREADS = Integer.parseInt(getConfigPropertyAsText("POLLER_THREADS", "2"));
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+        THREADS,
+        new ThreadFactoryBuilder().setNameFormat("poller-%d").setDaemon(true).build()
+    );
+
+    /**
+     * A check to run on each poll.
+     */
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @return true once the condition being waited on is met (which stops polling), false to check again later. Any
+         * exception thrown also stops polling and fails the poll.
+         */
+        boolean check() throws Exception;
+    }
+
+    /**
+     * Run the check every interval (starting one interval from now) until it returns true, throws an exception or the
+     * timeout elapses. Cancelling the returned future stops polling.
+     *
+     * @param timeoutMessage message for the {@link TimeoutException} that the future completes with on timeout
+     * @return a future that completes once the check has returned true, or completes exceptionally with the exception
+     * thrown by the check or a {@link TimeoutException}
+     */
+    public static CompletableFuture<Void> poll(
+        Check check,
+        long interval,
+        long timeout,
+        TimeUnit timeUnit,
+        String timeoutMessage
+    ) {
+        PollTask task = new PollTask(check, timeUnit.toMillis(interval), timeUnit.toMillis(timeout), timeoutMessage);
+        task.schedule();
+        return task.future;
+    }
+
+    /**
+     * Runs the check and reschedules itself until the poll is finished.
+     */
+    private static class PollTask implements Runnable {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Check check;
+        private final long intervalMillis;
+        private final long deadlineMillis;
+        private final String timeoutMessage;
+
+        PollTask(Check check, long intervalMillis, long timeoutMillis, String timeoutMessage) {
+            this.check = check;
+            this.intervalMillis = intervalMillis;
+            this.deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+            this.timeoutMessage = timeoutMessage;
+        }
+
+        private void schedule() {
+            scheduler.schedule(this, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            // Stop if the poll was cancelled.
+            if (future.isDone()) return;
+            try {
+                if (check.check()) {
+                    future.complete(null);
+                    return;
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            if (System.currentTimeMillis() > deadlineMillis) {
+                future.completeExceptionally(new TimeoutException(timeoutMessage));
+            } else {
+                schedule();
+            }
+        }
+    }
+}
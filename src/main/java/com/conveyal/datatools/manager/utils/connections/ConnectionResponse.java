@@ -16,4 +16,11 @@ public interface ConnectionResponse {
     InputStream getInputStream() throws IOException;
 
     Long getLastModified();
+
+    /**
+     * @return the value of the ETag header, or null if the response has none.
+     */
+    default String getETag() {
+        return null;
+    }
 }
@@ -0,0 +1,74 @@
+package com.conveyal.datatools.manager.utils.connections;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * The HTTP client shared by all feed fetches. Connections are pooled and kept alive between requests, so that
+ * repeatedly fetching feeds from the same host (e.g., the scheduled fetches of an agency's feeds, most of which end in a
+ * 304 Not Modified) does not pay for a new TCP connection and TLS handshake each time. Responses are requested with
+ * gzip/deflate content encoding and decompressed transparently.
+ *
+ * Redirects are not followed by the client; {@link com.conveyal.datatools.manager.models.FeedSource#processFetchResponse}
+ * handles them so that it can limit how many it follows.
+ */
+public class FeedFetchClient {
+    private static final int MAX_CONNECTIONS =
+        Integer.parseInt(getConfigPropertyAsText("FETCH_HTTP_MAX_CONNECTIONS", "50"));
+    private static final int MAX_CONNECTIONS_PER_HOST =
+        Integer.parseInt(getConfigPropertyAsText("FETCH_HTTP_MAX_CONNECTIONS_PER_HOST", "4"));
+    private static final int CONNECT_TIMEOUT_MILLIS =
+        Integer.parseInt(getConfigPropertyAsText("FETCH_HTTP_CONNECT_TIMEOUT_MS", "30000"));
+    /** Maximum time to wait for data while reading a response (not the maximum time for a whole download). */
+    private static final int SOCKET_TIMEOUT_MILLIS =
+        Integer.parseInt(getConfigPropertyAsText("FETCH_HTTP_SOCKET_TIMEOUT_MS", "120000"));
+    /** Idle pooled connections are closed after this long (servers usually close them sooner anyway). */
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+    /**
+     * Set user agent request header in order to avoid 403 Forbidden response from some servers.
+     * https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
+     */
+    private static final String USER_AGENT =
+        "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11";
+
+    private static final CloseableHttpClient httpClient = createHttpClient();
+
+    private static CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+        // Check that a pooled connection has not been closed by the server before reusing it after a period of idleness.
+        connectionManager.setValidateAfterInactivity(2000);
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+            .setRedirectsEnabled(false)
+            .setContentCompressionEnabled(true)
+            .build();
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setUserAgent(USER_AGENT)
+            .disableRedirectHandling()
+            .evictExpiredConnections()
+            .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Execute the request with the shared client. The caller must close the returned response (e.g., with
+     * try-with-resources), which returns the connection to the pool if the body was read to the end.
+     */
+    public static HttpClientConnectionResponse execute(HttpUriRequest request) throws IOException {
+        return new HttpClientConnectionResponse(httpClient.execute(request));
+    }
+}
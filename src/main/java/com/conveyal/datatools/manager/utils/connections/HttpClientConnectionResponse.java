@@ -0,0 +1,67 @@
+package com.conveyal.datatools.manager.utils.connections;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+
+/**
+ * Builds a {@link ConnectionResponse} instance sent to FeedSource from an Apache HttpClient response. Closing this
+ * closes the response; if the body has been read to the end, the connection is returned to the client's pool.
+ */
+public class HttpClientConnectionResponse implements ConnectionResponse, Closeable {
+    private final CloseableHttpResponse response;
+
+    public HttpClientConnectionResponse(CloseableHttpResponse response) {
+        this.response = response;
+    }
+
+    public int getResponseCode() {
+        return response.getStatusLine().getStatusCode();
+    }
+
+    public InputStream getInputStream() throws IOException {
+        HttpEntity entity = response.getEntity();
+        return entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+    }
+
+    public String getResponseMessage() {
+        return response.getStatusLine().getReasonPhrase();
+    }
+
+    public String getRedirectUrl() {
+        return getHeader(HttpHeaders.LOCATION);
+    }
+
+    /**
+     * @return the Last-Modified header in epoch milliseconds, or 0 if it is missing or cannot be parsed (matching
+     * {@link java.net.HttpURLConnection#getLastModified}).
+     */
+    public Long getLastModified() {
+        String lastModified = getHeader(HttpHeaders.LAST_MODIFIED);
+        Date date = lastModified != null ? DateUtils.parseDate(lastModified) : null;
+        return date != null ? date.getTime() : 0L;
+    }
+
+    @Override
+    public String getETag() {
+        return getHeader(HttpHeaders.ETAG);
+    }
+
+    private String getHeader(String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        response.close();
+    }
+}
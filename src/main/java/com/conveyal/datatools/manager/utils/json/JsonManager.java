@@ -2,6 +2,7 @@ package com.conveyal.datatools.manager.utils.json;
 
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -100,6 +101,21 @@ public class JsonManager<T> {
         return ow.writeValueAsString(map);
     }
 
+    /**
+     * Create a JSON generator that writes to the provided output stream. This allows for incrementally writing large
+     * responses (e.g., with {@link #write(JsonGenerator, Object)}) without holding the entire response in memory.
+     */
+    public JsonGenerator createGenerator (OutputStream out) throws IOException {
+        return om.getFactory().createGenerator(out);
+    }
+
+    /**
+     * Write an object to the provided generator using this manager's view and filters.
+     */
+    public void write (JsonGenerator generator, Object o) throws IOException {
+        ow.writeValue(generator, o);
+    }
+
     public T read (String s) throws JsonParseException, JsonMappingException, IOException {
         return om.readValue(s, theClass);
     }
@@ -0,0 +1,63 @@
+package com.conveyal.datatools.common.status;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link MonitorableJob.Status}.
+ */
+public class StatusTest {
+    /**
+     * Updates reported in a tight loop should all be applied but only the first should be recorded, with the rest
+     * counted against the next recorded event.
+     */
+    @Test
+    public void throttlesRecordedUpdates() {
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        for (int i = 1; i <= 10; i++) {
+            status.update("Processing item " + i, i * 10);
+        }
+        assertEquals("Processing item 10", status.message);
+        assertEquals(100, status.percentComplete);
+
+        status.completeSuccessfully("Done");
+        List<StatusEvent> history = status.retrieveHistory();
+        assertEquals(2, history.size());
+        assertEquals(StatusEvent.Kind.UPDATE, history.get(0).kind);
+        assertEquals("Processing item 1", history.get(0).message);
+        assertTrue(history.get(0).caller.contains(StatusTest.class.getName()), history.get(0).caller);
+        assertEquals(StatusEvent.Kind.COMPLETE, history.get(1).kind);
+        assertEquals(9, history.get(1).skippedUpdates);
+    }
+
+    /**
+     * The last of a burst of skipped updates should be recorded and pushed once the update interval has passed, even
+     * if no further updates are reported.
+     */
+    @Test
+    public void recordsTrailingUpdate() throws InterruptedException {
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        AtomicInteger changeCount = new AtomicInteger();
+        status.onChange(changeCount::incrementAndGet);
+        for (int i = 1; i <= 10; i++) {
+            status.update("Processing item " + i, i * 10);
+        }
+        assertEquals(1, changeCount.get());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (status.retrieveHistory().size() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        List<StatusEvent> history = status.retrieveHistory();
+        assertEquals(2, history.size());
+        assertEquals(StatusEvent.Kind.UPDATE, history.get(1).kind);
+        assertEquals("Processing item 10", history.get(1).message);
+        assertEquals(100, history.get(1).percentComplete);
+        assertEquals(9, history.get(1).skippedUpdates);
+        assertTrue(history.get(1).caller.contains(StatusTest.class.getName()), history.get(1).caller);
+        assertEquals(2, changeCount.get());
+    }
+}
@@ -0,0 +1,33 @@
+package com.conveyal.datatools.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link Scheduler}.
+ */
+public class SchedulerTest {
+    /**
+     * Each feed source should always get the same offset, within the window, and different feed sources should be
+     * spread across the window.
+     */
+    @Test
+    public void spreadsFeedSourcesAcrossWindow() {
+        long windowMinutes = 30;
+        Set<Long> offsets = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            String feedSourceId = "feed-source-" + i;
+            long offset = Scheduler.getJitterMinutes(feedSourceId, windowMinutes);
+            assertTrue(offset >= 0 && offset < windowMinutes);
+            assertEquals(offset, Scheduler.getJitterMinutes(feedSourceId, windowMinutes));
+            offsets.add(offset);
+        }
+        assertTrue(offsets.size() > windowMinutes / 2, "Offsets should be spread across the window");
+        assertEquals(0, Scheduler.getJitterMinutes("feed-source-0", 0));
+    }
+}
@@ -28,6 +28,7 @@ import java.net.URL;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.ZoneId;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -433,6 +434,24 @@ public class FeedSourceControllerTest extends DatatoolsTest {
         assertEquals(feedVersionFromPinnedDeployment.validationSummary().errorCount, feedSourceSummaries.get(0).latestValidation.errorCount);
     }
 
+    /**
+     * Check that the computed JSON properties pre-fetched for a list of feed sources match those looked up for a single
+     * feed source.
+     */
+    @Test
+    void prefetchedJsonPropertiesMatchIndividualLookups() {
+        Collection<FeedSource> feedSources = projectWithLatestDeployment.retrieveProjectFeedSources();
+        FeedSource.prefetchJsonProperties(feedSources);
+        assertEquals(1, feedSources.size());
+        FeedSource prefetched = feedSources.iterator().next();
+        FeedSource individual = Persistence.feedSources.getById(feedSourceWithLatestDeploymentFeedVersion.id);
+        assertEquals(feedVersionFromLatestDeployment.id, prefetched.latestVersionId());
+        assertEquals(individual.latestVersionId(), prefetched.latestVersionId());
+        assertEquals(individual.lastUpdated(), prefetched.lastUpdated());
+        assertEquals(individual.organizationId(), prefetched.organizationId());
+        assertEquals(individual.externalProperties(), prefetched.externalProperties());
+    }
+
     private static FeedSource createFeedSource(String name, URL url, Project project) {
         return createFeedSource(null, name, url, project, false);
     }
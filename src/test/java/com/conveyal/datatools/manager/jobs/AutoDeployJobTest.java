@@ -2,7 +2,6 @@ package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.TestUtils;
-import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.auth.Auth0Connection;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Deployment;
@@ -12,8 +11,6 @@ import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.conveyal.datatools.manager.utils.JobUtils;
-import com.google.common.collect.Sets;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -23,7 +20,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Set;
 
 import static com.conveyal.datatools.TestUtils.getFeedVersionFromGTFSFile;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -142,11 +138,9 @@ public class AutoDeployJobTest extends DatatoolsTest {
     @Test
     public void failAutoDeployIfFetchStillInProgress() {
 
-        // Create fake processing job for mock feed (don't actually start it, to keep it in the userJobsMap
-        // indefinitely).
-        Set<MonitorableJob> userJobs = Sets.newConcurrentHashSet();
-        userJobs.add(new ProcessSingleFeedJob(feedVersionC, user, true));
-        JobUtils.userJobsMap.put(user.getUser_id(), userJobs);
+        // Create fake processing job for mock feed (don't actually start it, to keep it in the job registry
+        // indefinitely). Jobs are registered on construction.
+        new ProcessSingleFeedJob(feedVersionC, user, true);
 
         // Add mock feed 1 to the deployment so that it is detected in the Deployment#hasFeedFetchesInProgress check
         // (called during auto deploy).
@@ -20,6 +20,8 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Date;
 import java.util.List;
 
@@ -28,12 +30,17 @@ import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.FETCHED_
 import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.MANUALLY_UPLOADED;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.configureFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static com.mongodb.client.model.Filters.eq;
 import static io.restassured.RestAssured.given;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for the various combinations of {@link FetchSingleFeedJob} and {@link LoadFeedJob} cases.
@@ -159,6 +166,117 @@ public class FetchLoadFeedCombinationTest extends UnitTest {
         assertVersionCount(1);
     }
 
+    /**
+     * The ETag of a fetched feed should be stored so that it can be sent as If-None-Match on the next fetch, and it
+     * should be reset when the latest version is deleted.
+     */
+    @Test
+    void shouldStoreETagOfFetchedFeed() {
+        String eTag = "\"bart-v1\"";
+        wireMockServer.stubFor(
+            get(urlPathEqualTo(MOCKED_FETCH_URL))
+                .willReturn(
+                    aResponse()
+                        .withHeader("ETag", eTag)
+                        .withBodyFile("bart_new_lite.zip")
+                )
+        );
+        simulateFetch();
+        assertVersionCount(1);
+        assertEquals(eTag, Persistence.feedSources.getById(feedSource.id).lastFetchedETag);
+
+        feedSource.retrieveLatest().delete();
+        assertNull(Persistence.feedSources.getById(feedSource.id).lastFetchedETag);
+    }
+
+    /**
+     * The stored ETag of the latest fetched version should be sent as If-None-Match when the feed is next fetched, and
+     * a 304 (not modified) response to it should not create a new version.
+     */
+    @Test
+    void shouldSendStoredETagAsIfNoneMatch() throws MalformedURLException {
+        String eTag = "\"bart-v1\"";
+        wireMockServer.stubFor(
+            get(urlPathEqualTo(MOCKED_FETCH_URL))
+                .willReturn(
+                    aResponse()
+                        .withHeader("ETag", eTag)
+                        .withBodyFile("bart_new_lite.zip")
+                )
+        );
+        simulateFetch();
+        assertVersionCount(1);
+        wireMockServer.stubFor(
+            get(urlPathEqualTo(MOCKED_FETCH_URL))
+                .withHeader("If-None-Match", equalTo(eTag))
+                .willReturn(
+                    aResponse()
+                        .withStatus(HttpURLConnection.HTTP_NOT_MODIFIED)
+                )
+        );
+
+        // Fetch with the stored feed source, which holds the last fetched time and ETag set by the first fetch.
+        FeedSource storedFeedSource = Persistence.feedSources.getById(feedSource.id);
+        storedFeedSource.url = new URL("http://localhost:" + wireMockServer.port() + MOCKED_FETCH_URL);
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        assertNull(storedFeedSource.fetch(status));
+
+        wireMockServer.verify(
+            getRequestedFor(urlPathEqualTo(MOCKED_FETCH_URL))
+                .withHeader("If-None-Match", equalTo(eTag))
+        );
+        assertFalse(status.error);
+        assertVersionCount(1);
+    }
+
+    /**
+     * A 304 (not modified) response should complete the fetch without creating a version or changing the stored ETag.
+     */
+    @Test
+    void shouldNotCreateVersionWhenNotModified() {
+        String eTag = "\"bart-v1\"";
+        wireMockServer.stubFor(
+            get(urlPathEqualTo(MOCKED_FETCH_URL))
+                .willReturn(
+                    aResponse()
+                        .withHeader("ETag", eTag)
+                        .withBodyFile("bart_new_lite.zip")
+                )
+        );
+        simulateFetch();
+        assertVersionCount(1);
+        wireMockServer.stubFor(
+            get(urlPathEqualTo(MOCKED_FETCH_URL))
+                .willReturn(
+                    aResponse()
+                        .withStatus(HttpURLConnection.HTTP_NOT_MODIFIED)
+                )
+        );
+
+        MockConnectionResponse response = new MockConnectionResponse(
+            given()
+                .header("If-None-Match", eTag)
+                .get(MOCKED_FETCH_URL)
+                .then()
+                .extract()
+                .response()
+        );
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        FeedVersion newVersion = feedSource.processFetchResponse(
+            status,
+            null,
+            new FeedVersion(feedSource, FETCHED_AUTOMATICALLY),
+            feedSource.retrieveLatest(),
+            response
+        );
+
+        assertNull(newVersion);
+        assertFalse(status.error);
+        assertTrue(status.completed);
+        assertVersionCount(1);
+        assertEquals(eTag, Persistence.feedSources.getById(feedSource.id).lastFetchedETag);
+    }
+
     /**
      * Simulates a fetch on the feed source.
      */
@@ -226,5 +344,10 @@ public class FetchLoadFeedCombinationTest extends UnitTest {
         public String getRedirectUrl() {
             return response.getHeader("Location");
         }
+
+        @Override
+        public String getETag() {
+            return response.getHeader("ETag");
+        }
     }
 }
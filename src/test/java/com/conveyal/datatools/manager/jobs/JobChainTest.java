@@ -2,6 +2,7 @@ package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.TestUtils;
+import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -15,9 +16,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test class for checking job chaining functionality.
@@ -60,4 +68,75 @@ class JobChainTest extends DatatoolsTest {
         assertEquals(parentJob.jobId, subJob.parentJobId);
         assertEquals(parentJob.type, subJob.parentJobType);
     }
+
+    /**
+     * Sub-jobs that only depend on the same predecessor should run concurrently, and a job added with addNextJob should
+     * wait for all of them.
+     */
+    @Test
+    void shouldRunIndependentSubJobsConcurrently() {
+        CyclicBarrier bothValidating = new CyclicBarrier(2);
+        List<String> completedSubJobs = Collections.synchronizedList(new ArrayList<>());
+        MonitorableJob parentJob = new TestJob("parent", completedSubJobs, null);
+        MonitorableJob load = new TestJob("load", completedSubJobs, null);
+        parentJob.addNextJob(load);
+        // Each of these waits for the other to start, so they would time out if run one after the other.
+        parentJob.addDependentJob(new TestJob("validate", completedSubJobs, bothValidating), load);
+        parentJob.addDependentJob(new TestJob("validateMobility", completedSubJobs, bothValidating), load);
+        parentJob.addNextJob(new TestJob("deploy", completedSubJobs, null));
+
+        parentJob.run();
+
+        assertFalse(parentJob.status.error, parentJob.status.message);
+        assertEquals(5, completedSubJobs.size());
+        assertEquals("load", completedSubJobs.get(1));
+        assertEquals("deploy", completedSubJobs.get(4));
+    }
+
+    /**
+     * An error in one of several concurrent sub-jobs should cancel the sub-jobs that follow and fail the parent.
+     */
+    @Test
+    void shouldCancelRemainingSubJobsAfterConcurrentFailure() {
+        List<String> completedSubJobs = Collections.synchronizedList(new ArrayList<>());
+        MonitorableJob parentJob = new TestJob("parent", completedSubJobs, null);
+        MonitorableJob load = new TestJob("load", completedSubJobs, null);
+        parentJob.addNextJob(load);
+        parentJob.addDependentJob(new TestJob("validate", completedSubJobs, null), load);
+        parentJob.addDependentJob(new TestJob("fail", completedSubJobs, null), load);
+        MonitorableJob deploy = new TestJob("deploy", completedSubJobs, null);
+        parentJob.addNextJob(deploy);
+
+        parentJob.run();
+
+        assertTrue(parentJob.status.error);
+        assertTrue(deploy.status.error);
+        assertFalse(completedSubJobs.contains("deploy"));
+    }
+
+    /**
+     * Job that records its name once run, optionally waiting on a barrier first. A job named "fail" fails instead.
+     */
+    private static class TestJob extends MonitorableJob {
+        private final String jobName;
+        private final List<String> completedJobs;
+        private final CyclicBarrier barrier;
+
+        TestJob(String jobName, List<String> completedJobs, CyclicBarrier barrier) {
+            super(user, jobName, JobType.UNKNOWN_TYPE);
+            this.jobName = jobName;
+            this.completedJobs = completedJobs;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public void jobLogic() throws Exception {
+            if (barrier != null) barrier.await(10, TimeUnit.SECONDS);
+            if ("fail".equals(jobName)) {
+                status.fail("Test failure");
+                return;
+            }
+            completedJobs.add(jobName);
+        }
+    }
 }
@@ -9,6 +9,7 @@ import com.conveyal.gtfs.error.NewGTFSErrorType;
 import com.conveyal.gtfs.error.SQLErrorStorage;
 import com.conveyal.gtfs.util.InvalidNamespaceException;
 import com.conveyal.gtfs.validator.ValidationResult;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,7 @@ import org.junit.jupiter.params.provider.EnumSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
 
 import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
@@ -153,6 +155,75 @@ public class FeedVersionTest extends UnitTest {
         Persistence.feedVersions.removeById(feedVersion2.id);
     }
 
+    /**
+     * Check that the latest version summary on the feed source tracks persisted and renumbered versions.
+     */
+    @Test
+    void shouldMaintainLatestVersionSummary() {
+        FeedSource summarySource = new FeedSource("Latest version summary feed source");
+        summarySource.projectId = project.id;
+        Persistence.feedSources.create(summarySource);
+
+        FeedVersion feedVersion1 = new FeedVersion(summarySource);
+        feedVersion1.persistFeedVersionAfterValidation(true);
+        assertThat(getLatestVersionSummary(summarySource.id).feedVersionId, equalTo(feedVersion1.id));
+
+        // A feed source read before the next version is stored (e.g., by a request to update it) holds a stale summary.
+        FeedSource staleSource = Persistence.feedSources.getById(summarySource.id);
+        FeedVersion feedVersion2 = new FeedVersion(summarySource);
+        feedVersion2.persistFeedVersionAfterValidation(true);
+        LatestVersionSummary summary = getLatestVersionSummary(summarySource.id);
+        assertThat(summary.feedVersionId, equalTo(feedVersion2.id));
+        assertThat(summary.version, equalTo(2));
+
+        // Writing back the stale feed source should not regress the summary.
+        staleSource.name = "Renamed feed source";
+        Persistence.feedSources.replaceExcept(staleSource.id, staleSource, "latestVersionSummary");
+        assertThat(Persistence.feedSources.getById(summarySource.id).name, equalTo("Renamed feed source"));
+        assertThat(getLatestVersionSummary(summarySource.id).feedVersionId, equalTo(feedVersion2.id));
+
+        // Re-persisting an older version should not regress the summary.
+        feedVersion1.persistFeedVersionAfterValidation(false);
+        assertThat(getLatestVersionSummary(summarySource.id).feedVersionId, equalTo(feedVersion2.id));
+
+        // Removing the latest version and renumbering should point the summary back at the first version.
+        Persistence.feedVersions.removeById(feedVersion2.id);
+        Persistence.feedSources.getById(summarySource.id).renumberFeedVersions();
+        assertThat(getLatestVersionSummary(summarySource.id).feedVersionId, equalTo(feedVersion1.id));
+        assertThat(Persistence.feedSources.getById(summarySource.id).retrieveLatest().id, equalTo(feedVersion1.id));
+
+        Persistence.feedVersions.removeById(feedVersion1.id);
+        Persistence.feedSources.removeById(summarySource.id);
+    }
+
+    /**
+     * Check that the MobilityData report is stored in the validation results collection rather than on the feed
+     * version document.
+     */
+    @Test
+    void shouldStoreMobilityDataResultSeparately() {
+        FeedVersion feedVersion = new FeedVersion(feedSource);
+        Document report = new Document("notices", new ArrayList<>());
+        feedVersion.mobilityDataResult = report;
+        feedVersion.persistFeedVersionAfterValidation(true);
+
+        Document storedVersion = Persistence.feedVersions.getMongoCollection()
+            .withDocumentClass(Document.class)
+            .find(eq(feedVersion.id))
+            .first();
+        assertThat(storedVersion, notNullValue());
+        assertThat(storedVersion.containsKey("mobilityDataResult"), equalTo(false));
+        FeedVersion retrievedVersion = Persistence.feedVersions.getById(feedVersion.id);
+        assertThat(retrievedVersion.retrieveValidationResults().mobilityDataResult, equalTo(report));
+
+        Persistence.feedVersions.removeById(feedVersion.id);
+        Persistence.feedVersionValidationResults.removeById(feedVersion.id);
+    }
+
+    LatestVersionSummary getLatestVersionSummary(String feedSourceId) {
+        return Persistence.feedSources.getById(feedSourceId).latestVersionSummary;
+    }
+
     String getPubVersionId(String feedSourceId) {
         return Persistence.feedSources.getById(feedSourceId).publishedVersionId;
     }
@@ -0,0 +1,145 @@
+package com.conveyal.datatools.manager.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Contains tests for {@link FeedFileCache}.
+ */
+public class FeedFileCacheTest {
+    private static final FeedFileCache.Source NOT_DOWNLOADABLE = () -> {
+        throw new IOException("Should have been cached");
+    };
+
+    /**
+     * The cache should keep file names, serve repeated requests without downloading again, evict the least recently
+     * used files beyond its budget and never evict a file pinned by a running job.
+     */
+    @Test
+    public void canCacheAndEvictLeastRecentlyUsedFiles() throws IOException {
+        File directory = Files.createTempDirectory("feed-cache-test").toFile();
+        directory.deleteOnExit();
+        FeedFileCache cache = new FeedFileCache(directory, 250);
+
+        File first = cache.get("gtfs/first.zip", () -> new ByteArrayInputStream(new byte[100]));
+        assertEquals("first.zip", first.getName());
+        assertEquals(100, first.length());
+        assertEquals(first, cache.get("gtfs/first.zip", NOT_DOWNLOADABLE));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        File second = cache.get("gtfs/second.zip", () -> new ByteArrayInputStream(new byte[100]));
+        // Use the first file again so that the second is least recently used.
+        cache.get("gtfs/first.zip", NOT_DOWNLOADABLE);
+        File third = cache.get("gtfs/third.zip", () -> new ByteArrayInputStream(new byte[100]));
+        assertFalse(second.exists());
+        assertTrue(first.exists());
+        assertTrue(third.exists());
+        assertEquals(200, cache.getSizeBytes());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Pinned files are kept even if the cache exceeds its budget until the job that holds them finishes.
+        FeedFileCache.openPinScope();
+        try {
+            cache.get("gtfs/first.zip", NOT_DOWNLOADABLE);
+            cache.get("gtfs/third.zip", NOT_DOWNLOADABLE);
+            cache.get("gtfs/second.zip", () -> new ByteArrayInputStream(new byte[100]));
+            assertEquals(300, cache.getSizeBytes());
+            assertEquals(3, cache.getPinnedCount());
+        } finally {
+            FeedFileCache.closePinScope();
+        }
+        assertEquals(0, cache.getPinnedCount());
+        assertEquals(200, cache.getSizeBytes());
+        assertFalse(first.exists());
+    }
+
+    /**
+     * Concurrent requests for the same file should wait for a single download rather than downloading it again.
+     */
+    @Test
+    public void canShareDownloadBetweenConcurrentRequests() throws Exception {
+        File directory = Files.createTempDirectory("feed-cache-test").toFile();
+        directory.deleteOnExit();
+        FeedFileCache cache = new FeedFileCache(directory, 1000);
+        AtomicInteger downloadCount = new AtomicInteger();
+        CountDownLatch downloadStarted = new CountDownLatch(1);
+        CountDownLatch finishDownload = new CountDownLatch(1);
+        FeedFileCache.Source source = () -> {
+            downloadCount.incrementAndGet();
+            downloadStarted.countDown();
+            try {
+                finishDownload.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new ByteArrayInputStream(new byte[100]);
+        };
+
+        CompletableFuture<File> first = CompletableFuture.supplyAsync(() -> getUnchecked(cache, source));
+        assertTrue(downloadStarted.await(10, TimeUnit.SECONDS));
+        Thread waitingThread = new Thread(() -> getUnchecked(cache, source));
+        waitingThread.start();
+        // Let the second request reach the download in progress before finishing it.
+        while (waitingThread.getState() != Thread.State.WAITING) {
+            if (!waitingThread.isAlive()) fail("Second request finished before the download");
+            Thread.sleep(10);
+        }
+        finishDownload.countDown();
+        waitingThread.join(10000);
+
+        File file = first.get(10, TimeUnit.SECONDS);
+        assertEquals(100, file.length());
+        assertEquals(1, downloadCount.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(100, cache.getSizeBytes());
+    }
+
+    /**
+     * A new cache for an existing directory should reuse the files left by a previous run and delete incomplete
+     * downloads.
+     */
+    @Test
+    public void canReindexFilesOnRestart() throws IOException {
+        File directory = Files.createTempDirectory("feed-cache-test").toFile();
+        directory.deleteOnExit();
+        FeedFileCache cache = new FeedFileCache(directory, 1000);
+        File cached = cache.get("gtfs/first.zip", () -> new ByteArrayInputStream(new byte[100]));
+        File put = Files.createTempFile("feed-cache-test", ".zip").toFile();
+        Files.write(put.toPath(), new byte[50]);
+        cache.put("gtfs/second.zip", put);
+        File partial = new File(cached.getParentFile(), "third.zip.1234.partial");
+        Files.write(partial.toPath(), new byte[10]);
+
+        FeedFileCache restarted = new FeedFileCache(directory, 1000);
+        assertEquals(2, restarted.getEntryCount());
+        assertEquals(150, restarted.getSizeBytes());
+        assertFalse(partial.exists());
+        assertEquals(cached, restarted.get("gtfs/first.zip", NOT_DOWNLOADABLE));
+        assertEquals(50, restarted.get("gtfs/second.zip", NOT_DOWNLOADABLE).length());
+        assertEquals(0, restarted.getMissCount());
+    }
+
+    private static File getUnchecked(FeedFileCache cache, FeedFileCache.Source source) {
+        try {
+            return cache.get("gtfs/shared.zip", source);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
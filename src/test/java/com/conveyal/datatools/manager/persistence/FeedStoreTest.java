@@ -1,19 +1,36 @@
 package com.conveyal.datatools.manager.persistence;
 
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
-import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.FeedBlob;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.TestUtils.getGtfsResourcePath;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FeedStoreTest extends UnitTest {
     private static final Logger LOG = LoggerFactory.getLogger(FeedStoreTest.class);
@@ -25,15 +42,202 @@ public class FeedStoreTest extends UnitTest {
     }
 
     /**
-     * Verify that {@link FeedStore} will write a temp file with the input file name.
+     * Verify that a content-addressed {@link FeedStore} stores identical feeds once and deletes the blob once the last
+     * feed referring to it is deleted.
      */
     @Test
-    public void canCreateTempGtfsFile() throws IOException {
-        final String gtfsFileName = "gtfs.zip";
+    public void canDeduplicateFeedsByContent() throws Exception {
+        final String subdir = "content-addressed-test";
+        new File(FeedStore.basePath, subdir).mkdirs();
+        File blobDirectory = new File(FeedStore.basePath, subdir + File.separator + "blobs");
+        FeedStore feedStore = new FeedStore(subdir, new LocalBlobStore(blobDirectory));
         File gtfsFile = new File(getGtfsResourcePath("bart_new.zip"));
-        FileInputStream fileInputStream = new FileInputStream(gtfsFile);
-        File tempFile = FeedVersion.feedStore.createTempFile(gtfsFileName, fileInputStream);
-        LOG.info("Feed store wrote temp file to: {}", tempFile.getAbsolutePath());
-        assertEquals(tempFile.getName(), gtfsFileName);
+        String firstId = UUID.randomUUID().toString();
+        String secondId = UUID.randomUUID().toString();
+        for (String id : new String[] {firstId, secondId}) {
+            File file = feedStore.newFeed(id, new FileInputStream(gtfsFile), null);
+            feedStore.commitFeed(id, file, null, null);
+            assertFalse(file.exists());
+        }
+        File firstFeed = feedStore.getFeed(firstId);
+        assertEquals(firstFeed, feedStore.getFeed(secondId));
+        assertEquals(HashUtils.hashFile(gtfsFile), firstFeed.getName());
+
+        feedStore.deleteFeed(firstId);
+        assertTrue(firstFeed.exists());
+        assertNull(feedStore.getFeed(firstId));
+        feedStore.deleteFeed(secondId);
+        assertFalse(firstFeed.exists());
+    }
+
+    /**
+     * Verify that a feed committed by another process while the last reference to an identical blob is being released
+     * keeps its blob: the committing process waits for the deletion to finish and then stores the blob again.
+     */
+    @Test
+    public void keepsBlobReferencedWhileBeingDeleted() throws Exception {
+        final String subdir = "content-addressed-race-test";
+        new File(FeedStore.basePath, subdir).mkdirs();
+        File blobDirectory = new File(FeedStore.basePath, subdir + File.separator + "blobs");
+        File gtfsFile = new File(getGtfsResourcePath("bart_new.zip"));
+        String hash = HashUtils.hashFile(gtfsFile);
+        String blobId = subdir + ":" + hash;
+        String firstId = UUID.randomUUID().toString();
+        String secondId = UUID.randomUUID().toString();
+        // Stands in for another process sharing the database and blob store.
+        FeedStore otherProcess = new FeedStore(subdir, new LocalBlobStore(blobDirectory));
+        CompletableFuture<Void> otherCommit = new CompletableFuture<>();
+        FeedStore feedStore = new FeedStore(subdir, new LocalBlobStore(blobDirectory) {
+            @Override
+            public void delete(String blobHash) throws IOException {
+                // Once this process has leased the unreferenced blob for deletion, commit an identical feed in the
+                // other process and only delete the blob after the other process has referenced it.
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        File file = otherProcess.newFeed(secondId, new FileInputStream(gtfsFile), null);
+                        otherProcess.commitFeed(secondId, file, null, null);
+                        otherCommit.complete(null);
+                    } catch (Exception e) {
+                        otherCommit.completeExceptionally(e);
+                    }
+                });
+                try {
+                    while (Persistence.feedBlobs.getById(blobId).refCount < 1) Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.delete(blobHash);
+            }
+        });
+        File file = feedStore.newFeed(firstId, new FileInputStream(gtfsFile), null);
+        feedStore.commitFeed(firstId, file, null, null);
+        feedStore.deleteFeed(firstId);
+        otherCommit.get(30, TimeUnit.SECONDS);
+
+        FeedBlob blob = Persistence.feedBlobs.getById(blobId);
+        assertEquals(1, blob.refCount);
+        assertNull(blob.deleteLeaseExpires);
+        File secondFeed = otherProcess.getFeed(secondId);
+        assertNotNull(secondFeed);
+        assertEquals(hash, HashUtils.hashFile(secondFeed));
+
+        otherProcess.deleteFeed(secondId);
+        assertNull(Persistence.feedBlobs.getById(blobId));
+        assertFalse(secondFeed.exists());
+    }
+
+    /**
+     * Verify that committing a feed with its feed source points the feed source's latest feed at the same blob (adding
+     * a reference to it) and that {@link FeedStore#setLatest} moves or removes that reference.
+     */
+    @Test
+    public void canPointLatestFeedAtCommittedFeeds() throws Exception {
+        final String subdir = "content-addressed-latest-test";
+        new File(FeedStore.basePath, subdir).mkdirs();
+        File blobDirectory = new File(FeedStore.basePath, subdir + File.separator + "blobs");
+        FeedStore feedStore = new FeedStore(subdir, new LocalBlobStore(blobDirectory));
+        FeedSource feedSource = new FeedSource("Latest feed test");
+        File firstGtfsFile = new File(getGtfsResourcePath("bart_old.zip"));
+        File secondGtfsFile = new File(getGtfsResourcePath("bart_new.zip"));
+        String firstBlobId = subdir + ":" + HashUtils.hashFile(firstGtfsFile);
+        String secondBlobId = subdir + ":" + HashUtils.hashFile(secondGtfsFile);
+        String latestId = feedSource.id + ".zip";
+        String firstId = UUID.randomUUID().toString();
+        String secondId = UUID.randomUUID().toString();
+
+        File firstFile = feedStore.newFeed(firstId, new FileInputStream(firstGtfsFile), null);
+        feedStore.commitFeed(firstId, firstFile, null, feedSource);
+        assertEquals(2, Persistence.feedBlobs.getById(firstBlobId).refCount);
+        assertEquals(feedStore.getFeed(firstId), feedStore.getFeed(latestId));
+
+        File secondFile = feedStore.newFeed(secondId, new FileInputStream(secondGtfsFile), null);
+        feedStore.commitFeed(secondId, secondFile, null, feedSource);
+        assertEquals(1, Persistence.feedBlobs.getById(firstBlobId).refCount);
+        assertEquals(2, Persistence.feedBlobs.getById(secondBlobId).refCount);
+        assertEquals(feedStore.getFeed(secondId), feedStore.getFeed(latestId));
+
+        // Point the latest feed back at the first version (e.g., because the second has been deleted).
+        feedStore.setLatest(feedSource.id, firstId);
+        assertEquals(2, Persistence.feedBlobs.getById(firstBlobId).refCount);
+        assertEquals(1, Persistence.feedBlobs.getById(secondBlobId).refCount);
+        assertEquals(feedStore.getFeed(firstId), feedStore.getFeed(latestId));
+
+        // Remove the latest feed (e.g., because the feed source has no versions left).
+        feedStore.setLatest(feedSource.id, null);
+        assertEquals(1, Persistence.feedBlobs.getById(firstBlobId).refCount);
+        assertNull(feedStore.getFeed(latestId));
+
+        feedStore.deleteFeed(firstId);
+        feedStore.deleteFeed(secondId);
+        assertNull(Persistence.feedBlobs.getById(firstBlobId));
+        assertNull(Persistence.feedBlobs.getById(secondBlobId));
+    }
+
+    /**
+     * Verify that a content-addressed {@link FeedStore} backed by S3 uploads identical feeds once (leaving the local
+     * files to the feed store to dispose of) and deletes the object once the last feed referring to it is deleted.
+     */
+    @Test
+    public void canStoreBlobsInS3() throws Exception {
+        final String subdir = "content-addressed-s3-test";
+        new File(FeedStore.basePath, subdir).mkdirs();
+        StubS3 s3 = new StubS3();
+        FeedStore feedStore = new FeedStore(subdir, new S3BlobStore("bucket", "gtfs/blobs/", s3));
+        File gtfsFile = new File(getGtfsResourcePath("bart_new.zip"));
+        String hash = HashUtils.hashFile(gtfsFile);
+        String objectKey = "gtfs/blobs/" + hash;
+        String firstId = UUID.randomUUID().toString();
+        String secondId = UUID.randomUUID().toString();
+        for (String id : new String[] {firstId, secondId}) {
+            File file = feedStore.newFeed(id, new FileInputStream(gtfsFile), null);
+            feedStore.commitFeed(id, file, null, null);
+            assertFalse(file.exists());
+        }
+        assertEquals(1, s3.putCount);
+        assertEquals(gtfsFile.length(), s3.objects.get(objectKey).length);
+        assertEquals(objectKey, feedStore.getObjectKey(firstId));
+        assertEquals(objectKey, feedStore.getObjectKey(secondId));
+
+        feedStore.deleteFeed(firstId);
+        assertTrue(s3.objects.containsKey(objectKey));
+        feedStore.deleteFeed(secondId);
+        assertFalse(s3.objects.containsKey(objectKey));
+        assertNull(Persistence.feedBlobs.getById(subdir + ":" + hash));
+    }
+
+    /**
+     * Holds objects in memory in place of an S3 bucket, implementing only the operations used by {@link S3BlobStore}.
+     */
+    private static class StubS3 extends AbstractAmazonS3 {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private int putCount;
+
+        @Override
+        public boolean doesObjectExist(String bucketName, String key) {
+            return objects.containsKey(key);
+        }
+
+        @Override
+        public PutObjectResult putObject(String bucketName, String key, File file) {
+            try {
+                objects.put(key, Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            putCount++;
+            return new PutObjectResult();
+        }
+
+        @Override
+        public S3Object getObject(String bucketName, String key) {
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(objects.get(key)));
+            return object;
+        }
+
+        @Override
+        public void deleteObject(String bucketName, String key) {
+            objects.remove(key);
+        }
     }
 }
@@ -3,14 +3,29 @@ package com.conveyal.datatools.manager.persistence;
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Created by landon on 9/6/17.
@@ -47,6 +62,159 @@ public class PersistenceTest extends UnitTest {
             "Found FeedSource ID should equal inserted ID.");
     }
 
+    @Test
+    public void declaredQueryShapesAreIndexed() {
+        assertTrue(
+            Persistence.feedVersions.findUnindexedQueryShapes().isEmpty(),
+            "Feed version query shapes should be served by indexes after initialization."
+        );
+        assertTrue(
+            Persistence.feedSources.findUnindexedQueryShapes().isEmpty(),
+            "Feed source query shapes should be served by indexes after initialization."
+        );
+    }
+
+    /**
+     * Check that an upsert that sets a nested path keeps the insert-only defaults of the other fields in the same
+     * document, expanding them into dotted paths that do not conflict with the updated path.
+     */
+    @Test
+    public void keepsNestedDefaultsThatDoNotConflictWithUpdatedPaths() {
+        BsonDocument fields = BsonDocument.parse(
+            "{name: 'default', summary: {version: 1, counts: {routes: 2, stops: 3}}, labels: ['a']}"
+        );
+        TypedPersistence.removeConflictingPaths(fields, "summary.counts.stops");
+        TypedPersistence.removeConflictingPaths(fields, "labels.0");
+        TypedPersistence.removeConflictingPaths(fields, "name");
+        assertEquals(BsonDocument.parse("{'summary.version': 1, 'summary.counts.routes': 2}"), fields);
+
+        // Setting a path that contains already expanded fields removes them.
+        TypedPersistence.removeConflictingPaths(fields, "summary.counts");
+        assertEquals(BsonDocument.parse("{'summary.version': 1}"), fields);
+    }
+
+    /**
+     * Check that a query shape is only considered indexed if the leading fields of an index are its equality fields.
+     */
+    @Test
+    public void requiresIndexPrefixToCoverQueryShape() {
+        List<String> index = Arrays.asList("feedSourceId", "version", "_id");
+        assertTrue(TypedPersistence.isIndexPrefix(Arrays.asList("feedSourceId"), index));
+        assertTrue(TypedPersistence.isIndexPrefix(Arrays.asList("version", "feedSourceId"), index));
+        assertFalse(TypedPersistence.isIndexPrefix(Arrays.asList("version"), index));
+        assertFalse(TypedPersistence.isIndexPrefix(Arrays.asList("feedSourceId", "namespace"), index));
+        assertFalse(TypedPersistence.isIndexPrefix(Arrays.asList("deployedTo", "routerId"), Arrays.asList("deployedTo")));
+    }
+
+    /**
+     * Check that a query shape is reported if no index serves it (here, because none was declared).
+     */
+    @Test
+    public void reportsUnindexedQueryShapes() {
+        TypedPersistence<FeedSource> collection = new TypedPersistence<>(
+            Persistence.getMongoDatabase(),
+            FeedSource.class,
+            "UnindexedQueryShapeTest"
+        )
+            .declareIndex("projectId")
+            .declareQueryShape("projectId")
+            .declareQueryShape("name");
+        collection.ensureIndexes();
+        try {
+            assertEquals(
+                Collections.singletonList(Collections.singletonList("name")),
+                collection.findUnindexedQueryShapes()
+            );
+        } finally {
+            collection.getMongoCollection().drop();
+        }
+    }
+
+    /**
+     * Check that lookups are recorded in the per-collection persistence metrics.
+     */
+    @Test
+    public void recordsPersistenceMetrics() {
+        PersistenceMetrics.OperationStats before = Persistence.projects.getMetrics()
+            .getOperationStats()
+            .get(PersistenceMetrics.Operation.GET_FILTERED);
+        long countBefore = before != null ? before.getCount() : 0;
+        Persistence.projects.getFiltered(eq("_id", "metrics-test-missing-project"));
+        PersistenceMetrics.OperationStats after = Persistence.projects.getMetrics()
+            .getOperationStats()
+            .get(PersistenceMetrics.Operation.GET_FILTERED);
+        assertEquals(countBefore + 1, after.getCount());
+        assertEquals(
+            after.getCount(),
+            after.getLatencyHistogram().values().stream().mapToLong(Long::longValue).sum()
+        );
+        assertTrue(PersistenceMetrics.getAll().containsKey(Persistence.projects.getCollectionName()));
+    }
+
+    /**
+     * Page through feed versions (including two with the same version number) and check that every version is returned
+     * exactly once in descending order.
+     */
+    @Test
+    public void canPageThroughFeedVersions() {
+        String feedSourceId = "pagination-test-feed-source";
+        int[] versionNumbers = {1, 2, 3, 3, 4};
+        List<String> versionIds = new ArrayList<>();
+        for (int versionNumber : versionNumbers) {
+            FeedVersion feedVersion = new FeedVersion();
+            feedVersion.feedSourceId = feedSourceId;
+            feedVersion.version = versionNumber;
+            Persistence.feedVersions.create(feedVersion);
+            versionIds.add(feedVersion.id);
+        }
+        try {
+            List<FeedVersion> pagedVersions = new ArrayList<>();
+            String cursor = null;
+            int pageCount = 0;
+            do {
+                Page<FeedVersion> page = Persistence.feedVersions.getPage(
+                    eq("feedSourceId", feedSourceId),
+                    "version",
+                    version -> version.version,
+                    true,
+                    cursor,
+                    2
+                );
+                pagedVersions.addAll(page.items);
+                cursor = page.nextCursor;
+                pageCount++;
+            } while (cursor != null);
+            assertEquals(3, pageCount);
+            assertEquals(versionNumbers.length, pagedVersions.size());
+            assertEquals(
+                new HashSet<>(versionIds),
+                pagedVersions.stream().map(version -> version.id).collect(Collectors.toSet())
+            );
+            for (int i = 1; i < pagedVersions.size(); i++) {
+                assertTrue(pagedVersions.get(i - 1).version >= pagedVersions.get(i).version);
+            }
+        } finally {
+            versionIds.forEach(Persistence.feedVersions::removeById);
+        }
+    }
+
+    /**
+     * Only cursors holding exactly a plain sort value and an id should be accepted, so that a client cannot inject
+     * query operators or extra fields into the keyset filter.
+     */
+    @Test
+    public void rejectsTamperedCursors() {
+        assertTrue(Page.isValidCursor(Page.encodeCursor(3, "version-id")));
+        assertFalse(Page.isValidCursor(encode(new Document("value", 3).append("id", "version-id").append("x", 1))));
+        assertFalse(Page.isValidCursor(encode(new Document("value", new Document("$ne", null)).append("id", "a"))));
+        assertFalse(Page.isValidCursor(encode(new Document("value", 3).append("id", new Document("$gt", "")))));
+        assertFalse(Page.isValidCursor("not a cursor"));
+    }
+
+    private static String encode(Document cursor) {
+        return Base64.getUrlEncoder().encodeToString(cursor.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
 //    @Test
 //    public void createOrganization() {
 //        Organization organization = new Organization();
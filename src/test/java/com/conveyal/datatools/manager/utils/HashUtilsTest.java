@@ -0,0 +1,45 @@
+package com.conveyal.datatools.manager.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link HashUtils}.
+ */
+public class HashUtilsTest {
+    /**
+     * The hash computed while writing a file should match the hash of the file on disk, and (unlike the legacy sampled
+     * hash) it should change when bytes outside the sampled ranges change.
+     */
+    @Test
+    public void hashesEntireFileWhileWriting() throws IOException {
+        byte[] contents = new byte[100_000];
+        for (int i = 0; i < contents.length; i++) contents[i] = (byte) i;
+        File file = File.createTempFile("hash-test", ".zip");
+        file.deleteOnExit();
+        String hash;
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            hash = HashUtils.copyAndHash(new ByteArrayInputStream(contents), outputStream);
+        }
+        assertEquals(HashUtils.hashFile(file), hash);
+        assertFalse(HashUtils.isLegacyHash(hash));
+        String legacyHash = HashUtils.legacyHashFile(file);
+        assertTrue(HashUtils.isLegacyHash(legacyHash));
+
+        // Change a byte that is not in the legacy hash's sample.
+        contents[contents.length - 1]++;
+        Files.write(file.toPath(), contents);
+        assertNotEquals(hash, HashUtils.hashFile(file));
+        assertEquals(legacyHash, HashUtils.legacyHashFile(file));
+    }
+}
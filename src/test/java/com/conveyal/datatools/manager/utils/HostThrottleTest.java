@@ -0,0 +1,63 @@
+package com.conveyal.datatools.manager.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link HostThrottle}.
+ */
+public class HostThrottleTest {
+    /**
+     * A second request to a host at its limit should wait for the first to finish, while a request to another host and
+     * a re-entrant request from the same thread should not.
+     */
+    @Test
+    public void limitsConcurrentRequestsPerHost() throws InterruptedException {
+        HostThrottle throttle = new HostThrottle(1, 0);
+        throttle.acquire("feeds.example.com");
+        // Re-entrant and other host requests do not wait.
+        throttle.acquire("FEEDS.example.com");
+        throttle.acquire("other.example.com");
+        assertEquals(1, throttle.getActiveCount("feeds.example.com"));
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            try {
+                throttle.acquire("feeds.example.com");
+                acquired.countDown();
+                throttle.release("feeds.example.com");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        other.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        throttle.release("feeds.example.com");
+        // Still held once by this thread.
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        throttle.release("feeds.example.com");
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        throttle.release("other.example.com");
+        other.join();
+    }
+
+    /**
+     * Consecutive requests to the same host should be spaced out by the delay.
+     */
+    @Test
+    public void delaysConsecutiveRequestsToHost() throws InterruptedException {
+        HostThrottle throttle = new HostThrottle(2, 300);
+        long start = System.currentTimeMillis();
+        throttle.acquire("feeds.example.com");
+        throttle.release("feeds.example.com");
+        throttle.acquire("feeds.example.com");
+        throttle.release("feeds.example.com");
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+}
@@ -0,0 +1,86 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link JobExecutor}.
+ */
+public class JobExecutorTest {
+    /**
+     * Queue tasks of mixed priorities behind a busy pool and check that they are started by priority and then in
+     * submission order.
+     */
+    @Test
+    public void startsQueuedTasksByPriorityThenSubmissionOrder() throws InterruptedException {
+        JobExecutor jobExecutor = new JobExecutor();
+        JobType type = JobType.NOTIFY_USERS;
+        int threads = jobExecutor.getPoolSize(JobExecutor.poolFor(type));
+        // Occupy all but one thread for the duration of the test, so that queued tasks run one at a time.
+        CountDownLatch blockersStarted = new CountDownLatch(threads);
+        CountDownLatch releaseAll = new CountDownLatch(1);
+        for (int i = 0; i < threads - 1; i++) {
+            jobExecutor.execute(() -> {
+                blockersStarted.countDown();
+                await(releaseAll);
+            }, type, JobExecutor.Priority.INTERACTIVE);
+        }
+        // Occupy the remaining thread until the tasks below have been queued.
+        CountDownLatch releaseLast = new CountDownLatch(1);
+        jobExecutor.execute(() -> {
+            blockersStarted.countDown();
+            await(releaseLast);
+        }, type, JobExecutor.Priority.INTERACTIVE);
+        // Wait for every thread to be occupied, so that the blocking tasks are no longer counted as queued.
+        assertTrue(blockersStarted.await(10, TimeUnit.SECONDS));
+
+        List<String> startOrder = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(5);
+        queue(jobExecutor, "bulk-1", JobExecutor.Priority.BULK, startOrder, finished);
+        queue(jobExecutor, "normal-1", JobExecutor.Priority.NORMAL, startOrder, finished);
+        queue(jobExecutor, "interactive-1", JobExecutor.Priority.INTERACTIVE, startOrder, finished);
+        queue(jobExecutor, "bulk-2", JobExecutor.Priority.BULK, startOrder, finished);
+        queue(jobExecutor, "interactive-2", JobExecutor.Priority.INTERACTIVE, startOrder, finished);
+        assertEquals(5, (int) jobExecutor.getQueueDepthByJobType().get(type));
+
+        releaseLast.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        releaseAll.countDown();
+        assertEquals(
+            Arrays.asList("interactive-1", "interactive-2", "normal-1", "bulk-1", "bulk-2"),
+            startOrder
+        );
+        assertEquals(null, jobExecutor.getQueueDepthByJobType().get(type));
+    }
+
+    private static void queue(
+        JobExecutor jobExecutor,
+        String name,
+        JobExecutor.Priority priority,
+        List<String> startOrder,
+        CountDownLatch finished
+    ) {
+        jobExecutor.execute(() -> {
+            startOrder.add(name);
+            finished.countDown();
+        }, JobType.NOTIFY_USERS, priority);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link JobMetrics}.
+ */
+public class JobMetricsTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    /**
+     * Running a job with a sub-job should record a run for each job type, the sub-job in the parent's breakdown and
+     * the memory allocated by each job's own logic.
+     */
+    @Test
+    public void recordsRunsAndSubJobBreakdown() {
+        JobMetrics parentMetrics = JobMetrics.forJobType(JobType.UNKNOWN_TYPE);
+        JobMetrics subJobMetrics = JobMetrics.forJobType(JobType.SYSTEM_JOB);
+        long parentRuns = parentMetrics.getRunTime().getCount();
+        long subJobRuns = subJobMetrics.getRunTime().getCount();
+        JobMetrics.Distribution breakdown = parentMetrics.getSubJobRunTime().get(JobType.SYSTEM_JOB);
+        long breakdownRuns = breakdown == null ? 0 : breakdown.getCount();
+
+        MonitorableJob parentJob = new TestJob(JobType.UNKNOWN_TYPE);
+        parentJob.addNextJob(new TestJob(JobType.SYSTEM_JOB));
+        parentJob.run();
+
+        assertEquals(parentRuns + 1, parentMetrics.getRunTime().getCount());
+        assertEquals(subJobRuns + 1, subJobMetrics.getRunTime().getCount());
+        assertEquals(breakdownRuns + 1, parentMetrics.getSubJobRunTime().get(JobType.SYSTEM_JOB).getCount());
+        if (JobMetrics.currentThreadAllocatedBytes() >= 0) {
+            assertTrue(subJobMetrics.getAllocatedBytes().getMax() >= TestJob.ALLOCATION_BYTES);
+        }
+    }
+
+    /**
+     * Job that allocates a fixed amount of memory.
+     */
+    private static class TestJob extends MonitorableJob {
+        private static final int ALLOCATION_BYTES = 1024 * 1024;
+        private byte[] data;
+
+        TestJob(JobType type) {
+            super(user, "Test job", type);
+        }
+
+        @Override
+        public void jobLogic() {
+            data = new byte[ALLOCATION_BYTES];
+        }
+    }
+}
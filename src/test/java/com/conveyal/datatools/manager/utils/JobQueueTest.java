@@ -0,0 +1,191 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
+import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.in;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link JobQueue}.
+ */
+public class JobQueueTest extends DatatoolsTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+    private static Project project;
+    private static FeedSource feedSource;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        DatatoolsTest.setUp();
+        project = new Project();
+        project.name = String.format("Test %s", new Date());
+        Persistence.projects.create(project);
+        feedSource = new FeedSource("Job queue feed source", project.id, FeedRetrievalMethod.FETCHED_AUTOMATICALLY);
+        Persistence.feedSources.create(feedSource);
+    }
+
+    /**
+     * Remove unfinished records left by other tests, so that each test claims only the records it creates.
+     */
+    @BeforeEach
+    public void clearUnfinishedRecords() {
+        Persistence.jobRecords.removeFiltered(in("state", JobRecord.State.QUEUED.name(), JobRecord.State.RUNNING.name()));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        feedSource.delete();
+        project.delete();
+    }
+
+    /**
+     * A fetch job should be recreated from its record with the same feed source, owner and threading behavior.
+     */
+    @Test
+    public void canRecreateFetchJobFromRecord() {
+        FetchSingleFeedJob originalJob = new FetchSingleFeedJob(feedSource, user, true);
+        JobRecord record = new JobRecord(originalJob, JobExecutor.Pool.HEAVY, JobExecutor.Priority.NORMAL);
+        assertEquals(originalJob.jobId, record.id);
+
+        MonitorableJob recreatedJob = JobQueue.recreateJob(record);
+        assertTrue(recreatedJob instanceof FetchSingleFeedJob);
+        assertEquals(feedSource.id, ((FetchSingleFeedJob) recreatedJob).getFeedSourceId());
+        assertEquals(user.getUser_id(), recreatedJob.retrieveUserId());
+        assertEquals(originalJob.retrieveParameters(), ((FetchSingleFeedJob) recreatedJob).retrieveParameters());
+    }
+
+    /**
+     * A fetch job whose feed source has been deleted since it was queued should not be recreated.
+     */
+    @Test
+    public void doesNotRecreateFetchJobForMissingFeedSource() {
+        JobRecord record = new JobRecord(
+            new FetchSingleFeedJob(feedSource, user, false),
+            JobExecutor.Pool.LIGHT,
+            JobExecutor.Priority.INTERACTIVE
+        );
+        record.parameters.put("feedSourceId", "does-not-exist");
+        assertNull(JobQueue.recreateJob(record));
+    }
+
+    /**
+     * A job claimed by a worker is recreated with a new job ID, but other servers should still find its record by the
+     * ID the job was queued with, which is the one the client follows.
+     */
+    @Test
+    public void canLookUpClaimedJobByOriginalId() {
+        FetchSingleFeedJob originalJob = new FetchSingleFeedJob(feedSource, user, false);
+        JobRecord record = new JobRecord(originalJob, JobExecutor.Pool.HEAVY, JobExecutor.Priority.NORMAL);
+        // Queued for any worker (as in enqueue-only mode).
+        record.leaseExpiresAt = new Date(0);
+        Persistence.jobRecords.create(record);
+
+        JobQueue worker = new JobQueue();
+        JobRecord claimed = worker.claimNext();
+        assertEquals(record.id, claimed.id);
+        MonitorableJob recreatedJob = JobQueue.recreateJob(claimed);
+        assertNotEquals(originalJob.jobId, recreatedJob.jobId);
+        assertTrue(worker.markRunning(recreatedJob, claimed.id));
+
+        JobQueue apiServer = new JobQueue();
+        JobRecord found = apiServer.getRemoteJob(user.getUser_id(), originalJob.jobId);
+        assertNotNull(found);
+        assertEquals(record.id, found.id);
+        assertEquals(JobRecord.State.RUNNING, found.state);
+        assertNotNull(apiServer.getRemoteJob(user.getUser_id(), recreatedJob.jobId));
+    }
+
+    /**
+     * A queued record should be leased to the first worker that claims it and not be claimable by any other worker
+     * while the lease lasts.
+     */
+    @Test
+    public void canClaimQueuedRecordOnlyOnce() {
+        JobRecord record = createQueuedRecord(null, new Date(0));
+
+        JobQueue worker = new JobQueue();
+        JobRecord claimed = worker.claimNext();
+        assertNotNull(claimed);
+        assertEquals(record.id, claimed.id);
+        assertEquals(worker.workerId, claimed.leaseOwner);
+        assertEquals(JobRecord.State.QUEUED, claimed.state);
+        assertTrue(claimed.leaseExpiresAt.after(new Date()));
+
+        assertNull(new JobQueue().claimNext());
+    }
+
+    /**
+     * A record whose lease expired (e.g., because its worker stopped) should be claimable by another worker, after
+     * which the original worker can no longer mark it as running.
+     */
+    @Test
+    public void canReclaimRecordWithExpiredLease() {
+        JobQueue stoppedWorker = new JobQueue();
+        JobRecord record = createQueuedRecord(stoppedWorker.workerId, new Date(System.currentTimeMillis() - 1000));
+
+        JobQueue worker = new JobQueue();
+        JobRecord claimed = worker.claimNext();
+        assertNotNull(claimed);
+        assertEquals(record.id, claimed.id);
+        assertEquals(worker.workerId, claimed.leaseOwner);
+
+        MonitorableJob job = JobQueue.recreateJob(claimed);
+        assertFalse(stoppedWorker.markRunning(job, record.id));
+        assertTrue(worker.markRunning(job, record.id));
+        JobRecord running = Persistence.jobRecords.getById(record.id);
+        assertEquals(JobRecord.State.RUNNING, running.state);
+        assertEquals(worker.workerId, running.workerId);
+        assertEquals(1, running.attempts);
+    }
+
+    /**
+     * Renewing leases should only extend those held by the renewing worker, and a renewed lease should keep the record
+     * from being claimed by other workers.
+     */
+    @Test
+    public void renewsOnlyLeasesHeldByWorker() {
+        JobQueue worker = new JobQueue();
+        Date expiringSoon = new Date(System.currentTimeMillis() + 1000);
+        JobRecord record = createQueuedRecord(worker.workerId, expiringSoon);
+
+        assertEquals(0, new JobQueue().renewLeases(List.of(record.id)));
+        assertEquals(expiringSoon, Persistence.jobRecords.getById(record.id).leaseExpiresAt);
+
+        assertEquals(1, worker.renewLeases(List.of(record.id)));
+        Date renewedExpiry = Persistence.jobRecords.getById(record.id).leaseExpiresAt;
+        assertTrue(renewedExpiry.after(expiringSoon));
+        assertNull(new JobQueue().claimNext());
+    }
+
+    private static JobRecord createQueuedRecord(String leaseOwner, Date leaseExpiresAt) {
+        JobRecord record = new JobRecord(
+            new FetchSingleFeedJob(feedSource, user, false),
+            JobExecutor.Pool.HEAVY,
+            JobExecutor.Priority.NORMAL
+        );
+        record.leaseOwner = leaseOwner;
+        record.leaseExpiresAt = leaseExpiresAt;
+        Persistence.jobRecords.create(record);
+        return record;
+    }
+}
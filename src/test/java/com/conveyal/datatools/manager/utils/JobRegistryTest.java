@@ -0,0 +1,64 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.FeedSourceJob;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link JobRegistry}.
+ */
+public class JobRegistryTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    /**
+     * Check that a job is indexed by feed source only while it is running and that it can be looked up by ID and owner
+     * until it is removed.
+     */
+    @Test
+    public void indexesJobsByIdOwnerAndActiveFeedSource() {
+        JobRegistry registry = new JobRegistry();
+        MonitorableJob job = new TestFeedSourceJob("feed-source-a");
+        registry.register(job);
+
+        assertEquals(job, registry.getById(job.jobId));
+        assertTrue(registry.getByUserId(user.getUser_id()).contains(job));
+        assertTrue(registry.getActiveByFeedSourceId("feed-source-a").isEmpty());
+
+        registry.markStarted(job);
+        assertEquals(Collections.singleton(job), registry.getActiveByFeedSourceId("feed-source-a"));
+        assertTrue(registry.getActiveByFeedSourceId("feed-source-b").isEmpty());
+        assertTrue(registry.getActive().contains(job));
+
+        registry.markFinished(job);
+        assertTrue(registry.getActiveByFeedSourceId("feed-source-a").isEmpty());
+        assertEquals(job, registry.getById(job.jobId));
+
+        registry.remove(job);
+        assertNull(registry.getById(job.jobId));
+        assertTrue(registry.getByUserId(user.getUser_id()).isEmpty());
+    }
+
+    private static class TestFeedSourceJob extends FeedSourceJob {
+        private final String feedSourceId;
+
+        TestFeedSourceJob(String feedSourceId) {
+            super(user, "Test job", JobType.UNKNOWN_TYPE);
+            this.feedSourceId = feedSourceId;
+        }
+
+        @Override
+        public String getFeedSourceId() {
+            return feedSourceId;
+        }
+
+        @Override
+        public void jobLogic() { }
+    }
+}
@@ -0,0 +1,141 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.JobRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link JobStatusFeed}.
+ */
+public class JobStatusFeedTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    /**
+     * A new job should be sent in full, then repeated status updates should be coalesced into a single status update
+     * and finally the job's removal should be sent.
+     */
+    @Test
+    public void sendsOnlyChangesSinceVersion() throws InterruptedException {
+        JobStatusFeed feed = new JobStatusFeed();
+        MonitorableJob job = new TestJob();
+        feed.jobRegistered(job);
+
+        JobStatusFeed.Updates initial = feed.awaitUpdates(user.getUser_id(), 0, 0);
+        assertEquals(Collections.singletonList(job), initial.jobs);
+        assertTrue(initial.updates.isEmpty());
+
+        // Nothing has changed, so this should time out with no updates.
+        JobStatusFeed.Updates unchanged = feed.awaitUpdates(user.getUser_id(), initial.version, 10);
+        assertTrue(unchanged.jobs.isEmpty());
+        assertTrue(unchanged.updates.isEmpty());
+
+        job.status.update("Step 1", 10);
+        job.status.update("Step 2", 20);
+        JobStatusFeed.Updates updated = feed.awaitUpdates(user.getUser_id(), initial.version, 1000);
+        assertTrue(updated.jobs.isEmpty());
+        assertEquals(1, updated.updates.size());
+        assertEquals("Step 2", updated.updates.get(0).status.message);
+
+        feed.jobRemoved(job);
+        JobStatusFeed.Updates removed = feed.awaitUpdates(user.getUser_id(), updated.version, 1000);
+        assertEquals(Collections.singletonList(job.jobId), removed.removed);
+    }
+
+    /**
+     * A job handed off to the durable job queue should not be reported as removed, but followed through its record
+     * until the record's final state has been sent.
+     */
+    @Test
+    public void followsHandedOffJobThroughItsRecord() throws InterruptedException {
+        JobStatusFeed feed = new JobStatusFeed();
+        MonitorableJob job = new TestJob();
+        feed.jobRegistered(job);
+        JobStatusFeed.Updates initial = feed.awaitUpdates(user.getUser_id(), 0, 0);
+
+        feed.jobHandedOff(job);
+        job.status.update("Ignored local update", 10);
+        JobStatusFeed.Updates handedOff = feed.awaitUpdates(user.getUser_id(), initial.version, 10);
+        assertTrue(handedOff.updates.isEmpty());
+        assertTrue(handedOff.removed.isEmpty());
+
+        JobRecord record = new JobRecord();
+        record.id = job.jobId;
+        record.state = JobRecord.State.RUNNING;
+        record.status = new MonitorableJob.Status();
+        record.status.update("Running on worker", 50);
+        feed.remoteJobsUpdated(user.getUser_id(), Collections.singletonList(record));
+        JobStatusFeed.Updates running = feed.awaitUpdates(user.getUser_id(), handedOff.version, 1000);
+        assertEquals(1, running.updates.size());
+        assertEquals(job.jobId, running.updates.get(0).jobId);
+        assertTrue(running.updates.get(0).active);
+        assertEquals("Running on worker", running.updates.get(0).status.message);
+
+        // An unchanged record is not sent again.
+        feed.remoteJobsUpdated(user.getUser_id(), Collections.singletonList(record));
+        JobStatusFeed.Updates unchanged = feed.awaitUpdates(user.getUser_id(), running.version, 10);
+        assertTrue(unchanged.updates.isEmpty());
+
+        record.state = JobRecord.State.COMPLETED;
+        record.status.completeSuccessfully("Done");
+        feed.remoteJobsUpdated(user.getUser_id(), Collections.singletonList(record));
+        JobStatusFeed.Updates completed = feed.awaitUpdates(user.getUser_id(), unchanged.version, 1000);
+        assertEquals(1, completed.updates.size());
+        assertTrue(completed.updates.get(0).status.completed);
+        JobStatusFeed.Updates removed = feed.awaitUpdates(user.getUser_id(), completed.version, 1000);
+        assertEquals(Collections.singletonList(job.jobId), removed.removed);
+    }
+
+    /**
+     * Once a user has as many clients waiting as allowed, further requests should be answered immediately and asked to
+     * retry later rather than holding another request thread.
+     */
+    @Test
+    public void limitsWaitingClientsPerUser() throws Exception {
+        JobStatusFeed feed = new JobStatusFeed();
+        MonitorableJob job = new TestJob();
+        feed.jobRegistered(job);
+        long version = feed.awaitUpdates(user.getUser_id(), 0, 0).version;
+
+        ExecutorService waiters = Executors.newCachedThreadPool();
+        try {
+            List<Future<JobStatusFeed.Updates>> waiting = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                waiting.add(waiters.submit(() -> feed.awaitUpdates(user.getUser_id(), version, 10000)));
+            }
+            // Let the waiting requests start waiting.
+            Thread.sleep(200);
+            long start = System.currentTimeMillis();
+            JobStatusFeed.Updates rejected = feed.awaitUpdates(user.getUser_id(), version, 10000);
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertTrue(rejected.retryAfterMillis > 0);
+
+            job.status.update("Step 1", 10);
+            for (Future<JobStatusFeed.Updates> updates : waiting) {
+                assertEquals(0, updates.get(10, TimeUnit.SECONDS).retryAfterMillis);
+            }
+        } finally {
+            waiters.shutdownNow();
+        }
+    }
+
+    private static class TestJob extends MonitorableJob {
+        TestJob() {
+            super(user, "Test job", JobType.UNKNOWN_TYPE);
+        }
+
+        @Override
+        public void jobLogic() { }
+    }
+}
@@ -0,0 +1,88 @@
+package com.conveyal.datatools.manager.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contains tests for {@link Poller}.
+ */
+public class PollerTest {
+    /**
+     * The check should be run repeatedly until it succeeds, after which polling stops.
+     */
+    @Test
+    public void pollsUntilCheckSucceeds() throws Exception {
+        AtomicInteger checkCount = new AtomicInteger();
+        CompletableFuture<Void> poll = Poller.poll(
+            () -> checkCount.incrementAndGet() == 3,
+            20,
+            10000,
+            TimeUnit.MILLISECONDS,
+            "Timed out"
+        );
+        poll.get(10, TimeUnit.SECONDS);
+        assertEquals(3, checkCount.get());
+        Thread.sleep(100);
+        assertEquals(3, checkCount.get());
+    }
+
+    /**
+     * A poll should fail with the exception thrown by the check, or with a timeout if the check never succeeds.
+     */
+    @Test
+    public void failsOnExceptionOrTimeout() {
+        CompletableFuture<Void> failing = Poller.poll(
+            () -> {
+                throw new IllegalStateException("Check failed");
+            },
+            20,
+            10000,
+            TimeUnit.MILLISECONDS,
+            "Timed out"
+        );
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failing.get(10, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+
+        CompletableFuture<Void> timingOut = Poller.poll(() -> false, 20, 100, TimeUnit.MILLISECONDS, "Timed out");
+        ExecutionException timeout = assertThrows(ExecutionException.class, () -> timingOut.get(10, TimeUnit.SECONDS));
+        assertTrue(timeout.getCause() instanceof TimeoutException);
+        assertEquals("Timed out", timeout.getCause().getMessage());
+    }
+
+    /**
+     * Cancelling the poll should stop the check from being run again.
+     */
+    @Test
+    public void cancellingStopsPolling() throws InterruptedException {
+        AtomicInteger checkCount = new AtomicInteger();
+        CountDownLatch checkedTwice = new CountDownLatch(2);
+        CompletableFuture<Void> poll = Poller.poll(
+            () -> {
+                checkCount.incrementAndGet();
+                checkedTwice.countDown();
+                return false;
+            },
+            20,
+            10000,
+            TimeUnit.MILLISECONDS,
+            "Timed out"
+        );
+        assertTrue(checkedTwice.await(10, TimeUnit.SECONDS));
+        poll.cancel(false);
+        // Allow a check that was already running when the poll was cancelled to finish.
+        Thread.sleep(100);
+        int checksAfterCancel = checkCount.get();
+        Thread.sleep(200);
+        assertEquals(checksAfterCancel, checkCount.get());
+    }
+}